@@ -304,7 +304,7 @@ public abstract class AbstractConnectionPool extends ContainerLifeCycle implemen
     {
         while (true)
         {
-            Pool<Connection>.Entry entry = pool.acquire();
+            Pool<Connection>.Entry entry = acquireEntry();
             if (entry != null)
             {
                 Connection connection = entry.getPooled();
@@ -333,6 +333,18 @@ public abstract class AbstractConnectionPool extends ContainerLifeCycle implemen
         }
     }
 
+    /**
+     * <p>Acquires an entry from the pool, using the pool strategy.</p>
+     * <p>Subclasses may override this method to select the entry to acquire
+     * by other criteria, and then acquire it via {@link Pool#acquire(Pool.Entry)}.</p>
+     *
+     * @return an acquired entry, or {@code null} if no entry is available
+     */
+    protected Pool<Connection>.Entry acquireEntry()
+    {
+        return pool.acquire();
+    }
+
     @Override
     public boolean isActive(Connection connection)
     {
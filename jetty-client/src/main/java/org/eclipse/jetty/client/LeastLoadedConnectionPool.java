@@ -0,0 +1,232 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jetty.client.api.Connection;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link ConnectionPool} for multiplexed connections that provides the least loaded connection.</p>
+ * <p>The load of a connection is primarily the ratio between the number of requests in progress
+ * on the connection and the max number of concurrent requests it allows, and secondarily the
+ * amount of data that can be sent on the connection before being flow-controlled.
+ * Connections that implement {@link Loadable} report these values themselves, for example
+ * the max number of concurrent streams of a HTTP/2 connection as configured by the server
+ * that connection is connected to, while for other connections only the number of requests
+ * in progress and {@link #getMaxMultiplex()} are used.</p>
+ * <p>Connections that are about to be closed, because the server asked to stop using them
+ * or because they are nearing their {@link #setMaxUsageCount(int) max usage count}, are used
+ * only if no other connection is available; a replacement connection is opened as soon as
+ * one of these connections is provided, so that it is already opened when the old one is
+ * closed.</p>
+ * <p>This pool may be configured with a {@link #setMinConnections(int) min number of connections}
+ * that are opened when the pool is started, and re-opened when connections are closed.
+ * Note that connections may still be closed by the idle timeout, in which case they will
+ * be re-opened.</p>
+ */
+@ManagedObject
+public class LeastLoadedConnectionPool extends MultiplexConnectionPool
+{
+    private static final Logger LOG = LoggerFactory.getLogger(LeastLoadedConnectionPool.class);
+    private static final long CLOSING_LOAD = 1L << 62;
+
+    private final Set<Connection> replaced = ConcurrentHashMap.newKeySet();
+    private final Pool<Connection> pool;
+    private int minConnections;
+    private double replaceUsageRatio = 0.9D;
+
+    public LeastLoadedConnectionPool(HttpDestination destination, int maxConnections, Callback requester)
+    {
+        this(destination, maxConnections, requester, 1);
+    }
+
+    public LeastLoadedConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int maxMultiplex)
+    {
+        this(destination, new Pool<>(Pool.StrategyType.FIRST, maxConnections, false), requester, maxMultiplex);
+    }
+
+    private LeastLoadedConnectionPool(HttpDestination destination, Pool<Connection> pool, Callback requester, int maxMultiplex)
+    {
+        super(destination, pool, requester, maxMultiplex);
+        this.pool = pool;
+    }
+
+    @ManagedAttribute("The minimum number of connections kept open")
+    public int getMinConnections()
+    {
+        return minConnections;
+    }
+
+    /**
+     * @param minConnections the minimum number of connections opened when this pool is
+     * started, and kept open while this pool is running
+     */
+    public void setMinConnections(int minConnections)
+    {
+        this.minConnections = minConnections;
+    }
+
+    @ManagedAttribute("The fraction of the max usage count after which a connection is replaced")
+    public double getReplaceUsageRatio()
+    {
+        return replaceUsageRatio;
+    }
+
+    /**
+     * @param replaceUsageRatio the fraction of the {@link #getMaxUsageCount() max usage count}
+     * after which a connection is considered about to be closed and a replacement connection is opened
+     */
+    public void setReplaceUsageRatio(double replaceUsageRatio)
+    {
+        if (replaceUsageRatio <= 0 || replaceUsageRatio > 1)
+            throw new IllegalArgumentException("Invalid replace usage ratio " + replaceUsageRatio);
+        this.replaceUsageRatio = replaceUsageRatio;
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        preCreateConnections(getMinConnections());
+    }
+
+    @Override
+    protected Pool<Connection>.Entry acquireEntry()
+    {
+        // Another thread may acquire the least loaded entry
+        // between its selection and its acquisition, so retry.
+        for (int tries = pool.size(); tries-- > 0;)
+        {
+            Pool<Connection>.Entry leastLoaded = null;
+            long leastLoad = Long.MAX_VALUE;
+            for (Pool<Connection>.Entry entry : pool.values())
+            {
+                if (entry.isReserved() || entry.isClosed())
+                    continue;
+                long load = load(entry);
+                if (load < leastLoad)
+                {
+                    leastLoad = load;
+                    leastLoaded = entry;
+                }
+            }
+            if (leastLoaded == null)
+                return null;
+            if (pool.acquire(leastLoaded))
+            {
+                if (leastLoad >= CLOSING_LOAD)
+                    replace(leastLoaded.getPooled());
+                return leastLoaded;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * <p>Returns the load of the connection of the given entry, lower loads being preferred.</p>
+     *
+     * @param entry the pool entry of the connection
+     * @return the load of the connection, or {@link Long#MAX_VALUE} if the connection
+     * cannot be used for another request
+     */
+    protected long load(Pool<Connection>.Entry entry)
+    {
+        Connection connection = entry.getPooled();
+        int active = entry.getMultiplexCount();
+        int maxActive = getMaxMultiplex();
+        int sendWindow = Integer.MAX_VALUE;
+        boolean closing = false;
+        if (connection instanceof Loadable)
+        {
+            Loadable loadable = (Loadable)connection;
+            active = Math.max(active, loadable.getActiveRequestCount());
+            int maxConcurrent = loadable.getMaxConcurrentRequests();
+            if (maxConcurrent > 0)
+                maxActive = Math.min(maxActive, maxConcurrent);
+            sendWindow = Math.max(0, loadable.getSendWindow());
+            closing = loadable.isClosing();
+        }
+        if (active >= maxActive)
+            return Long.MAX_VALUE;
+
+        int maxUsage = getMaxUsageCount();
+        if (maxUsage > 0 && entry.getUsageCount() >= maxUsage * replaceUsageRatio)
+            closing = true;
+
+        // Order by closing, then by the fraction of used
+        // capacity, then by the available send window.
+        long usage = active * 1024L / maxActive;
+        return (closing ? CLOSING_LOAD : 0) + (usage << 32) + (Integer.MAX_VALUE - sendWindow);
+    }
+
+    private void replace(Connection connection)
+    {
+        if (!replaced.add(connection))
+            return;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Replacing {} in {}", connection, this);
+        preCreateConnections(1);
+    }
+
+    @Override
+    protected void removed(Connection connection)
+    {
+        super.removed(connection);
+        replaced.remove(connection);
+        if (!isRunning() || isClosed())
+            return;
+        int missing = getMinConnections() - getConnectionCount();
+        if (missing > 0)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Opening {} connections to keep {} in {}", missing, getMinConnections(), this);
+            preCreateConnections(missing);
+        }
+    }
+
+    /**
+     * <p>A connection that reports its load to {@link LeastLoadedConnectionPool}.</p>
+     */
+    public interface Loadable
+    {
+        /**
+         * @return the number of requests in progress on this connection
+         */
+        int getActiveRequestCount();
+
+        /**
+         * @return the max number of concurrent requests allowed on this connection,
+         * or a non-positive value if there is no specific limit
+         */
+        int getMaxConcurrentRequests();
+
+        /**
+         * @return the number of bytes that can be sent on this connection before being flow-controlled
+         */
+        int getSendWindow();
+
+        /**
+         * @return whether the other peer asked to stop using this connection
+         */
+        boolean isClosing();
+    }
+}
@@ -80,6 +80,7 @@ public class ConnectionPoolTest
                 return pool;
             }),
             new ConnectionPoolFactory("multiplex", destination -> new MultiplexConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination, 1)),
+            new ConnectionPoolFactory("least-loaded", destination -> new LeastLoadedConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination)),
             new ConnectionPoolFactory("random", destination -> new RandomConnectionPool(destination, destination.getHttpClient().getMaxConnectionsPerDestination(), destination, 1))
         );
     }
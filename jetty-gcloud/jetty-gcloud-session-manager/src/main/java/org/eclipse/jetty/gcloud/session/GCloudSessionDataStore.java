@@ -13,8 +13,6 @@
 
 package org.eclipse.jetty.gcloud.session;
 
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -37,7 +35,6 @@ import org.eclipse.jetty.server.session.SessionContext;
 import org.eclipse.jetty.server.session.SessionData;
 import org.eclipse.jetty.server.session.UnreadableSessionDataException;
 import org.eclipse.jetty.server.session.UnwriteableSessionDataException;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -961,30 +958,23 @@ public class GCloudSessionDataStore extends AbstractSessionDataStore
         if (session == null)
             return null;
 
-        Entity entity = null;
-
         //serialize the attribute map
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos))
-        {
-            SessionData.serializeAttributes(session, oos);
-
-            //turn a session into an entity         
-            entity = Entity.newBuilder(key)
-                .set(_model.getId(), session.getId())
-                .set(_model.getContextPath(), session.getContextPath())
-                .set(_model.getVhost(), session.getVhost())
-                .set(_model.getAccessed(), session.getAccessed())
-                .set(_model.getLastAccessed(), session.getLastAccessed())
-                .set(_model.getCreateTime(), session.getCreated())
-                .set(_model.getCookieSetTime(), session.getCookieSet())
-                .set(_model.getLastNode(), session.getLastNode())
-                .set(_model.getExpiry(), session.getExpiry())
-                .set(_model.getMaxInactive(), session.getMaxInactiveMs())
-                .set(_model.getLastSaved(), session.getLastSaved())
-                .set(_model.getAttributes(), BlobValue.newBuilder(Blob.copyFrom(baos.toByteArray())).setExcludeFromIndexes(true).build()).build();
-            return entity;
-        }
+        byte[] attributes = _sessionDataCodec.encode(session);
+
+        //turn a session into an entity
+        return Entity.newBuilder(key)
+            .set(_model.getId(), session.getId())
+            .set(_model.getContextPath(), session.getContextPath())
+            .set(_model.getVhost(), session.getVhost())
+            .set(_model.getAccessed(), session.getAccessed())
+            .set(_model.getLastAccessed(), session.getLastAccessed())
+            .set(_model.getCreateTime(), session.getCreated())
+            .set(_model.getCookieSetTime(), session.getCookieSet())
+            .set(_model.getLastNode(), session.getLastNode())
+            .set(_model.getExpiry(), session.getExpiry())
+            .set(_model.getMaxInactive(), session.getMaxInactiveMs())
+            .set(_model.getLastSaved(), session.getLastSaved())
+            .set(_model.getAttributes(), BlobValue.newBuilder(Blob.copyFrom(attributes)).setExcludeFromIndexes(true).build()).build();
     }
 
     /**
@@ -1031,9 +1021,9 @@ public class GCloudSessionDataStore extends AbstractSessionDataStore
         session.setLastNode(lastNode);
         session.setLastSaved(lastSaved);
         session.setExpiry(expiry);
-        try (ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(blob.asInputStream()))
+        try
         {
-            SessionData.deserializeAttributes(session, ois);
+            _sessionDataCodec.decode(session, blob.toByteArray());
         }
         catch (Exception e)
         {
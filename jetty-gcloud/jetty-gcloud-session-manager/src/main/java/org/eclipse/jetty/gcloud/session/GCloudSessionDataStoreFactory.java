@@ -82,6 +82,8 @@ public class GCloudSessionDataStoreFactory extends AbstractSessionDataStoreFacto
         ds.setGracePeriodSec(getGracePeriodSec());
         ds.setNamespace(getNamespace());
         ds.setSavePeriodSec(getSavePeriodSec());
+        if (getSessionDataCodec() != null)
+            ds.setSessionDataCodec(getSessionDataCodec());
         ds.setEntityDataModel(getEntityDataModel());
         return ds;
     }
@@ -93,7 +93,7 @@ public class HazelcastSessionDataStoreFactory
                         }
 
                         SerializerConfig sc = new SerializerConfig()
-                            .setImplementation(new SessionDataSerializer())
+                            .setImplementation(new SessionDataSerializer(getSessionDataCodec()))
                             .setTypeClass(SessionData.class);
                         config.getSerializationConfig().addSerializerConfig(sc);
                     }
@@ -113,7 +113,7 @@ public class HazelcastSessionDataStoreFactory
                     if (StringUtil.isEmpty(configurationLocation))
                     {
                         SerializerConfig sc = new SerializerConfig()
-                            .setImplementation(new SessionDataSerializer())
+                            .setImplementation(new SessionDataSerializer(getSessionDataCodec()))
                             .setTypeClass(SessionData.class);
                         config = new Config();
                         config.getSerializationConfig().addSerializerConfig(sc);
@@ -150,6 +150,8 @@ public class HazelcastSessionDataStoreFactory
         hazelcastSessionDataStore.setSessionDataMap(hazelcastInstance.getMap(mapName));
         hazelcastSessionDataStore.setGracePeriodSec(getGracePeriodSec());
         hazelcastSessionDataStore.setSavePeriodSec(getSavePeriodSec());
+        if (getSessionDataCodec() != null)
+            hazelcastSessionDataStore.setSessionDataCodec(getSessionDataCodec());
         hazelcastSessionDataStore.setUseQueries(isUseQueries());
         return hazelcastSessionDataStore;
     }
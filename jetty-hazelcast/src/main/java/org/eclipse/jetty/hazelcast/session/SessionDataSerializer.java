@@ -13,27 +13,46 @@
 
 package org.eclipse.jetty.hazelcast.session;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 
 import com.hazelcast.nio.ObjectDataInput;
 import com.hazelcast.nio.ObjectDataOutput;
 import com.hazelcast.nio.serialization.StreamSerializer;
+import org.eclipse.jetty.server.session.JavaSessionDataCodec;
 import org.eclipse.jetty.server.session.SessionData;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.server.session.SessionDataCodec;
 
 /**
  * SessionDataSerializer
  *
  * Handles serialization on behalf of the SessionData object, and
  * ensures that we use jetty's classloading knowledge.
+ * The session attributes are encoded with a {@link SessionDataCodec}.
  */
 public class SessionDataSerializer implements StreamSerializer<SessionData>
 {
     public static final int __TYPEID = 99;
 
+    private final SessionDataCodec _sessionDataCodec;
+
+    public SessionDataSerializer()
+    {
+        this(null);
+    }
+
+    /**
+     * @param sessionDataCodec the codec of the session attributes, or null for a {@link JavaSessionDataCodec}
+     */
+    public SessionDataSerializer(SessionDataCodec sessionDataCodec)
+    {
+        _sessionDataCodec = sessionDataCodec == null ? new JavaSessionDataCodec() : sessionDataCodec;
+    }
+
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _sessionDataCodec;
+    }
+
     @Override
     public int getTypeId()
     {
@@ -61,12 +80,7 @@ public class SessionDataSerializer implements StreamSerializer<SessionData>
         out.writeLong(data.getExpiry());
         out.writeLong(data.getMaxInactiveMs());
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos))
-        {
-            SessionData.serializeAttributes(data, oos);
-            out.writeByteArray(baos.toByteArray());
-        }
+        out.writeByteArray(_sessionDataCodec.encode(data));
     }
 
     @Override
@@ -86,10 +100,9 @@ public class SessionDataSerializer implements StreamSerializer<SessionData>
 
         SessionData sd = new SessionData(id, contextPath, vhost, created, accessed, lastAccessed, maxInactiveMs);
 
-        ByteArrayInputStream bais = new ByteArrayInputStream(in.readByteArray());
-        try (ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais))
+        try
         {
-            SessionData.deserializeAttributes(sd, ois);
+            _sessionDataCodec.decode(sd, in.readByteArray());
         }
         catch (ClassNotFoundException e)
         {
@@ -14,9 +14,11 @@
 package org.eclipse.jetty.http;
 
 import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
@@ -207,6 +209,17 @@ public class HttpParser
         CLOSED  // The associated stream/endpoint is at EOF
     }
 
+    /**
+     * Whether parsers scan runs of URI and field value bytes eight bytes at a time by default,
+     * which is disabled unless the {@code org.eclipse.jetty.http.HttpParser.FAST_SCANNING}
+     * system property is set to {@code true}.
+     * @see #setFastScanning(boolean)
+     */
+    public static final boolean __FAST_SCANNING = Boolean.getBoolean("org.eclipse.jetty.http.HttpParser.FAST_SCANNING");
+    private static final long SWAR_ONES = 0x0101010101010101L;
+    private static final long SWAR_HIGHS = 0x8080808080808080L;
+    private static final long SWAR_DEL = 0x7F7F7F7F7F7F7F7FL;
+
     private static final EnumSet<State> __idleStates = EnumSet.of(State.START, State.END, State.CLOSE, State.CLOSED);
     private static final EnumSet<State> __completeStates = EnumSet.of(State.END, State.CLOSE, State.CLOSED);
 
@@ -245,6 +258,7 @@ public class HttpParser
     private ByteBuffer _contentChunk;
     private int _length;
     private final StringBuilder _string = new StringBuilder();
+    private boolean _fastScanning = __FAST_SCANNING;
 
     private static HttpCompliance compliance()
     {
@@ -311,6 +325,41 @@ public class HttpParser
         _fieldCache.setCapacity(headerCacheSize);
     }
 
+    public boolean isHeaderCacheLearning()
+    {
+        return _fieldCache.isLearning();
+    }
+
+    /**
+     * <p>Sets whether the header cache learns the fields that repeat with the same value
+     * on the connection, in addition to the well known fields that are always cached.</p>
+     * <p>When a field with a given name is parsed twice in a row with the same value,
+     * it is added to the header cache, so that later occurrences reuse the same
+     * {@link HttpField} instance without allocating Strings.</p>
+     *
+     * @param learning whether the header cache learns repeated fields
+     */
+    public void setHeaderCacheLearning(boolean learning)
+    {
+        _fieldCache.setLearning(learning);
+    }
+
+    /**
+     * @return the number of header lines resolved from the header cache
+     */
+    public long getHeaderCacheHits()
+    {
+        return _fieldCache.getHits();
+    }
+
+    /**
+     * @return the number of header lines not resolved from the header cache
+     */
+    public long getHeaderCacheMisses()
+    {
+        return _fieldCache.getMisses();
+    }
+
     public boolean isHeaderCacheCaseSensitive()
     {
         return _fieldCache.isCaseSensitive();
@@ -321,6 +370,26 @@ public class HttpParser
         _fieldCache.setCaseSensitive(headerCacheCaseSensitive);
     }
 
+    public boolean isFastScanning()
+    {
+        return _fastScanning;
+    }
+
+    /**
+     * <p>Sets whether runs of URI bytes and of field value bytes are scanned eight bytes
+     * at a time, rather than one byte per state machine step.</p>
+     * <p>Only runs of bytes that the state machine would accept without changing state
+     * are scanned this way, so the parsing result, including the compliance violations
+     * reported, is the same in both modes.</p>
+     * <p>Fast scanning is disabled by default, see {@link #__FAST_SCANNING}.</p>
+     *
+     * @param fastScanning whether to scan runs of bytes eight bytes at a time
+     */
+    public void setFastScanning(boolean fastScanning)
+    {
+        _fastScanning = fastScanning;
+    }
+
     protected void checkViolation(Violation violation) throws BadMessageException
     {
         if (violation.isAllowedBy(_complianceMode))
@@ -544,6 +613,92 @@ public class HttpParser
         return false;
     }
 
+    /**
+     * <p>Appends to the field value the following run of bytes that are either
+     * visible ASCII characters or spaces, as the IN_VALUE state would do.</p>
+     *
+     * @param buffer the buffer positioned after the last value byte parsed
+     */
+    private void appendValueRun(ByteBuffer buffer)
+    {
+        int run = scanRun(buffer, (byte)0x20);
+        if (_maxHeaderBytes > 0)
+            run = Math.max(0, Math.min(run, _maxHeaderBytes - _headerBytes));
+        if (run == 0)
+            return;
+        _headerBytes += run;
+        int position = buffer.position();
+        int end = position + run;
+        for (int i = position; i < end; i++)
+        {
+            byte b = buffer.get(i);
+            _string.append((char)b);
+            // Trailing spaces are not part of the value.
+            if (b != HttpTokens.SPACE)
+                _length = _string.length();
+        }
+        buffer.position(end);
+    }
+
+    /**
+     * <p>Returns the length of the run of bytes, starting at the buffer position,
+     * that are between the given low byte and {@code 0x7E}, both inclusive.</p>
+     * <p>The bytes are examined eight at a time with SWAR (SIMD within a register)
+     * arithmetic, reading longs in little endian order so that the borrows and
+     * carries between bytes only affect the bytes that follow the first byte
+     * out of range, which is therefore always exactly detected.</p>
+     *
+     * @param buffer the buffer to scan
+     * @param low the lowest byte of the run, {@code 0x20} or {@code 0x21}
+     * @return the length of the run
+     */
+    static int scanRun(ByteBuffer buffer, byte low)
+    {
+        int position = buffer.position();
+        int limit = buffer.limit();
+        int i = position;
+        boolean bigEndian = buffer.order() == ByteOrder.BIG_ENDIAN;
+        long lows = SWAR_ONES * low;
+        while (i + 8 <= limit)
+        {
+            long word = buffer.getLong(i);
+            if (bigEndian)
+                word = Long.reverseBytes(word);
+            // High bit set in the bytes lower than low.
+            long under = (word - lows) & ~word & SWAR_HIGHS;
+            // High bit set in the bytes greater than 0x7E.
+            long over = ((word & SWAR_DEL) + SWAR_ONES | word) & SWAR_HIGHS;
+            long outside = under | over;
+            if (outside != 0)
+                return i - position + (Long.numberOfTrailingZeros(outside) >>> 3);
+            i += 8;
+        }
+        while (i < limit)
+        {
+            byte b = buffer.get(i);
+            if (b < low || b > 0x7E)
+                break;
+            ++i;
+        }
+        return i - position;
+    }
+
+    /**
+     * @return whether the bytes at the given index are exactly the given ASCII value
+     */
+    private static boolean matches(ByteBuffer buffer, int index, String value)
+    {
+        int length = value.length();
+        if (index + length > buffer.limit())
+            return false;
+        for (int i = 0; i < length; i++)
+        {
+            if (buffer.get(index + i) != (byte)value.charAt(i))
+                return false;
+        }
+        return true;
+    }
+
     private void setString(String s)
     {
         _string.setLength(0);
@@ -786,6 +941,20 @@ public class HttpParser
                         case COLON:
                         case OTEXT:
                             _uri.append(t.getByte());
+                            if (_fastScanning)
+                            {
+                                // Append the following run of visible ASCII bytes.
+                                int run = scanRun(buffer, (byte)0x21);
+                                if (_maxHeaderBytes > 0)
+                                    run = Math.max(0, Math.min(run, _maxHeaderBytes - _headerBytes));
+                                _headerBytes += run;
+                                int end = buffer.position() + run;
+                                for (int i = buffer.position(); i < end; i++)
+                                {
+                                    _uri.append(buffer.get(i));
+                                }
+                                buffer.position(end);
+                            }
                             break;
 
                         default:
@@ -1052,6 +1221,11 @@ public class HttpParser
                         break;
 
                     default:
+                        if (_field == null && _fieldCache.learn(_headerString, _valueString))
+                        {
+                            _field = new LearnedField(_header, caseInsensitiveHeader(_headerString, _header.asString()), _valueString);
+                            addToFieldCache = true;
+                        }
                         break;
                 }
 
@@ -1064,6 +1238,11 @@ public class HttpParser
                     _fieldCache.add(_field);
                 }
             }
+            else if (_field == null && _fieldCache.learn(_headerString, _valueString))
+            {
+                _field = new LearnedField(null, _headerString, _valueString);
+                _fieldCache.add(_field);
+            }
             _handler.parsedHeader(_field != null ? _field : new HttpField(_header, _headerString, _valueString));
         }
 
@@ -1261,7 +1440,7 @@ public class HttpParser
                                         }
                                     }
 
-                                    if (v != null && isHeaderCacheCaseSensitive())
+                                    if (v != null && (isHeaderCacheCaseSensitive() || cachedField instanceof LearnedField && !matches(buffer, buffer.position() + n.length() + 1, v)))
                                     {
                                         String ev = BufferUtil.toString(buffer, buffer.position() + n.length() + 1, v.length(), StandardCharsets.ISO_8859_1);
                                         if (!v.equals(ev))
@@ -1455,6 +1634,8 @@ public class HttpParser
                         case OTEXT: // TODO review? should this be a utf8 string?
                             _string.append(t.getChar());
                             _length = _string.length();
+                            if (_fastScanning)
+                                appendValueRun(buffer);
                             break;
 
                         default:
@@ -2005,12 +2186,31 @@ public class HttpParser
         }
     }
 
+    /**
+     * <p>A field that the header cache learned because it repeated on the connection.</p>
+     * <p>Differently from the well known fields, the values of learned fields are
+     * always matched case sensitively, since they may be case sensitive tokens.</p>
+     */
+    private static class LearnedField extends HttpField
+    {
+        private LearnedField(HttpHeader header, String name, String value)
+        {
+            super(header, name, value);
+        }
+    }
+
     private static class FieldCache
     {
+        private static final int MAX_CANDIDATES = 32;
+
         private int _size = 1024;
         private Index.Mutable<HttpField> _cache;
         private List<HttpField> _cacheableFields;
+        private Map<String, String> _candidates;
         private boolean _caseSensitive;
+        private boolean _learning = true;
+        private long _hits;
+        private long _misses;
 
         public int getCapacity()
         {
@@ -2041,6 +2241,28 @@ public class HttpParser
             return _cache != NO_CACHE;
         }
 
+        public boolean isLearning()
+        {
+            return _learning;
+        }
+
+        public void setLearning(boolean learning)
+        {
+            _learning = learning;
+            if (!learning)
+                _candidates = null;
+        }
+
+        public long getHits()
+        {
+            return _hits;
+        }
+
+        public long getMisses()
+        {
+            return _misses;
+        }
+
         public Index<HttpField> getCache()
         {
             return _cache;
@@ -2049,7 +2271,12 @@ public class HttpParser
         public HttpField getBest(ByteBuffer buffer, int i, int remaining)
         {
             Index.Mutable<HttpField> cache = _cache;
-            return cache == null ? null : _cache.getBest(buffer, i, remaining);
+            HttpField field = cache == null ? null : cache.getBest(buffer, i, remaining);
+            if (field == null)
+                _misses++;
+            else
+                _hits++;
+            return field;
         }
 
         public void add(HttpField field)
@@ -2072,6 +2299,31 @@ public class HttpParser
             return isEnabled() && header != null && valueString.length() <= _size;
         }
 
+        /**
+         * <p>Records the given field as a candidate for caching.</p>
+         *
+         * @param name the field name
+         * @param value the field value
+         * @return true if the previous field with the same name had the same value
+         */
+        public boolean learn(String name, String value)
+        {
+            if (!_learning || !isEnabled() || name == null || value == null || value.isEmpty() || value.length() > _size)
+                return false;
+            if (_candidates == null)
+                _candidates = new HashMap<>();
+            String previous = _candidates.put(name, value);
+            if (value.equals(previous))
+            {
+                _candidates.remove(name);
+                return true;
+            }
+            // Do not let arbitrary names grow the candidates.
+            if (previous == null && _candidates.size() > MAX_CANDIDATES)
+                _candidates.remove(name);
+            return false;
+        }
+
         private void prepare()
         {
             if (_cache == null && _cacheableFields != null)
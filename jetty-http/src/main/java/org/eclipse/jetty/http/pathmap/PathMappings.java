@@ -16,8 +16,10 @@ package org.eclipse.jetty.http.pathmap;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeSet;
@@ -34,6 +36,10 @@ import org.slf4j.LoggerFactory;
  * Path Mappings of PathSpec to Resource.
  * <p>
  * Sorted into search order upon entry into the Set
+ * <p>
+ * {@link UriTemplatePathSpec}s and simple {@link RegexPathSpec}s made of literal
+ * and whole-segment variable segments are compiled into a {@link PathSpecTrie},
+ * so that {@link #getMatch(String)} does not try them one by one.
  *
  * @param <E> the type of mapping endpoint
  */
@@ -42,6 +48,7 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
 {
     private static final Logger LOG = LoggerFactory.getLogger(PathMappings.class);
     private final Set<MappedResource<E>> _mappings = new TreeSet<>(Comparator.comparing(MappedResource::getPathSpec));
+    private volatile Compiled<E> _compiled;
 
     private final Index.Mutable<MappedResource<E>> _exactMap = new Index.Builder<MappedResource<E>>()
         .caseSensitive(true)
@@ -79,16 +86,44 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
         return _mappings.size();
     }
 
+    @ManagedAttribute(value = "number of mappings compiled into the path segment trie", readonly = true)
+    public int getCompiledSize()
+    {
+        return compiled().trie.size();
+    }
+
     public void reset()
     {
         _mappings.clear();
         _prefixMap.clear();
         _suffixMap.clear();
+        _compiled = null;
     }
 
     public void removeIf(Predicate<MappedResource<E>> predicate)
     {
-        _mappings.removeIf(predicate);
+        if (_mappings.removeIf(predicate))
+            _compiled = null;
+    }
+
+    /**
+     * <p>Returns the compiled mappings, compiling them on the first
+     * match after the mappings have been changed, so that adding or
+     * removing many mappings does not compile them every time.</p>
+     * <p>Concurrent matches may compile the same mappings more than
+     * once, but always compile them into equivalent snapshots.</p>
+     *
+     * @return the compiled mappings
+     */
+    private Compiled<E> compiled()
+    {
+        Compiled<E> compiled = _compiled;
+        if (compiled == null)
+        {
+            compiled = new Compiled<>(_mappings);
+            _compiled = compiled;
+        }
+        return compiled;
     }
 
     /**
@@ -125,11 +160,23 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
 
     public MappedResource<E> getMatch(String path)
     {
+        Compiled<E> mappings = compiled();
+
+        // The best match among the compiled mappings, which is
+        // returned unless an uncompiled mapping comes before it.
+        PathSpecTrie.Entry<E> compiled = mappings.trie.getMatch(path);
+        int compiledOrder = compiled == null ? Integer.MAX_VALUE : compiled.order;
+
         PathSpecGroup lastGroup = null;
 
-        // Search all the mappings
-        for (MappedResource<E> mr : _mappings)
+        // Search the uncompiled mappings
+        for (int m = 0; m < mappings.uncompiled.size(); m++)
         {
+            if (compiledOrder < mappings.uncompiledOrders[m])
+                return compiled.resource;
+
+            MappedResource<E> mr = mappings.uncompiled.get(m);
+
             PathSpecGroup group = mr.getPathSpec().getGroup();
             if (group != lastGroup)
             {
@@ -145,7 +192,7 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
                             if (candidate == null)
                                 break;
                             if (candidate.getPathSpec().matches(path))
-                                return candidate;
+                                return first(mappings, compiled, candidate);
                             i = candidate.getPathSpec().getPrefix().length() - 1;
                         }
                         break;
@@ -160,7 +207,7 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
                             if (candidate == null)
                                 break;
                             if (candidate.getPathSpec().matches(path))
-                                return candidate;
+                                return first(mappings, compiled, candidate);
                             i = candidate.getPathSpec().getPrefix().length() - 1;
                         }
                         break;
@@ -173,7 +220,7 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
                         {
                             MappedResource<E> candidate = _suffixMap.get(path, i + 1, path.length() - i - 1);
                             if (candidate != null && candidate.getPathSpec().matches(path))
-                                return candidate;
+                                return first(mappings, compiled, candidate);
                         }
                         break;
                     }
@@ -188,7 +235,15 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
             lastGroup = group;
         }
 
-        return null;
+        return compiled == null ? null : compiled.resource;
+    }
+
+    private MappedResource<E> first(Compiled<E> mappings, PathSpecTrie.Entry<E> compiled, MappedResource<E> candidate)
+    {
+        if (compiled == null)
+            return candidate;
+        Integer order = mappings.orders.get(candidate);
+        return order == null || compiled.order < order ? compiled.resource : candidate;
     }
 
     @Override
@@ -247,6 +302,8 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
         }
 
         boolean added = _mappings.add(entry);
+        if (added)
+            _compiled = null;
         if (LOG.isDebugEnabled())
             LOG.debug("{} {} to {}", added ? "Added" : "Ignored", entry, this);
         return added;
@@ -283,6 +340,7 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
             {
                 removed = true;
                 iter.remove();
+                _compiled = null;
                 break;
             }
         }
@@ -296,4 +354,40 @@ public class PathMappings<E> implements Iterable<MappedResource<E>>, Dumpable
     {
         return String.format("%s[size=%d]", this.getClass().getSimpleName(), _mappings.size());
     }
+
+    /**
+     * <p>The mappings split into the ones that can be compiled into the
+     * {@link PathSpecTrie} and the ones that must be matched one by one,
+     * recording for each their position in the search order.</p>
+     * <p>The position is used rather than the PathSpec comparison, since the
+     * latter is not transitive across different PathSpec types.</p>
+     */
+    private static class Compiled<E>
+    {
+        private final PathSpecTrie<E> trie = new PathSpecTrie<>();
+        private final List<MappedResource<E>> uncompiled = new ArrayList<>();
+        private final Map<MappedResource<E>, Integer> orders = new HashMap<>();
+        private final int[] uncompiledOrders;
+
+        private Compiled(Set<MappedResource<E>> mappings)
+        {
+            uncompiledOrders = new int[mappings.size()];
+            int order = 0;
+            for (MappedResource<E> mr : mappings)
+            {
+                orders.put(mr, order);
+                String[] segments = PathSpecTrie.compile(mr.getPathSpec());
+                if (segments != null)
+                {
+                    trie.put(segments, mr, order);
+                }
+                else
+                {
+                    uncompiledOrders[uncompiled.size()] = order;
+                    uncompiled.add(mr);
+                }
+                ++order;
+            }
+        }
+    }
 }
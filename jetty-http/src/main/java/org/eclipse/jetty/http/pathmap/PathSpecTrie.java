@@ -0,0 +1,234 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.pathmap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>A trie of path segments that matches {@link UriTemplatePathSpec}s and simple
+ * {@link RegexPathSpec}s in a time that depends on the path length rather than on
+ * the number of path specs.</p>
+ * <p>Only path specs made exclusively of literal segments and of whole-segment
+ * variables (for example {@code /users/{id}/orders} or {@code ^/users/[^/]+/orders$})
+ * can be compiled into the trie, see {@link #compile(PathSpec)}.
+ * Other path specs must be matched one by one.</p>
+ * <p>This class is not thread safe: {@link PathMappings} builds a new trie
+ * when its mappings change, and never modifies it after it is published.</p>
+ *
+ * @param <E> the type of mapping endpoint
+ */
+class PathSpecTrie<E>
+{
+    private static final String VARIABLE_REGEX = "[^/]+";
+    private static final String VARIABLE_GROUP_REGEX = "([^/]+)";
+    private static final String VARIABLE_MARKER = "{}";
+    private static final String LITERAL_SYMBOLS = "-_~%!&',;=:@";
+
+    private final Node<E> _root = new Node<>();
+    private int _size;
+
+    /**
+     * <p>Compiles the given path spec into the segments used as trie keys.</p>
+     *
+     * @param pathSpec the path spec to compile
+     * @return the segments of the path spec, where a {@code null} element
+     * is a whole-segment variable, or null if the path spec cannot be compiled
+     */
+    static String[] compile(PathSpec pathSpec)
+    {
+        if (pathSpec instanceof UriTemplatePathSpec)
+            return compileUriTemplate(pathSpec.getDeclaration());
+        if (pathSpec instanceof RegexPathSpec)
+            return compileRegex(pathSpec.getDeclaration());
+        return null;
+    }
+
+    private static String[] compileUriTemplate(String declaration)
+    {
+        String[] segments = declaration.substring(1).split("/", -1);
+        for (int i = 0; i < segments.length; i++)
+        {
+            String segment = segments[i];
+            if (segment.startsWith("{") && segment.endsWith("}"))
+                segments[i] = null;
+            else if (!isLiteral(segment, false))
+                return null;
+        }
+        return segments;
+    }
+
+    private static String[] compileRegex(String declaration)
+    {
+        if (!declaration.startsWith("^/") || !declaration.endsWith("$"))
+            return null;
+        // Replace the variables with a marker that is not a literal, so that
+        // the slash in the variable regex does not split the variable segment.
+        String body = declaration.substring(2, declaration.length() - 1)
+            .replace(VARIABLE_GROUP_REGEX, VARIABLE_MARKER)
+            .replace(VARIABLE_REGEX, VARIABLE_MARKER);
+        String[] segments = body.split("/", -1);
+        for (int i = 0; i < segments.length; i++)
+        {
+            String segment = segments[i];
+            if (VARIABLE_MARKER.equals(segment))
+                segments[i] = null;
+            else if (isLiteral(segment, true))
+                segments[i] = segment.replace("\\.", ".");
+            else
+                return null;
+        }
+        return segments;
+    }
+
+    private static boolean isLiteral(String segment, boolean regex)
+    {
+        for (int i = 0; i < segment.length(); i++)
+        {
+            char c = segment.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9'))
+                continue;
+            if (LITERAL_SYMBOLS.indexOf(c) >= 0)
+                continue;
+            if (c == '.')
+            {
+                // In a regex, only an escaped dot is a literal dot.
+                if (!regex)
+                    continue;
+                if (i > 0 && segment.charAt(i - 1) == '\\')
+                    continue;
+                return false;
+            }
+            if (c == '\\' && regex && i + 1 < segment.length() && segment.charAt(i + 1) == '.')
+                continue;
+            return false;
+        }
+        return true;
+    }
+
+    int size()
+    {
+        return _size;
+    }
+
+    void clear()
+    {
+        _root.clear();
+        _size = 0;
+    }
+
+    /**
+     * @param segments the segments returned by {@link #compile(PathSpec)}
+     * @param resource the mapped resource
+     * @param order the position of the mapped resource in the {@link PathMappings} search order
+     */
+    void put(String[] segments, MappedResource<E> resource, int order)
+    {
+        Node<E> node = _root;
+        for (String segment : segments)
+        {
+            node = node.child(segment);
+        }
+        if (node._entries == null)
+            node._entries = new ArrayList<>(1);
+        node._entries.add(new Entry<>(resource, order));
+        _size++;
+    }
+
+    /**
+     * @param path the path to match, which may include a query
+     * @return the matching entry that comes first in the search order, or null if none matches
+     */
+    Entry<E> getMatch(String path)
+    {
+        if (_size == 0 || path.isEmpty() || path.charAt(0) != '/')
+            return null;
+        int end = path.indexOf('?');
+        if (end < 0)
+            end = path.length();
+        return match(_root, path, 1, end, null);
+    }
+
+    private Entry<E> match(Node<E> node, String path, int start, int end, Entry<E> best)
+    {
+        int slash = path.indexOf('/', start);
+        if (slash < 0 || slash > end)
+            slash = end;
+
+        Node<E> literal = node._literals == null ? null : node._literals.get(path.substring(start, slash));
+        if (literal != null)
+            best = slash == end ? best(literal, best) : match(literal, path, slash + 1, end, best);
+
+        // A variable matches a non-empty segment.
+        Node<E> variable = node._variable;
+        if (variable != null && slash > start)
+            best = slash == end ? best(variable, best) : match(variable, path, slash + 1, end, best);
+
+        return best;
+    }
+
+    private Entry<E> best(Node<E> node, Entry<E> best)
+    {
+        if (node._entries != null)
+        {
+            for (Entry<E> entry : node._entries)
+            {
+                if (best == null || entry.order < best.order)
+                    best = entry;
+            }
+        }
+        return best;
+    }
+
+    static class Entry<E>
+    {
+        final MappedResource<E> resource;
+        final int order;
+
+        private Entry(MappedResource<E> resource, int order)
+        {
+            this.resource = resource;
+            this.order = order;
+        }
+    }
+
+    private static class Node<E>
+    {
+        private Map<String, Node<E>> _literals;
+        private Node<E> _variable;
+        private List<Entry<E>> _entries;
+
+        private Node<E> child(String segment)
+        {
+            if (segment == null)
+            {
+                if (_variable == null)
+                    _variable = new Node<>();
+                return _variable;
+            }
+            if (_literals == null)
+                _literals = new HashMap<>();
+            return _literals.computeIfAbsent(segment, k -> new Node<>());
+        }
+
+        private void clear()
+        {
+            _literals = null;
+            _variable = null;
+            _entries = null;
+        }
+    }
+}
@@ -304,6 +304,78 @@ public class HttpParserTest
         assertEquals(1, _headers);
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testFastScanning(boolean fastScanning)
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET /some/path/to/resource.html?query=value&other=1 HTTP/1.1\r\n" +
+                "Host: www.example.com\r\n" +
+                "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:91.0) Gecko/20100101 Firefox/91.0   \r\n" +
+                "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+                "X-Value: a:b\tc  d\r\n" +
+                "\r\n");
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+        parser.setFastScanning(fastScanning);
+        parseAll(parser, buffer);
+
+        assertTrue(_messageCompleted);
+        assertEquals("/some/path/to/resource.html?query=value&other=1", _uriOrStatus);
+        assertEquals("HTTP/1.1", _versionOrReason);
+        assertEquals("Mozilla/5.0 (X11; Linux x86_64; rv:91.0) Gecko/20100101 Firefox/91.0", _val[1]);
+        assertEquals("text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8", _val[2]);
+        assertEquals("a:b\tc  d", _val[3]);
+        assertEquals(3, _headers);
+    }
+
+    @Test
+    public void testFastScanningIllegalCharacter()
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "X-Value: abcdefghijkl\u0001mnopqrstuvwxyz\r\n" +
+                "\r\n");
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+        parser.setFastScanning(true);
+        parseAll(parser, buffer);
+
+        assertThat(_bad, containsString("Illegal character"));
+    }
+
+    @Test
+    public void testFastScanningHeaderTooLarge()
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "X-Value: " + "x".repeat(256) + "\r\n" +
+                "\r\n");
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler, 128);
+        parser.setFastScanning(true);
+        parseAll(parser, buffer);
+
+        assertEquals("431", _bad);
+    }
+
+    @Test
+    public void testScanRun()
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer("abcdefgh ijklmnopqrstu\u007Fvwxyz");
+        assertEquals(8, HttpParser.scanRun(buffer, (byte)0x21));
+        assertEquals(22, HttpParser.scanRun(buffer, (byte)0x20));
+        buffer.position(9);
+        assertEquals(13, HttpParser.scanRun(buffer, (byte)0x21));
+        buffer.position(23);
+        assertEquals(5, HttpParser.scanRun(buffer, (byte)0x21));
+    }
+
     @Test
     public void testFoldedField2616()
     {
@@ -2124,6 +2196,67 @@ public class HttpParserTest
         assertSame(field, _fields.get(0));
     }
 
+    @Test
+    @SuppressWarnings("ReferenceEquality")
+    public void testLearnedField()
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "X-Forwarded-For: 10.0.0.1\r\n" +
+                "X-Token: AbCdEf\r\n" +
+                "\r\n");
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+
+        // The first occurrence is a candidate, the second is learned.
+        parseAll(parser, buffer);
+        buffer.position(0);
+        parseAll(parser, buffer);
+        HttpField forwarded = _fields.get(1);
+        HttpField token = _fields.get(2);
+        long hits = parser.getHeaderCacheHits();
+
+        buffer.position(0);
+        parseAll(parser, buffer);
+        assertSame(forwarded, _fields.get(1));
+        assertSame(token, _fields.get(2));
+        assertEquals(hits + 3, parser.getHeaderCacheHits());
+
+        // Learned values are matched case sensitively.
+        buffer = BufferUtil.toBuffer(
+            "GET / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "X-Forwarded-For: 10.0.0.1\r\n" +
+                "X-Token: abcdef\r\n" +
+                "\r\n");
+        parseAll(parser, buffer);
+        assertSame(forwarded, _fields.get(1));
+        assertEquals("abcdef", _fields.get(2).getValue());
+    }
+
+    @Test
+    public void testLearnedFieldDisabled()
+    {
+        ByteBuffer buffer = BufferUtil.toBuffer(
+            "GET / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "X-Forwarded-For: 10.0.0.1\r\n" +
+                "\r\n");
+
+        HttpParser.RequestHandler handler = new Handler();
+        HttpParser parser = new HttpParser(handler);
+        parser.setHeaderCacheLearning(false);
+
+        for (int i = 0; i < 3; i++)
+        {
+            buffer.position(0);
+            parseAll(parser, buffer);
+        }
+        assertNull(parser.getFieldCache().get("X-Forwarded-For: 10.0.0.1"));
+    }
+
     @Test
     public void testParseRequest()
     {
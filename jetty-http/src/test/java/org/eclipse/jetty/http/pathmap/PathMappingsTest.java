@@ -20,6 +20,7 @@ import org.junit.jupiter.params.provider.ValueSource;
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -456,4 +457,62 @@ public class PathMappingsTest
         assertThat(p.remove(new ServletPathSpec("/a/b/c")), is(true));
         assertThat(p.remove(new ServletPathSpec("/a/b/c")), is(false));
     }
+
+    @Test
+    public void testCompiledMatchesLinearOrder()
+    {
+        PathMappings<String> p = new PathMappings<>();
+
+        p.put(new ServletPathSpec("/"), "default");
+        p.put(new ServletPathSpec("/api/*"), "apiPrefix");
+        p.put(new ServletPathSpec("*.json"), "jsonSuffix");
+        p.put(new ServletPathSpec("/api/users/list"), "usersListExact");
+        p.put(new RegexPathSpec("^/api/users/[^/]+$"), "usersRegex");
+        p.put(new RegexPathSpec("^/api/.*/cart$"), "cartRegex");
+        p.put(new RegexPathSpec("^/api/v1/([^/]+)/info\\.txt$"), "infoRegex");
+        p.put(new UriTemplatePathSpec("/"), "rootTemplate");
+        p.put(new UriTemplatePathSpec("/api/users/{id}"), "usersTemplate");
+        p.put(new UriTemplatePathSpec("/api/users/{id}/orders/{order}"), "ordersTemplate");
+        p.put(new UriTemplatePathSpec("/api/users/me/orders/{order}"), "myOrdersTemplate");
+        p.put(new UriTemplatePathSpec("/api/{type}/{id}/"), "trailingTemplate");
+        for (int i = 0; i < 100; i++)
+        {
+            p.put(new UriTemplatePathSpec("/api/v" + i + "/{resource}/{id}"), "v" + i);
+        }
+
+        assertThat(p.getCompiledSize(), greaterThan(100));
+
+        String[] paths = {
+            "/", "/api", "/api/", "/api/users/list", "/api/users/42", "/api/users/42?q=1",
+            "/api/users/42/", "/api/users/42/orders/7", "/api/users/me/orders/7", "/api/users//orders/7",
+            "/api/v1/items/info.txt", "/api/v1/items/infoXtxt", "/api/v1/items/3", "/api/v99/items/3",
+            "/api/v100/items/3", "/api/shop/cart", "/data.json", "/api/users/42.json", "/other"
+        };
+        for (String path : paths)
+        {
+            MappedResource<String> expected = null;
+            for (MappedResource<String> mr : p)
+            {
+                if (mr.getPathSpec().matches(path))
+                {
+                    expected = mr;
+                    break;
+                }
+            }
+            assertThat(path, p.getMatch(path), is(expected));
+        }
+
+        // The MIDDLE_GLOB group comes before the PREFIX_GLOB group.
+        assertMatch(p, "/api/users/me/orders/7", "ordersTemplate");
+        assertMatch(p, "/api/v42/items/3", "v42");
+
+        assertThat(p.remove(new UriTemplatePathSpec("/api/v42/{resource}/{id}")), is(true));
+        assertMatch(p, "/api/v42/items/3", "apiPrefix");
+        // Mappings changed after a match are compiled again at the next match.
+        p.put(new UriTemplatePathSpec("/api/v42/{resource}/{id}"), "v42");
+        assertMatch(p, "/api/v42/items/3", "v42");
+
+        p.removeIf(mr -> mr.getResource().equals("ordersTemplate"));
+        assertMatch(p, "/api/users/me/orders/7", "myOrdersTemplate");
+    }
 }
@@ -25,6 +25,9 @@ import java.util.concurrent.Executor;
 import org.eclipse.jetty.alpn.client.ALPNClientConnectionFactory;
 import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
 import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.PriorityStreamScheduler;
+import org.eclipse.jetty.http2.RoundRobinStreamScheduler;
+import org.eclipse.jetty.http2.StreamScheduler;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
@@ -112,6 +115,7 @@ public class HTTP2Client extends ContainerLifeCycle
     private int maxDynamicTableSize = 4096;
     private int maxHeaderBlockFragment = 0;
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
+    private StreamScheduler.Factory streamSchedulerFactory = RoundRobinStreamScheduler::new;
     private long streamIdleTimeout;
     private boolean useInputDirectByteBuffers = true;
     private boolean useOutputDirectByteBuffers = true;
@@ -173,6 +177,21 @@ public class HTTP2Client extends ContainerLifeCycle
         this.flowControlStrategyFactory = flowControlStrategyFactory;
     }
 
+    public StreamScheduler.Factory getStreamSchedulerFactory()
+    {
+        return streamSchedulerFactory;
+    }
+
+    /**
+     * @param streamSchedulerFactory the factory of the schedulers of the frames of the streams,
+     * by default {@link RoundRobinStreamScheduler}; use {@link PriorityStreamScheduler} to
+     * schedule the streams according to their RFC 9218 priority signals
+     */
+    public void setStreamSchedulerFactory(StreamScheduler.Factory streamSchedulerFactory)
+    {
+        this.streamSchedulerFactory = streamSchedulerFactory;
+    }
+
     @ManagedAttribute("The number of selectors")
     public int getSelectors()
     {
@@ -0,0 +1,609 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.ErrorCode;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.GoAwayFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PushPromiseFrame;
+import org.eclipse.jetty.http2.frames.ResetFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IteratingCallback;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.SocketAddressResolver;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link ServerSessionListener} that proxies HTTP/2 streams to HTTP/2 servers.</p>
+ * <p>Each stream received from a client is forwarded to a stream opened on a session
+ * to the server, obtained from the given {@link HTTP2Client}; sessions to the same
+ * server are shared by all the client streams.</p>
+ * <p>HEADERS and DATA frames are forwarded as they are received, without going through
+ * the Servlet API: the {@code ByteBuffer} of a DATA frame received from one side is
+ * written as is to the other side, without being copied.
+ * The callback of a received DATA frame is completed, and more DATA frames are demanded,
+ * only when the DATA frame has been written to the other side, so that the flow control
+ * windows of the two sides are linked: a slow reader on one side stalls the writer on
+ * the other side, without the proxy buffering the content.</p>
+ * <p>This listener is typically used with a {@code RawHTTP2ServerConnectionFactory}:</p>
+ * <pre>
+ * HTTP2Client client = new HTTP2Client();
+ * server.addBean(client);
+ * ServerSessionListener listener = new HTTP2ProxySessionListener(client);
+ * RawHTTP2ServerConnectionFactory h2c = new RawHTTP2ServerConnectionFactory(httpConfig, listener);
+ * </pre>
+ * <p>The server is determined by {@link #newServerAddress(Stream, HeadersFrame)}:
+ * by default, either the server given to the constructor, or the {@code :authority}
+ * of the request if it has been {@link #addAllowedServer(String, int) allowed};
+ * other requests are refused, so that the proxy is not open to any server.
+ * Requests and responses may be modified by overriding
+ * {@link #newServerRequest(MetaData.Request)} and {@link #newClientResponse(MetaData)}.</p>
+ */
+public class HTTP2ProxySessionListener extends ServerSessionListener.Adapter
+{
+    private static final Logger LOG = LoggerFactory.getLogger(HTTP2ProxySessionListener.class);
+
+    private final AutoLock lock = new AutoLock();
+    private final Map<InetSocketAddress, CompletableFuture<Session>> serverSessions = new ConcurrentHashMap<>();
+    private final Set<String> allowedServers = ConcurrentHashMap.newKeySet();
+    private final HTTP2Client client;
+    private final InetSocketAddress server;
+    private int maxServerSessions = 64;
+    private SocketAddressResolver socketAddressResolver;
+
+    /**
+     * <p>Creates a proxy to the servers {@link #addAllowedServer(String, int) allowed}
+     * by the {@code :authority} of the requests.</p>
+     *
+     * @param client the client used to connect to the servers
+     */
+    public HTTP2ProxySessionListener(HTTP2Client client)
+    {
+        this(client, null);
+    }
+
+    /**
+     * <p>Creates a proxy to the given server, for all requests.</p>
+     *
+     * @param client the client used to connect to the server
+     * @param server the address of the server, or null to proxy to
+     * the {@link #addAllowedServer(String, int) allowed} servers
+     */
+    public HTTP2ProxySessionListener(HTTP2Client client, InetSocketAddress server)
+    {
+        this.client = client;
+        this.server = server;
+    }
+
+    public HTTP2Client getHTTP2Client()
+    {
+        return client;
+    }
+
+    /**
+     * @return the server requests are proxied to, or null if requests are
+     * proxied to the server named by their {@code :authority}
+     */
+    public InetSocketAddress getServer()
+    {
+        return server;
+    }
+
+    /**
+     * <p>Allows requests whose {@code :authority} names the given host and port
+     * to be proxied to that server.</p>
+     *
+     * @param host the host of the server
+     * @param port the port of the server
+     */
+    public void addAllowedServer(String host, int port)
+    {
+        allowedServers.add(toAllowedKey(host, port));
+    }
+
+    /**
+     * @return the servers, in the {@code host:port} form, that requests may be proxied to
+     */
+    public Set<String> getAllowedServers()
+    {
+        return allowedServers;
+    }
+
+    /**
+     * @return the max number of sessions to different servers
+     */
+    public int getMaxServerSessions()
+    {
+        return maxServerSessions;
+    }
+
+    /**
+     * @param maxServerSessions the max number of sessions to different servers,
+     * beyond which requests to new servers are refused
+     */
+    public void setMaxServerSessions(int maxServerSessions)
+    {
+        this.maxServerSessions = maxServerSessions;
+    }
+
+    /**
+     * @return the resolver of server addresses, by default an asynchronous
+     * resolver using the executor and scheduler of the {@link HTTP2Client}
+     */
+    public SocketAddressResolver getSocketAddressResolver()
+    {
+        SocketAddressResolver resolver = socketAddressResolver;
+        if (resolver == null)
+            socketAddressResolver = resolver = new SocketAddressResolver.Async(client.getExecutor(), client.getScheduler(), client.getConnectTimeout());
+        return resolver;
+    }
+
+    /**
+     * @param socketAddressResolver the resolver of server addresses
+     */
+    public void setSocketAddressResolver(SocketAddressResolver socketAddressResolver)
+    {
+        this.socketAddressResolver = socketAddressResolver;
+    }
+
+    private static String toAllowedKey(String host, int port)
+    {
+        return host.toLowerCase(Locale.ENGLISH) + ":" + port;
+    }
+
+    @Override
+    public Stream.Listener onNewStream(Stream clientStream, HeadersFrame frame)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Received {} for {} on {}: {}", frame, clientStream, clientStream.getSession(), frame.getMetaData());
+
+        MetaData metaData = frame.getMetaData();
+        InetSocketAddress address = metaData.isRequest() ? newServerAddress(clientStream, frame) : null;
+        if (address == null)
+        {
+            clientStream.reset(new ResetFrame(clientStream.getId(), ErrorCode.REFUSED_STREAM_ERROR.code), Callback.NOOP);
+            return null;
+        }
+
+        Forwarder serverToClient = new Forwarder(true);
+        Forwarder clientToServer = new Forwarder(false);
+        serverToClient.link(clientStream, clientToServer);
+
+        MetaData.Request request = newServerRequest((MetaData.Request)metaData);
+        HeadersFrame serverFrame = new HeadersFrame(request, frame.getPriority(), frame.isEndStream());
+        getServerSession(address).whenComplete((session, failure) ->
+        {
+            if (failure != null)
+            {
+                serverToClient.abort(failure);
+                return;
+            }
+            session.newStream(serverFrame, new Promise<>()
+            {
+                @Override
+                public void succeeded(Stream serverStream)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Linked {} to {}", clientStream, serverStream);
+                    clientToServer.link(serverStream, serverToClient);
+                }
+
+                @Override
+                public void failed(Throwable x)
+                {
+                    serverToClient.abort(x);
+                }
+            }, serverToClient);
+        });
+        return clientToServer;
+    }
+
+    /**
+     * <p>Returns the address of the server the given client stream is proxied to.</p>
+     * <p>By default, the address is the server given to the constructor, if any,
+     * otherwise it is derived from the {@code :authority} and {@code :scheme}
+     * pseudo-headers of the request, provided that it is an
+     * {@link #addAllowedServer(String, int) allowed} server.</p>
+     *
+     * @param clientStream the stream received from the client
+     * @param frame the HEADERS frame carrying the request
+     * @return the address of the server, or null to refuse the stream
+     */
+    protected InetSocketAddress newServerAddress(Stream clientStream, HeadersFrame frame)
+    {
+        if (server != null)
+            return server;
+        HttpURI uri = ((MetaData.Request)frame.getMetaData()).getURI();
+        String host = uri.getHost();
+        if (host == null)
+            return null;
+        int port = uri.getPort();
+        if (port <= 0)
+            port = HttpScheme.getDefaultPort(uri.getScheme());
+        if (!allowedServers.contains(toAllowedKey(host, port)))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Refusing proxy to {}:{} for {}", host, port, clientStream);
+            return null;
+        }
+        return InetSocketAddress.createUnresolved(host, port);
+    }
+
+    /**
+     * @param clientRequest the request received from the client
+     * @return the request to send to the server, by default the client request itself
+     */
+    protected MetaData.Request newServerRequest(MetaData.Request clientRequest)
+    {
+        return clientRequest;
+    }
+
+    /**
+     * @param serverResponse the response, or the trailers, received from the server
+     * @return the response, or the trailers, to send to the client, by default the server response itself
+     */
+    protected MetaData newClientResponse(MetaData serverResponse)
+    {
+        return serverResponse;
+    }
+
+    /**
+     * <p>Connects to the server at the given address.</p>
+     * <p>By default, connects in clear-text; subclasses may override
+     * this method to connect to the server using TLS.
+     * Unresolved addresses are resolved with the
+     * {@link #getSocketAddressResolver() resolver}, so that DNS lookups
+     * do not block the thread that parses the client frames.</p>
+     *
+     * @param address the address of the server
+     * @param listener the listener of the session to the server
+     * @param promise the promise to complete when the session is connected
+     */
+    protected void connect(InetSocketAddress address, Session.Listener listener, Promise<Session> promise)
+    {
+        if (!address.isUnresolved())
+        {
+            client.connect(address, listener, promise);
+            return;
+        }
+        getSocketAddressResolver().resolve(address.getHostString(), address.getPort(), new Promise<>()
+        {
+            @Override
+            public void succeeded(List<InetSocketAddress> addresses)
+            {
+                client.connect(addresses.get(0), listener, promise);
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                promise.failed(x);
+            }
+        });
+    }
+
+    private CompletableFuture<Session> getServerSession(InetSocketAddress address)
+    {
+        CompletableFuture<Session> result = serverSessions.get(address);
+        if (result != null)
+            return result;
+        Promise.Completable<Session> promise = new Promise.Completable<>();
+        // Sessions are only added with the lock held, so that the
+        // max number of sessions cannot be exceeded by concurrent requests.
+        try (AutoLock l = lock.lock())
+        {
+            result = serverSessions.get(address);
+            if (result != null)
+                return result;
+            if (serverSessions.size() >= getMaxServerSessions())
+                return CompletableFuture.failedFuture(new IllegalStateException("Max server sessions exceeded " + getMaxServerSessions()));
+            serverSessions.put(address, promise);
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("Connecting to {}", address);
+        promise.whenComplete((session, failure) ->
+        {
+            if (failure != null)
+                serverSessions.remove(address, promise);
+        });
+        connect(address, new ServerListener(address, promise), promise);
+        return promise;
+    }
+
+    private class ServerListener extends Session.Listener.Adapter
+    {
+        private final InetSocketAddress address;
+        private final CompletableFuture<Session> promise;
+
+        private ServerListener(InetSocketAddress address, CompletableFuture<Session> promise)
+        {
+            this.address = address;
+            this.promise = promise;
+        }
+
+        @Override
+        public void onClose(Session session, GoAwayFrame frame)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Received {} on {}", frame, session);
+            // Streams already opened complete normally, new
+            // client streams will be proxied to a new session.
+            serverSessions.remove(address, promise);
+        }
+
+        @Override
+        public void onFailure(Session session, Throwable failure)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Failure on {}", session, failure);
+            serverSessions.remove(address, promise);
+        }
+    }
+
+    /**
+     * <p>Forwards the frames received from one stream to another stream,
+     * one frame at a time, in the order they have been received.</p>
+     * <p>The frames received before the target stream is linked are queued.</p>
+     */
+    private class Forwarder extends IteratingCallback implements Stream.Listener
+    {
+        private final AutoLock lock = new AutoLock();
+        private final Deque<FrameInfo> frames = new ArrayDeque<>();
+        private final boolean toClient;
+        private final String name;
+        private Stream target;
+        private Forwarder other;
+        private Throwable failure;
+        private FrameInfo frameInfo;
+
+        private Forwarder(boolean toClient)
+        {
+            this.toClient = toClient;
+            this.name = toClient ? "SPC" : "CPS";
+        }
+
+        private void link(Stream target, Forwarder other)
+        {
+            Throwable failure;
+            try (AutoLock l = lock.lock())
+            {
+                failure = this.failure;
+                this.target = target;
+                this.other = other;
+            }
+            if (failure == null)
+            {
+                iterate();
+            }
+            else
+            {
+                // Aborted before the target stream was linked.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} aborted before linking {}", name, target);
+                reset(target);
+                other.abort(failure);
+            }
+        }
+
+        private void offer(Stream source, Frame frame, Callback callback)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} queueing {} from {}", name, frame, source);
+            Throwable failure;
+            try (AutoLock l = lock.lock())
+            {
+                failure = this.failure;
+                if (failure == null)
+                    frames.offer(new FrameInfo(source, frame, callback));
+            }
+            if (failure == null)
+                iterate();
+            else
+                callback.failed(failure);
+        }
+
+        @Override
+        protected Action process()
+        {
+            Stream target;
+            try (AutoLock l = lock.lock())
+            {
+                target = this.target;
+                if (target == null)
+                    return Action.IDLE;
+                frameInfo = frames.poll();
+            }
+
+            if (frameInfo == null)
+                return Action.IDLE;
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} forwarding {} to {}", name, frameInfo, target);
+
+            switch (frameInfo.frame.getType())
+            {
+                case HEADERS:
+                {
+                    HeadersFrame headersFrame = (HeadersFrame)frameInfo.frame;
+                    MetaData metaData = headersFrame.getMetaData();
+                    if (toClient)
+                        metaData = newClientResponse(metaData);
+                    target.headers(new HeadersFrame(target.getId(), metaData, null, headersFrame.isEndStream()), this);
+                    return Action.SCHEDULED;
+                }
+                case DATA:
+                {
+                    // Forward the same ByteBuffer, retained until the callback is completed.
+                    DataFrame dataFrame = (DataFrame)frameInfo.frame;
+                    target.data(new DataFrame(target.getId(), dataFrame.getData(), dataFrame.isEndStream()), this);
+                    return Action.SCHEDULED;
+                }
+                default:
+                {
+                    throw new IllegalStateException("Unexpected frame " + frameInfo.frame);
+                }
+            }
+        }
+
+        @Override
+        public void succeeded()
+        {
+            frameInfo.callback.succeeded();
+            if (frameInfo.frame instanceof DataFrame && !((DataFrame)frameInfo.frame).isEndStream())
+                frameInfo.source.demand(1);
+            super.succeeded();
+        }
+
+        @Override
+        public void failed(Throwable failure)
+        {
+            frameInfo.callback.failed(failure);
+            super.failed(failure);
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable cause)
+        {
+            abort(cause);
+        }
+
+        private void abort(Throwable failure)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} aborting", name, failure);
+            Deque<FrameInfo> queued;
+            Stream target;
+            Forwarder other;
+            try (AutoLock l = lock.lock())
+            {
+                if (this.failure != null)
+                    return;
+                this.failure = failure;
+                queued = new ArrayDeque<>(frames);
+                frames.clear();
+                target = this.target;
+                other = this.other;
+            }
+            queued.forEach(info -> info.callback.failed(failure));
+            if (target != null)
+                reset(target);
+            if (other != null)
+                other.abort(failure);
+        }
+
+        private void reset(Stream target)
+        {
+            if (!target.isReset())
+                target.reset(new ResetFrame(target.getId(), ErrorCode.CANCEL_STREAM_ERROR.code), Callback.NOOP);
+        }
+
+        @Override
+        public void onHeaders(Stream stream, HeadersFrame frame)
+        {
+            offer(stream, frame, Callback.NOOP);
+        }
+
+        @Override
+        public Stream.Listener onPush(Stream stream, PushPromiseFrame frame)
+        {
+            // Pushed streams are not forwarded.
+            return null;
+        }
+
+        @Override
+        public void onDataDemanded(Stream stream, DataFrame frame, Callback callback)
+        {
+            // Demand is resumed when the frame has been written to the other side.
+            offer(stream, frame, callback);
+        }
+
+        @Override
+        public void onReset(Stream stream, ResetFrame frame)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} received {} on {}", name, frame, stream);
+            abort(new ResetException(frame));
+        }
+
+        @Override
+        public boolean onIdleTimeout(Stream stream, Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} idle timeout on {}", name, stream, x);
+            abort(x);
+            return true;
+        }
+
+        @Override
+        public void onFailure(Stream stream, int error, String reason, Throwable failure, Callback callback)
+        {
+            abort(failure);
+            callback.succeeded();
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), name);
+        }
+    }
+
+    private static class ResetException extends Exception
+    {
+        private ResetException(ResetFrame frame)
+        {
+            super(frame.toString(), null, false, false);
+        }
+    }
+
+    private static class FrameInfo
+    {
+        private final Stream source;
+        private final Frame frame;
+        private final Callback callback;
+
+        private FrameInfo(Stream source, Frame frame, Callback callback)
+        {
+            this.source = source;
+            this.frame = frame;
+            this.callback = callback;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.valueOf(frame);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.AutoTuningFlowControlStrategy;
+import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.server.RawHTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ManagedSelector;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.eclipse.jetty.util.Promise;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AutoTuningFlowControlStrategyTest
+{
+    private static final long LATENCY = 25;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final AtomicReference<FlowControlStrategy> serverFlowControlRef = new AtomicReference<>();
+    private final AtomicInteger serverPings = new AtomicInteger();
+    private Server server;
+    private ServerConnector connector;
+    private HTTP2Client client;
+
+    private void start(FlowControlStrategy.Factory flowControlFactory) throws Exception
+    {
+        RawHTTP2ServerConnectionFactory connectionFactory = new RawHTTP2ServerConnectionFactory(new HttpConfiguration(), new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                        {
+                            MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                            stream.headers(new HeadersFrame(stream.getId(), response, null, true), Callback.NOOP);
+                        }
+                    }
+                };
+            }
+
+            @Override
+            public void onPing(Session session, PingFrame frame)
+            {
+                serverPings.incrementAndGet();
+            }
+        });
+        connectionFactory.setInitialSessionRecvWindow(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+        connectionFactory.setInitialStreamRecvWindow(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+        connectionFactory.setFlowControlStrategyFactory(() ->
+        {
+            FlowControlStrategy flowControl = flowControlFactory.newFlowControlStrategy();
+            serverFlowControlRef.set(flowControl);
+            return flowControl;
+        });
+        QueuedThreadPool serverExecutor = new QueuedThreadPool();
+        serverExecutor.setName("server");
+        server = new Server(serverExecutor);
+        connector = new ServerConnector(server, 1, 1, connectionFactory)
+        {
+            @Override
+            protected SocketChannelEndPoint newEndPoint(SocketChannel channel, ManagedSelector selectSet, SelectionKey key)
+            {
+                SocketChannelEndPoint endPoint = new LatencyEndPoint(channel, selectSet, key, this);
+                endPoint.setIdleTimeout(getIdleTimeout());
+                return endPoint;
+            }
+        };
+        server.addConnector(connector);
+        server.start();
+
+        client = new HTTP2Client();
+        QueuedThreadPool clientExecutor = new QueuedThreadPool();
+        clientExecutor.setName("client");
+        client.setExecutor(clientExecutor);
+        client.start();
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        stop();
+        scheduler.shutdownNow();
+    }
+
+    private void stop() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        if (server != null)
+            server.stop();
+    }
+
+    private Session newClient() throws Exception
+    {
+        FuturePromise<Session> promise = new FuturePromise<>();
+        client.connect(new InetSocketAddress("localhost", connector.getLocalPort()), new Session.Listener.Adapter(), promise);
+        return promise.get(5, TimeUnit.SECONDS);
+    }
+
+    private long upload(Session session, int length) throws Exception
+    {
+        long begin = System.nanoTime();
+        HostPortHttpField hostPort = new HostPortHttpField("localhost:" + connector.getLocalPort());
+        MetaData.Request request = new MetaData.Request(HttpMethod.POST.asString(), HttpScheme.HTTP.asString(), hostPort, "/", HttpVersion.HTTP_2, HttpFields.EMPTY, length);
+        CountDownLatch responseLatch = new CountDownLatch(1);
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(request, null, false), promise, new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onHeaders(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Response response = (MetaData.Response)frame.getMetaData();
+                if (response.getStatus() == HttpStatus.OK_200)
+                    responseLatch.countDown();
+            }
+        });
+        Stream stream = promise.get(5, TimeUnit.SECONDS);
+        stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), true), Callback.NOOP);
+        assertTrue(responseLatch.await(30, TimeUnit.SECONDS));
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
+    }
+
+    @Test
+    public void testWindowsEnlargedOnHighLatencyConnection() throws Exception
+    {
+        int length = 4 * 1024 * 1024;
+
+        start(() -> new BufferingFlowControlStrategy(0.5F));
+        long staticElapsed = upload(newClient(), length);
+        stop();
+
+        start(() -> new AutoTuningFlowControlStrategy(16 * 1024 * 1024, 8 * 1024 * 1024, null));
+        long autoElapsed = upload(newClient(), length);
+
+        AutoTuningFlowControlStrategy flowControl = (AutoTuningFlowControlStrategy)serverFlowControlRef.get();
+        assertThat(flowControl.getMaxSessionRecvWindow(), greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+        assertThat(flowControl.getInitialStreamRecvWindow(), greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+        assertThat(flowControl.getRoundTripTime(), greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toMicros(LATENCY)));
+        assertThat(flowControl.getBandwidth(), greaterThan(0L));
+        assertThat(autoElapsed, lessThan(staticElapsed));
+        // The PING replies for the measurements are not notified to the application.
+        assertEquals(0, serverPings.get());
+    }
+
+    @Test
+    public void testBudgetLimitsSessionRecvWindow() throws Exception
+    {
+        int budgetBytes = 128 * 1024;
+        AutoTuningFlowControlStrategy.Budget budget = new AutoTuningFlowControlStrategy.Budget(budgetBytes);
+        start(() -> new AutoTuningFlowControlStrategy(16 * 1024 * 1024, 8 * 1024 * 1024, budget));
+
+        Session session = newClient();
+        upload(session, 2 * 1024 * 1024);
+
+        AutoTuningFlowControlStrategy flowControl = (AutoTuningFlowControlStrategy)serverFlowControlRef.get();
+        assertThat(flowControl.getMaxSessionRecvWindow(), lessThanOrEqualTo(FlowControlStrategy.DEFAULT_WINDOW_SIZE + budgetBytes));
+        assertThat(budget.getReservedBytes(), lessThanOrEqualTo((long)budgetBytes));
+        assertEquals(budget.getReservedBytes(), flowControl.getReservedBytes());
+
+        // Closing the session returns the reserved bytes to the budget.
+        session.close(0, null, Callback.NOOP);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (budget.getReservedBytes() > 0 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(0, budget.getReservedBytes());
+    }
+
+    /**
+     * <p>An EndPoint that delays its writes by {@link #LATENCY} milliseconds,
+     * so that the round trip time of the connection is at least that.</p>
+     */
+    private class LatencyEndPoint extends SocketChannelEndPoint
+    {
+        private final Queue<Chunk> chunks = new ArrayDeque<>();
+        private boolean scheduled;
+
+        private LatencyEndPoint(SocketChannel channel, ManagedSelector selector, SelectionKey key, ServerConnector connector)
+        {
+            super(channel, selector, key, connector.getScheduler());
+        }
+
+        @Override
+        public boolean flush(ByteBuffer... buffers) throws IOException
+        {
+            long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(LATENCY);
+            synchronized (chunks)
+            {
+                for (ByteBuffer buffer : buffers)
+                {
+                    if (buffer.hasRemaining())
+                        chunks.offer(new Chunk(due, BufferUtil.copy(buffer)));
+                    buffer.position(buffer.limit());
+                }
+                if (!scheduled && !chunks.isEmpty())
+                {
+                    scheduled = true;
+                    scheduler.schedule(this::writeChunks, LATENCY, TimeUnit.MILLISECONDS);
+                }
+            }
+            return true;
+        }
+
+        private void writeChunks()
+        {
+            try
+            {
+                synchronized (chunks)
+                {
+                    while (true)
+                    {
+                        Chunk chunk = chunks.peek();
+                        if (chunk == null)
+                        {
+                            scheduled = false;
+                            return;
+                        }
+                        long delay = chunk.due - System.nanoTime();
+                        if (delay > 0)
+                        {
+                            scheduler.schedule(this::writeChunks, delay, TimeUnit.NANOSECONDS);
+                            return;
+                        }
+                        super.flush(chunk.buffer);
+                        if (chunk.buffer.hasRemaining())
+                        {
+                            scheduler.schedule(this::writeChunks, 1, TimeUnit.MILLISECONDS);
+                            return;
+                        }
+                        chunks.poll();
+                    }
+                }
+            }
+            catch (Throwable x)
+            {
+                close(x);
+            }
+        }
+    }
+
+    private static class Chunk
+    {
+        private final long due;
+        private final ByteBuffer buffer;
+
+        private Chunk(long due, ByteBuffer buffer)
+        {
+            this.due = due;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -25,12 +25,14 @@ import java.util.Random;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.ErrorCode;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.Stream;
 import org.eclipse.jetty.http2.api.server.ServerSessionListener;
@@ -55,6 +57,7 @@ import org.junit.jupiter.api.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
@@ -260,6 +263,203 @@ public class RawHTTP2ProxyTest
         assertTrue(latch2.await(5, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testHTTP2ProxySessionListener() throws Exception
+    {
+        // Larger than the flow control windows, so that
+        // they must be linked for the content to be echoed.
+        byte[] content = new byte[4 * 1024 * 1024];
+        new Random().nextBytes(content);
+        Server server = startServer("server", new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                stream.headers(new HeadersFrame(stream.getId(), response, null, false), Callback.from(() -> stream.demand(1)));
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onBeforeData(Stream stream)
+                    {
+                        // Demanded when the response headers are sent.
+                    }
+
+                    @Override
+                    public void onDataDemanded(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        // Echo the content back.
+                        stream.data(new DataFrame(stream.getId(), frame.getData(), frame.isEndStream()), Callback.from(() ->
+                        {
+                            callback.succeeded();
+                            stream.demand(1);
+                        }, callback::failed));
+                    }
+                };
+            }
+        });
+        ServerConnector connector = (ServerConnector)server.getAttribute("connector");
+        HTTP2Client proxyClient = startClient("proxyClient");
+        HTTP2ProxySessionListener proxyListener = new HTTP2ProxySessionListener(proxyClient);
+        proxyListener.addAllowedServer("localhost", connector.getLocalPort());
+        Server proxyServer = startServer("proxyServer", proxyListener);
+        ServerConnector proxyConnector = (ServerConnector)proxyServer.getAttribute("connector");
+        HTTP2Client client = startClient("client");
+
+        FuturePromise<Session> clientPromise = new FuturePromise<>();
+        client.connect(new InetSocketAddress("localhost", proxyConnector.getLocalPort()), new Session.Listener.Adapter(), clientPromise);
+        Session clientSession = clientPromise.get(5, TimeUnit.SECONDS);
+
+        MetaData.Request request = new MetaData.Request("POST", HttpURI.from("http://localhost:" + connector.getLocalPort() + "/echo"), HttpVersion.HTTP_2, HttpFields.EMPTY);
+        ByteBuffer echoed = ByteBuffer.allocate(content.length);
+        CountDownLatch responseLatch = new CountDownLatch(1);
+        CountDownLatch contentLatch = new CountDownLatch(1);
+        FuturePromise<Stream> streamPromise = new FuturePromise<>();
+        clientSession.newStream(new HeadersFrame(request, null, false), streamPromise, new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onHeaders(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Response response = (MetaData.Response)frame.getMetaData();
+                if (response.getStatus() == HttpStatus.OK_200)
+                    responseLatch.countDown();
+            }
+
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                echoed.put(frame.getData());
+                callback.succeeded();
+                if (frame.isEndStream())
+                    contentLatch.countDown();
+            }
+        });
+        Stream stream = streamPromise.get(5, TimeUnit.SECONDS);
+
+        int chunk = 16 * 1024;
+        for (int offset = 0; offset < content.length; offset += chunk)
+        {
+            boolean last = offset + chunk >= content.length;
+            Callback.Completable completable = new Callback.Completable();
+            stream.data(new DataFrame(stream.getId(), ByteBuffer.wrap(content, offset, chunk), last), completable);
+            completable.get(5, TimeUnit.SECONDS);
+        }
+
+        assertTrue(responseLatch.await(5, TimeUnit.SECONDS));
+        assertTrue(contentLatch.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(content, echoed.array());
+    }
+
+    @Test
+    public void testHTTP2ProxySessionListenerRefusesNotAllowedServer() throws Exception
+    {
+        Server server = startServer("server", new ServerSessionListener.Adapter());
+        ServerConnector connector = (ServerConnector)server.getAttribute("connector");
+        HTTP2Client proxyClient = startClient("proxyClient");
+        // The server is not allowed.
+        Server proxyServer = startServer("proxyServer", new HTTP2ProxySessionListener(proxyClient));
+        ServerConnector proxyConnector = (ServerConnector)proxyServer.getAttribute("connector");
+        HTTP2Client client = startClient("client");
+
+        FuturePromise<Session> clientPromise = new FuturePromise<>();
+        client.connect(new InetSocketAddress("localhost", proxyConnector.getLocalPort()), new Session.Listener.Adapter(), clientPromise);
+        Session clientSession = clientPromise.get(5, TimeUnit.SECONDS);
+
+        MetaData.Request request = new MetaData.Request("GET", HttpURI.from("http://localhost:" + connector.getLocalPort() + "/"), HttpVersion.HTTP_2, HttpFields.EMPTY);
+        CountDownLatch resetLatch = new CountDownLatch(1);
+        clientSession.newStream(new HeadersFrame(request, null, true), new FuturePromise<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onReset(Stream stream, ResetFrame frame)
+            {
+                if (frame.getError() == ErrorCode.REFUSED_STREAM_ERROR.code)
+                    resetLatch.countDown();
+            }
+        });
+
+        assertTrue(resetLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testHTTP2ProxySessionListenerResetsServerStreamLinkedAfterClientReset() throws Exception
+    {
+        CountDownLatch serverResetLatch = new CountDownLatch(1);
+        Server server = startServer("server", new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onReset(Stream stream, ResetFrame frame)
+                    {
+                        serverResetLatch.countDown();
+                    }
+                };
+            }
+        });
+        ServerConnector connector = (ServerConnector)server.getAttribute("connector");
+        HTTP2Client proxyClient = startClient("proxyClient");
+        CountDownLatch connectLatch = new CountDownLatch(1);
+        AtomicReference<Stream> proxyStreamRef = new AtomicReference<>();
+        HTTP2ProxySessionListener proxyListener = new HTTP2ProxySessionListener(proxyClient)
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream clientStream, HeadersFrame frame)
+            {
+                proxyStreamRef.set(clientStream);
+                return super.onNewStream(clientStream, frame);
+            }
+
+            @Override
+            protected void connect(InetSocketAddress address, Session.Listener listener, Promise<Session> promise)
+            {
+                // Delay the connection to the server until the client stream is reset.
+                new Thread(() ->
+                {
+                    try
+                    {
+                        assertTrue(connectLatch.await(5, TimeUnit.SECONDS));
+                        super.connect(address, listener, promise);
+                    }
+                    catch (Throwable x)
+                    {
+                        promise.failed(x);
+                    }
+                }).start();
+            }
+        };
+        proxyListener.addAllowedServer("localhost", connector.getLocalPort());
+        Server proxyServer = startServer("proxyServer", proxyListener);
+        ServerConnector proxyConnector = (ServerConnector)proxyServer.getAttribute("connector");
+        HTTP2Client client = startClient("client");
+
+        FuturePromise<Session> clientPromise = new FuturePromise<>();
+        client.connect(new InetSocketAddress("localhost", proxyConnector.getLocalPort()), new Session.Listener.Adapter(), clientPromise);
+        Session clientSession = clientPromise.get(5, TimeUnit.SECONDS);
+
+        MetaData.Request request = new MetaData.Request("POST", HttpURI.from("http://localhost:" + connector.getLocalPort() + "/"), HttpVersion.HTTP_2, HttpFields.EMPTY);
+        FuturePromise<Stream> streamPromise = new FuturePromise<>();
+        clientSession.newStream(new HeadersFrame(request, null, false), streamPromise, new Stream.Listener.Adapter());
+        Stream stream = streamPromise.get(5, TimeUnit.SECONDS);
+        Callback.Completable completable = new Callback.Completable();
+        stream.reset(new ResetFrame(stream.getId(), ErrorCode.CANCEL_STREAM_ERROR.code), completable);
+        completable.get(5, TimeUnit.SECONDS);
+
+        // Wait for the proxy to receive the reset before connecting to the server.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while ((proxyStreamRef.get() == null || !proxyStreamRef.get().isReset()) && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(proxyStreamRef.get().isReset());
+        connectLatch.countDown();
+
+        // The stream to the server, opened after the client stream was reset, must be reset.
+        assertTrue(serverResetLatch.await(5, TimeUnit.SECONDS));
+    }
+
     private static class ClientToProxySessionListener extends ServerSessionListener.Adapter
     {
         private final Map<Integer, ClientToProxyToServer> forwarders = new ConcurrentHashMap<>();
@@ -0,0 +1,259 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.ISession;
+import org.eclipse.jetty.http2.IStream;
+import org.eclipse.jetty.http2.PriorityStreamScheduler;
+import org.eclipse.jetty.http2.RoundRobinStreamScheduler;
+import org.eclipse.jetty.http2.StreamPriority;
+import org.eclipse.jetty.http2.StreamScheduler;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PriorityUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class StreamSchedulerTest extends AbstractTest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(StreamSchedulerTest.class);
+    private static final int LARGE_LENGTH = 4 * 1024 * 1024;
+    private static final int SMALL_LENGTH = 256 * 1024;
+
+    @Override
+    protected void prepareClient()
+    {
+        super.prepareClient();
+        // The small response is not stalled by its stream flow control window,
+        // so that only the scheduler decides when its frames are sent.
+        client.setInitialStreamRecvWindow(2 * SMALL_LENGTH);
+    }
+
+    private void start(StreamScheduler.Factory schedulerFactory) throws Exception
+    {
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Request request = (MetaData.Request)frame.getMetaData();
+                int length = request.getURI().getPath().endsWith("/large") ? LARGE_LENGTH : SMALL_LENGTH;
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                stream.headers(new HeadersFrame(stream.getId(), response, null, false), Callback.from(() ->
+                    stream.data(new DataFrame(stream.getId(), ByteBuffer.allocate(length), true), Callback.NOOP)));
+                return null;
+            }
+        }, factory -> factory.setStreamSchedulerFactory(schedulerFactory));
+    }
+
+    /**
+     * <p>Measures the time to first byte, and to last byte, of a small urgent
+     * response sent while large responses are being downloaded concurrently,
+     * and records the number of bytes of the large responses that are
+     * interleaved with the bytes of the small response.</p>
+     */
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testSmallUrgentStreamWithConcurrentLargeStreams(boolean prioritize) throws Exception
+    {
+        StreamScheduler.Factory schedulerFactory = prioritize ? PriorityStreamScheduler::new : RoundRobinStreamScheduler::new;
+        start(schedulerFactory);
+        Session session = newClient(new Session.Listener.Adapter());
+
+        int largeStreams = 4;
+        List<Integer> frames = new ArrayList<>();
+        CountDownLatch largeLatch = new CountDownLatch(1);
+        Stream.Listener largeListener = new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                synchronized (frames)
+                {
+                    frames.add(-frame.remaining());
+                }
+                largeLatch.countDown();
+                callback.succeeded();
+            }
+        };
+        for (int i = 0; i < largeStreams; ++i)
+        {
+            session.newStream(new HeadersFrame(newRequest("GET", "/large", HttpFields.EMPTY), null, true), new FuturePromise<>(), largeListener);
+        }
+        // Wait for the large responses to be in progress.
+        assertTrue(largeLatch.await(5, TimeUnit.SECONDS));
+
+        AtomicLong firstByte = new AtomicLong();
+        AtomicLong lastByte = new AtomicLong();
+        CountDownLatch smallLatch = new CountDownLatch(1);
+        HttpFields fields = HttpFields.build().put(StreamPriority.HEADER_NAME, "u=0");
+        long begin = System.nanoTime();
+        session.newStream(new HeadersFrame(newRequest("GET", "/small", fields), null, true), new FuturePromise<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                long now = System.nanoTime();
+                firstByte.compareAndSet(0, now);
+                synchronized (frames)
+                {
+                    frames.add(frame.remaining());
+                }
+                callback.succeeded();
+                if (frame.isEndStream())
+                {
+                    lastByte.set(now);
+                    smallLatch.countDown();
+                }
+            }
+        });
+        assertTrue(smallLatch.await(15, TimeUnit.SECONDS));
+
+        // Count the bytes of the large responses received while the small response was received.
+        long interleaved = 0;
+        synchronized (frames)
+        {
+            int first = -1;
+            int last = -1;
+            for (int i = 0; i < frames.size(); ++i)
+            {
+                if (frames.get(i) >= 0)
+                {
+                    if (first < 0)
+                        first = i;
+                    last = i;
+                }
+            }
+            for (int i = first; i <= last; ++i)
+            {
+                int length = frames.get(i);
+                if (length < 0)
+                    interleaved -= length;
+            }
+        }
+
+        LOG.debug("{} scheduler: ttfb={}us ttlb={}us interleaved={} bytes",
+            prioritize ? "priority" : "round-robin",
+            TimeUnit.NANOSECONDS.toMicros(firstByte.get() - begin),
+            TimeUnit.NANOSECONDS.toMicros(lastByte.get() - begin),
+            interleaved);
+
+        if (prioritize)
+            assertEquals(0, interleaved);
+    }
+
+    @Test
+    public void testPriorityUpdate() throws Exception
+    {
+        start(PriorityStreamScheduler::new);
+        Session session = newClient(new Session.Listener.Adapter());
+
+        List<Integer> completed = new ArrayList<>();
+        CountDownLatch dataLatch = new CountDownLatch(1);
+        CountDownLatch completeLatch = new CountDownLatch(2);
+        Stream.Listener listener = new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                dataLatch.countDown();
+                callback.succeeded();
+                if (frame.isEndStream())
+                {
+                    synchronized (completed)
+                    {
+                        completed.add(stream.getId());
+                    }
+                    completeLatch.countDown();
+                }
+            }
+        };
+
+        // Non-incremental streams with the same urgency are served one at a time.
+        FuturePromise<Stream> promise1 = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", "/large", HttpFields.EMPTY), null, true), promise1, listener);
+        promise1.get(5, TimeUnit.SECONDS);
+        FuturePromise<Stream> promise2 = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", "/large", HttpFields.EMPTY), null, true), promise2, listener);
+        Stream stream2 = promise2.get(5, TimeUnit.SECONDS);
+        assertTrue(dataLatch.await(5, TimeUnit.SECONDS));
+
+        // Make the second stream more urgent, it must complete first.
+        PriorityUpdateFrame priorityUpdate = new PriorityUpdateFrame(stream2.getId(), StreamPriority.of(0, false).toString());
+        ((ISession)session).frames(null, List.of(priorityUpdate), Callback.NOOP);
+
+        assertTrue(completeLatch.await(15, TimeUnit.SECONDS));
+        assertThat(completed.get(0), is(stream2.getId()));
+    }
+
+    @Test
+    public void testPriorityUpdateBeforeStreamIsOpened() throws Exception
+    {
+        AtomicReference<StreamPriority> priorityRef = new AtomicReference<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                priorityRef.set(((IStream)stream).getPriority());
+                latch.countDown();
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                stream.headers(new HeadersFrame(stream.getId(), response, null, true), Callback.NOOP);
+                return null;
+            }
+        }, factory -> factory.setStreamSchedulerFactory(PriorityStreamScheduler::new));
+        Session session = newClient(new Session.Listener.Adapter());
+
+        // The first stream opened by the client has id 1.
+        StreamPriority priority = StreamPriority.of(0, true);
+        FutureCallback callback = new FutureCallback();
+        ((ISession)session).frames(null, List.of(new PriorityUpdateFrame(1, priority.toString())), callback);
+        callback.get(5, TimeUnit.SECONDS);
+
+        FuturePromise<Stream> promise = new FuturePromise<>();
+        session.newStream(new HeadersFrame(newRequest("GET", HttpFields.EMPTY), null, true), promise, new Stream.Listener.Adapter());
+        assertEquals(1, promise.get(5, TimeUnit.SECONDS).getId());
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertSame(priority, priorityRef.get());
+    }
+}
@@ -0,0 +1,322 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A flow control strategy that enlarges the receive windows to the
+ * bandwidth-delay product measured on the connection.</p>
+ * <p>While data is being received, this strategy sends a PING frame and
+ * counts the bytes received until the PING reply arrives: the PING round
+ * trip time is an estimate of the round trip time of the connection, and
+ * the bytes received during the round trip are a sample of the
+ * bandwidth-delay product.</p>
+ * <p>When the sample is close to the receive windows, the peer is likely
+ * stalled by flow control, so the session receive window is enlarged with
+ * a WINDOW_UPDATE frame, and the initial stream receive window is enlarged
+ * with a SETTINGS frame, both to twice the sample, up to
+ * {@link #getMaxSessionRecvWindowLimit()} and {@link #getMaxStreamRecvWindowLimit()}.</p>
+ * <p>The receive windows are never shrunk, so the initial windows configured
+ * on the connection factory should be small, and this strategy will enlarge
+ * them only for the connections that need it.</p>
+ * <p>The enlargement of session receive windows can be limited by a
+ * {@link Budget} shared by all the connections of a server or client;
+ * the budgeted bytes are returned when the session is terminated.</p>
+ * <p>PING frames are sent at most once every {@link #getMinPingInterval()}
+ * milliseconds, and only while the windows can still be enlarged.</p>
+ */
+@ManagedObject
+public class AutoTuningFlowControlStrategy extends BufferingFlowControlStrategy
+{
+    private static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    private final byte[] pingPayload = new byte[PingFrame.PING_LENGTH];
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong pingTime = new AtomicLong();
+    private final AtomicLong reserved = new AtomicLong();
+    private final int maxSessionRecvWindowLimit;
+    private final int maxStreamRecvWindowLimit;
+    private final Budget budget;
+    private volatile long pingReceived;
+    private volatile long nextPingTime;
+    private volatile long roundTripTime;
+    private volatile long bandwidth;
+    private long minPingInterval = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * @param maxSessionRecvWindowLimit the max size the session receive window can be enlarged to
+     * @param maxStreamRecvWindowLimit the max size the initial stream receive window can be enlarged to
+     * @param budget the budget shared by many sessions, or null for no budget
+     */
+    public AutoTuningFlowControlStrategy(int maxSessionRecvWindowLimit, int maxStreamRecvWindowLimit, Budget budget)
+    {
+        this(0.5F, maxSessionRecvWindowLimit, maxStreamRecvWindowLimit, budget);
+    }
+
+    /**
+     * @param bufferRatio the buffer ratio, see {@link BufferingFlowControlStrategy}
+     * @param maxSessionRecvWindowLimit the max size the session receive window can be enlarged to
+     * @param maxStreamRecvWindowLimit the max size the initial stream receive window can be enlarged to
+     * @param budget the budget shared by many sessions, or null for no budget
+     */
+    public AutoTuningFlowControlStrategy(float bufferRatio, int maxSessionRecvWindowLimit, int maxStreamRecvWindowLimit, Budget budget)
+    {
+        super(bufferRatio);
+        if (maxSessionRecvWindowLimit <= 0 || maxStreamRecvWindowLimit <= 0)
+            throw new IllegalArgumentException("Invalid window limits");
+        this.maxSessionRecvWindowLimit = maxSessionRecvWindowLimit;
+        this.maxStreamRecvWindowLimit = maxStreamRecvWindowLimit;
+        this.budget = budget;
+        ThreadLocalRandom.current().nextBytes(pingPayload);
+    }
+
+    @ManagedAttribute(value = "The max size the session's flow control receive window can be enlarged to", readonly = true)
+    public int getMaxSessionRecvWindowLimit()
+    {
+        return maxSessionRecvWindowLimit;
+    }
+
+    @ManagedAttribute(value = "The max size the stream's flow control receive window can be enlarged to", readonly = true)
+    public int getMaxStreamRecvWindowLimit()
+    {
+        return maxStreamRecvWindowLimit;
+    }
+
+    public Budget getBudget()
+    {
+        return budget;
+    }
+
+    @ManagedAttribute(value = "The bytes of the budget reserved by the session's flow control receive window", readonly = true)
+    public long getReservedBytes()
+    {
+        return reserved.get();
+    }
+
+    @ManagedAttribute("The min interval, in milliseconds, between measurement PING frames")
+    public long getMinPingInterval()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(minPingInterval);
+    }
+
+    public void setMinPingInterval(long minPingInterval)
+    {
+        this.minPingInterval = TimeUnit.MILLISECONDS.toNanos(minPingInterval);
+    }
+
+    @ManagedAttribute(value = "The smoothed round trip time, in microseconds", readonly = true)
+    public long getRoundTripTime()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(roundTripTime);
+    }
+
+    @ManagedAttribute(value = "The last measured receive bandwidth, in bytes per second", readonly = true)
+    public long getBandwidth()
+    {
+        return bandwidth;
+    }
+
+    @Override
+    public void onDataReceived(ISession session, IStream stream, int length)
+    {
+        super.onDataReceived(session, stream, length);
+        long total = received.addAndGet(length);
+        if (pingTime.get() != 0 || !isEnlargeable())
+            return;
+        long now = System.nanoTime();
+        if (now - nextPingTime < 0)
+            return;
+        if (pingTime.compareAndSet(0, now))
+        {
+            pingReceived = total;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Measuring bandwidth-delay product for {}", session);
+            session.ping(new PingFrame(pingPayload, false), Callback.from(Callback.NOOP::succeeded, x ->
+            {
+                // The reply will never arrive, allow the next measurement.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Could not measure bandwidth-delay product for {}", session, x);
+                pingTime.compareAndSet(now, 0);
+            }));
+        }
+    }
+
+    @Override
+    public boolean onPingReply(ISession session, PingFrame frame)
+    {
+        if (!Arrays.equals(pingPayload, frame.getPayload()))
+            return false;
+        long start = pingTime.get();
+        if (start == 0)
+            return true;
+
+        long now = System.nanoTime();
+        long rtt = Math.max(1, now - start);
+        long sample = received.get() - pingReceived;
+        long srtt = roundTripTime;
+        roundTripTime = srtt == 0 ? rtt : (7 * srtt + rtt) / 8;
+        bandwidth = sample * TimeUnit.SECONDS.toNanos(1) / rtt;
+        nextPingTime = now + minPingInterval;
+        pingTime.set(0);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Measured bandwidth-delay product {} bytes in {} us for {}", sample, TimeUnit.NANOSECONDS.toMicros(rtt), session);
+
+        int sessionWindow = getMaxSessionRecvWindow();
+        int streamWindow = getInitialStreamRecvWindow();
+        // Enlarge the windows only if the peer was
+        // likely throttled by flow control.
+        if (3 * sample < 2L * Math.min(sessionWindow, streamWindow))
+            return true;
+
+        int target = (int)Math.min(MAX_WINDOW_SIZE, 2 * sample);
+        enlargeSessionRecvWindow(session, sessionWindow, target);
+        enlargeStreamRecvWindow(session, streamWindow, target);
+        return true;
+    }
+
+    private void enlargeSessionRecvWindow(ISession session, int sessionWindow, int target)
+    {
+        int delta = Math.min(target, maxSessionRecvWindowLimit) - sessionWindow;
+        if (delta <= 0)
+            return;
+        if (budget != null)
+            delta = budget.reserve(delta);
+        if (delta <= 0)
+            return;
+        reserved.addAndGet(delta);
+        updateMaxSessionRecvWindow(sessionWindow + delta);
+        session.updateRecvWindow(delta);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Enlarged session recv window {} -> {} for {}", sessionWindow, sessionWindow + delta, session);
+        sendWindowUpdate(null, session, new WindowUpdateFrame(0, delta));
+    }
+
+    private void enlargeStreamRecvWindow(ISession session, int streamWindow, int target)
+    {
+        int window = Math.min(target, maxStreamRecvWindowLimit);
+        if (window <= streamWindow)
+            return;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Enlarging initial stream recv window {} -> {} for {}", streamWindow, window, session);
+        // The initial stream recv window is updated when the SETTINGS frame is sent.
+        session.settings(new SettingsFrame(Map.of(SettingsFrame.INITIAL_WINDOW_SIZE, window), false), Callback.NOOP);
+    }
+
+    private boolean isEnlargeable()
+    {
+        if (getInitialStreamRecvWindow() < maxStreamRecvWindowLimit)
+            return true;
+        if (getMaxSessionRecvWindow() >= maxSessionRecvWindowLimit)
+            return false;
+        return budget == null || budget.getAvailableBytes() > 0;
+    }
+
+    @Override
+    public void onSessionDestroyed(ISession session)
+    {
+        super.onSessionDestroyed(session);
+        long bytes = reserved.getAndSet(0);
+        if (budget != null && bytes > 0)
+            budget.release(bytes);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[sessionWindow=%d/%d,streamWindow=%d/%d,rtt=%dus,bandwidth=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getMaxSessionRecvWindow(),
+            maxSessionRecvWindowLimit,
+            getInitialStreamRecvWindow(),
+            maxStreamRecvWindowLimit,
+            getRoundTripTime(),
+            getBandwidth());
+    }
+
+    /**
+     * <p>A limit to the bytes that the session receive windows of many
+     * sessions can be enlarged by, typically shared by all the connections
+     * of a server, to bound the memory that peers can make it buffer.</p>
+     */
+    @ManagedObject("The budget for the enlargement of session receive windows")
+    public static class Budget
+    {
+        private final AtomicLong reserved = new AtomicLong();
+        private final long maxBytes;
+
+        public Budget(long maxBytes)
+        {
+            this.maxBytes = maxBytes;
+        }
+
+        @ManagedAttribute(value = "The max bytes of the budget", readonly = true)
+        public long getMaxBytes()
+        {
+            return maxBytes;
+        }
+
+        @ManagedAttribute(value = "The bytes of the budget reserved by sessions", readonly = true)
+        public long getReservedBytes()
+        {
+            return reserved.get();
+        }
+
+        public long getAvailableBytes()
+        {
+            return maxBytes - reserved.get();
+        }
+
+        /**
+         * @param bytes the bytes to reserve
+         * @return the bytes actually reserved, possibly less than requested, possibly zero
+         */
+        public int reserve(int bytes)
+        {
+            while (true)
+            {
+                long current = reserved.get();
+                int granted = (int)Math.min(bytes, maxBytes - current);
+                if (granted <= 0)
+                    return 0;
+                if (reserved.compareAndSet(current, current + granted))
+                    return granted;
+            }
+        }
+
+        public void release(long bytes)
+        {
+            reserved.addAndGet(-bytes);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%d/%d]", getClass().getSimpleName(), hashCode(), getReservedBytes(), getMaxBytes());
+        }
+    }
+}
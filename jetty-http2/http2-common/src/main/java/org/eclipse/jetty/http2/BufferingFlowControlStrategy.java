@@ -87,6 +87,22 @@ public class BufferingFlowControlStrategy extends AbstractFlowControlStrategy
         this.bufferRatio = bufferRatio;
     }
 
+    @ManagedAttribute(value = "The max size of the session's flow control receive window", readonly = true)
+    public int getMaxSessionRecvWindow()
+    {
+        return maxSessionRecvWindow.get();
+    }
+
+    /**
+     * <p>Records that the session receive window has been enlarged to the given size.</p>
+     *
+     * @param sessionRecvWindow the new size of the session receive window
+     */
+    protected void updateMaxSessionRecvWindow(int sessionRecvWindow)
+    {
+        Atomics.updateMax(maxSessionRecvWindow, sessionRecvWindow);
+    }
+
     @Override
     public void onStreamCreated(IStream stream)
     {
@@ -13,6 +13,7 @@
 
 package org.eclipse.jetty.http2;
 
+import org.eclipse.jetty.http2.frames.PingFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 
 public interface FlowControlStrategy
@@ -37,6 +38,28 @@ public interface FlowControlStrategy
 
     public void onDataSent(IStream stream, int length);
 
+    /**
+     * <p>Invoked when a PING reply is received.</p>
+     *
+     * @param session the session that received the PING reply
+     * @param frame the PING reply
+     * @return whether the PING reply was a reply to a PING sent by this strategy,
+     * in which case it is not notified to the application
+     */
+    public default boolean onPingReply(ISession session, PingFrame frame)
+    {
+        return false;
+    }
+
+    /**
+     * <p>Invoked when the session is terminated.</p>
+     *
+     * @param session the terminated session
+     */
+    public default void onSessionDestroyed(ISession session)
+    {
+    }
+
     public interface Factory
     {
         public FlowControlStrategy newFlowControlStrategy();
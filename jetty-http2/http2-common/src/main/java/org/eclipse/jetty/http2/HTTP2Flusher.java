@@ -20,8 +20,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Deque;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Queue;
 import java.util.Set;
 
@@ -45,13 +45,14 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
 
     private final AutoLock lock = new AutoLock();
     private final Queue<WindowEntry> windows = new ArrayDeque<>();
+    private final Queue<IStream> priorities = new ArrayDeque<>();
     private final Deque<Entry> entries = new ArrayDeque<>();
-    private final Queue<Entry> pendingEntries = new ArrayDeque<>();
     private final Collection<Entry> processedEntries = new ArrayList<>();
+    private final List<Entry> stalledEntries = new ArrayList<>();
     private final HTTP2Session session;
     private final ByteBufferPool.Lease lease;
+    private StreamScheduler scheduler = new RoundRobinStreamScheduler();
     private Throwable terminated;
-    private Entry stalledEntry;
 
     public HTTP2Flusher(HTTP2Session session)
     {
@@ -59,6 +60,44 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
         this.lease = new ByteBufferPool.Lease(session.getGenerator().getByteBufferPool());
     }
 
+    public StreamScheduler getStreamScheduler()
+    {
+        return scheduler;
+    }
+
+    /**
+     * @param scheduler the scheduler that decides the order in which the frames of the streams are generated
+     * @throws IllegalStateException if the current scheduler has entries scheduled
+     */
+    public void setStreamScheduler(StreamScheduler scheduler)
+    {
+        try (AutoLock l = lock.lock())
+        {
+            if (!this.scheduler.isEmpty())
+                throw new IllegalStateException("Entries already scheduled");
+            this.scheduler = Objects.requireNonNull(scheduler);
+        }
+    }
+
+    /**
+     * <p>Notifies that the priority of the given stream changed,
+     * so that its frames are scheduled according to the new priority.</p>
+     *
+     * @param stream the stream whose priority changed
+     */
+    public void prioritize(IStream stream)
+    {
+        Throwable closed;
+        try (AutoLock l = lock.lock())
+        {
+            closed = terminated;
+            if (closed == null)
+                priorities.offer(stream);
+        }
+        if (closed == null)
+            iterate();
+    }
+
     public void window(IStream stream, WindowUpdateFrame frame)
     {
         Throwable closed;
@@ -163,97 +202,88 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                 windowEntry.perform();
             }
 
+            IStream stream;
+            while ((stream = priorities.poll()) != null)
+            {
+                scheduler.prioritize(stream);
+            }
+
             Entry entry;
             while ((entry = entries.poll()) != null)
             {
-                pendingEntries.offer(entry);
+                scheduler.offer(entry);
             }
         }
 
-        if (pendingEntries.isEmpty())
+        if (scheduler.isEmpty())
         {
             if (LOG.isDebugEnabled())
                 LOG.debug("Flushed {}", session);
             return Action.IDLE;
         }
 
-        while (true)
+        int writeThreshold = session.getWriteThreshold();
+        Entry entry;
+        // Do not poll DATA frames when the session flow control
+        // window is exhausted, as they cannot make progress.
+        while ((entry = scheduler.poll(session.getSendWindow() > 0)) != null)
         {
-            boolean progress = false;
-
-            if (pendingEntries.isEmpty())
-                break;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Processing {}", entry);
 
-            Iterator<Entry> pending = pendingEntries.iterator();
-            while (pending.hasNext())
+            // If the stream has been reset or removed,
+            // don't send the frame and fail it here.
+            if (entry.shouldBeDropped())
             {
-                Entry entry = pending.next();
                 if (LOG.isDebugEnabled())
-                    LOG.debug("Processing {}", entry);
+                    LOG.debug("Dropped {}", entry);
+                scheduler.complete(entry);
+                entry.failed(new EofException("dropped"));
+                continue;
+            }
 
-                // If the stream has been reset or removed,
-                // don't send the frame and fail it here.
-                if (entry.shouldBeDropped())
+            try
+            {
+                if (entry.generate(lease))
                 {
                     if (LOG.isDebugEnabled())
-                        LOG.debug("Dropped {}", entry);
-                    entry.failed(new EofException("dropped"));
-                    pending.remove();
-                    continue;
-                }
-
-                try
-                {
-                    if (entry.generate(lease))
-                    {
-                        if (LOG.isDebugEnabled())
-                            LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
-
-                        progress = true;
+                        LOG.debug("Generated {} frame bytes for {}", entry.getFrameBytesGenerated(), entry);
 
-                        // We use ArrayList contains() + add() instead of HashSet add()
-                        // because that is faster for collections of size up to 250 entries.
-                        if (!processedEntries.contains(entry))
-                            processedEntries.add(entry);
+                    // We use ArrayList contains() + add() instead of HashSet add()
+                    // because that is faster for collections of size up to 250 entries.
+                    if (!processedEntries.contains(entry))
+                        processedEntries.add(entry);
 
-                        if (entry.getDataBytesRemaining() == 0)
-                            pending.remove();
-                    }
+                    if (entry.getDataBytesRemaining() == 0)
+                        scheduler.complete(entry);
                     else
-                    {
-                        if (session.getSendWindow() <= 0 && stalledEntry == null)
-                        {
-                            stalledEntry = entry;
-                            if (LOG.isDebugEnabled())
-                                LOG.debug("Flow control stalled at {}", entry);
-                            // Continue to process control frames.
-                        }
-                    }
-                }
-                catch (HpackException.StreamException failure)
-                {
-                    if (LOG.isDebugEnabled())
-                        LOG.debug("Failure generating {}", entry, failure);
-                    entry.failed(failure);
-                    pending.remove();
+                        scheduler.reschedule(entry);
                 }
-                catch (Throwable failure)
+                else
                 {
-                    // Failure to generate the entry is catastrophic.
+                    // Set the entry aside until the other entries
+                    // have been processed, as it cannot make progress.
                     if (LOG.isDebugEnabled())
-                        LOG.debug("Failure generating {}", entry, failure);
-                    failed(failure);
-                    return Action.SUCCEEDED;
+                        LOG.debug("Flow control stalled at {}", entry);
+                    stalledEntries.add(entry);
                 }
             }
+            catch (HpackException.StreamException failure)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Failure generating {}", entry, failure);
+                scheduler.complete(entry);
+                entry.failed(failure);
+            }
+            catch (Throwable failure)
+            {
+                // Failure to generate the entry is catastrophic.
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Failure generating {}", entry, failure);
+                failed(failure);
+                return Action.SUCCEEDED;
+            }
 
-            if (!progress)
-                break;
-
-            if (stalledEntry != null)
-                break;
-
-            int writeThreshold = session.getWriteThreshold();
             if (lease.getTotalLength() >= writeThreshold)
             {
                 if (LOG.isDebugEnabled())
@@ -262,6 +292,14 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             }
         }
 
+        // Requeue the stalled entries in reverse order,
+        // so that they keep their order when prepended.
+        for (int i = stalledEntries.size() - 1; i >= 0; --i)
+        {
+            scheduler.requeue(stalledEntries.get(i));
+        }
+        stalledEntries.clear();
+
         List<ByteBuffer> byteBuffers = lease.getByteBuffers();
         if (byteBuffers.isEmpty())
         {
@@ -274,9 +312,9 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                 byteBuffers.size(),
                 lease.getTotalLength(),
                 processedEntries.size(),
-                pendingEntries.size(),
+                scheduler.size(),
                 processedEntries,
-                pendingEntries);
+                scheduler);
 
         session.getEndPoint().write(this, byteBuffers.toArray(EMPTY_BYTE_BUFFERS));
         return Action.SCHEDULED;
@@ -298,9 +336,9 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             LOG.debug("Written {} buffers - entries processed/pending {}/{}: {}/{}",
                 lease.getByteBuffers().size(),
                 processedEntries.size(),
-                pendingEntries.size(),
+                scheduler.size(),
                 processedEntries,
-                pendingEntries);
+                scheduler);
         finish();
         super.succeeded();
     }
@@ -311,20 +349,6 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
 
         processedEntries.forEach(Entry::succeeded);
         processedEntries.clear();
-
-        if (stalledEntry != null)
-        {
-            int size = pendingEntries.size();
-            for (int i = 0; i < size; ++i)
-            {
-                Entry entry = pendingEntries.peek();
-                if (entry == stalledEntry)
-                    break;
-                pendingEntries.poll();
-                pendingEntries.offer(entry);
-            }
-            stalledEntry = null;
-        }
     }
 
     @Override
@@ -348,7 +372,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                 LOG.debug(String.format("%s, entries processed/pending/queued=%d/%d/%d",
                     closed != null ? "Closing" : "Failing",
                     processedEntries.size(),
-                    pendingEntries.size(),
+                    scheduler.size(),
                     entries.size()), x);
             allEntries = new HashSet<>(entries);
             entries.clear();
@@ -356,8 +380,9 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
 
         allEntries.addAll(processedEntries);
         processedEntries.clear();
-        allEntries.addAll(pendingEntries);
-        pendingEntries.clear();
+        allEntries.addAll(stalledEntries);
+        stalledEntries.clear();
+        scheduler.drainTo(allEntries);
         allEntries.forEach(entry -> entry.failed(x));
 
         // If the failure came from within the
@@ -405,7 +430,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             getWindowQueueSize(),
             getFrameQueueSize(),
             processedEntries.size(),
-            pendingEntries.size());
+            scheduler.size());
     }
 
     public abstract static class Entry extends Callback.Nested
@@ -420,6 +445,16 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
             this.stream = stream;
         }
 
+        public Frame getFrame()
+        {
+            return frame;
+        }
+
+        public IStream getStream()
+        {
+            return stream;
+        }
+
         public abstract int getFrameBytesGenerated();
 
         public int getDataBytesRemaining()
@@ -460,6 +495,7 @@ public class HTTP2Flusher extends IteratingCallback implements Dumpable
                 case PING:
                 case GO_AWAY:
                 case WINDOW_UPDATE:
+                case PRIORITY_UPDATE:
                 case PREFACE:
                 case DISCONNECT:
                     return false;
@@ -49,6 +49,7 @@ import org.eclipse.jetty.http2.frames.HeadersFrame;
 import org.eclipse.jetty.http2.frames.PingFrame;
 import org.eclipse.jetty.http2.frames.PrefaceFrame;
 import org.eclipse.jetty.http2.frames.PriorityFrame;
+import org.eclipse.jetty.http2.frames.PriorityUpdateFrame;
 import org.eclipse.jetty.http2.frames.PushPromiseFrame;
 import org.eclipse.jetty.http2.frames.ResetFrame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
@@ -82,6 +83,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     private static final Logger LOG = LoggerFactory.getLogger(HTTP2Session.class);
 
     private final ConcurrentMap<Integer, IStream> streams = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, StreamPriority> idlePriorities = new ConcurrentHashMap<>();
     private final AtomicLong streamsOpened = new AtomicLong();
     private final AtomicLong streamsClosed = new AtomicLong();
     private final StreamsState streamsState = new StreamsState();
@@ -139,6 +141,23 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         return flowControl;
     }
 
+    @ManagedAttribute(value = "The stream scheduler", readonly = true)
+    public StreamScheduler getStreamScheduler()
+    {
+        return flusher.getStreamScheduler();
+    }
+
+    /**
+     * <p>Sets the scheduler that decides the order in which the frames
+     * of the streams are generated; must be called before any frame is sent.</p>
+     *
+     * @param scheduler the stream scheduler
+     */
+    public void setStreamScheduler(StreamScheduler scheduler)
+    {
+        flusher.setStreamScheduler(scheduler);
+    }
+
     @ManagedAttribute(value = "The total number of streams opened", readonly = true)
     public long getStreamsOpened()
     {
@@ -306,6 +325,33 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
             LOG.debug("Received {} on {}", frame, this);
     }
 
+    @Override
+    public void onPriorityUpdate(PriorityUpdateFrame frame)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Received {} on {}", frame, this);
+
+        int streamId = frame.getPrioritizedStreamId();
+        StreamPriority priority = StreamPriority.parse(frame.getPriority());
+        IStream stream = getStream(streamId);
+        if (stream != null)
+        {
+            stream.setPriority(priority);
+            flusher.prioritize(stream);
+        }
+        else if (!isLocalStream(streamId) && !isRemoteStreamClosed(streamId))
+        {
+            // SPEC: the priority of a stream that is not open yet
+            // is applied when the stream is opened, see RFC 9218 section 7.1.
+            // The number of buffered priorities is bounded like the number of streams.
+            int maxCount = getMaxRemoteStreams();
+            if (idlePriorities.containsKey(streamId) || idlePriorities.size() < (maxCount < 0 ? 128 : maxCount))
+                idlePriorities.put(streamId, priority);
+            else if (LOG.isDebugEnabled())
+                LOG.debug("Dropped {} on {}", frame, this);
+        }
+    }
+
     @Override
     public void onReset(ResetFrame frame)
     {
@@ -430,7 +476,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
 
         if (frame.isReply())
         {
-            notifyPing(this, frame);
+            if (!flowControl.onPingReply(this, frame))
+                notifyPing(this, frame);
         }
         else
         {
@@ -841,6 +888,14 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         }
 
         IStream stream = newStream(streamId, request, false);
+        if (!idlePriorities.isEmpty())
+        {
+            // Streams with a lower id can no longer be opened.
+            idlePriorities.keySet().removeIf(id -> id < streamId);
+            StreamPriority priority = idlePriorities.remove(streamId);
+            if (priority != null)
+                stream.setPriority(priority);
+        }
         if (streams.putIfAbsent(streamId, stream) == null)
         {
             stream.setIdleTimeout(getStreamIdleTimeout());
@@ -1053,6 +1108,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     {
         flusher.terminate(cause);
         streamTimeouts.destroy();
+        flowControl.onSessionDestroyed(this);
         disconnect();
     }
 
@@ -76,6 +76,7 @@ public class HTTP2Stream implements IStream, Callback, Dumpable, CyclicTimeouts.
     private boolean committed;
     private long idleTimeout;
     private long expireNanoTime = Long.MAX_VALUE;
+    private volatile StreamPriority priority;
 
     public HTTP2Stream(ISession session, int streamId, MetaData.Request request, boolean local)
     {
@@ -83,6 +84,7 @@ public class HTTP2Stream implements IStream, Callback, Dumpable, CyclicTimeouts.
         this.streamId = streamId;
         this.request = request;
         this.local = local;
+        this.priority = StreamPriority.from(request);
         this.dataLength = Long.MIN_VALUE;
         this.dataInitial = true;
     }
@@ -123,6 +125,18 @@ public class HTTP2Stream implements IStream, Callback, Dumpable, CyclicTimeouts.
         return session;
     }
 
+    @Override
+    public StreamPriority getPriority()
+    {
+        return priority;
+    }
+
+    @Override
+    public void setPriority(StreamPriority priority)
+    {
+        this.priority = priority == null ? StreamPriority.DEFAULT : priority;
+    }
+
     @Override
     public void headers(HeadersFrame frame, Callback callback)
     {
@@ -26,19 +26,26 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.RetainableByteBuffer;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.IteratingCallback;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public abstract class HTTP2StreamEndPoint implements EndPoint
+public abstract class HTTP2StreamEndPoint implements EndPoint, EndPoint.RetainableFill
 {
     private static final Logger LOG = LoggerFactory.getLogger(HTTP2StreamEndPoint.class);
+    // Buffers at least as large as a default DATA frame are not worth
+    // coalescing, so they are written in their own DATA frames.
+    private static final int COALESCE_MAX_SIZE = Frame.DEFAULT_MAX_LENGTH;
 
     private final AutoLock lock = new AutoLock();
     private final Deque<Entry> dataQueue = new ArrayDeque<>();
@@ -48,11 +55,14 @@ public abstract class HTTP2StreamEndPoint implements EndPoint
     private final AtomicBoolean eof = new AtomicBoolean();
     private final AtomicBoolean closed = new AtomicBoolean();
     private final IStream stream;
+    private final ByteBufferPool byteBufferPool;
     private Connection connection;
 
     public HTTP2StreamEndPoint(IStream stream)
     {
         this.stream = stream;
+        ISession session = stream.getSession();
+        this.byteBufferPool = session instanceof HTTP2Session ? ((HTTP2Session)session).getGenerator().getByteBufferPool() : null;
     }
 
     @Override
@@ -186,6 +196,84 @@ public abstract class HTTP2StreamEndPoint implements EndPoint
 
     @Override
     public int fill(ByteBuffer sink) throws IOException
+    {
+        // Fill from as many queued DATA frames as they fit in the sink,
+        // so that many small DATA frames are parsed in a single pass.
+        int filled = 0;
+        while (BufferUtil.space(sink) > 0)
+        {
+            Entry entry;
+            try (AutoLock l = lock.lock())
+            {
+                entry = dataQueue.poll();
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("filled {} on {}", entry, this);
+
+            if (entry == null)
+                break;
+            if (entry.isEOF())
+            {
+                if (filled > 0)
+                {
+                    // Report EOF at the next fill.
+                    try (AutoLock l = lock.lock())
+                    {
+                        dataQueue.offerFirst(entry);
+                    }
+                    break;
+                }
+                entry.succeed();
+                return shutdownInput();
+            }
+            IOException failure = entry.ioFailure();
+            if (failure != null)
+            {
+                if (filled > 0)
+                {
+                    try (AutoLock l = lock.lock())
+                    {
+                        dataQueue.offerFirst(entry);
+                    }
+                    break;
+                }
+                entry.fail(failure);
+                throw failure;
+            }
+
+            int sinkPosition = BufferUtil.flipToFill(sink);
+            ByteBuffer source = entry.buffer;
+            int sourceLength = source.remaining();
+            int length = Math.min(sourceLength, sink.remaining());
+            int sourceLimit = source.limit();
+            source.limit(source.position() + length);
+            sink.put(source);
+            source.limit(sourceLimit);
+            BufferUtil.flipToFlush(sink, sinkPosition);
+            filled += length;
+
+            if (source.hasRemaining())
+            {
+                try (AutoLock l = lock.lock())
+                {
+                    dataQueue.offerFirst(entry);
+                }
+                break;
+            }
+            else
+            {
+                entry.succeed();
+                // WebSocket does not have a backpressure API so you must always demand
+                // the next frame after succeeding the previous one.
+                stream.demand(1);
+            }
+        }
+        return filled;
+    }
+
+    @Override
+    public RetainableByteBuffer fillRetainable() throws IOException
     {
         Entry entry;
         try (AutoLock l = lock.lock())
@@ -194,14 +282,15 @@ public abstract class HTTP2StreamEndPoint implements EndPoint
         }
 
         if (LOG.isDebugEnabled())
-            LOG.debug("filled {} on {}", entry, this);
+            LOG.debug("filled retainable {} on {}", entry, this);
 
         if (entry == null)
-            return 0;
+            return null;
         if (entry.isEOF())
         {
             entry.succeed();
-            return shutdownInput();
+            shutdownInput();
+            return null;
         }
         IOException failure = entry.ioFailure();
         if (failure != null)
@@ -210,31 +299,11 @@ public abstract class HTTP2StreamEndPoint implements EndPoint
             throw failure;
         }
 
-        int sinkPosition = BufferUtil.flipToFill(sink);
-        ByteBuffer source = entry.buffer;
-        int sourceLength = source.remaining();
-        int length = Math.min(sourceLength, sink.remaining());
-        int sourceLimit = source.limit();
-        source.limit(source.position() + length);
-        sink.put(source);
-        source.limit(sourceLimit);
-        BufferUtil.flipToFlush(sink, sinkPosition);
-
-        if (source.hasRemaining())
-        {
-            try (AutoLock l = lock.lock())
-            {
-                dataQueue.offerFirst(entry);
-            }
-        }
-        else
-        {
-            entry.succeed();
-            // WebSocket does not have a backpressure API so you must always demand
-            // the next frame after succeeding the previous one.
-            stream.demand(1);
-        }
-        return length;
+        // The DATA frame is succeeded, and its flow control window
+        // recovered, only when the reader releases the buffer, but
+        // the next DATA frame is demanded now, like fill() does.
+        stream.demand(1);
+        return new EntryBuffer(entry);
     }
 
     private int shutdownInput()
@@ -270,6 +339,7 @@ public abstract class HTTP2StreamEndPoint implements EndPoint
                         stream.data(new DataFrame(stream.getId(), buffer, false), callback);
                         callback.whenComplete((nothing, failure) ->
                         {
+                            release(buffer);
                             if (failure == null)
                                 flushSuccess();
                             else
@@ -396,9 +466,7 @@ public abstract class HTTP2StreamEndPoint implements EndPoint
                     case IDLE:
                         if (!writeState.compareAndSet(current, WriteState.PENDING))
                             break;
-                        // TODO: we really need a Stream primitive to write multiple frames.
-                        ByteBuffer result = coalesce(buffers, false);
-                        stream.data(new DataFrame(stream.getId(), result, false), Callback.from(() -> writeSuccess(callback), x -> writeFailure(x, callback)));
+                        new DataWriter(callback, buffers).iterate();
                         return;
                     case PENDING:
                         callback.failed(new WritePendingException());
@@ -482,14 +550,25 @@ public abstract class HTTP2StreamEndPoint implements EndPoint
         long capacity = remaining(buffers);
         if (capacity > Integer.MAX_VALUE)
             throw new BufferOverflowException();
-        ByteBuffer result = BufferUtil.allocateDirect((int)capacity);
-        for (ByteBuffer buffer : buffers)
+        return coalesce(buffers, 0, buffers.length, (int)capacity);
+    }
+
+    private ByteBuffer coalesce(ByteBuffer[] buffers, int from, int to, int capacity)
+    {
+        ByteBuffer result = byteBufferPool == null ? BufferUtil.allocateDirect(capacity) : byteBufferPool.acquire(capacity, true);
+        for (int i = from; i < to; ++i)
         {
-            BufferUtil.append(result, buffer);
+            BufferUtil.append(result, buffers[i]);
         }
         return result;
     }
 
+    private void release(ByteBuffer buffer)
+    {
+        if (buffer != null && byteBufferPool != null)
+            byteBufferPool.release(buffer);
+    }
+
     @Override
     public Connection getConnection()
     {
@@ -598,6 +677,104 @@ public abstract class HTTP2StreamEndPoint implements EndPoint
             writeState);
     }
 
+    /**
+     * <p>Writes the buffers passed to {@link #write(Callback, ByteBuffer...)} as
+     * DATA frames, without copying the large buffers, typically the payloads
+     * of WebSocket frames, and coalescing the small buffers, typically the headers
+     * of WebSocket frames, in pooled buffers that are sent as a single DATA frame.</p>
+     * <p>HTTP2Flusher then splits the DATA frames to fit the flow control windows
+     * and the max frame size of the session.</p>
+     */
+    private class DataWriter extends IteratingCallback
+    {
+        private final Callback callback;
+        private final ByteBuffer[] buffers;
+        private int index;
+        private ByteBuffer pooled;
+
+        private DataWriter(Callback callback, ByteBuffer[] buffers)
+        {
+            this.callback = callback;
+            this.buffers = buffers;
+        }
+
+        @Override
+        protected Action process()
+        {
+            release(pooled);
+            pooled = null;
+
+            while (index < buffers.length && !buffers[index].hasRemaining())
+            {
+                ++index;
+            }
+            if (index == buffers.length)
+                return Action.SUCCEEDED;
+
+            ByteBuffer data = buffers[index];
+            int to = index + 1;
+            int length = data.remaining();
+            if (length < COALESCE_MAX_SIZE)
+            {
+                while (to < buffers.length)
+                {
+                    int remaining = buffers[to].remaining();
+                    if (remaining >= COALESCE_MAX_SIZE || length + remaining > COALESCE_MAX_SIZE)
+                        break;
+                    length += remaining;
+                    ++to;
+                }
+                if (to - index > 1)
+                    data = pooled = coalesce(buffers, index, to, length);
+            }
+            index = to;
+
+            stream.data(new DataFrame(stream.getId(), data, false), this);
+            return Action.SCHEDULED;
+        }
+
+        @Override
+        protected void onCompleteSuccess()
+        {
+            writeSuccess(callback);
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable cause)
+        {
+            release(pooled);
+            pooled = null;
+            writeFailure(cause, callback);
+        }
+
+        @Override
+        public InvocationType getInvocationType()
+        {
+            return callback.getInvocationType();
+        }
+    }
+
+    /**
+     * <p>A buffer handed over by {@link #fillRetainable()} that succeeds
+     * the DATA frame callback when it is released.</p>
+     */
+    private static class EntryBuffer extends RetainableByteBuffer
+    {
+        private final Entry entry;
+
+        private EntryBuffer(Entry entry)
+        {
+            super(entry.buffer);
+            this.entry = entry;
+        }
+
+        @Override
+        protected void released()
+        {
+            entry.succeed();
+        }
+    }
+
     private static class Entry
     {
         private static final Throwable EOF = new Throwable();
@@ -102,6 +102,21 @@ public interface IStream extends Stream, Attachable, Closeable
      */
     public int updateRecvWindow(int delta);
 
+    /**
+     * @return the priority of this stream
+     * @see #setPriority(StreamPriority)
+     */
+    public StreamPriority getPriority();
+
+    /**
+     * <p>Sets the priority of this stream, used to schedule the frames
+     * of this stream with respect to the frames of other streams.</p>
+     *
+     * @param priority the priority of this stream
+     * @see #getPriority()
+     */
+    public void setPriority(StreamPriority priority);
+
     /**
      * <p>Marks this stream as not idle so that the
      * {@link #getIdleTimeout() idle timeout} is postponed.</p>
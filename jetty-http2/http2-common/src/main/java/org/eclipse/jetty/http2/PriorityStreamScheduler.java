@@ -0,0 +1,279 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.jetty.http2.frames.FrameType;
+
+/**
+ * <p>A {@link StreamScheduler} that implements the prioritization scheme of
+ * <a href="https://www.rfc-editor.org/rfc/rfc9218.html">RFC 9218</a>.</p>
+ * <p>Frames that are not associated with a stream, and control frames such as
+ * HEADERS, RST_STREAM or WINDOW_UPDATE, are generated first, in the order they are offered.
+ * Then the DATA frames of the most urgent streams are generated before those of the less
+ * urgent streams; streams with the same urgency that are not incremental are served one
+ * at a time, in the order they became ready, while incremental streams with the same
+ * urgency are served in round-robin, one frame each.</p>
+ * <p>A stream whose frames are already queued behind a DATA frame keeps its frames,
+ * HEADERS included, in order.
+ * DATA frames without data, typically carrying only the END_STREAM flag, are not
+ * subject to flow control, so they are generated as control frames once the
+ * frames of the stream queued before them have been generated.</p>
+ * <p>Every operation is O(1): each urgency has its own queue of streams,
+ * and a bit mask records which urgencies have streams ready to be served.</p>
+ */
+public class PriorityStreamScheduler implements StreamScheduler
+{
+    private final Deque<HTTP2Flusher.Entry> controls = new ArrayDeque<>();
+    private final Map<IStream, Node> nodes = new HashMap<>();
+    private final Node[] heads = new Node[StreamPriority.MAX_URGENCY + 1];
+    private final Node[] tails = new Node[StreamPriority.MAX_URGENCY + 1];
+    private int urgencies;
+    private int size;
+
+    @Override
+    public void offer(HTTP2Flusher.Entry entry)
+    {
+        ++size;
+        IStream stream = entry.getStream();
+        if (stream != null)
+        {
+            FrameType type = entry.getFrame().getType();
+            Node node = nodes.get(stream);
+            if ((type == FrameType.DATA && (node != null || entry.getDataBytesRemaining() > 0)) ||
+                (type == FrameType.HEADERS && node != null))
+            {
+                if (node == null)
+                {
+                    node = new Node(stream);
+                    nodes.put(stream, node);
+                }
+                node.entries.offer(entry);
+                // A node that is being served is linked again when its entry is done.
+                if (!node.linked && node.polled == null)
+                    link(node, false, false);
+                return;
+            }
+        }
+        controls.offer(entry);
+    }
+
+    @Override
+    public HTTP2Flusher.Entry poll(boolean data)
+    {
+        HTTP2Flusher.Entry entry = controls.poll();
+        if (entry != null)
+        {
+            --size;
+            return entry;
+        }
+
+        if (!data || urgencies == 0)
+            return null;
+
+        // The lowest bit set is the most urgent non-empty queue.
+        Node node = heads[Integer.numberOfTrailingZeros(urgencies)];
+        unlink(node);
+        // The node is not linked again until the entry is done,
+        // so that the frames of a stream are generated in order.
+        node.polled = node.entries.poll();
+        --size;
+        return node.polled;
+    }
+
+    @Override
+    public void reschedule(HTTP2Flusher.Entry entry)
+    {
+        putBack(entry, false);
+    }
+
+    @Override
+    public void requeue(HTTP2Flusher.Entry entry)
+    {
+        putBack(entry, true);
+    }
+
+    private void putBack(HTTP2Flusher.Entry entry, boolean first)
+    {
+        ++size;
+        Node node = polled(entry);
+        if (node == null)
+        {
+            controls.offerFirst(entry);
+            return;
+        }
+        node.polled = null;
+        node.entries.offerFirst(entry);
+        link(node, true, first);
+    }
+
+    @Override
+    public void complete(HTTP2Flusher.Entry entry)
+    {
+        Node node = polled(entry);
+        if (node == null)
+            return;
+        node.polled = null;
+        // A DATA frame without data that was queued behind
+        // the completed entry can now be generated as a control frame.
+        HTTP2Flusher.Entry next = node.entries.peek();
+        if (next != null && next.getFrame().getType() == FrameType.DATA && next.getDataBytesRemaining() == 0)
+            controls.offer(node.entries.poll());
+        if (node.entries.isEmpty())
+            nodes.remove(node.stream);
+        else
+            link(node, true, false);
+    }
+
+    @Override
+    public void prioritize(IStream stream)
+    {
+        Node node = nodes.get(stream);
+        if (node == null || !node.linked)
+            return;
+        StreamPriority priority = getPriority(stream);
+        if (priority.getUrgency() != node.urgency || priority.isIncremental() != node.incremental)
+        {
+            unlink(node);
+            link(node, false, false);
+        }
+    }
+
+    @Override
+    public int size()
+    {
+        return size;
+    }
+
+    @Override
+    public void drainTo(Collection<HTTP2Flusher.Entry> entries)
+    {
+        entries.addAll(controls);
+        controls.clear();
+        nodes.values().forEach(node -> entries.addAll(node.entries));
+        nodes.clear();
+        for (int i = 0; i < heads.length; ++i)
+        {
+            heads[i] = null;
+            tails[i] = null;
+        }
+        urgencies = 0;
+        size = 0;
+    }
+
+    /**
+     * @param stream the stream
+     * @return the priority to schedule the given stream with
+     */
+    protected StreamPriority getPriority(IStream stream)
+    {
+        StreamPriority priority = stream.getPriority();
+        return priority == null ? StreamPriority.DEFAULT : priority;
+    }
+
+    private Node polled(HTTP2Flusher.Entry entry)
+    {
+        IStream stream = entry.getStream();
+        if (stream == null)
+            return null;
+        Node node = nodes.get(stream);
+        if (node == null || node.polled != entry)
+            return null;
+        return node;
+    }
+
+    private void link(Node node, boolean served, boolean first)
+    {
+        StreamPriority priority = getPriority(node.stream);
+        int urgency = priority.getUrgency();
+        node.urgency = urgency;
+        node.incremental = priority.isIncremental();
+        node.linked = true;
+        Node head = heads[urgency];
+        if (head == null)
+        {
+            heads[urgency] = node;
+            tails[urgency] = node;
+            urgencies |= 1 << urgency;
+        }
+        else if (first || (served && !node.incremental))
+        {
+            // Keep serving the same non-incremental stream,
+            // or give back its turn to a stalled stream.
+            node.next = head;
+            head.prev = node;
+            heads[urgency] = node;
+        }
+        else
+        {
+            Node tail = tails[urgency];
+            node.prev = tail;
+            tail.next = node;
+            tails[urgency] = node;
+        }
+    }
+
+    private void unlink(Node node)
+    {
+        int urgency = node.urgency;
+        Node prev = node.prev;
+        Node next = node.next;
+        if (prev == null)
+            heads[urgency] = next;
+        else
+            prev.next = next;
+        if (next == null)
+            tails[urgency] = prev;
+        else
+            next.prev = prev;
+        if (heads[urgency] == null)
+            urgencies &= ~(1 << urgency);
+        node.prev = null;
+        node.next = null;
+        node.linked = false;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[controls=%d,streams=%d,entries=%d]",
+            getClass().getSimpleName(),
+            hashCode(),
+            controls.size(),
+            nodes.size(),
+            size);
+    }
+
+    private static class Node
+    {
+        private final Deque<HTTP2Flusher.Entry> entries = new ArrayDeque<>();
+        private final IStream stream;
+        private HTTP2Flusher.Entry polled;
+        private boolean linked;
+        private int urgency;
+        private boolean incremental;
+        private Node prev;
+        private Node next;
+
+        private Node(IStream stream)
+        {
+            this.stream = stream;
+        }
+    }
+}
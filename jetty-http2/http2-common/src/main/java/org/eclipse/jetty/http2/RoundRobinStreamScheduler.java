@@ -0,0 +1,32 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+/**
+ * <p>The default {@link StreamScheduler}, that ignores the priority signals
+ * and serves the DATA frames of all the streams in round-robin, one frame each,
+ * after the control frames.</p>
+ * <p>Use {@link PriorityStreamScheduler} to schedule the streams according
+ * to their priority signals.</p>
+ */
+public class RoundRobinStreamScheduler extends PriorityStreamScheduler
+{
+    private static final StreamPriority PRIORITY = StreamPriority.of(StreamPriority.DEFAULT_URGENCY, true);
+
+    @Override
+    protected StreamPriority getPriority(IStream stream)
+    {
+        return PRIORITY;
+    }
+}
@@ -0,0 +1,154 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.MetaData;
+
+/**
+ * <p>The priority of a stream, as defined by
+ * <a href="https://www.rfc-editor.org/rfc/rfc9218.html">RFC 9218</a>.</p>
+ * <p>The priority has an urgency, from {@code 0} (most urgent) to {@code 7}
+ * (least urgent), and an incremental flag that tells whether the response
+ * content can be processed incrementally by the client, and therefore can be
+ * interleaved with the content of other incremental responses.</p>
+ * <p>The priority of a stream is signalled by the client with the {@code priority}
+ * request header and with PRIORITY_UPDATE frames.</p>
+ */
+public final class StreamPriority
+{
+    public static final String HEADER_NAME = "priority";
+    public static final int MIN_URGENCY = 0;
+    public static final int MAX_URGENCY = 7;
+    public static final int DEFAULT_URGENCY = 3;
+
+    private static final StreamPriority[] PRIORITIES = new StreamPriority[2 * (MAX_URGENCY + 1)];
+
+    static
+    {
+        for (int urgency = MIN_URGENCY; urgency <= MAX_URGENCY; ++urgency)
+        {
+            PRIORITIES[2 * urgency] = new StreamPriority(urgency, false);
+            PRIORITIES[2 * urgency + 1] = new StreamPriority(urgency, true);
+        }
+    }
+
+    public static final StreamPriority DEFAULT = of(DEFAULT_URGENCY, false);
+
+    /**
+     * @param urgency the urgency, from {@code 0} to {@code 7}
+     * @param incremental whether the response content is incremental
+     * @return the priority with the given urgency and incremental flag
+     */
+    public static StreamPriority of(int urgency, boolean incremental)
+    {
+        if (urgency < MIN_URGENCY || urgency > MAX_URGENCY)
+            throw new IllegalArgumentException("Invalid urgency: " + urgency);
+        return PRIORITIES[2 * urgency + (incremental ? 1 : 0)];
+    }
+
+    /**
+     * @param request the request metadata, may be null
+     * @return the priority carried by the {@code priority} header of the given request,
+     * or {@link #DEFAULT} if the request has no such header
+     */
+    public static StreamPriority from(MetaData.Request request)
+    {
+        if (request == null)
+            return DEFAULT;
+        HttpFields fields = request.getFields();
+        if (fields == null)
+            return DEFAULT;
+        return parse(fields.get(HEADER_NAME));
+    }
+
+    /**
+     * <p>Parses a {@code priority} field value, for example {@code u=1, i}.</p>
+     * <p>As required by the specification, unknown parameters and parameters
+     * with invalid values are ignored, and absent parameters take their
+     * default values.</p>
+     *
+     * @param value the priority field value, may be null
+     * @return the priority corresponding to the given value
+     */
+    public static StreamPriority parse(String value)
+    {
+        if (value == null || value.isEmpty())
+            return DEFAULT;
+
+        int urgency = DEFAULT_URGENCY;
+        boolean incremental = false;
+        int length = value.length();
+        int start = 0;
+        while (start < length)
+        {
+            int end = value.indexOf(',', start);
+            if (end < 0)
+                end = length;
+            // Parameters of dictionary members, after ';', are ignored.
+            int params = value.indexOf(';', start);
+            int memberEnd = params >= 0 && params < end ? params : end;
+            String member = value.substring(start, memberEnd).trim();
+            int equal = member.indexOf('=');
+            String key = equal < 0 ? member : member.substring(0, equal).trim();
+            String item = equal < 0 ? null : member.substring(equal + 1).trim();
+            if ("u".equals(key))
+            {
+                if (item != null && item.length() == 1)
+                {
+                    int digit = item.charAt(0) - '0';
+                    if (digit >= MIN_URGENCY && digit <= MAX_URGENCY)
+                        urgency = digit;
+                }
+            }
+            else if ("i".equals(key))
+            {
+                if (item == null || "?1".equals(item))
+                    incremental = true;
+                else if ("?0".equals(item))
+                    incremental = false;
+            }
+            start = end + 1;
+        }
+        return of(urgency, incremental);
+    }
+
+    private final int urgency;
+    private final boolean incremental;
+
+    private StreamPriority(int urgency, boolean incremental)
+    {
+        this.urgency = urgency;
+        this.incremental = incremental;
+    }
+
+    public int getUrgency()
+    {
+        return urgency;
+    }
+
+    public boolean isIncremental()
+    {
+        return incremental;
+    }
+
+    /**
+     * @return this priority as a {@code priority} field value
+     */
+    @Override
+    public String toString()
+    {
+        return incremental ? "u=" + urgency + ", i" : "u=" + urgency;
+    }
+}
@@ -0,0 +1,100 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Collection;
+
+/**
+ * <p>Decides the order in which {@link HTTP2Flusher} generates the frames of the streams
+ * of a session, for example to send the responses of urgent streams before the
+ * responses of less urgent streams.</p>
+ * <p>The flusher {@link #offer(HTTP2Flusher.Entry) offers} the entries to send,
+ * and then {@link #poll(boolean) polls} them one by one to generate one frame at a time.
+ * An entry that has more frames to generate is {@link #reschedule(HTTP2Flusher.Entry)
+ * rescheduled}, an entry that could not generate a frame because it was stalled by
+ * flow control is {@link #requeue(HTTP2Flusher.Entry) requeued} once the flusher is
+ * done polling the other entries, otherwise the entry is
+ * {@link #complete(HTTP2Flusher.Entry) completed}.</p>
+ * <p>Implementations must preserve the order of the frames of the same stream, and are
+ * only invoked by the flusher, so that they do not need to be thread-safe.</p>
+ */
+public interface StreamScheduler
+{
+    /**
+     * @param entry a new entry to schedule
+     */
+    public void offer(HTTP2Flusher.Entry entry);
+
+    /**
+     * @param data whether entries of DATA frames may be returned, false when the
+     * session flow control window is exhausted and only control frames, and DATA frames
+     * without data, can be generated
+     * @return the next entry to generate a frame for, or null if there are no such entries
+     */
+    public HTTP2Flusher.Entry poll(boolean data);
+
+    /**
+     * @param entry an entry previously returned by {@link #poll(boolean)} that has more frames to generate
+     */
+    public void reschedule(HTTP2Flusher.Entry entry);
+
+    /**
+     * <p>Puts back an entry previously returned by {@link #poll(boolean)} that could not generate
+     * a frame, so that it does not lose its turn with respect to the entries that were
+     * polled after it.</p>
+     *
+     * @param entry an entry previously returned by {@link #poll(boolean)} that was stalled by flow control
+     */
+    public void requeue(HTTP2Flusher.Entry entry);
+
+    /**
+     * @param entry an entry previously returned by {@link #poll(boolean)} that has no more frames
+     * to generate, either because it generated its last frame or because it was dropped
+     */
+    public void complete(HTTP2Flusher.Entry entry);
+
+    /**
+     * <p>Notifies that the {@link IStream#getPriority() priority} of the given stream changed.</p>
+     *
+     * @param stream the stream whose priority changed
+     */
+    public default void prioritize(IStream stream)
+    {
+    }
+
+    /**
+     * @return the number of entries scheduled
+     */
+    public int size();
+
+    /**
+     * @return whether there are no entries scheduled
+     */
+    public default boolean isEmpty()
+    {
+        return size() == 0;
+    }
+
+    /**
+     * <p>Removes all the scheduled entries, adding them to the given collection.</p>
+     *
+     * @param entries the collection to add the entries to
+     */
+    public void drainTo(Collection<HTTP2Flusher.Entry> entries);
+
+    public interface Factory
+    {
+        public StreamScheduler newStreamScheduler();
+    }
+}
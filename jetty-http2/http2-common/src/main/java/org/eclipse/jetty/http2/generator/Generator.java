@@ -17,6 +17,7 @@ import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.FrameType;
 import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.HpackEncodingCache;
 import org.eclipse.jetty.http2.hpack.HpackException;
 import org.eclipse.jetty.io.ByteBufferPool;
 
@@ -45,7 +46,7 @@ public class Generator
         headerGenerator = new HeaderGenerator(useDirectByteBuffers);
         hpackEncoder = new HpackEncoder(maxDynamicTableSize);
 
-        this.generators = new FrameGenerator[FrameType.values().length];
+        this.generators = new FrameGenerator[FrameType.PRIORITY_UPDATE.getType() + 1];
         this.generators[FrameType.HEADERS.getType()] = new HeadersGenerator(headerGenerator, hpackEncoder, maxHeaderBlockFragment);
         this.generators[FrameType.PRIORITY.getType()] = new PriorityGenerator(headerGenerator);
         this.generators[FrameType.RST_STREAM.getType()] = new ResetGenerator(headerGenerator);
@@ -57,6 +58,7 @@ public class Generator
         this.generators[FrameType.CONTINUATION.getType()] = null; // Never generated explicitly.
         this.generators[FrameType.PREFACE.getType()] = new PrefaceGenerator();
         this.generators[FrameType.DISCONNECT.getType()] = new NoOpGenerator();
+        this.generators[FrameType.PRIORITY_UPDATE.getType()] = new PriorityUpdateGenerator(headerGenerator);
 
         this.dataGenerator = new DataGenerator(headerGenerator);
     }
@@ -71,6 +73,11 @@ public class Generator
         hpackEncoder.setValidateEncoding(validateEncoding);
     }
 
+    public void setHpackEncodingCache(HpackEncodingCache encodingCache)
+    {
+        hpackEncoder.setEncodingCache(encodingCache);
+    }
+
     public void setHeaderTableSize(int headerTableSize)
     {
         hpackEncoder.setRemoteMaxDynamicTableSize(headerTableSize);
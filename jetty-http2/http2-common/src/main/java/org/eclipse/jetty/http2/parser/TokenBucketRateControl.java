@@ -0,0 +1,273 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.parser;
+
+import java.util.EventListener;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.FrameType;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An implementation of {@link RateControl} that limits the rate of events
+ * with a token bucket per frame type.</p>
+ * <p>Each frame type has its own budget, expressed as a sustained number of
+ * events per second and a burst of events that may exceed it; events whose
+ * frame type has no specific budget, or that are not frames, share a default
+ * budget.</p>
+ * <p>The token buckets are implemented with the generic cell rate algorithm,
+ * so that the state of each bucket is a single {@code long}, updated with
+ * a compare-and-set without allocation.</p>
+ * <p>Events that exceed the rate are counted by the {@link Factory} and
+ * notified to its {@link Listener}s.</p>
+ */
+public class TokenBucketRateControl implements RateControl
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TokenBucketRateControl.class);
+    private static final int DEFAULT_INDEX = FrameType.values().length;
+
+    private final Factory factory;
+    private final EndPoint endPoint;
+    private final long[] intervals;
+    private final long[] tolerances;
+    // The theoretical arrival time of the next event, per budget.
+    private final AtomicLongArray arrivals;
+
+    private TokenBucketRateControl(Factory factory, EndPoint endPoint)
+    {
+        this.factory = factory;
+        this.endPoint = endPoint;
+        this.intervals = factory.intervals.clone();
+        this.tolerances = factory.tolerances.clone();
+        this.arrivals = new AtomicLongArray(intervals.length);
+        long now = System.nanoTime();
+        for (int i = 0; i < intervals.length; ++i)
+        {
+            arrivals.set(i, now);
+        }
+    }
+
+    @Override
+    public boolean onEvent(Object event)
+    {
+        FrameType frameType = event instanceof Frame ? ((Frame)event).getType() : null;
+        int index = frameType == null ? DEFAULT_INDEX : frameType.ordinal();
+        long interval = intervals[index];
+        long tolerance = tolerances[index];
+        long now = System.nanoTime();
+        while (true)
+        {
+            long arrival = arrivals.get(index);
+            long next = (arrival - now > 0 ? arrival : now) + interval;
+            if (next - now > tolerance)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Rate exceeded for {} on {}", event, endPoint);
+                factory.onRateExceeded(endPoint, frameType, index, event);
+                return false;
+            }
+            if (arrivals.compareAndSet(index, arrival, next))
+                return true;
+        }
+    }
+
+    /**
+     * <p>A listener for the events that exceed the rate.</p>
+     */
+    public interface Listener extends EventListener
+    {
+        /**
+         * @param endPoint the EndPoint of the connection that received the event
+         * @param frameType the frame type of the event, or null if the event is not a known frame
+         * @param event the event that exceeded the rate
+         */
+        public void onRateExceeded(EndPoint endPoint, FrameType frameType, Object event);
+    }
+
+    /**
+     * <p>Creates {@link TokenBucketRateControl}s with the configured budgets,
+     * and records the events that exceed them.</p>
+     * <p>The default budgets allow 20 events per second with a burst of 40 events,
+     * for frame types not otherwise configured, and are stricter for
+     * {@link FrameType#SETTINGS SETTINGS} and {@link FrameType#PING PING} frames.</p>
+     */
+    @ManagedObject
+    public static class Factory implements RateControl.Factory
+    {
+        private final long[] intervals = new long[DEFAULT_INDEX + 1];
+        private final long[] tolerances = new long[DEFAULT_INDEX + 1];
+        private final LongAdder[] exceeded = new LongAdder[DEFAULT_INDEX + 1];
+        private final boolean[] specific = new boolean[DEFAULT_INDEX];
+        private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+        public Factory()
+        {
+            for (int i = 0; i < exceeded.length; ++i)
+            {
+                exceeded[i] = new LongAdder();
+            }
+            setDefaultBudget(20, 40);
+            setBudget(FrameType.SETTINGS, 10, 20);
+            setBudget(FrameType.PING, 10, 20);
+        }
+
+        /**
+         * @param frameType the frame type
+         * @param eventsPerSecond the sustained number of events per second
+         * @param burst the number of events that may be received at once
+         */
+        public void setBudget(FrameType frameType, int eventsPerSecond, int burst)
+        {
+            setBudget(frameType.ordinal(), eventsPerSecond, burst);
+            specific[frameType.ordinal()] = true;
+        }
+
+        /**
+         * @param eventsPerSecond the sustained number of events per second
+         * for frame types without a specific budget
+         * @param burst the number of events that may be received at once
+         * for frame types without a specific budget
+         */
+        public void setDefaultBudget(int eventsPerSecond, int burst)
+        {
+            for (int i = 0; i < DEFAULT_INDEX; ++i)
+            {
+                if (!specific[i])
+                    setBudget(i, eventsPerSecond, burst);
+            }
+            setBudget(DEFAULT_INDEX, eventsPerSecond, burst);
+        }
+
+        private void setBudget(int index, int eventsPerSecond, int burst)
+        {
+            if (eventsPerSecond <= 0 || burst <= 0)
+                throw new IllegalArgumentException("Invalid budget " + eventsPerSecond + "/s, burst " + burst);
+            long interval = TimeUnit.SECONDS.toNanos(1) / eventsPerSecond;
+            intervals[index] = interval;
+            tolerances[index] = interval * burst;
+        }
+
+        public int getEventsPerSecond(FrameType frameType)
+        {
+            return (int)(TimeUnit.SECONDS.toNanos(1) / intervals[frameType.ordinal()]);
+        }
+
+        public int getBurst(FrameType frameType)
+        {
+            int index = frameType.ordinal();
+            return (int)(tolerances[index] / intervals[index]);
+        }
+
+        public void addListener(Listener listener)
+        {
+            listeners.add(listener);
+        }
+
+        public void removeListener(Listener listener)
+        {
+            listeners.remove(listener);
+        }
+
+        /**
+         * @param frameType the frame type
+         * @return the number of events of the given frame type that exceeded the rate
+         */
+        public long getExceededEvents(FrameType frameType)
+        {
+            return exceeded[frameType.ordinal()].longValue();
+        }
+
+        @ManagedAttribute("The number of events that exceeded the rate")
+        public long getExceededEvents()
+        {
+            long result = 0;
+            for (LongAdder adder : exceeded)
+            {
+                result += adder.longValue();
+            }
+            return result;
+        }
+
+        @ManagedAttribute("The number of RST_STREAM frames that exceeded the rate")
+        public long getExceededResetEvents()
+        {
+            return getExceededEvents(FrameType.RST_STREAM);
+        }
+
+        @ManagedAttribute("The number of SETTINGS frames that exceeded the rate")
+        public long getExceededSettingsEvents()
+        {
+            return getExceededEvents(FrameType.SETTINGS);
+        }
+
+        @ManagedAttribute("The number of PING frames that exceeded the rate")
+        public long getExceededPingEvents()
+        {
+            return getExceededEvents(FrameType.PING);
+        }
+
+        @ManagedAttribute("The number of empty DATA frames that exceeded the rate")
+        public long getExceededDataEvents()
+        {
+            return getExceededEvents(FrameType.DATA);
+        }
+
+        @ManagedAttribute("The number of CONTINUATION frames that exceeded the rate")
+        public long getExceededContinuationEvents()
+        {
+            return getExceededEvents(FrameType.CONTINUATION);
+        }
+
+        @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+        public void reset()
+        {
+            for (LongAdder adder : exceeded)
+            {
+                adder.reset();
+            }
+        }
+
+        @Override
+        public RateControl newRateControl(EndPoint endPoint)
+        {
+            return new TokenBucketRateControl(this, endPoint);
+        }
+
+        private void onRateExceeded(EndPoint endPoint, FrameType frameType, int index, Object event)
+        {
+            exceeded[index].increment();
+            for (Listener listener : listeners)
+            {
+                try
+                {
+                    listener.onRateExceeded(endPoint, frameType, event);
+                }
+                catch (Throwable x)
+                {
+                    LOG.info("Failure while notifying listener {}", listener, x);
+                }
+            }
+        }
+    }
+}
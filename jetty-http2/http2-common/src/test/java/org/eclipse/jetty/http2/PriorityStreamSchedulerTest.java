@@ -0,0 +1,331 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PriorityStreamSchedulerTest
+{
+    @Test
+    public void testParsePriority()
+    {
+        assertSame(StreamPriority.DEFAULT, StreamPriority.parse(null));
+        assertSame(StreamPriority.DEFAULT, StreamPriority.parse(""));
+        assertSame(StreamPriority.of(1, false), StreamPriority.parse("u=1"));
+        assertSame(StreamPriority.of(3, true), StreamPriority.parse("i"));
+        assertSame(StreamPriority.of(0, true), StreamPriority.parse("u=0, i"));
+        assertSame(StreamPriority.of(5, true), StreamPriority.parse("i=?1,u=5"));
+        assertSame(StreamPriority.of(5, false), StreamPriority.parse("u=5, i=?0"));
+        // Parameters and unknown keys are ignored.
+        assertSame(StreamPriority.of(2, false), StreamPriority.parse("u=2;foo=bar, x=1"));
+        // Invalid values are ignored.
+        assertSame(StreamPriority.of(3, true), StreamPriority.parse("u=8, i"));
+        assertSame(StreamPriority.DEFAULT, StreamPriority.parse("u=-1"));
+        assertSame(StreamPriority.DEFAULT, StreamPriority.parse("u=a, i=1"));
+        assertEquals("u=0, i", StreamPriority.of(0, true).toString());
+    }
+
+    @Test
+    public void testPriorityFromRequest()
+    {
+        HttpFields fields = HttpFields.build().put(StreamPriority.HEADER_NAME, "u=1");
+        MetaData.Request request = new MetaData.Request(HttpMethod.GET.asString(), HttpURI.from("/"), HttpVersion.HTTP_2, fields);
+        assertSame(StreamPriority.of(1, false), new HTTP2Stream(null, 1, request, false).getPriority());
+        assertSame(StreamPriority.DEFAULT, new HTTP2Stream(null, 3, null, false).getPriority());
+    }
+
+    @Test
+    public void testControlFramesBeforeDataFrames()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        IStream stream = newStream(1, StreamPriority.of(0, false));
+        TestEntry data = newData(stream);
+        TestEntry ping = new TestEntry(new PingFrame(false), null);
+        TestEntry window = new TestEntry(new WindowUpdateFrame(0, 1024), null);
+        scheduler.offer(data);
+        scheduler.offer(ping);
+        scheduler.offer(window);
+        assertEquals(3, scheduler.size());
+
+        assertSame(ping, scheduler.poll(true));
+        assertSame(window, scheduler.poll(true));
+        assertSame(data, scheduler.poll(true));
+        scheduler.complete(data);
+        assertNull(scheduler.poll(true));
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testNoDataFramesPolledWhenSessionWindowExhausted()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        TestEntry data = newData(newStream(1, StreamPriority.of(0, false)));
+        TestEntry ping = new TestEntry(new PingFrame(false), null);
+        scheduler.offer(data);
+        scheduler.offer(ping);
+
+        assertSame(ping, scheduler.poll(false));
+        assertNull(scheduler.poll(false));
+        assertEquals(1, scheduler.size());
+        assertSame(data, scheduler.poll(true));
+    }
+
+    @Test
+    public void testEmptyDataFramePolledWhenSessionWindowExhausted()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        IStream stream1 = newStream(1, StreamPriority.DEFAULT);
+        IStream stream3 = newStream(3, StreamPriority.DEFAULT);
+        TestEntry data1 = newData(stream1);
+        TestEntry endStream1 = new TestEntry(new DataFrame(1, BufferUtil.EMPTY_BUFFER, true), stream1);
+        TestEntry endStream3 = new TestEntry(new DataFrame(3, BufferUtil.EMPTY_BUFFER, true), stream3);
+        scheduler.offer(data1);
+        scheduler.offer(endStream1);
+        scheduler.offer(endStream3);
+
+        // The frame without data of the second stream is not subject to flow control,
+        // while the one of the first stream must wait for the DATA frame before it.
+        assertSame(endStream3, scheduler.poll(false));
+        assertNull(scheduler.poll(false));
+        assertSame(data1, scheduler.poll(true));
+        scheduler.complete(data1);
+        assertSame(endStream1, scheduler.poll(false));
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testRoundRobinIgnoresPriority()
+    {
+        RoundRobinStreamScheduler scheduler = new RoundRobinStreamScheduler();
+        TestEntry data1 = newData(newStream(1, StreamPriority.of(5, false)));
+        TestEntry data3 = newData(newStream(3, StreamPriority.of(0, false)));
+        scheduler.offer(data1);
+        scheduler.offer(data3);
+
+        // Streams are served in order, one frame each.
+        assertSame(data1, scheduler.poll(true));
+        scheduler.reschedule(data1);
+        assertSame(data3, scheduler.poll(true));
+        scheduler.complete(data3);
+        assertSame(data1, scheduler.poll(true));
+        scheduler.complete(data1);
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testMostUrgentFirst()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        TestEntry data1 = newData(newStream(1, StreamPriority.of(5, false)));
+        TestEntry data3 = newData(newStream(3, StreamPriority.of(3, true)));
+        TestEntry data5 = newData(newStream(5, StreamPriority.of(1, false)));
+        scheduler.offer(data1);
+        scheduler.offer(data3);
+        scheduler.offer(data5);
+
+        assertEquals(List.of(data5, data3, data1), drain(scheduler));
+    }
+
+    @Test
+    public void testNonIncrementalStreamsServedOneAtATime()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        TestEntry data1 = newData(newStream(1, StreamPriority.DEFAULT));
+        TestEntry data3 = newData(newStream(3, StreamPriority.DEFAULT));
+        scheduler.offer(data1);
+        scheduler.offer(data3);
+
+        // The first stream is served until it has no more frames.
+        assertSame(data1, scheduler.poll(true));
+        scheduler.reschedule(data1);
+        assertSame(data1, scheduler.poll(true));
+        scheduler.complete(data1);
+        assertSame(data3, scheduler.poll(true));
+        scheduler.complete(data3);
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testIncrementalStreamsServedRoundRobin()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        StreamPriority incremental = StreamPriority.of(StreamPriority.DEFAULT_URGENCY, true);
+        TestEntry data1 = newData(newStream(1, incremental));
+        TestEntry data3 = newData(newStream(3, incremental));
+        scheduler.offer(data1);
+        scheduler.offer(data3);
+
+        assertSame(data1, scheduler.poll(true));
+        scheduler.reschedule(data1);
+        assertSame(data3, scheduler.poll(true));
+        scheduler.reschedule(data3);
+        assertSame(data1, scheduler.poll(true));
+        scheduler.complete(data1);
+        assertSame(data3, scheduler.poll(true));
+        scheduler.complete(data3);
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testStalledStreamKeepsItsTurn()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        StreamPriority incremental = StreamPriority.of(StreamPriority.DEFAULT_URGENCY, true);
+        TestEntry data1 = newData(newStream(1, incremental));
+        TestEntry data3 = newData(newStream(3, incremental));
+        scheduler.offer(data1);
+        scheduler.offer(data3);
+
+        // The first stream is stalled by flow control, the second makes progress.
+        assertSame(data1, scheduler.poll(true));
+        assertSame(data3, scheduler.poll(true));
+        scheduler.reschedule(data3);
+        scheduler.requeue(data1);
+
+        assertEquals(List.of(data1, data3), drain(scheduler));
+    }
+
+    @Test
+    public void testFramesOfStreamKeepTheirOrder()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        IStream stream = newStream(1, StreamPriority.DEFAULT);
+        TestEntry data = newData(stream);
+        TestEntry trailers = new TestEntry(new HeadersFrame(1, new MetaData(HttpVersion.HTTP_2, HttpFields.EMPTY), null, true), stream);
+        scheduler.offer(data);
+        scheduler.offer(trailers);
+
+        // The DATA frame is stalled by flow control, the trailers must wait.
+        assertSame(data, scheduler.poll(true));
+        assertNull(scheduler.poll(true));
+        scheduler.requeue(data);
+
+        assertSame(data, scheduler.poll(true));
+        scheduler.complete(data);
+        assertSame(trailers, scheduler.poll(true));
+        scheduler.complete(trailers);
+        assertTrue(scheduler.isEmpty());
+    }
+
+    @Test
+    public void testPrioritize()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        IStream stream1 = newStream(1, StreamPriority.DEFAULT);
+        IStream stream3 = newStream(3, StreamPriority.DEFAULT);
+        TestEntry data1 = newData(stream1);
+        TestEntry data3 = newData(stream3);
+        scheduler.offer(data1);
+        scheduler.offer(data3);
+
+        stream3.setPriority(StreamPriority.of(0, false));
+        scheduler.prioritize(stream3);
+
+        assertEquals(List.of(data3, data1), drain(scheduler));
+    }
+
+    @Test
+    public void testDrainTo()
+    {
+        PriorityStreamScheduler scheduler = new PriorityStreamScheduler();
+        TestEntry ping = new TestEntry(new PingFrame(false), null);
+        TestEntry data = newData(newStream(1, StreamPriority.DEFAULT));
+        scheduler.offer(ping);
+        scheduler.offer(data);
+
+        List<HTTP2Flusher.Entry> entries = new ArrayList<>();
+        scheduler.drainTo(entries);
+        assertEquals(List.of(ping, data), entries);
+        assertTrue(scheduler.isEmpty());
+        assertNull(scheduler.poll(true));
+    }
+
+    private List<HTTP2Flusher.Entry> drain(StreamScheduler scheduler)
+    {
+        List<HTTP2Flusher.Entry> result = new ArrayList<>();
+        HTTP2Flusher.Entry entry;
+        while ((entry = scheduler.poll(true)) != null)
+        {
+            result.add(entry);
+            scheduler.complete(entry);
+        }
+        return result;
+    }
+
+    private IStream newStream(int streamId, StreamPriority priority)
+    {
+        IStream stream = new HTTP2Stream(null, streamId, null, false);
+        stream.setPriority(priority);
+        return stream;
+    }
+
+    private TestEntry newData(IStream stream)
+    {
+        return new TestEntry(new DataFrame(stream.getId(), ByteBuffer.allocate(1), true), stream);
+    }
+
+    private static class TestEntry extends HTTP2Flusher.Entry
+    {
+        private TestEntry(Frame frame, IStream stream)
+        {
+            super(frame, stream, Callback.NOOP);
+        }
+
+        @Override
+        public int getDataBytesRemaining()
+        {
+            return frame instanceof DataFrame ? ((DataFrame)frame).remaining() : 0;
+        }
+
+        @Override
+        public int getFrameBytesGenerated()
+        {
+            return 0;
+        }
+
+        @Override
+        protected boolean generate(ByteBufferPool.Lease lease)
+        {
+            return true;
+        }
+
+        @Override
+        public long onFlushed(long bytes)
+        {
+            return bytes;
+        }
+    }
+}
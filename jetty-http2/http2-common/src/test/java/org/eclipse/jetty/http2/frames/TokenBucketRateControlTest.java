@@ -0,0 +1,144 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.frames;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import org.eclipse.jetty.http2.ErrorCode;
+import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.parser.Parser;
+import org.eclipse.jetty.http2.parser.RateControl;
+import org.eclipse.jetty.http2.parser.TokenBucketRateControl;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.MappedByteBufferPool;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketRateControlTest
+{
+    @Test
+    public void testBudgetsArePerFrameType()
+    {
+        TokenBucketRateControl.Factory factory = new TokenBucketRateControl.Factory();
+        factory.setBudget(FrameType.PING, 1, 4);
+        RateControl rateControl = factory.newRateControl(null);
+
+        PingFrame ping = new PingFrame(false);
+        for (int i = 0; i < 4; ++i)
+        {
+            assertTrue(rateControl.onEvent(ping));
+        }
+        assertFalse(rateControl.onEvent(ping));
+
+        // Other frame types have their own budget.
+        assertTrue(rateControl.onEvent(new SettingsFrame(Map.of(), false)));
+        assertTrue(rateControl.onEvent(new ResetFrame(1, ErrorCode.CANCEL_STREAM_ERROR.code)));
+
+        assertEquals(1, factory.getExceededEvents(FrameType.PING));
+        assertEquals(1, factory.getExceededPingEvents());
+        assertEquals(0, factory.getExceededSettingsEvents());
+        assertEquals(1, factory.getExceededEvents());
+    }
+
+    @Test
+    public void testBucketRefills() throws Exception
+    {
+        TokenBucketRateControl.Factory factory = new TokenBucketRateControl.Factory();
+        factory.setBudget(FrameType.RST_STREAM, 100, 2);
+        RateControl rateControl = factory.newRateControl(null);
+
+        ResetFrame reset = new ResetFrame(1, ErrorCode.CANCEL_STREAM_ERROR.code);
+        assertTrue(rateControl.onEvent(reset));
+        assertTrue(rateControl.onEvent(reset));
+        assertFalse(rateControl.onEvent(reset));
+
+        // A token is added to the bucket every 10 ms.
+        TimeUnit.MILLISECONDS.sleep(15);
+        assertTrue(rateControl.onEvent(reset));
+    }
+
+    @Test
+    public void testDefaultBudget()
+    {
+        TokenBucketRateControl.Factory factory = new TokenBucketRateControl.Factory();
+        factory.setBudget(FrameType.PRIORITY, 1, 8);
+        factory.setDefaultBudget(1, 2);
+        assertEquals(2, factory.getBurst(FrameType.RST_STREAM));
+        assertEquals(8, factory.getBurst(FrameType.PRIORITY));
+
+        // Unknown frames have the default budget.
+        RateControl rateControl = factory.newRateControl(null);
+        UnknownFrame unknown = new UnknownFrame(64);
+        assertTrue(rateControl.onEvent(unknown));
+        assertTrue(rateControl.onEvent(unknown));
+        assertFalse(rateControl.onEvent(unknown));
+        assertEquals(1, factory.getExceededEvents());
+    }
+
+    @Test
+    public void testRapidResetFloodIsReported() throws Exception
+    {
+        TokenBucketRateControl.Factory factory = new TokenBucketRateControl.Factory();
+        factory.setBudget(FrameType.RST_STREAM, 10, 16);
+        List<FrameType> exceeded = new CopyOnWriteArrayList<>();
+        factory.addListener((endPoint, frameType, event) -> exceeded.add(frameType));
+
+        AtomicInteger failure = new AtomicInteger();
+        AtomicInteger resets = new AtomicInteger();
+        ByteBufferPool byteBufferPool = new MappedByteBufferPool();
+        Parser parser = new Parser(byteBufferPool, new Parser.Listener.Adapter()
+        {
+            @Override
+            public void onReset(ResetFrame frame)
+            {
+                resets.incrementAndGet();
+            }
+
+            @Override
+            public void onConnectionFailure(int error, String reason)
+            {
+                failure.set(error);
+            }
+        }, 4096, 8192, factory.newRateControl(null));
+        parser.init(UnaryOperator.identity());
+
+        Generator generator = new Generator(byteBufferPool);
+        for (int streamId = 1; failure.get() == 0 && streamId < 1024; streamId += 2)
+        {
+            ByteBufferPool.Lease lease = new ByteBufferPool.Lease(byteBufferPool);
+            generator.control(lease, new ResetFrame(streamId, ErrorCode.CANCEL_STREAM_ERROR.code));
+            for (ByteBuffer buffer : lease.getByteBuffers())
+            {
+                while (buffer.hasRemaining())
+                {
+                    parser.parse(buffer);
+                }
+            }
+            lease.recycle();
+        }
+
+        assertEquals(ErrorCode.ENHANCE_YOUR_CALM_ERROR.code, failure.get());
+        assertEquals(16, resets.get());
+        assertEquals(List.of(FrameType.RST_STREAM), exceeded);
+    }
+}
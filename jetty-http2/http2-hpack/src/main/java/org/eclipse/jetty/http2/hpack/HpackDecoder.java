@@ -37,6 +37,7 @@ public class HpackDecoder
     private final HpackContext _context;
     private final MetaDataBuilder _builder;
     private int _localMaxDynamicTableSize;
+    private FieldCache _fieldCache;
 
     /**
      * @param localMaxDynamicTableSize The maximum allowed size of the local dynamic header field table.
@@ -59,6 +60,27 @@ public class HpackDecoder
         _localMaxDynamicTableSize = localMaxdynamciTableSize;
     }
 
+    public int getFieldCacheSize()
+    {
+        return _fieldCache == null ? 0 : _fieldCache.size();
+    }
+
+    /**
+     * <p>Sets the size of the cache of the fields decoded from literals.</p>
+     * <p>Fields that the peer sends as literals, such as those that are not
+     * indexed or that have been evicted from the dynamic table, are typically
+     * repeated in every request of a connection. When the cache is enabled, a
+     * literal that has already been seen twice is matched against its encoded
+     * bytes and the same {@link HttpField} instance is returned, without
+     * decoding the literal into a new {@code String}.</p>
+     *
+     * @param size the number of fields cached, rounded up to a power of 2, or 0 to disable the cache
+     */
+    public void setFieldCacheSize(int size)
+    {
+        _fieldCache = size > 0 ? new FieldCache(size) : null;
+    }
+
     public MetaData decode(ByteBuffer buffer) throws HpackException.SessionException, HpackException.StreamException
     {
         if (LOG.isDebugEnabled())
@@ -203,46 +225,31 @@ public class HpackDecoder
                 boolean huffmanValue = (buffer.get() & 0x80) == 0x80;
                 int length = NBitInteger.decode(buffer, 7);
                 _builder.checkSize(length, huffmanValue);
-                if (huffmanValue)
-                    value = Huffman.decode(buffer, length);
-                else
-                    value = toASCIIString(buffer, length);
 
-                // Make the new field
-                HttpField field;
-                if (header == null)
+                // Look for a field previously decoded from the same bytes.
+                FieldCache fieldCache = _fieldCache;
+                int hash = 0;
+                int position = buffer.position();
+                HttpField field = null;
+                if (fieldCache != null)
                 {
-                    // just make a normal field and bypass header name lookup
-                    field = new HttpField(null, name, value);
+                    hash = fieldCache.hash(name, huffmanValue, indexed, buffer, length);
+                    field = fieldCache.get(hash, name, huffmanValue, indexed, buffer, length);
+                }
+
+                if (field != null)
+                {
+                    buffer.position(position + length);
                 }
                 else
                 {
-                    // might be worthwhile to create a value HttpField if it is indexed
-                    // and/or of a type that may be looked up multiple times.
-                    switch (header)
-                    {
-                        case C_STATUS:
-                            if (indexed)
-                                field = new HttpField.IntValueHttpField(header, name, value);
-                            else
-                                field = new HttpField(header, name, value);
-                            break;
-
-                        case C_AUTHORITY:
-                            field = new AuthorityHttpField(value);
-                            break;
-
-                        case CONTENT_LENGTH:
-                            if ("0".equals(value))
-                                field = CONTENT_LENGTH_0;
-                            else
-                                field = new HttpField.LongValueHttpField(header, name, value);
-                            break;
-
-                        default:
-                            field = new HttpField(header, name, value);
-                            break;
-                    }
+                    if (huffmanValue)
+                        value = Huffman.decode(buffer, length);
+                    else
+                        value = toASCIIString(buffer, length);
+                    field = newHttpField(header, name, value, indexed);
+                    if (fieldCache != null)
+                        fieldCache.put(hash, name, huffmanValue, indexed, buffer, position, length, field);
                 }
 
                 if (LOG.isDebugEnabled())
@@ -267,6 +274,46 @@ public class HpackDecoder
         return _builder.build();
     }
 
+    private static HttpField newHttpField(HttpHeader header, String name, String value, boolean indexed)
+    {
+        HttpField field;
+        if (header == null)
+        {
+            // just make a normal field and bypass header name lookup
+            field = new HttpField(null, name, value);
+        }
+        else
+        {
+            // might be worthwhile to create a value HttpField if it is indexed
+            // and/or of a type that may be looked up multiple times.
+            switch (header)
+            {
+                case C_STATUS:
+                    if (indexed)
+                        field = new HttpField.IntValueHttpField(header, name, value);
+                    else
+                        field = new HttpField(header, name, value);
+                    break;
+
+                case C_AUTHORITY:
+                    field = new AuthorityHttpField(value);
+                    break;
+
+                case CONTENT_LENGTH:
+                    if ("0".equals(value))
+                        field = CONTENT_LENGTH_0;
+                    else
+                        field = new HttpField.LongValueHttpField(header, name, value);
+                    break;
+
+                default:
+                    field = new HttpField(header, name, value);
+                    break;
+            }
+        }
+        return field;
+    }
+
     public static String toASCIIString(ByteBuffer buffer, int length)
     {
         StringBuilder builder = new StringBuilder(length);
@@ -282,4 +329,94 @@ public class HpackDecoder
     {
         return String.format("HpackDecoder@%x{%s}", hashCode(), _context);
     }
+
+    /**
+     * <p>A direct mapped cache of fields, indexed by the hash of the field
+     * name and of the encoded bytes of the field value.</p>
+     * <p>A field is cached only when its hash is seen for the second time,
+     * so that values that are never repeated, such as those of
+     * {@code :path} or {@code content-length}, do not allocate cache entries.</p>
+     */
+    private static class FieldCache
+    {
+        private final Slot[] _slots;
+        private final int[] _seen;
+        private final int _mask;
+
+        private FieldCache(int size)
+        {
+            int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+            _slots = new Slot[capacity];
+            _seen = new int[capacity];
+            _mask = capacity - 1;
+        }
+
+        private int size()
+        {
+            return _slots.length;
+        }
+
+        private int hash(String name, boolean huffman, boolean indexed, ByteBuffer buffer, int length)
+        {
+            int hash = 31 * name.hashCode() + (huffman ? 2 : 0) + (indexed ? 1 : 0);
+            int position = buffer.position();
+            for (int i = 0; i < length; ++i)
+            {
+                hash = 31 * hash + buffer.get(position + i);
+            }
+            // Spread the high bits, as the index only uses the low ones.
+            return hash ^ (hash >>> 16);
+        }
+
+        private HttpField get(int hash, String name, boolean huffman, boolean indexed, ByteBuffer buffer, int length)
+        {
+            Slot slot = _slots[hash & _mask];
+            if (slot == null || slot._hash != hash || slot._huffman != huffman || slot._indexed != indexed ||
+                slot._value.length != length || !slot._name.equals(name))
+                return null;
+            int position = buffer.position();
+            for (int i = 0; i < length; ++i)
+            {
+                if (slot._value[i] != buffer.get(position + i))
+                    return null;
+            }
+            return slot._field;
+        }
+
+        private void put(int hash, String name, boolean huffman, boolean indexed, ByteBuffer buffer, int position, int length, HttpField field)
+        {
+            int index = hash & _mask;
+            if (_seen[index] != hash)
+            {
+                _seen[index] = hash;
+                return;
+            }
+            byte[] value = new byte[length];
+            for (int i = 0; i < length; ++i)
+            {
+                value[i] = buffer.get(position + i);
+            }
+            _slots[index] = new Slot(hash, name, huffman, indexed, value, field);
+        }
+    }
+
+    private static class Slot
+    {
+        private final int _hash;
+        private final String _name;
+        private final boolean _huffman;
+        private final boolean _indexed;
+        private final byte[] _value;
+        private final HttpField _field;
+
+        private Slot(int hash, String name, boolean huffman, boolean indexed, byte[] value, HttpField field)
+        {
+            _hash = hash;
+            _name = name;
+            _huffman = huffman;
+            _indexed = indexed;
+            _value = value;
+            _field = field;
+        }
+    }
 }
@@ -97,6 +97,7 @@ public class HpackEncoder
     private int _maxHeaderListSize;
     private int _headerListSize;
     private boolean _validateEncoding = true;
+    private HpackEncodingCache _encodingCache;
 
     public HpackEncoder()
     {
@@ -157,6 +158,19 @@ public class HpackEncoder
         _validateEncoding = validateEncoding;
     }
 
+    public HpackEncodingCache getEncodingCache()
+    {
+        return _encodingCache;
+    }
+
+    /**
+     * @param encodingCache the cache of encoded literals, possibly shared with other encoders, or null for no cache
+     */
+    public void setEncodingCache(HpackEncodingCache encodingCache)
+    {
+        _encodingCache = encodingCache;
+    }
+
     public void encode(ByteBuffer buffer, MetaData metadata) throws HpackException
     {
         try
@@ -412,7 +426,7 @@ public class HpackEncoder
                     indexed = true;
                     boolean huffman = !DO_NOT_HUFFMAN.contains(header);
                     encodeName(buffer, (byte)0x40, 6, header.asString(), name);
-                    encodeValue(buffer, huffman, field.getValue());
+                    encodeIndexedValue(buffer, huffman, field.getValue());
                     if (_debug)
                         encoding = ((name == null) ? "LitHuffN" : ("LitIdxN" + (name.isStatic() ? "S" : "") + (1 + NBitInteger.octectsNeeded(6, _context.index(name))))) +
                             (huffman ? "HuffVIdx" : "LitVIdx");
@@ -438,6 +452,12 @@ public class HpackEncoder
         {
             // leave name index bits as 0
             // Encode the name always with lowercase huffman
+            byte[] encoded = _encodingCache == null ? null : _encodingCache.getEncodedName(name);
+            if (encoded != null)
+            {
+                buffer.put(encoded);
+                return;
+            }
             buffer.put((byte)0x80);
             NBitInteger.encode(buffer, 7, Huffman.octetsNeededLC(name));
             Huffman.encodeLC(buffer, name);
@@ -448,6 +468,17 @@ public class HpackEncoder
         }
     }
 
+    private void encodeIndexedValue(ByteBuffer buffer, boolean huffman, String value)
+    {
+        // Values added to the dynamic table are likely to be repeated
+        // by other connections, so their encoding can be shared.
+        byte[] encoded = huffman && _encodingCache != null ? _encodingCache.getEncodedValue(value) : null;
+        if (encoded != null)
+            buffer.put(encoded);
+        else
+            encodeValue(buffer, huffman, value);
+    }
+
     static void encodeValue(ByteBuffer buffer, boolean huffman, String value)
     {
         if (huffman)
@@ -0,0 +1,158 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>A bounded cache of HPACK encoded literal names and values that can
+ * be shared by the {@link HpackEncoder}s of many connections.</p>
+ * <p>The encoding of a literal is independent of the connection state,
+ * so the Huffman encoding of response header values that are repeated
+ * across connections, such as those of the {@code Server}, {@code Content-Type}
+ * and {@code Cache-Control} headers, is performed once and then copied.
+ * The dynamic table of each connection is updated as before, so the
+ * encoded bytes are identical to those produced without a cache.</p>
+ * <p>Only names and values that are added to the dynamic table are cached,
+ * as they are expected to be repeated; values of sensitive headers and of
+ * headers whose values change, such as {@code Content-Length}, are never cached.</p>
+ * <p>When a cache reaches {@link #getMaxEntries()} entries it is cleared,
+ * so that a peer cannot grow it without bounds, and values that are not
+ * repeated do not prevent the caching of those that are.</p>
+ */
+public class HpackEncodingCache
+{
+    private final Map<String, byte[]> names = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> values = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final int maxEntries;
+    private final int maxLength;
+
+    public HpackEncodingCache()
+    {
+        this(1024, 256);
+    }
+
+    /**
+     * @param maxEntries the max number of names and the max number of values cached
+     * @param maxLength the max length of the names and values cached
+     */
+    public HpackEncodingCache(int maxEntries, int maxLength)
+    {
+        this.maxEntries = maxEntries;
+        this.maxLength = maxLength;
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    public int getMaxLength()
+    {
+        return maxLength;
+    }
+
+    public int getSize()
+    {
+        return names.size() + values.size();
+    }
+
+    public long getHits()
+    {
+        return hits.longValue();
+    }
+
+    public long getMisses()
+    {
+        return misses.longValue();
+    }
+
+    public void clear()
+    {
+        names.clear();
+        values.clear();
+    }
+
+    /**
+     * @param name the header name
+     * @return the Huffman encoded literal of the lower case name, with its length prefix,
+     * or null if the name cannot be cached
+     */
+    public byte[] getEncodedName(String name)
+    {
+        byte[] encoded = names.get(name);
+        if (encoded != null)
+        {
+            hits.increment();
+            return encoded;
+        }
+        if (name.length() > maxLength)
+            return null;
+        int needed = Huffman.octetsNeededLC(name);
+        if (needed < 0)
+            return null;
+        misses.increment();
+        ByteBuffer buffer = ByteBuffer.allocate(needed + 6);
+        buffer.put((byte)0x80);
+        NBitInteger.encode(buffer, 7, needed);
+        Huffman.encodeLC(buffer, name);
+        return cache(names, name, buffer);
+    }
+
+    /**
+     * @param value the header value
+     * @return the Huffman encoded literal of the value, with its length prefix,
+     * or null if the value cannot be cached
+     */
+    public byte[] getEncodedValue(String value)
+    {
+        byte[] encoded = values.get(value);
+        if (encoded != null)
+        {
+            hits.increment();
+            return encoded;
+        }
+        if (value.length() > maxLength)
+            return null;
+        int needed = Huffman.octetsNeeded(value);
+        if (needed < 0)
+            return null;
+        misses.increment();
+        ByteBuffer buffer = ByteBuffer.allocate(needed + 6);
+        HpackEncoder.encodeValue(buffer, true, value);
+        return cache(values, value, buffer);
+    }
+
+    private byte[] cache(Map<String, byte[]> map, String key, ByteBuffer buffer)
+    {
+        byte[] encoded = Arrays.copyOf(buffer.array(), buffer.position());
+        if (map.size() >= maxEntries)
+            map.clear();
+        map.put(key, encoded);
+        return encoded;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[names=%d,values=%d,max=%d,hits=%d,misses=%d]",
+            getClass().getSimpleName(), hashCode(), names.size(), values.size(), maxEntries, getHits(), getMisses());
+    }
+}
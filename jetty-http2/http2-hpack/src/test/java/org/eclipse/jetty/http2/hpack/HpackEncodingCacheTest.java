@@ -0,0 +1,114 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class HpackEncodingCacheTest
+{
+    private static MetaData.Response newResponse(String contentLength)
+    {
+        HttpFields fields = HttpFields.build()
+            .add(HttpHeader.SERVER, "jetty")
+            .add(HttpHeader.CONTENT_TYPE, "text/html;charset=utf-8")
+            .add(HttpHeader.CACHE_CONTROL, "max-age=3600, public")
+            .add(HttpHeader.CONTENT_LENGTH, contentLength)
+            .add(HttpHeader.SET_COOKIE, "id=1234567890")
+            .add("x-custom", "custom-value");
+        return new MetaData.Response(HttpVersion.HTTP_2, 200, fields);
+    }
+
+    private static ByteBuffer encode(HpackEncoder encoder, MetaData metaData) throws Exception
+    {
+        ByteBuffer buffer = BufferUtil.allocate(4096);
+        int pos = BufferUtil.flipToFill(buffer);
+        encoder.encode(buffer, metaData);
+        BufferUtil.flipToFlush(buffer, pos);
+        return buffer;
+    }
+
+    @Test
+    public void testEncodingIsIdenticalWithSharedCache() throws Exception
+    {
+        HpackEncodingCache cache = new HpackEncodingCache();
+        HpackEncoder encoder = new HpackEncoder();
+        HpackEncoder cached = new HpackEncoder();
+        cached.setEncodingCache(cache);
+
+        // Repeated responses on the same connection use the dynamic table.
+        for (int i = 0; i < 3; i++)
+        {
+            MetaData.Response response = newResponse(String.valueOf(1000 + i));
+            assertEquals(encode(encoder, response), encode(cached, response));
+        }
+
+        // A new connection only copies the cached literals.
+        long misses = cache.getMisses();
+        long hits = cache.getHits();
+        HpackEncoder other = new HpackEncoder();
+        other.setEncodingCache(cache);
+        MetaData.Response response = newResponse("2000");
+        ByteBuffer encoded = encode(other, response);
+        assertEquals(encode(new HpackEncoder(), response), encoded);
+        assertEquals(misses, cache.getMisses());
+        assertThat(cache.getHits(), greaterThan(hits));
+
+        HpackDecoder decoder = new HpackDecoder(4096, 8192);
+        MetaData.Response decoded = (MetaData.Response)decoder.decode(encoded);
+        assertEquals("jetty", decoded.getFields().get(HttpHeader.SERVER));
+        assertEquals("max-age=3600, public", decoded.getFields().get(HttpHeader.CACHE_CONTROL));
+        assertEquals("id=1234567890", decoded.getFields().get(HttpHeader.SET_COOKIE));
+        assertEquals("custom-value", decoded.getFields().get("x-custom"));
+        assertEquals("2000", decoded.getFields().get(HttpHeader.CONTENT_LENGTH));
+    }
+
+    @Test
+    public void testChangingAndSensitiveValuesAreNotCached() throws Exception
+    {
+        HpackEncodingCache cache = new HpackEncodingCache();
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.setEncodingCache(cache);
+        encode(encoder, newResponse("1024"));
+
+        // Only the Server, Content-Type and Cache-Control values,
+        // and the custom header name have been cached.
+        assertEquals(4, cache.getSize());
+        assertEquals(4, cache.getMisses());
+    }
+
+    @Test
+    public void testCacheIsBounded()
+    {
+        HpackEncodingCache cache = new HpackEncodingCache(8, 16);
+        for (int i = 0; i < 100; i++)
+        {
+            cache.getEncodedValue("value-" + i);
+            assertThat(cache.getSize(), lessThanOrEqualTo(8));
+        }
+        assertNull(cache.getEncodedValue("a value longer than the max length"));
+    }
+}
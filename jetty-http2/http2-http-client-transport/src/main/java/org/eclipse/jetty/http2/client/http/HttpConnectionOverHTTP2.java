@@ -32,6 +32,7 @@ import org.eclipse.jetty.client.HttpExchange;
 import org.eclipse.jetty.client.HttpRequest;
 import org.eclipse.jetty.client.HttpResponse;
 import org.eclipse.jetty.client.HttpUpgrader;
+import org.eclipse.jetty.client.LeastLoadedConnectionPool;
 import org.eclipse.jetty.client.SendFailure;
 import org.eclipse.jetty.http.HttpURI;
 import org.eclipse.jetty.http.HttpVersion;
@@ -46,7 +47,7 @@ import org.eclipse.jetty.util.thread.Sweeper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.Sweepable
+public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.Sweepable, LeastLoadedConnectionPool.Loadable
 {
     private static final Logger LOG = LoggerFactory.getLogger(HttpConnection.class);
 
@@ -236,6 +237,36 @@ public class HttpConnectionOverHTTP2 extends HttpConnection implements Sweeper.S
         }
     }
 
+    @Override
+    public int getActiveRequestCount()
+    {
+        return activeChannels.size();
+    }
+
+    @Override
+    public int getMaxConcurrentRequests()
+    {
+        if (session instanceof HTTP2Session)
+            return ((HTTP2Session)session).getMaxLocalStreams();
+        return -1;
+    }
+
+    @Override
+    public int getSendWindow()
+    {
+        if (session instanceof HTTP2Session)
+            return ((HTTP2Session)session).getSendWindow();
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean isClosing()
+    {
+        // The session is closed as soon as a GOAWAY is received,
+        // while this connection is closed when the session is.
+        return session.isClosed() && !isClosed();
+    }
+
     @Override
     public boolean sweep()
     {
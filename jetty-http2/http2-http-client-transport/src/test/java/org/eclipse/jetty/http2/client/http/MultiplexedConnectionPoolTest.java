@@ -13,11 +13,16 @@
 
 package org.eclipse.jetty.http2.client.http;
 
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -25,6 +30,7 @@ import javax.servlet.http.HttpServletResponse;
 import org.eclipse.jetty.client.ConnectionPool;
 import org.eclipse.jetty.client.HttpClient;
 import org.eclipse.jetty.client.HttpClientTransport;
+import org.eclipse.jetty.client.LeastLoadedConnectionPool;
 import org.eclipse.jetty.client.MultiplexConnectionPool;
 import org.eclipse.jetty.client.api.Connection;
 import org.eclipse.jetty.client.api.ContentResponse;
@@ -42,6 +48,7 @@ import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 // Sibling of ConnectionPoolTest, but using H2 to multiplex connections.
@@ -284,6 +291,150 @@ public class MultiplexedConnectionPoolTest
         assertThat(poolRemoveCounter.get(), is(3));
     }
 
+    @Test
+    public void testLeastLoadedPoolSpreadsRequestsOverPreCreatedConnections() throws Exception
+    {
+        int minConnections = 2;
+        AtomicReference<LeastLoadedConnectionPool> poolRef = new AtomicReference<>();
+        ConnectionPoolFactory factory = new ConnectionPoolFactory("least-loaded", destination ->
+        {
+            int maxConnections = destination.getHttpClient().getMaxConnectionsPerDestination();
+            LeastLoadedConnectionPool connectionPool = new LeastLoadedConnectionPool(destination, maxConnections, destination);
+            connectionPool.setMinConnections(minConnections);
+            poolRef.set(connectionPool);
+            return connectionPool;
+        });
+
+        Set<Integer> remotePorts = ConcurrentHashMap.newKeySet();
+        Semaphore handlerSignalingSemaphore = new Semaphore(0);
+        Semaphore handlerWaitingSemaphore = new Semaphore(0);
+        startServer(new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws ServletException
+            {
+                if (!target.equals("/block"))
+                    return;
+
+                remotePorts.add(request.getRemotePort());
+                handlerSignalingSemaphore.release();
+
+                try
+                {
+                    handlerWaitingSemaphore.acquire();
+                }
+                catch (Exception e)
+                {
+                    throw new ServletException(e);
+                }
+            }
+        });
+
+        HttpClientTransport transport = new HttpClientTransportOverHTTP2(new HTTP2Client());
+        transport.setConnectionPoolFactory(factory.factory);
+        client = new HttpClient(transport);
+        client.start();
+
+        // The first request starts the pool, which opens the min number of connections.
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertThat(response.getStatus(), is(200));
+        assertTrue(await(() -> poolRef.get().getIdleConnectionCount() == minConnections));
+
+        // The server allows MAX_MULTIPLEX concurrent streams per connection,
+        // but the pool must prefer the connection with less streams in progress.
+        CountDownLatch latch = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++)
+        {
+            client.newRequest("localhost", connector.getLocalPort())
+                .path("/block")
+                .timeout(5, TimeUnit.SECONDS)
+                .send(result ->
+                {
+                    if (result.isSucceeded())
+                        latch.countDown();
+                });
+            assertTrue(handlerSignalingSemaphore.tryAcquire(5, TimeUnit.SECONDS));
+        }
+
+        assertThat(remotePorts.size(), is(2));
+        assertThat(poolRef.get().getConnectionCount(), is(minConnections));
+
+        handlerWaitingSemaphore.release(2);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testLeastLoadedPoolReplacesConnectionNearingMaxUsage() throws Exception
+    {
+        AtomicInteger poolCreateCounter = new AtomicInteger();
+        AtomicReference<LeastLoadedConnectionPool> poolRef = new AtomicReference<>();
+        ConnectionPoolFactory factory = new ConnectionPoolFactory("least-loaded-maxUsage", destination ->
+        {
+            int maxConnections = destination.getHttpClient().getMaxConnectionsPerDestination();
+            LeastLoadedConnectionPool connectionPool = new LeastLoadedConnectionPool(destination, maxConnections, destination)
+            {
+                @Override
+                protected void onCreated(Connection connection)
+                {
+                    poolCreateCounter.incrementAndGet();
+                }
+            };
+            connectionPool.setMaxUsageCount(4);
+            connectionPool.setReplaceUsageRatio(0.5);
+            poolRef.set(connectionPool);
+            return connectionPool;
+        });
+
+        List<Integer> remotePorts = new CopyOnWriteArrayList<>();
+        startServer(new EmptyServerHandler()
+        {
+            @Override
+            protected void service(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response)
+            {
+                remotePorts.add(request.getRemotePort());
+            }
+        });
+
+        HttpClientTransport transport = new HttpClientTransportOverHTTP2(new HTTP2Client());
+        transport.setConnectionPoolFactory(factory.factory);
+        client = new HttpClient(transport);
+        client.start();
+
+        // The 3rd request uses a connection that reached half its
+        // max usage count, so a replacement connection is opened.
+        for (int i = 0; i < 3; i++)
+        {
+            ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+                .timeout(5, TimeUnit.SECONDS)
+                .send();
+            assertThat(response.getStatus(), is(200));
+        }
+        assertTrue(await(() -> poolCreateCounter.get() == 2 && poolRef.get().getIdleConnectionCount() == 2));
+
+        // The 4th request uses the replacement connection.
+        ContentResponse response = client.newRequest("localhost", connector.getLocalPort())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+        assertThat(response.getStatus(), is(200));
+
+        assertThat(remotePorts.get(2), is(remotePorts.get(0)));
+        assertThat(remotePorts.get(3), not(remotePorts.get(0)));
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean())
+        {
+            if (System.nanoTime() > deadline)
+                return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+
     private static class ConnectionPoolFactory
     {
         private final String name;
@@ -27,11 +27,15 @@ import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
 import org.eclipse.jetty.http2.FlowControlStrategy;
 import org.eclipse.jetty.http2.HTTP2Connection;
 import org.eclipse.jetty.http2.ISession;
+import org.eclipse.jetty.http2.PriorityStreamScheduler;
+import org.eclipse.jetty.http2.RoundRobinStreamScheduler;
+import org.eclipse.jetty.http2.StreamScheduler;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.frames.Frame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.hpack.HpackEncodingCache;
 import org.eclipse.jetty.http2.parser.RateControl;
 import org.eclipse.jetty.http2.parser.ServerParser;
 import org.eclipse.jetty.http2.parser.WindowRateControl;
@@ -59,9 +63,12 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private int maxHeaderBlockFragment = 0;
     private int maxFrameLength = Frame.DEFAULT_MAX_LENGTH;
     private int maxSettingsKeys = SettingsFrame.DEFAULT_MAX_KEYS;
+    private int hpackFieldCacheSize;
     private boolean connectProtocolEnabled = true;
     private RateControl.Factory rateControlFactory = new WindowRateControl.Factory(20);
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
+    private StreamScheduler.Factory streamSchedulerFactory = RoundRobinStreamScheduler::new;
+    private HpackEncodingCache hpackEncodingCache = new HpackEncodingCache();
     private long streamIdleTimeout;
     private boolean useInputDirectByteBuffers;
     private boolean useOutputDirectByteBuffers;
@@ -82,6 +89,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         addBean(sessionContainer);
         this.httpConfiguration = Objects.requireNonNull(httpConfiguration);
         addBean(httpConfiguration);
+        addBean(rateControlFactory);
         setInputBufferSize(Frame.DEFAULT_MAX_LENGTH + Frame.HEADER_LENGTH);
         setUseInputDirectByteBuffers(httpConfiguration.isUseInputDirectByteBuffers());
         setUseOutputDirectByteBuffers(httpConfiguration.isUseOutputDirectByteBuffers());
@@ -152,6 +160,21 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.flowControlStrategyFactory = flowControlStrategyFactory;
     }
 
+    public StreamScheduler.Factory getStreamSchedulerFactory()
+    {
+        return streamSchedulerFactory;
+    }
+
+    /**
+     * @param streamSchedulerFactory the factory of the schedulers of the frames of the streams,
+     * by default {@link RoundRobinStreamScheduler}; use {@link PriorityStreamScheduler} to
+     * schedule the streams according to their RFC 9218 priority signals
+     */
+    public void setStreamSchedulerFactory(StreamScheduler.Factory streamSchedulerFactory)
+    {
+        this.streamSchedulerFactory = streamSchedulerFactory;
+    }
+
     @ManagedAttribute("The stream idle timeout in milliseconds")
     public long getStreamIdleTimeout()
     {
@@ -211,7 +234,45 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
      */
     public void setRateControlFactory(RateControl.Factory rateControlFactory)
     {
-        this.rateControlFactory = Objects.requireNonNull(rateControlFactory);
+        updateBean(this.rateControlFactory, Objects.requireNonNull(rateControlFactory));
+        this.rateControlFactory = rateControlFactory;
+    }
+
+    @ManagedAttribute("The size of the per-connection cache of HPACK decoded header literals")
+    public int getHpackFieldCacheSize()
+    {
+        return hpackFieldCacheSize;
+    }
+
+    /**
+     * <p>Sets the size of the per-connection cache of the fields decoded from
+     * HPACK literals, so that the fields repeated in every request of a connection
+     * are decoded once and then reused.</p>
+     *
+     * @param hpackFieldCacheSize the size of the cache, or 0 to disable the cache
+     */
+    public void setHpackFieldCacheSize(int hpackFieldCacheSize)
+    {
+        this.hpackFieldCacheSize = hpackFieldCacheSize;
+    }
+
+    /**
+     * @return the cache of HPACK encoded header literals shared by the connections, or null for no cache
+     */
+    public HpackEncodingCache getHpackEncodingCache()
+    {
+        return hpackEncodingCache;
+    }
+
+    /**
+     * <p>Sets the cache of HPACK encoded header literals shared by the connections
+     * created by this factory; the same cache may be set on many factories.</p>
+     *
+     * @param hpackEncodingCache the cache of HPACK encoded header literals, or null for no cache
+     */
+    public void setHpackEncodingCache(HpackEncodingCache hpackEncodingCache)
+    {
+        this.hpackEncodingCache = hpackEncodingCache;
     }
 
     @ManagedAttribute("Whether to use direct ByteBuffers for reading")
@@ -260,10 +321,12 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         ServerSessionListener listener = newSessionListener(connector, endPoint);
 
         Generator generator = new Generator(connector.getByteBufferPool(), isUseOutputDirectByteBuffers(), getMaxDynamicTableSize(), getMaxHeaderBlockFragment());
+        generator.setHpackEncodingCache(getHpackEncodingCache());
         FlowControlStrategy flowControl = getFlowControlStrategyFactory().newFlowControlStrategy();
         HTTP2ServerSession session = new HTTP2ServerSession(connector.getScheduler(), endPoint, generator, listener, flowControl);
         session.setMaxLocalStreams(getMaxConcurrentStreams());
         session.setMaxRemoteStreams(getMaxConcurrentStreams());
+        session.setStreamScheduler(getStreamSchedulerFactory().newStreamScheduler());
         // For a single stream in a connection, there will be a race between
         // the stream idle timeout and the connection idle timeout. However,
         // the typical case is that the connection will be busier and the
@@ -278,6 +341,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         ServerParser parser = newServerParser(connector, session, getRateControlFactory().newRateControl(endPoint));
         parser.setMaxFrameLength(getMaxFrameLength());
         parser.setMaxSettingsKeys(getMaxSettingsKeys());
+        parser.setHpackFieldCacheSize(getHpackFieldCacheSize());
 
         HTTP2Connection connection = new HTTP2ServerConnection(connector.getByteBufferPool(), connector.getExecutor(),
             endPoint, httpConfiguration, parser, session, getInputBufferSize(), listener);
@@ -13,14 +13,13 @@
 
 package org.eclipse.jetty.session.infinispan;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
 import java.util.Map;
+import java.util.Objects;
 
 import org.eclipse.jetty.server.session.SessionData;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.server.session.JavaSessionDataCodec;
+import org.eclipse.jetty.server.session.SessionDataCodec;
 import org.infinispan.commons.marshall.SerializeWith;
 
 /**
@@ -32,11 +31,19 @@ import org.infinispan.commons.marshall.SerializeWith;
  * thread context classloader. However, infinispan marshalling uses a thread
  * pool and thus these threads have no knowledge of the correct classloader to
  * use.
+ *
+ * The attributes are serialized with the {@link SessionDataCodec} of the
+ * store that created the session data. Session data that is unmarshalled
+ * by infinispan uses a {@link JavaSessionDataCodec}, which can also
+ * read attributes written in the binary format.
  */
 @SerializeWith(SessionDataMarshaller.class)
 public class InfinispanSessionData extends SessionData
 {
+    private static final SessionDataCodec DEFAULT_CODEC = new JavaSessionDataCodec();
+
     protected byte[] _serializedAttributes;
+    protected transient SessionDataCodec _sessionDataCodec = DEFAULT_CODEC;
 
     public InfinispanSessionData(String id, String cpath, String vhost, long created, long accessed, long lastAccessed, long maxInactiveMs)
     {
@@ -59,26 +66,28 @@ public class InfinispanSessionData extends SessionData
         _serializedAttributes = serializedAttributes;
     }
 
+    public SessionDataCodec getSessionDataCodec()
+    {
+        // The codec is transient, so it is null if this object was deserialized.
+        return _sessionDataCodec == null ? DEFAULT_CODEC : _sessionDataCodec;
+    }
+
+    public void setSessionDataCodec(SessionDataCodec sessionDataCodec)
+    {
+        _sessionDataCodec = Objects.requireNonNull(sessionDataCodec);
+    }
+
     public void deserializeAttributes() throws ClassNotFoundException, IOException
     {
         if (_serializedAttributes == null)
             return;
 
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(_serializedAttributes);
-             ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais))
-        {
-            SessionData.deserializeAttributes(this, ois);
-            _serializedAttributes = null;
-        }
+        getSessionDataCodec().decode(this, _serializedAttributes);
+        _serializedAttributes = null;
     }
 
     public void serializeAttributes() throws IOException
     {
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos))
-        {
-            SessionData.serializeAttributes(this, oos);
-            _serializedAttributes = baos.toByteArray();
-        }
+        _serializedAttributes = getSessionDataCodec().encode(this);
     }
 }
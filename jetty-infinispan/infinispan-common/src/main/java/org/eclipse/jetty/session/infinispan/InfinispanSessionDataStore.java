@@ -111,6 +111,7 @@ public class InfinispanSessionDataStore extends AbstractSessionDataStore
             {
                 if (LOG.isDebugEnabled())
                     LOG.debug("Deserializing session attributes for {}", id);
+                sd.setSessionDataCodec(_sessionDataCodec);
                 sd.deserializeAttributes();
             }
 
@@ -256,7 +257,9 @@ public class InfinispanSessionDataStore extends AbstractSessionDataStore
     @Override
     public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
     {
-        return new InfinispanSessionData(id, _context.getCanonicalContextPath(), _context.getVhost(), created, accessed, lastAccessed, maxInactiveMs);
+        InfinispanSessionData data = new InfinispanSessionData(id, _context.getCanonicalContextPath(), _context.getVhost(), created, accessed, lastAccessed, maxInactiveMs);
+        data.setSessionDataCodec(_sessionDataCodec);
+        return data;
     }
 
     /**
@@ -52,6 +52,8 @@ public class InfinispanSessionDataStoreFactory extends AbstractSessionDataStoreF
         store.setInfinispanIdleTimeoutSec(getInfinispanIdleTimeoutSec());
         store.setCache(getCache());
         store.setSavePeriodSec(getSavePeriodSec());
+        if (getSessionDataCodec() != null)
+            store.setSessionDataCodec(getSessionDataCodec());
         store.setQueryManager(getQueryManager());
         return store;
     }
@@ -66,9 +66,18 @@ abstract class AbstractByteBufferPool implements ByteBufferPool
         memory.addAndGet(addOrSub ? capacity : -capacity);
     }
 
+    /**
+     * @param direct whether to return the max direct memory or the max heap memory
+     * @return the max memory in bytes, or a non-positive value for no limit
+     */
+    protected long getMaxMemory(boolean direct)
+    {
+        return direct ? _maxDirectMemory : _maxHeapMemory;
+    }
+
     protected void releaseExcessMemory(boolean direct, Consumer<Boolean> clearFn)
     {
-        long maxMemory = direct ? _maxDirectMemory : _maxHeapMemory;
+        long maxMemory = getMaxMemory(direct);
         if (maxMemory > 0)
         {
             while (getMemory(direct) > maxMemory)
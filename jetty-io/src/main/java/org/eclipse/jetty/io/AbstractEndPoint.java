@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -418,6 +419,12 @@ public abstract class AbstractEndPoint extends IdleTimeout implements EndPoint
         _writeFlusher.write(callback, buffers);
     }
 
+    @Override
+    public void write(Callback callback, FileChannel file, long position, long length) throws IllegalStateException
+    {
+        _writeFlusher.write(callback, file, position, length);
+    }
+
     protected abstract void onIncompleteFlush();
 
     protected abstract void needsFillInterest() throws IOException;
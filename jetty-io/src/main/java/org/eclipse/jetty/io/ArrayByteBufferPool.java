@@ -194,6 +194,24 @@ public class ArrayByteBufferPool extends AbstractByteBufferPool
         return (capacity - 1) / getCapacityFactor();
     }
 
+    /**
+     * @param capacity the ByteBuffer capacity
+     * @return the index of the bucket that pools ByteBuffers of the given capacity,
+     * or -1 if ByteBuffers of the given capacity are not pooled
+     */
+    int bucketIndexFor(int capacity)
+    {
+        if (capacity < _minCapacity)
+            return -1;
+        int b = bucketFor(capacity);
+        return b < _direct.length ? b : -1;
+    }
+
+    int getBucketCount()
+    {
+        return _direct.length;
+    }
+
     private ByteBufferPool.Bucket bucketFor(int capacity, boolean direct, IntFunction<Bucket> newBucket)
     {
         if (capacity < _minCapacity)
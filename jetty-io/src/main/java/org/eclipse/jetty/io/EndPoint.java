@@ -18,6 +18,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadPendingException;
 import java.nio.channels.WritePendingException;
 
@@ -100,6 +101,25 @@ public interface EndPoint extends Closeable
         EndPoint unwrap();
     }
 
+    /**
+     * <p>Marks an {@code EndPoint} that receives its input in buffers that it owns,
+     * for example the DATA frames of an HTTP/2 stream, and that can hand them over
+     * to the reader without copying them into the buffer passed to {@link #fill(ByteBuffer)}.</p>
+     */
+    public interface RetainableFill
+    {
+        /**
+         * <p>Returns the next input buffer, that must be released
+         * when its bytes have been consumed.</p>
+         * <p>When {@code null} is returned and {@link EndPoint#isInputShutdown()}
+         * returns {@code true}, the end of the input has been reached.</p>
+         *
+         * @return the next input buffer, or {@code null} if no input is available
+         * @throws IOException if the input failed
+         */
+        RetainableByteBuffer fillRetainable() throws IOException;
+    }
+
     /**
      * @return The local InetSocketAddress to which this {@code EndPoint} is bound, or {@code null}
      * if this {@code EndPoint} is not bound to a Socket address.
@@ -217,6 +237,33 @@ public interface EndPoint extends Closeable
      */
     boolean flush(ByteBuffer... buffer) throws IOException;
 
+    /**
+     * @return whether this endpoint can write file content with {@link #flush(FileChannel, long, long)}
+     * and {@link #write(Callback, FileChannel, long, long)}
+     */
+    default boolean isTransferSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Flushes a range of the given file to this endpoint, without copying the bytes
+     * to user space if the platform allows it.</p>
+     * <p>Like {@link #flush(ByteBuffer...)}, this method does not block and may flush
+     * fewer bytes than requested.</p>
+     *
+     * @param file the file to flush
+     * @param position the position in the file of the first byte to flush
+     * @param length the number of bytes to flush
+     * @return the number of bytes flushed
+     * @throws IOException If the endpoint is closed or output is shutdown.
+     * @throws UnsupportedOperationException if {@link #isTransferSupported()} returns false
+     */
+    default long flush(FileChannel file, long position, long length) throws IOException
+    {
+        throw new UnsupportedOperationException("File transfer not supported");
+    }
+
     /**
      * @return The underlying transport object (socket, channel, etc.)
      */
@@ -273,6 +320,23 @@ public interface EndPoint extends Closeable
      */
     void write(Callback callback, ByteBuffer... buffers) throws WritePendingException;
 
+    /**
+     * <p>Writes a range of the given file via {@link #flush(FileChannel, long, long)} and invokes
+     * callback methods when either all the bytes have been flushed or an error occurs.</p>
+     * <p>The file is not closed when the write completes.</p>
+     *
+     * @param callback the callback to call when an error occurs or the write completed.
+     * @param file the file to write
+     * @param position the position in the file of the first byte to write
+     * @param length the number of bytes to write
+     * @throws WritePendingException if another write operation is concurrent.
+     * @see #isTransferSupported()
+     */
+    default void write(Callback callback, FileChannel file, long position, long length) throws WritePendingException
+    {
+        callback.failed(new UnsupportedOperationException("File transfer not supported"));
+    }
+
     /**
      * @return the {@link Connection} associated with this EndPoint
      * @see #setConnection(Connection)
@@ -49,6 +49,7 @@ import org.eclipse.jetty.util.statistic.SampleStatistic;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.ExecutionStrategy;
 import org.eclipse.jetty.util.thread.Scheduler;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 import org.eclipse.jetty.util.thread.strategy.AdaptiveExecutionStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -116,7 +117,9 @@ public class ManagedSelector extends ContainerLifeCycle implements Dumpable
 
         // The normal strategy obtains the produced task, schedules
         // a new thread to produce more, runs the task and then exits.
-        _selectorManager.execute(_strategy::produce);
+        // The selector blocks in select(), so it must run on a platform thread.
+        VirtualThreadPool.PlatformTask produce = _strategy::produce;
+        _selectorManager.execute(produce);
 
         // Set started only if we really are started
         Start start = new Start();
@@ -67,6 +67,13 @@ public class NetworkTrafficSocketChannelEndPoint extends SocketChannelEndPoint
         return flushed;
     }
 
+    @Override
+    public boolean isTransferSupported()
+    {
+        // Listeners cannot be notified of bytes that are not copied to user space.
+        return listener == null && super.isTransferSupported();
+    }
+
     @Override
     public void onOpen()
     {
@@ -43,6 +43,20 @@ public class RetainableByteBuffer implements Retainable
         this.references = new AtomicInteger(1);
     }
 
+    /**
+     * <p>Wraps a ByteBuffer that has not been acquired from a {@link ByteBufferPool}.</p>
+     * <p>Subclasses must override {@link #released()} to dispose the buffer
+     * when the reference count is decremented to 0.</p>
+     *
+     * @param buffer the buffer to wrap
+     */
+    protected RetainableByteBuffer(ByteBuffer buffer)
+    {
+        this.pool = null;
+        this.buffer = buffer;
+        this.references = new AtomicInteger(1);
+    }
+
     public ByteBuffer getBuffer()
     {
         return buffer;
@@ -70,12 +84,22 @@ public class RetainableByteBuffer implements Retainable
     {
         int ref = references.decrementAndGet();
         if (ref == 0)
-            pool.release(buffer);
+            released();
         else if (ref < 0)
             throw new IllegalStateException("already released " + this);
         return ref;
     }
 
+    /**
+     * <p>Invoked when the reference count is decremented to 0,
+     * by default returns the buffer to the pool it was acquired from.</p>
+     */
+    protected void released()
+    {
+        if (pool != null)
+            pool.release(buffer);
+    }
+
     public int remaining()
     {
         return buffer.remaining();
@@ -19,6 +19,7 @@ import java.net.Socket;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
@@ -297,6 +298,37 @@ public class SocketChannelEndPoint extends AbstractEndPoint implements ManagedSe
         return true;
     }
 
+    @Override
+    public boolean isTransferSupported()
+    {
+        return true;
+    }
+
+    @Override
+    public long flush(FileChannel file, long position, long length) throws IOException
+    {
+        long flushed;
+        try
+        {
+            // The socket channel is non-blocking, so transferTo()
+            // only writes what fits in the socket send buffer.
+            flushed = file.transferTo(position, length, _channel);
+            if (LOG.isDebugEnabled())
+                LOG.debug("transferred {} {}", flushed, this);
+        }
+        catch (IOException e)
+        {
+            throw new EofException(e);
+        }
+
+        if (flushed > 0)
+            notIdle();
+        else if (length > 0 && position >= file.size())
+            throw new IOException("EOF reached before end of file range");
+
+        return flushed;
+    }
+
     public SocketChannel getChannel()
     {
         return _channel;
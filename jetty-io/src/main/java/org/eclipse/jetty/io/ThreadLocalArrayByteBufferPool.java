@@ -0,0 +1,424 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
+
+/**
+ * <p>An {@link ArrayByteBufferPool} that fronts the shared buckets with a small,
+ * per-thread magazine of ByteBuffers for each bucket.</p>
+ * <p>A thread that releases a ByteBuffer stores it in its own magazine, and a
+ * subsequent acquire from the same thread is served from that magazine without
+ * touching the shared buckets.
+ * When a magazine is full, released ByteBuffers spill to the shared buckets;
+ * when a magazine is empty, ByteBuffers are acquired from the shared buckets.</p>
+ * <p>ByteBuffers held in magazines are accounted in the {@link #getDirectMemory() direct}
+ * and {@link #getHeapMemory() heap} memory of this pool.
+ * Each thread accounts the memory of its magazines in plain fields, so acquiring from
+ * and releasing to a magazine do not touch any shared state.
+ * The max memory of this pool that is not used by the shared buckets is split evenly
+ * among the threads that own magazines, and a ByteBuffer is only stored in a magazine
+ * if that does not exceed the share of the releasing thread.</p>
+ * <p>The magazines of threads that have terminated are released to the shared buckets
+ * when a new thread first uses this pool, or when {@link #releaseDroppedMagazines()}
+ * is called.</p>
+ * <p>Virtual threads do not use magazines, since they are typically short-lived.</p>
+ */
+@ManagedObject
+public class ThreadLocalArrayByteBufferPool extends ArrayByteBufferPool
+{
+    private final List<Magazines> _magazines = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Magazines> _threadMagazines = ThreadLocal.withInitial(this::newMagazines);
+    private final LongAdder _droppedHits = new LongAdder();
+    private final LongAdder _droppedMisses = new LongAdder();
+    private final LongAdder _droppedSpills = new LongAdder();
+    private final AtomicInteger _epoch = new AtomicInteger();
+    private final int _magazineSize;
+
+    /**
+     * Creates a new ThreadLocalArrayByteBufferPool with a default configuration.
+     */
+    public ThreadLocalArrayByteBufferPool()
+    {
+        this(-1, -1, -1, -1, -1, -1, -1);
+    }
+
+    /**
+     * Creates a new ThreadLocalArrayByteBufferPool with the given configuration.
+     *
+     * @param minCapacity the minimum ByteBuffer capacity
+     * @param factor the capacity factor
+     * @param maxCapacity the maximum ByteBuffer capacity
+     * @param maxQueueLength the maximum ByteBuffer queue length
+     * @param maxHeapMemory the max heap memory in bytes
+     * @param maxDirectMemory the max direct memory in bytes
+     * @param magazineSize the max number of ByteBuffers held by each thread for each bucket
+     */
+    public ThreadLocalArrayByteBufferPool(int minCapacity, int factor, int maxCapacity, int maxQueueLength, long maxHeapMemory, long maxDirectMemory, int magazineSize)
+    {
+        super(minCapacity, factor, maxCapacity, maxQueueLength, maxHeapMemory, maxDirectMemory);
+        _magazineSize = magazineSize <= 0 ? 8 : magazineSize;
+    }
+
+    @ManagedAttribute("The max number of ByteBuffers held by each thread for each bucket")
+    public int getMagazineSize()
+    {
+        return _magazineSize;
+    }
+
+    @Override
+    public ByteBuffer acquire(int size, boolean direct)
+    {
+        int index = bucketIndexFor(size);
+        if (index >= 0)
+        {
+            Magazines magazines = _threadMagazines.get();
+            if (magazines != null)
+            {
+                ByteBuffer buffer = magazines.acquire(index, direct);
+                if (buffer != null)
+                    return buffer;
+            }
+        }
+        return super.acquire(size, direct);
+    }
+
+    @Override
+    public void release(ByteBuffer buffer)
+    {
+        if (buffer == null)
+            return;
+        int capacity = buffer.capacity();
+        if ((capacity % getCapacityFactor()) == 0)
+        {
+            int index = bucketIndexFor(capacity);
+            if (index >= 0)
+            {
+                Magazines magazines = _threadMagazines.get();
+                if (magazines != null && magazines.release(index, buffer, getMagazineMaxMemory(buffer.isDirect())))
+                    return;
+            }
+        }
+        super.release(buffer);
+    }
+
+    /**
+     * @param direct whether the ByteBuffer is direct
+     * @return the max memory the magazines of a single thread may hold, or a negative value for no limit
+     */
+    private long getMagazineMaxMemory(boolean direct)
+    {
+        long maxMemory = getMaxMemory(direct);
+        if (maxMemory <= 0)
+            return -1;
+        return Math.max(0, maxMemory - super.getMemory(direct)) / Math.max(1, _magazines.size());
+    }
+
+    /**
+     * <p>The memory held by the magazines is written without synchronization
+     * by their owner threads, so the value returned may be slightly out of date.</p>
+     *
+     * @param direct whether to return the direct memory or the heap memory
+     * @return the memory held by the shared buckets and by the magazines
+     */
+    @Override
+    public long getMemory(boolean direct)
+    {
+        long result = super.getMemory(direct);
+        int epoch = _epoch.get();
+        for (Magazines magazines : _magazines)
+        {
+            result += magazines.getMemory(direct, epoch);
+        }
+        return result;
+    }
+
+    @Override
+    protected void releaseExcessMemory(boolean direct, Consumer<Boolean> clearFn)
+    {
+        long maxMemory = getMaxMemory(direct);
+        if (maxMemory > 0)
+        {
+            // Only the shared buckets can be released here,
+            // so stop when they are empty.
+            while (getMemory(direct) > maxMemory && super.getMemory(direct) > 0)
+            {
+                clearFn.accept(direct);
+            }
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        // Magazines are owned by their threads, so they are
+        // not cleared here but lazily when they detect the
+        // epoch change on their next acquire or release.
+        // Until then, their memory is not accounted.
+        _epoch.incrementAndGet();
+        super.clear();
+        releaseDroppedMagazines();
+    }
+
+    /**
+     * <p>Releases to the shared buckets the ByteBuffers held
+     * by the magazines of threads that have terminated.</p>
+     */
+    @ManagedOperation(value = "Releases the magazines of terminated threads", impact = "ACTION")
+    public void releaseDroppedMagazines()
+    {
+        List<Magazines> dropped = new ArrayList<>();
+        for (Magazines magazines : _magazines)
+        {
+            if (!magazines.isOwnerAlive() && _magazines.remove(magazines))
+                dropped.add(magazines);
+        }
+        for (Magazines magazines : dropped)
+        {
+            // The owner thread has terminated, so its
+            // magazines can be safely accessed here.
+            _droppedHits.add(magazines._hits);
+            _droppedMisses.add(magazines._misses);
+            _droppedSpills.add(magazines._spills);
+            magazines.drain(_epoch.get(), super::release);
+        }
+    }
+
+    /**
+     * <p>The counters of the magazines are written without synchronization by
+     * their owner threads, so the value returned may be slightly out of date.</p>
+     *
+     * @return the approximate number of acquires served by the thread local magazines
+     */
+    @ManagedAttribute("The approximate number of acquires served by the thread local magazines")
+    public long getMagazineHits()
+    {
+        long result = _droppedHits.sum();
+        for (Magazines magazines : _magazines)
+        {
+            result += magazines._hits;
+        }
+        return result;
+    }
+
+    /**
+     * @return the approximate number of acquires not served by the thread local magazines
+     * @see #getMagazineHits()
+     */
+    @ManagedAttribute("The approximate number of acquires not served by the thread local magazines")
+    public long getMagazineMisses()
+    {
+        long result = _droppedMisses.sum();
+        for (Magazines magazines : _magazines)
+        {
+            result += magazines._misses;
+        }
+        return result;
+    }
+
+    /**
+     * @return the approximate number of releases that spilled to the shared buckets
+     * @see #getMagazineHits()
+     */
+    @ManagedAttribute("The approximate number of releases that spilled to the shared buckets because the magazine was full or the max memory was reached")
+    public long getMagazineSpills()
+    {
+        long result = _droppedSpills.sum();
+        for (Magazines magazines : _magazines)
+        {
+            result += magazines._spills;
+        }
+        return result;
+    }
+
+    @ManagedAttribute("The number of threads that own magazines")
+    public int getMagazineCount()
+    {
+        return _magazines.size();
+    }
+
+    private Magazines newMagazines()
+    {
+        Thread thread = Thread.currentThread();
+        if (VirtualThreadPool.isVirtualThread(thread))
+            return null;
+        // A new thread may replace a terminated one, so reclaim its magazines.
+        releaseDroppedMagazines();
+        Magazines magazines = new Magazines(thread, getBucketCount(), _magazineSize, _epoch);
+        _magazines.add(magazines);
+        return magazines;
+    }
+
+    /**
+     * <p>The magazines owned by a single thread, one per bucket and directness.</p>
+     * <p>Fields are only written by the owner thread, or by another thread after
+     * the owner thread has terminated; the counters are read by other threads
+     * only for statistics, so they need not be atomic.</p>
+     * <p>This class does not reference the pool, so that the thread local
+     * values do not retain the pool after it is discarded, and references
+     * its owner thread weakly, so that it does not retain terminated threads.</p>
+     */
+    private static class Magazines
+    {
+        private final WeakReference<Thread> _owner;
+        private final AtomicInteger _poolEpoch;
+        private final int _magazineSize;
+        private final ByteBuffer[][] _direct;
+        private final ByteBuffer[][] _indirect;
+        private final int[] _directSizes;
+        private final int[] _indirectSizes;
+        private int _epoch;
+        private long _heapMemory;
+        private long _directMemory;
+        private long _hits;
+        private long _misses;
+        private long _spills;
+
+        private Magazines(Thread owner, int length, int magazineSize, AtomicInteger poolEpoch)
+        {
+            _owner = new WeakReference<>(owner);
+            _poolEpoch = poolEpoch;
+            _magazineSize = magazineSize;
+            _direct = new ByteBuffer[length][];
+            _indirect = new ByteBuffer[length][];
+            _directSizes = new int[length];
+            _indirectSizes = new int[length];
+            _epoch = poolEpoch.get();
+        }
+
+        private boolean isOwnerAlive()
+        {
+            Thread owner = _owner.get();
+            return owner != null && owner.isAlive();
+        }
+
+        private long getMemory(boolean direct, int epoch)
+        {
+            // Magazines not yet cleared after the pool was cleared are not accounted.
+            if (_epoch != epoch)
+                return 0;
+            return direct ? _directMemory : _heapMemory;
+        }
+
+        private void updateMemory(boolean direct, int delta)
+        {
+            if (direct)
+                _directMemory += delta;
+            else
+                _heapMemory += delta;
+        }
+
+        private ByteBuffer acquire(int index, boolean direct)
+        {
+            checkEpoch();
+            int[] sizes = direct ? _directSizes : _indirectSizes;
+            int size = sizes[index];
+            if (size == 0)
+            {
+                ++_misses;
+                return null;
+            }
+            ++_hits;
+            ByteBuffer[] magazine = (direct ? _direct : _indirect)[index];
+            sizes[index] = --size;
+            ByteBuffer buffer = magazine[size];
+            magazine[size] = null;
+            updateMemory(direct, -buffer.capacity());
+            return buffer;
+        }
+
+        private boolean release(int index, ByteBuffer buffer, long maxMemory)
+        {
+            checkEpoch();
+            boolean direct = buffer.isDirect();
+            int[] sizes = direct ? _directSizes : _indirectSizes;
+            int size = sizes[index];
+            int capacity = buffer.capacity();
+            if (size == _magazineSize || (maxMemory >= 0 && (direct ? _directMemory : _heapMemory) + capacity > maxMemory))
+            {
+                ++_spills;
+                return false;
+            }
+            ByteBuffer[][] magazines = direct ? _direct : _indirect;
+            ByteBuffer[] magazine = magazines[index];
+            if (magazine == null)
+                magazines[index] = magazine = new ByteBuffer[_magazineSize];
+            BufferUtil.clear(buffer);
+            magazine[size] = buffer;
+            sizes[index] = size + 1;
+            updateMemory(direct, capacity);
+            return true;
+        }
+
+        private void drain(int epoch, Consumer<ByteBuffer> release)
+        {
+            // If the pool has been cleared, the ByteBuffers are discarded.
+            if (_epoch != epoch)
+                return;
+            drain(_direct, _directSizes, true, release);
+            drain(_indirect, _indirectSizes, false, release);
+        }
+
+        private void drain(ByteBuffer[][] magazines, int[] sizes, boolean direct, Consumer<ByteBuffer> release)
+        {
+            for (int i = 0; i < magazines.length; ++i)
+            {
+                ByteBuffer[] magazine = magazines[i];
+                for (int j = 0; j < sizes[i]; ++j)
+                {
+                    ByteBuffer buffer = magazine[j];
+                    magazine[j] = null;
+                    updateMemory(direct, -buffer.capacity());
+                    release.accept(buffer);
+                }
+                sizes[i] = 0;
+            }
+        }
+
+        private void checkEpoch()
+        {
+            int epoch = _poolEpoch.get();
+            if (epoch != _epoch)
+            {
+                clear(_direct, _directSizes);
+                clear(_indirect, _indirectSizes);
+                _heapMemory = 0;
+                _directMemory = 0;
+                _epoch = epoch;
+            }
+        }
+
+        private void clear(ByteBuffer[][] magazines, int[] sizes)
+        {
+            for (int i = 0; i < magazines.length; ++i)
+            {
+                magazines[i] = null;
+                sizes[i] = 0;
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ package org.eclipse.jetty.io;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.Arrays;
 import java.util.EnumMap;
@@ -37,6 +38,8 @@ import org.slf4j.LoggerFactory;
  * The abstract method {@link #onIncompleteFlush()} is called when not all content has been written after a call to
  * flush and should organize for the {@link #completeWrite()} method to be called when a subsequent call to flush
  * should  be able to make more progress.
+ * Ranges of files are written in the same way by {@link #write(Callback, FileChannel, long, long)},
+ * which calls {@link EndPoint#flush(FileChannel, long, long)}.
  */
 public abstract class WriteFlusher
 {
@@ -205,11 +208,21 @@ public abstract class WriteFlusher
     {
         private final Callback _callback;
         private final ByteBuffer[] _buffers;
+        private final Transfer _transfer;
 
         private PendingState(ByteBuffer[] buffers, Callback callback)
         {
             super(StateType.PENDING);
             _buffers = buffers;
+            _transfer = null;
+            _callback = callback;
+        }
+
+        private PendingState(Transfer transfer, Callback callback)
+        {
+            super(StateType.PENDING);
+            _buffers = null;
+            _transfer = transfer;
             _callback = callback;
         }
 
@@ -300,6 +313,69 @@ public abstract class WriteFlusher
         }
     }
 
+    /**
+     * Tries to switch state to WRITING. If successful it writes the given range of the file to the EndPoint.
+     * If state transition fails it will fail the callback and leave the WriteFlusher in a terminal FAILED state.
+     *
+     * If the range cannot be written in one go it creates a new {@code PendingState} object to preserve the state
+     * and then calls {@link #onIncompleteFlush()}. The remaining bytes will be written in {@link #completeWrite()}.
+     *
+     * If all bytes have been written it calls callback.complete().
+     *
+     * @param callback the callback to call on either failed or complete
+     * @param file the file to flush to the endpoint
+     * @param position the position in the file of the first byte to flush
+     * @param length the number of bytes to flush
+     * @throws WritePendingException if unable to write due to prior pending write
+     */
+    public void write(Callback callback, FileChannel file, long position, long length) throws WritePendingException
+    {
+        Objects.requireNonNull(callback);
+
+        if (isFailed())
+        {
+            fail(callback);
+            return;
+        }
+
+        if (DEBUG)
+            LOG.debug("write: {} {}@{}+{}", this, file, position, length);
+
+        if (!updateState(__IDLE, __WRITING))
+            throw new WritePendingException();
+
+        try
+        {
+            Transfer transfer = new Transfer(file, position, length);
+            if (!flush(transfer))
+            {
+                if (DEBUG)
+                    LOG.debug("flushed incomplete");
+                PendingState pending = new PendingState(transfer, callback);
+                if (updateState(__WRITING, pending))
+                    onIncompleteFlush();
+                else
+                    fail(callback);
+
+                return;
+            }
+
+            if (updateState(__WRITING, __IDLE))
+                callback.succeeded();
+            else
+                fail(callback);
+        }
+        catch (Throwable e)
+        {
+            if (DEBUG)
+                LOG.debug("write exception", e);
+            if (updateState(__WRITING, new FailedState(e)))
+                callback.failed(e);
+            else
+                fail(callback, e);
+        }
+    }
+
     private void fail(Callback callback, Throwable... suppressed)
     {
         Throwable cause;
@@ -368,16 +444,31 @@ public abstract class WriteFlusher
         Callback callback = pending._callback;
         try
         {
-            ByteBuffer[] buffers = pending.getBuffers();
+            boolean incomplete;
+            if (pending._transfer != null)
+            {
+                incomplete = !flush(pending._transfer);
+                if (incomplete && DEBUG)
+                    LOG.debug("flushed incomplete {}", pending._transfer);
+            }
+            else
+            {
+                ByteBuffer[] buffers = pending.getBuffers();
 
-            buffers = flush(buffers);
+                buffers = flush(buffers);
 
-            if (buffers != null)
+                incomplete = buffers != null;
+                if (incomplete)
+                {
+                    if (DEBUG)
+                        LOG.debug("flushed incomplete {}", BufferUtil.toDetailString(buffers));
+                    if (buffers != pending.getBuffers())
+                        pending = new PendingState(buffers, callback);
+                }
+            }
+
+            if (incomplete)
             {
-                if (DEBUG)
-                    LOG.debug("flushed incomplete {}", BufferUtil.toDetailString(buffers));
-                if (buffers != pending.getBuffers())
-                    pending = new PendingState(buffers, callback);
                 if (updateState(__COMPLETING, pending))
                     onIncompleteFlush();
                 else
@@ -465,6 +556,35 @@ public abstract class WriteFlusher
         return buffers == null ? EMPTY_BUFFERS : buffers;
     }
 
+    /**
+     * Flushes the file range iteratively until no progress is made.
+     *
+     * @param transfer The file range to flush, updated with the bytes flushed
+     * @return true if the whole range has been flushed
+     * @throws IOException if unable to flush
+     */
+    private boolean flush(Transfer transfer) throws IOException
+    {
+        while (transfer._length > 0)
+        {
+            long written = _endPoint.flush(transfer._file, transfer._position, transfer._length);
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Transferred={} {}", written, this);
+
+            if (written <= 0)
+                return false;
+
+            transfer._position += written;
+            transfer._length -= written;
+
+            Connection connection = _endPoint.getConnection();
+            if (connection instanceof Listener)
+                ((Listener)connection).onFlushed(written);
+        }
+        return true;
+    }
+
     /**
      * Notify the flusher of a failure
      *
@@ -573,6 +693,29 @@ public abstract class WriteFlusher
         return String.format("WriteFlusher@%x{%s}->%s", hashCode(), s, s instanceof PendingState ? ((PendingState)s)._callback : null);
     }
 
+    /**
+     * The range of a file that remains to be flushed.
+     */
+    private static class Transfer
+    {
+        private final FileChannel _file;
+        private long _position;
+        private long _length;
+
+        private Transfer(FileChannel file, long position, long length)
+        {
+            _file = file;
+            _position = position;
+            _length = length;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%d+%d", _file, _position, _length);
+        }
+    }
+
     /**
      * <p>A listener of {@link WriteFlusher} events.
      * If implemented by a Connection class, the {@link #onFlushed(long)} event will be delivered to it.</p>
@@ -19,8 +19,10 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.ToIntFunction;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLEngineResult;
@@ -106,6 +108,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private final List<SslHandshakeListener> handshakeListeners = new ArrayList<>();
     private final AtomicLong _bytesIn = new AtomicLong();
     private final AtomicLong _bytesOut = new AtomicLong();
+    private final AtomicLong _pinnedBufferBytes = new AtomicLong();
     private final ByteBufferPool _bufferPool;
     private final SSLEngine _sslEngine;
     private final DecryptedEndPoint _decryptedEndPoint;
@@ -118,6 +121,14 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private int _renegotiationLimit = -1;
     private boolean _closedOutbound;
     private boolean _requireCloseMessage;
+    private int _smallInputBufferSize;
+    private LongAdder _pinnedBufferBytesCounter;
+    private int _smallRecordSize;
+    private long _smallRecordThreshold = 1024 * 1024;
+    private long _smallRecordIdleTimeout = 1000;
+    private long _smallRecordBytes;
+    private long _lastWrapNanoTime;
+    private long _handshakeStartTime;
     private FlushState _flushState = FlushState.IDLE;
     private FillState _fillState = FillState.IDLE;
     private boolean _underflown;
@@ -210,6 +221,120 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
         return _bytesOut.get();
     }
 
+    /**
+     * @return the number of bytes of the TLS buffers currently held by this connection
+     */
+    public long getPinnedBufferBytes()
+    {
+        return _pinnedBufferBytes.get();
+    }
+
+    /**
+     * <p>Sets a counter shared by many connections, that is updated with the
+     * bytes of the TLS buffers acquired and released by this connection.</p>
+     *
+     * @param counter the counter of the TLS buffer bytes held by the connections
+     */
+    public void setPinnedBufferBytesCounter(LongAdder counter)
+    {
+        _pinnedBufferBytesCounter = counter;
+    }
+
+    /**
+     * @return the size of the buffer used to read encrypted bytes before growing
+     * it to the TLS packet size, or 0 if the TLS packet size is always used
+     * @see #setSmallInputBufferSize(int)
+     */
+    public int getSmallInputBufferSize()
+    {
+        return _smallInputBufferSize;
+    }
+
+    /**
+     * <p>Sets the size of the buffer used to read encrypted bytes.</p>
+     * <p>When greater than zero, encrypted bytes are first read into a buffer
+     * of this size, that is grown to the TLS packet size only when a TLS record
+     * does not fit in it; when no more bytes can be read, a partial TLS record
+     * is moved back to a buffer of this size before waiting for more bytes.
+     * In this way, idle connections hold no or only small TLS buffers, at the
+     * cost of a copy when a large TLS record arrives.</p>
+     * <p>When zero (the default), buffers of the TLS packet size are used.</p>
+     *
+     * @param size the size of the small input buffer, or 0 to always use the TLS packet size
+     */
+    public void setSmallInputBufferSize(int size)
+    {
+        _smallInputBufferSize = size;
+    }
+
+    /**
+     * @return the max number of application bytes in each TLS record written
+     * at the beginning of the connection or after idleness, or 0 to always
+     * write full size TLS records
+     * @see #setSmallRecordSize(int)
+     */
+    public int getSmallRecordSize()
+    {
+        return _smallRecordSize;
+    }
+
+    /**
+     * <p>Sets the max number of application bytes in each TLS record written
+     * at the beginning of the connection or after idleness.</p>
+     * <p>A TLS record can only be decrypted by the peer when it has been fully
+     * received, so small TLS records that fit in a single TCP segment (for example
+     * 1400 bytes) allow the peer to process the first bytes of a response earlier.
+     * After {@link #getSmallRecordThreshold() threshold} bytes have been written,
+     * full size TLS records are written to reduce the framing and encryption overhead,
+     * until the connection is idle for {@link #getSmallRecordIdleTimeout() idle timeout}
+     * milliseconds.</p>
+     *
+     * @param smallRecordSize the size of small TLS records, or 0 to always write full size TLS records
+     */
+    public void setSmallRecordSize(int smallRecordSize)
+    {
+        _smallRecordSize = smallRecordSize;
+    }
+
+    /**
+     * @return the number of application bytes written in small TLS records before
+     * switching to full size TLS records
+     */
+    public long getSmallRecordThreshold()
+    {
+        return _smallRecordThreshold;
+    }
+
+    /**
+     * @param smallRecordThreshold the number of application bytes written in small TLS
+     * records before switching to full size TLS records
+     * @see #setSmallRecordSize(int)
+     */
+    public void setSmallRecordThreshold(long smallRecordThreshold)
+    {
+        _smallRecordThreshold = smallRecordThreshold;
+    }
+
+    /**
+     * @return the idle time in milliseconds after which small TLS records are written again,
+     * or a non-positive value to write small TLS records only at the beginning of the connection
+     */
+    public long getSmallRecordIdleTimeout()
+    {
+        return _smallRecordIdleTimeout;
+    }
+
+    /**
+     * @param smallRecordIdleTimeout the idle time in milliseconds after which small TLS records
+     * are written again, or a non-positive value to write small TLS records only at the beginning
+     * of the connection
+     * @see #setSmallRecordSize(int)
+     */
+    public void setSmallRecordIdleTimeout(long smallRecordIdleTimeout)
+    {
+        _smallRecordIdleTimeout = smallRecordIdleTimeout;
+    }
+
     public void addHandshakeListener(SslHandshakeListener listener)
     {
         handshakeListeners.add(listener);
@@ -323,22 +448,80 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
         return Math.max(hsSize, size);
     }
 
+    private ByteBuffer acquireBuffer(int size, boolean direct)
+    {
+        ByteBuffer buffer = _bufferPool.acquire(size, direct);
+        updatePinnedBufferBytes(buffer.capacity());
+        return buffer;
+    }
+
+    private void releaseBuffer(ByteBuffer buffer)
+    {
+        updatePinnedBufferBytes(-buffer.capacity());
+        _bufferPool.release(buffer);
+    }
+
+    private void updatePinnedBufferBytes(int delta)
+    {
+        _pinnedBufferBytes.addAndGet(delta);
+        LongAdder counter = _pinnedBufferBytesCounter;
+        if (counter != null)
+            counter.add(delta);
+    }
+
     private void acquireEncryptedInput()
     {
         if (_encryptedInput == null)
-            _encryptedInput = _bufferPool.acquire(getPacketBufferSize(), _encryptedDirectBuffers);
+        {
+            int size = getPacketBufferSize();
+            int smallSize = getSmallInputBufferSize();
+            if (smallSize > 0)
+                size = Math.min(size, smallSize);
+            _encryptedInput = acquireBuffer(size, _encryptedDirectBuffers);
+        }
+    }
+
+    private boolean growEncryptedInput()
+    {
+        int packetBufferSize = getPacketBufferSize();
+        if (_encryptedInput.capacity() >= packetBufferSize)
+            return false;
+        ByteBuffer input = acquireBuffer(packetBufferSize, _encryptedDirectBuffers);
+        BufferUtil.append(input, _encryptedInput);
+        releaseBuffer(_encryptedInput);
+        _encryptedInput = input;
+        if (LOG.isDebugEnabled())
+            LOG.debug("grown encrypted input to {} {}", input.capacity(), this);
+        return true;
+    }
+
+    private void shrinkEncryptedInput()
+    {
+        int smallSize = getSmallInputBufferSize();
+        if (smallSize <= 0 || _encryptedInput == null)
+            return;
+        int remaining = _encryptedInput.remaining();
+        if (remaining > smallSize || _encryptedInput.capacity() <= smallSize)
+            return;
+        ByteBuffer input = acquireBuffer(smallSize, _encryptedDirectBuffers);
+        BufferUtil.append(input, _encryptedInput);
+        releaseBuffer(_encryptedInput);
+        _encryptedInput = input;
+        if (LOG.isDebugEnabled())
+            LOG.debug("shrunk encrypted input to {} {}", input.capacity(), this);
     }
 
     private void acquireEncryptedOutput()
     {
         if (_encryptedOutput == null)
-            _encryptedOutput = _bufferPool.acquire(getPacketBufferSize(), _encryptedDirectBuffers);
+            _encryptedOutput = acquireBuffer(getPacketBufferSize(), _encryptedDirectBuffers);
     }
 
     @Override
     public void onUpgradeTo(ByteBuffer buffer)
     {
-        acquireEncryptedInput();
+        if (_encryptedInput == null)
+            _encryptedInput = acquireBuffer(Math.max(getPacketBufferSize(), buffer.remaining()), _encryptedDirectBuffers);
         BufferUtil.append(_encryptedInput, buffer);
     }
 
@@ -354,6 +537,14 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     {
         _decryptedEndPoint.getConnection().onClose(cause);
         super.onClose(cause);
+        try (AutoLock l = _lock.lock())
+        {
+            // Buffers still holding bytes are not released, but are no longer pinned by this connection.
+            LongAdder counter = _pinnedBufferBytesCounter;
+            _pinnedBufferBytesCounter = null;
+            if (counter != null)
+                counter.add(-_pinnedBufferBytes.get());
+        }
     }
 
     @Override
@@ -431,7 +622,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     {
         if (_encryptedInput != null && !_encryptedInput.hasRemaining())
         {
-            _bufferPool.release(_encryptedInput);
+            releaseBuffer(_encryptedInput);
             _encryptedInput = null;
         }
     }
@@ -440,7 +631,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     {
         if (_decryptedInput != null && !_decryptedInput.hasRemaining())
         {
-            _bufferPool.release(_decryptedInput);
+            releaseBuffer(_decryptedInput);
             _decryptedInput = null;
         }
     }
@@ -451,11 +642,74 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             throw new IllegalStateException();
         if (_encryptedOutput != null && !_encryptedOutput.hasRemaining())
         {
-            _bufferPool.release(_encryptedOutput);
+            releaseBuffer(_encryptedOutput);
             _encryptedOutput = null;
         }
     }
 
+    private int currentRecordSize()
+    {
+        int size = getSmallRecordSize();
+        if (size <= 0)
+            return 0;
+        long now = System.nanoTime();
+        long idleTimeout = getSmallRecordIdleTimeout();
+        if (idleTimeout > 0 && now - _lastWrapNanoTime >= TimeUnit.MILLISECONDS.toNanos(idleTimeout))
+            _smallRecordBytes = 0;
+        _lastWrapNanoTime = now;
+        return _smallRecordBytes < getSmallRecordThreshold() ? size : 0;
+    }
+
+    private SSLEngineResult wrapSmallRecords(ByteBuffer[] appOuts, int recordSize) throws SSLException
+    {
+        // The encrypted output buffer is in fill mode.
+        while (true)
+        {
+            SSLEngineResult result;
+            if (BufferUtil.remaining(appOuts) <= recordSize)
+            {
+                result = wrap(_sslEngine, appOuts, _encryptedOutput);
+            }
+            else
+            {
+                // Temporarily limit the application buffers, so that
+                // the SSLEngine consumes at most recordSize bytes.
+                int[] limits = new int[appOuts.length];
+                int max = recordSize;
+                for (int i = 0; i < appOuts.length; ++i)
+                {
+                    ByteBuffer appOut = appOuts[i];
+                    limits[i] = appOut.limit();
+                    int length = Math.min(appOut.remaining(), max);
+                    appOut.limit(appOut.position() + length);
+                    max -= length;
+                }
+                try
+                {
+                    result = wrap(_sslEngine, appOuts, _encryptedOutput);
+                }
+                finally
+                {
+                    for (int i = 0; i < appOuts.length; ++i)
+                    {
+                        appOuts[i].limit(limits[i]);
+                    }
+                }
+            }
+            _smallRecordBytes += result.bytesConsumed();
+
+            // Wrap more small records only if the encrypted output buffer still
+            // has the space the SSLEngine requires, otherwise it would overflow.
+            if (result.getStatus() != Status.OK ||
+                result.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING ||
+                result.bytesConsumed() == 0 ||
+                BufferUtil.isEmpty(appOuts) ||
+                _smallRecordBytes >= getSmallRecordThreshold() ||
+                _encryptedOutput.remaining() < getPacketBufferSize())
+                return result;
+        }
+    }
+
     protected int networkFill(ByteBuffer input) throws IOException
     {
         return getEndPoint().fill(input);
@@ -664,7 +918,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                                 if (BufferUtil.space(buffer) > appBufferSize)
                                     appIn = buffer;
                                 else
-                                    appIn = _decryptedInput = _bufferPool.acquire(appBufferSize, _decryptedDirectBuffers);
+                                    appIn = _decryptedInput = acquireBuffer(appBufferSize, _decryptedDirectBuffers);
                             }
                             else
                             {
@@ -687,6 +941,7 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
 
                             if (_handshake.compareAndSet(HandshakeState.INITIAL, HandshakeState.HANDSHAKE))
                             {
+                                _handshakeStartTime = System.currentTimeMillis();
                                 if (LOG.isDebugEnabled())
                                     LOG.debug("fill starting handshake {}", SslConnection.this);
                             }
@@ -735,6 +990,9 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                                     // Are we out of space?
                                     if (BufferUtil.space(_encryptedInput) == 0)
                                     {
+                                        // Grow a small input buffer to hold the whole TLS record.
+                                        if (growEncryptedInput())
+                                            continue;
                                         BufferUtil.clear(_encryptedInput);
                                         throw new SSLHandshakeException("Encrypted buffer max length exceeded");
                                     }
@@ -811,6 +1069,9 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                     {
                         releaseEncryptedInputBuffer();
                         releaseDecryptedInputBuffer();
+                        // Do not keep a large buffer for a partial TLS record while waiting for more bytes.
+                        if (filled == 0)
+                            shrinkEncryptedInput();
 
                         if (_flushState == FlushState.WAIT_FOR_FILL)
                         {
@@ -1058,10 +1319,14 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
 
                             if (_handshake.compareAndSet(HandshakeState.INITIAL, HandshakeState.HANDSHAKE))
                             {
+                                _handshakeStartTime = System.currentTimeMillis();
                                 if (LOG.isDebugEnabled())
                                     LOG.debug("flush starting handshake {}", SslConnection.this);
                             }
 
+                            // Application data may be written in small TLS records.
+                            int recordSize = status == HandshakeStatus.NOT_HANDSHAKING && !isEmpty ? currentRecordSize() : 0;
+
                             // We call sslEngine.wrap to try to take bytes from appOuts
                             // buffers and encrypt them into the _encryptedOutput buffer.
                             BufferUtil.compact(_encryptedOutput);
@@ -1069,7 +1334,10 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                             SSLEngineResult wrapResult;
                             try
                             {
-                                wrapResult = wrap(_sslEngine, appOuts, _encryptedOutput);
+                                if (recordSize > 0)
+                                    wrapResult = wrapSmallRecords(appOuts, recordSize);
+                                else
+                                    wrapResult = wrap(_sslEngine, appOuts, _encryptedOutput);
                             }
                             finally
                             {
@@ -1427,7 +1695,12 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
             for (SslHandshakeListener listener : handshakeListeners)
             {
                 if (event == null)
-                    event = new SslHandshakeListener.Event(sslEngine);
+                {
+                    // A resumed session has been created before this handshake started;
+                    // the comparison is at millisecond precision, see Event.isSessionResumed().
+                    boolean resumed = sslEngine.getSession().getCreationTime() < _handshakeStartTime;
+                    event = new SslHandshakeListener.Event(sslEngine, resumed);
+                }
                 try
                 {
                     listener.handshakeSucceeded(event);
@@ -51,9 +51,17 @@ public interface SslHandshakeListener extends EventListener
      */
     public static class Event extends EventObject
     {
+        private final boolean sessionResumed;
+
         public Event(Object source)
+        {
+            this(source, false);
+        }
+
+        public Event(Object source, boolean sessionResumed)
         {
             super(source);
+            this.sessionResumed = sessionResumed;
         }
 
         /**
@@ -63,5 +71,20 @@ public interface SslHandshakeListener extends EventListener
         {
             return (SSLEngine)getSource();
         }
+
+        /**
+         * <p>Returns whether the TLS handshake resumed a previous TLS session.</p>
+         * <p>{@link SslConnection} detects a resumed session by its creation time,
+         * that is before the start of the handshake.
+         * Since the creation time has millisecond precision, a session resumed by
+         * a handshake that starts in the same millisecond the session was created
+         * is reported as not resumed.</p>
+         *
+         * @return whether the TLS handshake resumed a previous TLS session
+         */
+        public boolean isSessionResumed()
+        {
+            return sessionResumed;
+        }
     }
 }
@@ -0,0 +1,111 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.ssl;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+
+/**
+ * <p>A {@link SslHandshakeListener} that tracks TLS handshake statistics,
+ * in particular how many TLS handshakes resumed a previous TLS session.</p>
+ * <p>Adding an instance of this class as a bean to a ServerConnector
+ * or to a SslConnectionFactory will track the TLS handshakes of all
+ * the connections of that connector or connection factory.</p>
+ * <p>TLS sessions can only be resumed by servers that share the same
+ * {@link javax.net.ssl.SSLContext}, since the TLS session cache and
+ * the TLS session ticket keys belong to its {@link javax.net.ssl.SSLSessionContext}.</p>
+ */
+@ManagedObject("Tracks statistics on TLS handshakes")
+public class SslHandshakeStatistics implements SslHandshakeListener
+{
+    private final LongAdder _handshakes = new LongAdder();
+    private final LongAdder _resumed = new LongAdder();
+    private final LongAdder _failed = new LongAdder();
+
+    @Override
+    public void handshakeSucceeded(Event event)
+    {
+        _handshakes.increment();
+        if (event.isSessionResumed())
+            _resumed.increment();
+    }
+
+    @Override
+    public void handshakeFailed(Event event, Throwable failure)
+    {
+        _failed.increment();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        _handshakes.reset();
+        _resumed.reset();
+        _failed.reset();
+    }
+
+    /**
+     * @return the number of successful TLS handshakes
+     */
+    @ManagedAttribute("The number of successful TLS handshakes")
+    public long getHandshakes()
+    {
+        return _handshakes.sum();
+    }
+
+    /**
+     * @return the number of successful TLS handshakes that resumed a previous TLS session
+     */
+    @ManagedAttribute("The number of TLS handshakes that resumed a TLS session")
+    public long getResumedHandshakes()
+    {
+        return _resumed.sum();
+    }
+
+    /**
+     * @return the number of failed TLS handshakes
+     */
+    @ManagedAttribute("The number of failed TLS handshakes")
+    public long getFailedHandshakes()
+    {
+        return _failed.sum();
+    }
+
+    /**
+     * @return the ratio of successful TLS handshakes that resumed a previous TLS session,
+     * between 0 and 1, or 0 if there were no successful TLS handshakes
+     */
+    @ManagedAttribute("The ratio of TLS handshakes that resumed a TLS session")
+    public double getResumptionRatio()
+    {
+        long handshakes = getHandshakes();
+        if (handshakes == 0)
+            return 0;
+        return (double)getResumedHandshakes() / handshakes;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{handshakes=%d,resumed=%d,failed=%d}",
+            getClass().getSimpleName(),
+            hashCode(),
+            getHandshakes(),
+            getResumedHandshakes(),
+            getFailedHandshakes());
+    }
+}
@@ -22,11 +22,15 @@ import java.io.OutputStream;
 import java.net.Socket;
 import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectableChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CountDownLatch;
@@ -229,6 +233,54 @@ public class SocketChannelEndPointTest
         }
     }
 
+    @Test
+    public void testTransfer() throws Exception
+    {
+        // We don't test SSL as encrypted bytes cannot be transferred
+        init(new NormalScenario());
+
+        // Larger than the socket buffers, so that the transfer cannot complete at once.
+        byte[] bytes = new byte[16 * 1024 * 1024];
+        for (int i = 0; i < bytes.length; i++)
+        {
+            bytes[i] = (byte)('a' + i % 26);
+        }
+        Path path = MavenTestingUtils.getTargetTestingPath(SocketChannelEndPointTest.class.getSimpleName()).resolve("transfer.txt");
+        Files.createDirectories(path.getParent());
+        Files.write(path, bytes);
+
+        try (Socket client = _scenario.newClient(_connector);
+             FileChannel file = FileChannel.open(path, StandardOpenOption.READ))
+        {
+            client.setSoTimeout(60000);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                _manager.accept(server);
+                assertTrue(_lastEndPointLatch.await(10, TimeUnit.SECONDS));
+                assertTrue(_lastEndPoint.isTransferSupported());
+
+                FutureCallback callback = new FutureCallback();
+                _lastEndPoint.write(callback, file, 1, bytes.length - 2);
+
+                // The client does not read, so the transfer is pending.
+                Thread.sleep(500);
+                assertFalse(callback.isDone());
+
+                InputStream in = new BufferedInputStream(client.getInputStream());
+                for (int i = 1; i < bytes.length - 1; i++)
+                {
+                    int b = in.read();
+                    if (b != bytes[i])
+                        assertEquals(bytes[i], b, "byte " + i);
+                }
+
+                callback.get(10, TimeUnit.SECONDS);
+                assertEquals(0, file.position());
+            }
+        }
+    }
+
     @ParameterizedTest
     @MethodSource("scenarios")
     public void testReadBlocked(Scenario scenario) throws Exception
@@ -25,11 +25,17 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSocket;
 
@@ -298,6 +304,94 @@ public class SslConnectionTest
         }
     }
 
+    @Test
+    public void testSmallRecords() throws Exception
+    {
+        startSSL();
+        Queue<Integer> wrapped = new ConcurrentLinkedQueue<>();
+        SelectorManager manager = new SelectorManager(_threadPool, _scheduler)
+        {
+            @Override
+            public Connection newConnection(SelectableChannel channel, EndPoint endpoint, Object attachment)
+            {
+                SSLEngine engine = _sslCtxFactory.newSSLEngine();
+                engine.setUseClientMode(false);
+                SslConnection sslConnection = new SslConnection(__byteBufferPool, getExecutor(), endpoint, engine)
+                {
+                    @Override
+                    protected SSLEngineResult wrap(SSLEngine sslEngine, ByteBuffer[] input, ByteBuffer output) throws SSLException
+                    {
+                        SSLEngineResult result = super.wrap(sslEngine, input, output);
+                        if (result.bytesConsumed() > 0)
+                            wrapped.add(result.bytesConsumed());
+                        return result;
+                    }
+                };
+                sslConnection.setSmallRecordSize(1024);
+                sslConnection.setSmallRecordThreshold(4096);
+                sslConnection.setSmallRecordIdleTimeout(1000);
+                Connection appConnection = new TestConnection(sslConnection.getDecryptedEndPoint());
+                sslConnection.getDecryptedEndPoint().setConnection(appConnection);
+                return sslConnection;
+            }
+
+            @Override
+            protected EndPoint newEndPoint(SelectableChannel channel, ManagedSelector selector, SelectionKey selectionKey)
+            {
+                SocketChannelEndPoint endp = new SocketChannelEndPoint((SocketChannel)channel, selector, selectionKey, getScheduler());
+                endp.setIdleTimeout(TIMEOUT);
+                return endp;
+            }
+        };
+        manager.start();
+        try (SSLSocket client = newClient())
+        {
+            client.setSoTimeout(5000);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                manager.accept(server);
+
+                byte[] data = new byte[8192];
+                Arrays.fill(data, (byte)'x');
+
+                // At the beginning of the connection, small records
+                // are written up to the threshold, then full records.
+                echo(client, data);
+                assertEquals(List.of(1024, 1024, 1024, 1024, 4096), new ArrayList<>(wrapped));
+
+                wrapped.clear();
+                echo(client, data);
+                assertEquals(List.of(8192), new ArrayList<>(wrapped));
+
+                // After idleness, small records are written again.
+                Thread.sleep(1500);
+                wrapped.clear();
+                echo(client, data);
+                assertEquals(List.of(1024, 1024, 1024, 1024, 4096), new ArrayList<>(wrapped));
+            }
+        }
+        finally
+        {
+            manager.stop();
+        }
+    }
+
+    private void echo(Socket client, byte[] data) throws IOException
+    {
+        client.getOutputStream().write(data);
+        byte[] buffer = new byte[data.length];
+        int length = 0;
+        while (length < data.length)
+        {
+            int read = client.getInputStream().read(buffer, length, buffer.length - length);
+            if (read < 0)
+                break;
+            length += read;
+        }
+        assertEquals(data.length, length);
+    }
+
     @Test
     public void testRenegotiate() throws Exception
     {
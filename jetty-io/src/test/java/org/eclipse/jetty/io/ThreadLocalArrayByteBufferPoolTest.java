@@ -0,0 +1,184 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ThreadLocalArrayByteBufferPoolTest
+{
+    private static long pooled(ArrayByteBufferPool bufferPool, boolean direct)
+    {
+        return Arrays.stream(bufferPool.bucketsFor(direct))
+            .filter(Objects::nonNull)
+            .mapToInt(ByteBufferPool.Bucket::size)
+            .sum();
+    }
+
+    @Test
+    public void testReleaseThenAcquireHitsMagazine()
+    {
+        ThreadLocalArrayByteBufferPool bufferPool = new ThreadLocalArrayByteBufferPool(0, 100, 1000, -1, -1, -1, 2);
+
+        ByteBuffer buffer = bufferPool.acquire(250, true);
+        assertEquals(300, buffer.capacity());
+        assertEquals(1, bufferPool.getMagazineMisses());
+
+        BufferUtil.append(buffer, ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        bufferPool.release(buffer);
+        assertEquals(0, pooled(bufferPool, true));
+
+        ByteBuffer buffer2 = bufferPool.acquire(210, true);
+        assertSame(buffer, buffer2);
+        assertTrue(BufferUtil.isEmpty(buffer2));
+        assertEquals(1, bufferPool.getMagazineHits());
+        assertEquals(1, bufferPool.getMagazineMisses());
+    }
+
+    @Test
+    public void testFullMagazineSpillsToSharedBuckets()
+    {
+        ThreadLocalArrayByteBufferPool bufferPool = new ThreadLocalArrayByteBufferPool(0, 100, 1000, -1, -1, -1, 2);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; ++i)
+        {
+            buffers.add(bufferPool.acquire(100, false));
+        }
+        buffers.forEach(bufferPool::release);
+
+        assertEquals(3, pooled(bufferPool, false));
+        assertEquals(3, bufferPool.getMagazineSpills());
+    }
+
+    @Test
+    public void testOtherThreadDoesNotSeeMagazine() throws Exception
+    {
+        ThreadLocalArrayByteBufferPool bufferPool = new ThreadLocalArrayByteBufferPool(0, 100, 1000, -1, -1, -1, 2);
+
+        ByteBuffer buffer = bufferPool.acquire(100, true);
+        bufferPool.release(buffer);
+
+        CompletableFuture<ByteBuffer> other = new CompletableFuture<>();
+        new Thread(() -> other.complete(bufferPool.acquire(100, true))).start();
+        assertNotSame(buffer, other.get(5, TimeUnit.SECONDS));
+        assertEquals(2, bufferPool.getMagazineCount());
+
+        // The owner thread still gets its buffer back.
+        assertSame(buffer, bufferPool.acquire(100, true));
+    }
+
+    @Test
+    public void testClearDiscardsMagazines()
+    {
+        ThreadLocalArrayByteBufferPool bufferPool = new ThreadLocalArrayByteBufferPool(0, 100, 1000, -1, -1, -1, 2);
+
+        ByteBuffer buffer = bufferPool.acquire(100, true);
+        bufferPool.release(buffer);
+        assertEquals(100, bufferPool.getDirectMemory());
+        bufferPool.clear();
+        assertEquals(0, bufferPool.getDirectMemory());
+
+        assertNotSame(buffer, bufferPool.acquire(100, true));
+    }
+
+    @Test
+    public void testMagazineMemoryIsAccounted()
+    {
+        ThreadLocalArrayByteBufferPool bufferPool = new ThreadLocalArrayByteBufferPool(0, 100, 1000, -1, -1, -1, 2);
+
+        ByteBuffer buffer = bufferPool.acquire(100, true);
+        bufferPool.release(buffer);
+        assertEquals(0, pooled(bufferPool, true));
+        assertEquals(100, bufferPool.getDirectMemory());
+
+        assertSame(buffer, bufferPool.acquire(100, true));
+        assertEquals(0, bufferPool.getDirectMemory());
+    }
+
+    @Test
+    public void testMagazinesRespectMaxMemory()
+    {
+        ThreadLocalArrayByteBufferPool bufferPool = new ThreadLocalArrayByteBufferPool(0, 100, 1000, -1, 200, -1, 8);
+
+        List<ByteBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 5; ++i)
+        {
+            buffers.add(bufferPool.acquire(100, false));
+        }
+        buffers.forEach(bufferPool::release);
+
+        assertThat(bufferPool.getHeapMemory(), lessThanOrEqualTo(200L));
+        assertEquals(3, bufferPool.getMagazineSpills());
+    }
+
+    @Test
+    public void testTerminatedThreadMagazinesAreReleased() throws Exception
+    {
+        ThreadLocalArrayByteBufferPool bufferPool = new ThreadLocalArrayByteBufferPool(0, 100, 1000, -1, -1, -1, 2);
+
+        CompletableFuture<ByteBuffer> other = new CompletableFuture<>();
+        Thread thread = new Thread(() ->
+        {
+            ByteBuffer buffer = bufferPool.acquire(100, true);
+            bufferPool.release(buffer);
+            other.complete(buffer);
+        });
+        thread.start();
+        ByteBuffer buffer = other.get(5, TimeUnit.SECONDS);
+        thread.join(5000);
+        assertEquals(1, bufferPool.getMagazineCount());
+
+        // The first use from this thread releases the
+        // magazines of the terminated thread.
+        assertSame(buffer, bufferPool.acquire(100, true));
+        assertEquals(1, bufferPool.getMagazineCount());
+        // The counters of the terminated thread are retained.
+        assertEquals(0, bufferPool.getMagazineHits());
+        assertEquals(2, bufferPool.getMagazineMisses());
+    }
+
+    @Test
+    public void testNotPooledCapacities()
+    {
+        ThreadLocalArrayByteBufferPool bufferPool = new ThreadLocalArrayByteBufferPool(10, 100, 1000, -1, -1, -1, 2);
+
+        ByteBuffer small = bufferPool.acquire(5, true);
+        assertEquals(5, small.capacity());
+        bufferPool.release(small);
+        assertNotSame(small, bufferPool.acquire(5, true));
+
+        ByteBuffer large = bufferPool.acquire(2000, true);
+        bufferPool.release(large);
+        assertNotSame(large, bufferPool.acquire(2000, true));
+
+        assertEquals(0, bufferPool.getMagazineHits());
+        assertEquals(0, bufferPool.getMagazineMisses());
+    }
+}
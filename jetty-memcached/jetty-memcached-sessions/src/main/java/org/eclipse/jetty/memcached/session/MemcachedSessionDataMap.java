@@ -14,15 +14,23 @@
 package org.eclipse.jetty.memcached.session;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Objects;
 
 import net.rubyeye.xmemcached.MemcachedClient;
 import net.rubyeye.xmemcached.XMemcachedClientBuilder;
 import net.rubyeye.xmemcached.transcoders.SerializingTranscoder;
+import org.eclipse.jetty.server.session.BinarySessionDataCodec;
+import org.eclipse.jetty.server.session.JavaSessionDataCodec;
 import org.eclipse.jetty.server.session.SessionContext;
 import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionDataCodec;
 import org.eclipse.jetty.server.session.SessionDataMap;
 import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
@@ -43,22 +51,114 @@ public class MemcachedSessionDataMap extends AbstractLifeCycle implements Sessio
     protected int _expirySec = 0;
     protected boolean _heartbeats = true;
     protected XMemcachedClientBuilder _builder;
+    protected SessionDataCodec _sessionDataCodec = new JavaSessionDataCodec();
 
     /**
      * SessionDataTranscoder
      *
      * We override memcached deserialization to use our classloader-aware
      * ObjectInputStream.
+     *
+     * With a {@link JavaSessionDataCodec}, the SessionData is written with java
+     * serialization, as done by previous releases. With any other codec, the
+     * fields of the SessionData are written after a header that cannot be the
+     * start of a java serialization stream, followed by the attributes encoded
+     * by the codec. Both formats are read whatever the codec.
      */
     public static class SessionDataTranscoder extends SerializingTranscoder
     {
+        private static final byte[] CODEC_HEADER = {'J', 'M', 1};
+
+        private final SessionDataCodec _sessionDataCodec;
+
+        public SessionDataTranscoder()
+        {
+            this(null);
+        }
+
+        /**
+         * @param sessionDataCodec the codec of the session attributes, or null for a {@link JavaSessionDataCodec}
+         */
+        public SessionDataTranscoder(SessionDataCodec sessionDataCodec)
+        {
+            _sessionDataCodec = sessionDataCodec == null ? new JavaSessionDataCodec() : sessionDataCodec;
+        }
+
+        @Override
+        protected byte[] serialize(Object o)
+        {
+            if (!(o instanceof SessionData) || _sessionDataCodec instanceof JavaSessionDataCodec)
+                return super.serialize(o);
+
+            SessionData data = (SessionData)o;
+            try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                 DataOutputStream out = new DataOutputStream(bos))
+            {
+                out.write(CODEC_HEADER);
+                out.writeUTF(data.getId());
+                out.writeUTF(data.getContextPath());
+                out.writeUTF(data.getVhost());
+                out.writeLong(data.getAccessed());
+                out.writeLong(data.getLastAccessed());
+                out.writeLong(data.getCreated());
+                out.writeLong(data.getCookieSet());
+                out.writeUTF(Objects.toString(data.getLastNode(), ""));
+                out.writeLong(data.getExpiry());
+                out.writeLong(data.getMaxInactiveMs());
+                _sessionDataCodec.encode(data, out);
+                out.flush();
+                return bos.toByteArray();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalArgumentException("Non-serializable object", e);
+            }
+        }
+
+        private SessionData decode(byte[] in) throws IOException, ClassNotFoundException
+        {
+            try (DataInputStream is = new DataInputStream(new ByteArrayInputStream(in, CODEC_HEADER.length, in.length - CODEC_HEADER.length)))
+            {
+                String id = is.readUTF();
+                String contextPath = is.readUTF();
+                String vhost = is.readUTF();
+                long accessed = is.readLong();
+                long lastAccessed = is.readLong();
+                long created = is.readLong();
+                long cookieSet = is.readLong();
+                String lastNode = is.readUTF();
+                long expiry = is.readLong();
+                long maxInactiveMs = is.readLong();
+                SessionData data = new SessionData(id, contextPath, vhost, created, accessed, lastAccessed, maxInactiveMs);
+                data.setCookieSet(cookieSet);
+                data.setLastNode(lastNode);
+                data.setExpiry(expiry);
+                _sessionDataCodec.decode(data, is);
+                return data;
+            }
+        }
 
         @Override
         protected Object deserialize(byte[] in)
         {
             Object rv = null;
 
-            if (in != null)
+            if (in != null && in.length >= CODEC_HEADER.length && Arrays.equals(in, 0, CODEC_HEADER.length, CODEC_HEADER, 0, CODEC_HEADER.length))
+            {
+                try
+                {
+                    rv = decode(in);
+                }
+                catch (IOException e)
+                {
+                    log.error("Caught IOException decoding " + in.length + " bytes of data", e);
+                }
+                catch (ClassNotFoundException e)
+                {
+                    log.error("Caught CNFE decoding " + in.length + " bytes of data", e);
+                }
+            }
+            else if (in != null)
             {
                 try (ByteArrayInputStream bis = new ByteArrayInputStream(in);
                      ClassLoadingObjectInputStream is = new ClassLoadingObjectInputStream(bis))
@@ -137,12 +237,35 @@ public class MemcachedSessionDataMap extends AbstractLifeCycle implements Sessio
         _heartbeats = heartbeats;
     }
 
+    /**
+     * @return the codec used to encode and decode the session attributes
+     */
+    @ManagedAttribute(value = "codec of the session attributes", readonly = true)
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _sessionDataCodec;
+    }
+
+    /**
+     * The codec used to encode and decode the session attributes,
+     * by default a {@link JavaSessionDataCodec}, that writes the
+     * format read by previous releases. A {@link BinarySessionDataCodec}
+     * writes a more compact format, and should only be configured once
+     * all the nodes sharing memcached can read it.
+     *
+     * @param sessionDataCodec the codec of the session attributes
+     */
+    public void setSessionDataCodec(SessionDataCodec sessionDataCodec)
+    {
+        _sessionDataCodec = Objects.requireNonNull(sessionDataCodec);
+    }
+
     @Override
     public void initialize(SessionContext context)
     {
         try
         {
-            _builder.setTranscoder(new SessionDataTranscoder());
+            _builder.setTranscoder(new SessionDataTranscoder(_sessionDataCodec));
             _client = _builder.build();
             _client.setEnableHeartBeat(isHeartbeats());
         }
@@ -17,6 +17,7 @@ import java.net.InetSocketAddress;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.jetty.server.session.SessionDataCodec;
 import org.eclipse.jetty.server.session.SessionDataMap;
 import org.eclipse.jetty.server.session.SessionDataMapFactory;
 
@@ -29,6 +30,7 @@ public class MemcachedSessionDataMapFactory implements SessionDataMapFactory
     protected boolean _heartbeats = true;
     protected int[] _weights;
     protected List<InetSocketAddress> _addresses;
+    protected SessionDataCodec _sessionDataCodec;
 
     /**
      * @param addresses host and port address of memcached servers
@@ -78,12 +80,30 @@ public class MemcachedSessionDataMapFactory implements SessionDataMapFactory
         _heartbeats = heartbeats;
     }
 
+    /**
+     * @return the codec of the session attributes, or null to use the default codec
+     */
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _sessionDataCodec;
+    }
+
+    /**
+     * @param sessionDataCodec the codec of the session attributes, or null to use the default codec
+     */
+    public void setSessionDataCodec(SessionDataCodec sessionDataCodec)
+    {
+        _sessionDataCodec = sessionDataCodec;
+    }
+
     @Override
     public SessionDataMap getSessionDataMap()
     {
         MemcachedSessionDataMap m = new MemcachedSessionDataMap(_addresses, _weights);
         m.setExpirySec(_expiry);
         m.setHeartbeats(isHeartbeats());
+        if (_sessionDataCodec != null)
+            m.setSessionDataCodec(_sessionDataCodec);
         return m;
     }
 }
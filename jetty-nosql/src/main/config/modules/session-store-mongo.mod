@@ -34,6 +34,8 @@ connection-type?=address
 #jetty.session.mongo.collectionName=jettySessions
 #jetty.session.gracePeriod.seconds=3600
 #jetty.session.savePeriod.seconds=0
+## Write only the session attributes changed since the last save
+#jetty.session.mongo.deltaWrites=false
 
 connection-type=address
 #jetty.session.mongo.host=localhost
@@ -13,17 +13,18 @@
 
 package org.eclipse.jetty.nosql.mongodb;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.BasicDBObjectBuilder;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteRequestBuilder;
+import com.mongodb.BulkWriteResult;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
@@ -34,7 +35,6 @@ import org.eclipse.jetty.nosql.NoSqlSessionDataStore;
 import org.eclipse.jetty.server.session.SessionContext;
 import org.eclipse.jetty.server.session.SessionData;
 import org.eclipse.jetty.server.session.UnreadableSessionDataException;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -87,6 +87,11 @@ import org.slf4j.LoggerFactory;
  * interact with session fields, the key is composed of:
  * <code>"context".unique_context_name.field_name</code>
  * Eg  <code>"context"."0_0_0_0:_testA"."lastSaved"</code>
+ * <p>
+ * By default the session attributes of a context are stored as a single serialized
+ * "attributes" field. With {@link #setDeltaWrites(boolean) delta writes}, they are instead
+ * stored as one field per attribute in the nested "attributeMap" document, so that
+ * saving a session only sets or unsets the attributes that changed since the last save.
  */
 @ManagedObject
 public class MongoSessionDataStore extends NoSqlSessionDataStore
@@ -122,6 +127,11 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
 
     public static final String __ATTRIBUTES = "attributes";
 
+    /**
+     * Nested document with one field per session attribute, used for delta writes
+     */
+    public static final String __ATTRIBUTE_MAP = "attributeMap";
+
     /**
      * Time this session will expire, based on last access time and maxIdle
      */
@@ -157,6 +167,8 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
      */
     private DBCollection _dbSessions;
 
+    private boolean _deltaWrites;
+
     public void setDBCollection(DBCollection collection)
     {
         _dbSessions = collection;
@@ -168,6 +180,27 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         return _dbSessions;
     }
 
+    @ManagedAttribute(value = "only changed attributes are written", readonly = true)
+    public boolean isDeltaWrites()
+    {
+        return _deltaWrites;
+    }
+
+    /**
+     * <p>Set whether only the attributes that changed since the last save
+     * are written, as one field per attribute. Sessions previously stored
+     * with a single serialized attributes field are migrated on their next save.</p>
+     * <p>Only attributes that are set or removed are considered changed: an attribute
+     * value that is mutated in place must be set again to be written.</p>
+     *
+     * @param deltaWrites true to write only the changed attributes
+     */
+    public void setDeltaWrites(boolean deltaWrites)
+    {
+        checkStarted();
+        _deltaWrites = deltaWrites;
+    }
+
     @Override
     public SessionData doLoad(String id) throws Exception
     {
@@ -192,6 +225,7 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
             Long lastSaved = (Long)MongoUtils.getNestedValue(sessionDocument, getContextSubfield(__LASTSAVED));
             String lastNode = (String)MongoUtils.getNestedValue(sessionDocument, getContextSubfield(__LASTNODE));
             byte[] attributes = (byte[])MongoUtils.getNestedValue(sessionDocument, getContextSubfield(__ATTRIBUTES));
+            DBObject attributeMap = (DBObject)MongoUtils.getNestedValue(sessionDocument, getContextSubfield(__ATTRIBUTE_MAP));
 
             Long created = (Long)sessionDocument.get(__CREATED);
             Long accessed = (Long)sessionDocument.get(__ACCESSED);
@@ -221,7 +255,7 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
                 data.setLastSaved(lastSaved);
                 data.setLastNode(lastNode);
 
-                if (attributes == null)
+                if (attributes == null && attributeMap == null)
                 {
                     //legacy attribute storage format: the attributes are all fields in the document
                     Map<String, Object> map = new HashMap<>();
@@ -238,11 +272,28 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
                 }
                 else
                 {
-                    //attributes have special serialized format
-                    try (ByteArrayInputStream bais = new ByteArrayInputStream(attributes);
-                         ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais);)
+                    if (attributes != null)
+                    {
+                        //attributes have special serialized format
+                        _sessionDataCodec.decode(data, attributes);
+                        //mark them dirty so that they are migrated to the attribute map on the next save
+                        if (_deltaWrites)
+                        {
+                            for (String name : data.getKeys())
+                            {
+                                data.setDirty(name);
+                            }
+                        }
+                    }
+                    if (attributeMap != null)
                     {
-                        SessionData.deserializeAttributes(data, ois);
+                        Map<String, Object> map = new HashMap<>();
+                        for (String field : attributeMap.keySet())
+                        {
+                            String name = MongoUtils.decodeName(field);
+                            map.put(name, _sessionDataCodec.decodeAttribute(name, (byte[])attributeMap.get(field)));
+                        }
+                        data.putAllAttributes(map);
                     }
                 }
             }
@@ -461,9 +512,80 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         // Form query for upsert
         final BasicDBObject key = new BasicDBObject(__ID, id);
 
+        DBObject current = null;
+        if (lastSaveTime > 0)
+        {
+            //if max idle time and/or expiry is smaller for this context, then choose that for the whole session doc
+            current = _dbSessions.findOne(new BasicDBObject("id", id), getMaxIdleAndExpiryFields());
+        }
+
+        // Do the upsert
+        BasicDBObject update = getUpdate(id, data, lastSaveTime, current);
+        WriteResult res = _dbSessions.update(key, update, lastSaveTime <= 0, false, WriteConcern.SAFE);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Save:db.sessions.update( {}, {},{} )", key, update, res);
+    }
+
+    /**
+     * Store a batch of sessions with a single bulk write, after
+     * querying the current max idle and expiry of the updated
+     * sessions with a single query.
+     */
+    @Override
+    public void doStoreAll(List<SessionData> batch, long[] lastSaveTimes) throws Exception
+    {
+        BasicDBList updatedIds = new BasicDBList();
+        for (int i = 0; i < batch.size(); i++)
+        {
+            if (lastSaveTimes[i] > 0)
+                updatedIds.add(batch.get(i).getId());
+        }
+
+        Map<String, DBObject> currents = new HashMap<>();
+        if (!updatedIds.isEmpty())
+        {
+            BasicDBObject query = new BasicDBObject("id", new BasicDBObject("$in", updatedIds));
+            DBObject fields = getMaxIdleAndExpiryFields();
+            fields.put(__ID, true);
+            try (DBCursor cursor = _dbSessions.find(query, fields))
+            {
+                for (DBObject o : cursor)
+                {
+                    currents.put((String)o.get(__ID), o);
+                }
+            }
+        }
+
+        BulkWriteOperation bulk = _dbSessions.initializeOrderedBulkOperation();
+        for (int i = 0; i < batch.size(); i++)
+        {
+            SessionData data = batch.get(i);
+            String id = data.getId();
+            BasicDBObject update = getUpdate(id, data, lastSaveTimes[i], currents.get(id));
+            BulkWriteRequestBuilder request = bulk.find(new BasicDBObject(__ID, id));
+            if (lastSaveTimes[i] <= 0)
+                request.upsert().updateOne(update);
+            else
+                request.updateOne(update);
+        }
+
+        BulkWriteResult res = bulk.execute(WriteConcern.SAFE);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Save:db.sessions.bulkWrite( {} sessions ) {}", batch.size(), res);
+    }
+
+    private DBObject getMaxIdleAndExpiryFields()
+    {
+        BasicDBObject fields = new BasicDBObject();
+        fields.append(__MAX_IDLE, true);
+        fields.append(__EXPIRY, true);
+        return fields;
+    }
+
+    private BasicDBObject getUpdate(String id, SessionData data, long lastSaveTime, DBObject current) throws Exception
+    {
         // Form updates
         BasicDBObject update = new BasicDBObject();
-        boolean upsert = false;
         BasicDBObject sets = new BasicDBObject();
 
         Object version = ((NoSqlSessionData)data).getVersion();
@@ -471,7 +593,6 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         // New session
         if (lastSaveTime <= 0)
         {
-            upsert = true;
             version = 1L;
             sets.put(__CREATED, data.getCreated());
             sets.put(__VALID, true);
@@ -489,16 +610,11 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
             version = ((Number)version).longValue() + 1L;
             ((NoSqlSessionData)data).setVersion(version);
             update.put("$inc", _version1);
-            //if max idle time and/or expiry is smaller for this context, then choose that for the whole session doc
-            BasicDBObject fields = new BasicDBObject();
-            fields.append(__MAX_IDLE, true);
-            fields.append(__EXPIRY, true);
-            DBObject o = _dbSessions.findOne(new BasicDBObject("id", id), fields);
-            if (o != null)
+            if (current != null)
             {
-                Long tmpLong = (Long)o.get(__MAX_IDLE);
+                Long tmpLong = (Long)current.get(__MAX_IDLE);
                 long currentMaxIdle = (tmpLong == null ? 0 : tmpLong.longValue());
-                tmpLong = (Long)o.get(__EXPIRY);
+                tmpLong = (Long)current.get(__EXPIRY);
                 long currentExpiry = (tmpLong == null ? 0 : tmpLong.longValue());
 
                 if (currentMaxIdle != data.getMaxInactiveMs())
@@ -514,20 +630,41 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         sets.put(__ACCESSED, data.getAccessed());
         sets.put(__LAST_ACCESSED, data.getLastAccessed());
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos);)
+        BasicDBObject unsets = new BasicDBObject();
+        if (!_deltaWrites)
+        {
+            sets.put(getContextSubfield(__ATTRIBUTES), _sessionDataCodec.encode(data));
+            if (lastSaveTime > 0)
+                unsets.put(getContextSubfield(__ATTRIBUTE_MAP), "");
+        }
+        else if (lastSaveTime <= 0)
+        {
+            BasicDBObject attributeMap = new BasicDBObject();
+            for (String name : data.getKeys())
+            {
+                attributeMap.put(MongoUtils.encodeName(name), _sessionDataCodec.encodeAttribute(name, data.getAttribute(name)));
+            }
+            sets.put(getContextSubfield(__ATTRIBUTE_MAP), attributeMap);
+        }
+        else
         {
-            SessionData.serializeAttributes(data, oos);
-            sets.put(getContextSubfield(__ATTRIBUTES), baos.toByteArray());
+            for (String name : data.getDirtyAttributes())
+            {
+                String field = getContextSubfield(__ATTRIBUTE_MAP) + "." + MongoUtils.encodeName(name);
+                Object value = data.getAttribute(name);
+                if (value == null)
+                    unsets.put(field, "");
+                else
+                    sets.put(field, _sessionDataCodec.encodeAttribute(name, value));
+            }
+            unsets.put(getContextSubfield(__ATTRIBUTES), "");
         }
 
-        // Do the upsert
         if (!sets.isEmpty())
             update.put("$set", sets);
-
-        WriteResult res = _dbSessions.update(key, update, upsert, false, WriteConcern.SAFE);
-        if (LOG.isDebugEnabled())
-            LOG.debug("Save:db.sessions.update( {}, {},{} )", key, update, res);
+        if (!unsets.isEmpty())
+            update.put("$unset", unsets);
+        return update;
     }
 
     protected void ensureIndexes() throws MongoException
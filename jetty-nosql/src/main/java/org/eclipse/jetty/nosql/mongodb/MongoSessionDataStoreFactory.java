@@ -32,6 +32,7 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
     String _host;
     String _connectionString;
     int _port = -1;
+    boolean _deltaWrites;
 
     /**
      * @return the host
@@ -113,6 +114,23 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
         _collectionName = collectionName;
     }
 
+    /**
+     * @return true if only the changed session attributes are written
+     */
+    public boolean isDeltaWrites()
+    {
+        return _deltaWrites;
+    }
+
+    /**
+     * @param deltaWrites true to write only the changed session attributes
+     * @see MongoSessionDataStore#setDeltaWrites(boolean)
+     */
+    public void setDeltaWrites(boolean deltaWrites)
+    {
+        _deltaWrites = deltaWrites;
+    }
+
     /**
      * @throws Exception {@link UnknownHostException} if any issue while resolving MongoDB Host
      * @see org.eclipse.jetty.server.session.SessionDataStoreFactory#getSessionDataStore(org.eclipse.jetty.server.session.SessionHandler)
@@ -123,6 +141,9 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
         MongoSessionDataStore store = new MongoSessionDataStore();
         store.setGracePeriodSec(getGracePeriodSec());
         store.setSavePeriodSec(getSavePeriodSec());
+        if (getSessionDataCodec() != null)
+            store.setSessionDataCodec(getSessionDataCodec());
+        store.setDeltaWrites(isDeltaWrites());
         MongoClient mongo;
 
         if (!StringUtil.isBlank(getConnectionString()))
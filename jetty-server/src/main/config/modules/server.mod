@@ -66,6 +66,12 @@ etc/jetty.xml
 ## Whether to use direct ByteBuffers for reading or writing
 # jetty.httpConfig.useInputDirectByteBuffers=true
 # jetty.httpConfig.useOutputDirectByteBuffers=true
+
+## Whether to transfer file content directly to the network, without copying it to user space
+# jetty.httpConfig.useFileTransfer=false
+
+## Whether to coalesce the writes of responses to pipelined requests
+# jetty.httpConfig.coalesceResponseWrites=false
 # end::documentation-http-config[]
 
 # tag::documentation-server-compliance[]
@@ -0,0 +1,29 @@
+# DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Enable a first level session cache for a large number of sessions.
+Sessions are kept in memory in segments, and their inactivity
+timeouts are tracked by timing wheels rather than by a timer per session.
+
+[tags]
+session
+
+[provides]
+session-cache
+
+[depends]
+sessions
+
+[xml]
+etc/sessions/session-cache-striped.xml
+
+[ini-template]
+#jetty.session.evictionPolicy=-1
+#jetty.session.saveOnInactiveEvict=false
+#jetty.session.saveOnCreate=false
+#jetty.session.removeUnloadableSessions=false
+#jetty.session.flushOnResponseCommit=false
+#jetty.session.invalidateOnShutdown=false
+#jetty.session.striped.segments=16
+#jetty.session.striped.timerTickMs=1000
+#jetty.session.striped.expiryBatchSize=1000
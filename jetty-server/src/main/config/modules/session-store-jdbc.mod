@@ -55,6 +55,11 @@ db-connection-type=datasource
 #jetty.session.jdbc.schema.maxIntervalColumn=maxInterval
 #jetty.session.jdbc.schema.mapColumn=map
 #jetty.session.jdbc.schema.table=JettySessions
+# Optional name of a table holding one row per session attribute, so that
+#  only the attributes changed since the last save are written
+#jetty.session.jdbc.schema.attributeTable=JettySessionAttributes
+#jetty.session.jdbc.schema.attributeNameColumn=attributeName
+#jetty.session.jdbc.schema.attributeValueColumn=attributeValue
 # Optional name of the schema used to identify where the session table is defined in the database: 
 #  "" - empty string, no schema name 
 #  "INFERRED" - special string meaning infer from the current db connection
@@ -0,0 +1,20 @@
+# DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Enables write behind of SessionData to a SessionDataStore:
+sessions are queued and written in bulk, at the cost of
+losing the latest changes of the queued sessions on a crash.
+
+[tags]
+session
+
+[depend]
+session-store
+
+[xml]
+etc/sessions/session-store-write-behind.xml
+
+[ini-template]
+#jetty.session.writeBehind.flushIntervalMs=1000
+#jetty.session.writeBehind.maxBatchSize=500
+#jetty.session.writeBehind.maxPending=10000
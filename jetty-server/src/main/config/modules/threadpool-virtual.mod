@@ -0,0 +1,26 @@
+[description]
+Enables and configures the Server ThreadPool to run tasks on virtual threads.
+Selectors and acceptors run on a pool of platform threads.
+If the JVM does not support virtual threads, all tasks run on platform threads.
+
+[provides]
+threadpool
+
+[depends]
+logging
+
+[xml]
+etc/jetty-threadpool-virtual.xml
+
+[ini-template]
+## Minimum number of pooled platform threads.
+#jetty.threadPool.minThreads=10
+
+## Maximum number of pooled platform threads.
+#jetty.threadPool.maxThreads=200
+
+## Number of reserved platform threads (-1 for heuristic).
+#jetty.threadPool.reservedThreads=-1
+
+## Platform thread idle timeout (in milliseconds).
+#jetty.threadPool.idleTimeout=60000
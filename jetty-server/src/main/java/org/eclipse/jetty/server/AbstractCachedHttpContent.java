@@ -0,0 +1,183 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.eclipse.jetty.http.DateGenerator;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.MimeTypes.Type;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.util.resource.Resource;
+
+/**
+ * <p>The metadata of a cached Resource, computed once when the content is cached.</p>
+ * <p>Subclasses manage the buffers of the content according to the policy of their cache.</p>
+ *
+ * @see CachedContentFactory
+ * @see TinyLfuContentFactory
+ */
+public abstract class AbstractCachedHttpContent implements HttpContent
+{
+    private final String _key;
+    private final Resource _resource;
+    private final long _contentLengthValue;
+    private final HttpField _contentType;
+    private final String _characterEncoding;
+    private final MimeTypes.Type _mimeType;
+    private final HttpField _contentLength;
+    private final HttpField _lastModified;
+    private final long _lastModifiedValue;
+    private final HttpField _etag;
+
+    protected AbstractCachedHttpContent(String pathInContext, Resource resource, MimeTypes mimeTypes, boolean etags)
+    {
+        _key = pathInContext;
+        _resource = resource;
+
+        String contentType = mimeTypes.getMimeByExtension(_resource.toString());
+        _contentType = contentType == null ? null : new PreEncodedHttpField(HttpHeader.CONTENT_TYPE, contentType);
+        _characterEncoding = _contentType == null ? null : MimeTypes.getCharsetFromContentType(contentType);
+        _mimeType = _contentType == null ? null : MimeTypes.CACHE.get(MimeTypes.getContentTypeWithoutCharset(contentType));
+
+        boolean exists = resource.exists();
+        _lastModifiedValue = exists ? resource.lastModified() : -1L;
+        _lastModified = _lastModifiedValue == -1 ? null
+            : new PreEncodedHttpField(HttpHeader.LAST_MODIFIED, DateGenerator.formatDate(_lastModifiedValue));
+
+        _contentLengthValue = exists ? resource.length() : 0;
+        _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(_contentLengthValue));
+
+        _etag = etags ? new PreEncodedHttpField(HttpHeader.ETAG, resource.getWeakETag()) : null;
+    }
+
+    public String getKey()
+    {
+        return _key;
+    }
+
+    /**
+     * @return whether the resource was modified since this content was created
+     */
+    protected boolean isModified()
+    {
+        return _lastModifiedValue != _resource.lastModified() || _contentLengthValue != _resource.length();
+    }
+
+    @Override
+    public Resource getResource()
+    {
+        return _resource;
+    }
+
+    @Override
+    public HttpField getETag()
+    {
+        return _etag;
+    }
+
+    @Override
+    public String getETagValue()
+    {
+        return _etag.getValue();
+    }
+
+    @Override
+    public HttpField getLastModified()
+    {
+        return _lastModified;
+    }
+
+    @Override
+    public String getLastModifiedValue()
+    {
+        return _lastModified == null ? null : _lastModified.getValue();
+    }
+
+    @Override
+    public HttpField getContentType()
+    {
+        return _contentType;
+    }
+
+    @Override
+    public String getContentTypeValue()
+    {
+        return _contentType == null ? null : _contentType.getValue();
+    }
+
+    @Override
+    public HttpField getContentEncoding()
+    {
+        return null;
+    }
+
+    @Override
+    public String getContentEncodingValue()
+    {
+        return null;
+    }
+
+    @Override
+    public String getCharacterEncoding()
+    {
+        return _characterEncoding;
+    }
+
+    @Override
+    public Type getMimeType()
+    {
+        return _mimeType;
+    }
+
+    @Override
+    public void release()
+    {
+    }
+
+    @Override
+    public HttpField getContentLength()
+    {
+        return _contentLength;
+    }
+
+    @Override
+    public long getContentLengthValue()
+    {
+        return _contentLengthValue;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException
+    {
+        ByteBuffer indirect = getIndirectBuffer();
+        if (indirect != null && indirect.hasArray())
+            return new ByteArrayInputStream(indirect.array(), indirect.arrayOffset() + indirect.position(), indirect.remaining());
+
+        return _resource.getInputStream();
+    }
+
+    @Override
+    public ReadableByteChannel getReadableByteChannel() throws IOException
+    {
+        return _resource.getReadableByteChannel();
+    }
+}
@@ -48,6 +48,7 @@ import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
 import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.util.thread.ThreadPoolBudget;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -679,7 +680,7 @@ public abstract class AbstractConnector extends ContainerLifeCycle implements Co
         }
     }
 
-    private class Acceptor implements Runnable
+    private class Acceptor implements VirtualThreadPool.PlatformTask
     {
         private final int _id;
         private String _name;
@@ -302,10 +302,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 if (c1._lastAccessed > c2._lastAccessed)
                     return 1;
 
-                if (c1._contentLengthValue < c2._contentLengthValue)
+                if (c1.getContentLengthValue() < c2.getContentLengthValue())
                     return -1;
 
-                return c1._key.compareTo(c2._key);
+                return c1.getKey().compareTo(c2.getKey());
             });
             sorted.addAll(_cache.values());
 
@@ -374,18 +374,8 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     /**
      * MetaData associated with a context Resource.
      */
-    public class CachedHttpContent implements HttpContent
+    public class CachedHttpContent extends AbstractCachedHttpContent
     {
-        private final String _key;
-        private final Resource _resource;
-        private final long _contentLengthValue;
-        private final HttpField _contentType;
-        private final String _characterEncoding;
-        private final MimeTypes.Type _mimeType;
-        private final HttpField _contentLength;
-        private final HttpField _lastModified;
-        private final long _lastModifiedValue;
-        private final HttpField _etag;
         private final Map<CompressedContentFormat, CachedPrecompressedHttpContent> _precompressed;
         private final AtomicReference<ByteBuffer> _indirectBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _directBuffer = new AtomicReference<>();
@@ -394,29 +384,13 @@ public class CachedContentFactory implements HttpContent.ContentFactory
 
         CachedHttpContent(String pathInContext, Resource resource, Map<CompressedContentFormat, CachedHttpContent> precompressedResources)
         {
-            _key = pathInContext;
-            _resource = resource;
-
-            String contentType = _mimeTypes.getMimeByExtension(_resource.toString());
-            _contentType = contentType == null ? null : new PreEncodedHttpField(HttpHeader.CONTENT_TYPE, contentType);
-            _characterEncoding = _contentType == null ? null : MimeTypes.getCharsetFromContentType(contentType);
-            _mimeType = _contentType == null ? null : MimeTypes.CACHE.get(MimeTypes.getContentTypeWithoutCharset(contentType));
-
-            boolean exists = resource.exists();
-            _lastModifiedValue = exists ? resource.lastModified() : -1L;
-            _lastModified = _lastModifiedValue == -1 ? null
-                : new PreEncodedHttpField(HttpHeader.LAST_MODIFIED, DateGenerator.formatDate(_lastModifiedValue));
-
-            _contentLengthValue = exists ? resource.length() : 0;
-            _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(_contentLengthValue));
+            super(pathInContext, resource, _mimeTypes, _etags);
 
             if (_cachedFiles.incrementAndGet() > _maxCachedFiles)
                 shrinkCache();
 
             _lastAccessed = System.currentTimeMillis();
 
-            _etag = CachedContentFactory.this._etags ? new PreEncodedHttpField(HttpHeader.ETAG, resource.getWeakETag()) : null;
-
             if (precompressedResources != null)
             {
                 _precompressed = new HashMap<>(precompressedResources.size());
@@ -431,43 +405,20 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             }
         }
 
-        public String getKey()
-        {
-            return _key;
-        }
-
         public boolean isCached()
         {
-            return _key != null;
-        }
-
-        @Override
-        public Resource getResource()
-        {
-            return _resource;
-        }
-
-        @Override
-        public HttpField getETag()
-        {
-            return _etag;
-        }
-
-        @Override
-        public String getETagValue()
-        {
-            return _etag.getValue();
+            return getKey() != null;
         }
 
         boolean isValid()
         {
-            if (_lastModifiedValue == _resource.lastModified() && _contentLengthValue == _resource.length())
+            if (!isModified())
             {
                 _lastAccessed = System.currentTimeMillis();
                 return true;
             }
 
-            if (this == _cache.remove(_key))
+            if (this == _cache.remove(getKey()))
                 invalidate();
             return false;
         }
@@ -485,66 +436,14 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             _mappedBuffer.getAndSet(null);
 
             _cachedFiles.decrementAndGet();
-            _resource.close();
-        }
-
-        @Override
-        public HttpField getLastModified()
-        {
-            return _lastModified;
-        }
-
-        @Override
-        public String getLastModifiedValue()
-        {
-            return _lastModified == null ? null : _lastModified.getValue();
-        }
-
-        @Override
-        public HttpField getContentType()
-        {
-            return _contentType;
-        }
-
-        @Override
-        public String getContentTypeValue()
-        {
-            return _contentType == null ? null : _contentType.getValue();
-        }
-
-        @Override
-        public HttpField getContentEncoding()
-        {
-            return null;
-        }
-
-        @Override
-        public String getContentEncodingValue()
-        {
-            return null;
-        }
-
-        @Override
-        public String getCharacterEncoding()
-        {
-            return _characterEncoding;
-        }
-
-        @Override
-        public Type getMimeType()
-        {
-            return _mimeType;
-        }
-
-        @Override
-        public void release()
-        {
+            getResource().close();
         }
 
         @Override
         public ByteBuffer getIndirectBuffer()
         {
-            if (_resource.length() > _maxCachedFileSize)
+            Resource resource = getResource();
+            if (resource.length() > _maxCachedFileSize)
             {
                 return null;
             }
@@ -552,7 +451,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             ByteBuffer buffer = _indirectBuffer.get();
             if (buffer == null)
             {
-                ByteBuffer buffer2 = CachedContentFactory.this.getIndirectBuffer(_resource);
+                ByteBuffer buffer2 = CachedContentFactory.this.getIndirectBuffer(resource);
                 if (buffer2 == null)
                 {
                     if (LOG.isDebugEnabled())
@@ -577,12 +476,13 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         @Override
         public ByteBuffer getDirectBuffer()
         {
+            Resource resource = getResource();
             ByteBuffer buffer = _mappedBuffer.get();
             if (buffer == null)
                 buffer = _directBuffer.get();
             if (buffer == null)
             {
-                ByteBuffer mapped = CachedContentFactory.this.getMappedBuffer(_resource);
+                ByteBuffer mapped = CachedContentFactory.this.getMappedBuffer(resource);
                 if (mapped != null)
                 {
                     if (_mappedBuffer.compareAndSet(null, mapped))
@@ -591,9 +491,9 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                         buffer = _mappedBuffer.get();
                 }
                 // Since MappedBuffers don't use heap, we don't care about the resource.length
-                else if (_resource.length() < _maxCachedFileSize)
+                else if (resource.length() < _maxCachedFileSize)
                 {
-                    ByteBuffer direct = CachedContentFactory.this.getDirectBuffer(_resource);
+                    ByteBuffer direct = CachedContentFactory.this.getDirectBuffer(resource);
                     if (direct != null)
                     {
                         if (_directBuffer.compareAndSet(null, direct))
@@ -617,38 +517,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             return buffer == null ? null : buffer.asReadOnlyBuffer();
         }
 
-        @Override
-        public HttpField getContentLength()
-        {
-            return _contentLength;
-        }
-
-        @Override
-        public long getContentLengthValue()
-        {
-            return _contentLengthValue;
-        }
-
-        @Override
-        public InputStream getInputStream() throws IOException
-        {
-            ByteBuffer indirect = getIndirectBuffer();
-            if (indirect != null && indirect.hasArray())
-                return new ByteArrayInputStream(indirect.array(), indirect.arrayOffset() + indirect.position(), indirect.remaining());
-
-            return _resource.getInputStream();
-        }
-
-        @Override
-        public ReadableByteChannel getReadableByteChannel() throws IOException
-        {
-            return _resource.getReadableByteChannel();
-        }
-
         @Override
         public String toString()
         {
-            return String.format("CachedContent@%x{r=%s,e=%b,lm=%s,ct=%s,c=%d}", hashCode(), _resource, _resource.exists(), _lastModified, _contentType, _precompressed.size());
+            return String.format("CachedContent@%x{r=%s,e=%b,lm=%s,ct=%s,c=%d}", hashCode(), getResource(), getResource().exists(), getLastModified(), getContentType(), _precompressed.size());
         }
 
         @Override
@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
@@ -1035,6 +1036,55 @@ public abstract class HttpChannel implements Runnable, HttpOutput.Interceptor
         sendResponse(null, content, complete, callback);
     }
 
+    /**
+     * @return whether {@link #transfer(FileChannel, long, long, Callback)} can write
+     * content of the current response
+     */
+    public boolean isTransferSupported()
+    {
+        return false;
+    }
+
+    /**
+     * @return whether {@link Listener}s are notified of the response content,
+     * which cannot be done for content written by {@link #transfer(FileChannel, long, long, Callback)}
+     */
+    protected boolean isNotifyingResponseContent()
+    {
+        if (_combinedListener instanceof HttpChannelListeners)
+            return ((HttpChannelListeners)_combinedListener).isNotifyingResponseContent();
+        return _combinedListener != NOOP_LISTENER;
+    }
+
+    /**
+     * <p>Non-Blocking write of a range of a file, that must follow the content already
+     * written for a committed response.</p>
+     * <p>The bytes are written directly to the {@link EndPoint}, without being copied
+     * to user space buffers and without being passed to {@link HttpOutput.Interceptor}s
+     * or to {@link Listener#onResponseContent(Request, ByteBuffer)}.</p>
+     *
+     * @param file the file to write
+     * @param position the position in the file of the first byte to write
+     * @param length the number of bytes to write
+     * @param callback Callback when complete or failed
+     * @see #isTransferSupported()
+     */
+    public void transfer(FileChannel file, long position, long length, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("transfer {}@{}+{} {}", file, position, length, this);
+
+        _endPoint.write(new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _written += length;
+                super.succeeded();
+            }
+        }, file, position, length);
+    }
+
     @Override
     public void resetBuffer()
     {
@@ -465,6 +465,18 @@ public class HttpChannelOverHttp extends HttpChannel implements HttpParser.Reque
         return _httpConnection.isUseOutputDirectByteBuffers();
     }
 
+    @Override
+    public boolean isTransferSupported()
+    {
+        // Transferred bytes bypass the generator, so they cannot be chunked,
+        // and bypass the listeners, so they cannot be notified.
+        return getHttpConfiguration().isUseFileTransfer() &&
+            getEndPoint().isTransferSupported() &&
+            !isNotifyingResponseContent() &&
+            !getRequest().isHead() &&
+            !_httpConnection.getGenerator().isChunking();
+    }
+
     @Override
     public boolean messageComplete()
     {
@@ -67,6 +67,8 @@ public class HttpConfiguration implements Dumpable
     private int _maxErrorDispatches = 10;
     private boolean _useInputDirectByteBuffers = true;
     private boolean _useOutputDirectByteBuffers = true;
+    private boolean _useFileTransfer = false;
+    private boolean _coalesceResponseWrites = false;
     private long _minRequestDataRate;
     private long _minResponseDataRate;
     private HttpCompliance _httpCompliance = HttpCompliance.RFC7230;
@@ -137,6 +139,8 @@ public class HttpConfiguration implements Dumpable
         _maxErrorDispatches = config._maxErrorDispatches;
         _useInputDirectByteBuffers = config._useInputDirectByteBuffers;
         _useOutputDirectByteBuffers = config._useOutputDirectByteBuffers;
+        _useFileTransfer = config._useFileTransfer;
+        _coalesceResponseWrites = config._coalesceResponseWrites;
         _minRequestDataRate = config._minRequestDataRate;
         _minResponseDataRate = config._minResponseDataRate;
         _httpCompliance = config._httpCompliance;
@@ -357,6 +361,50 @@ public class HttpConfiguration implements Dumpable
         return _useOutputDirectByteBuffers;
     }
 
+    /**
+     * <p>Sets whether file content may be written with {@link java.nio.channels.FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)},
+     * so that it is not copied to user space buffers.</p>
+     * <p>File transfers are only performed when the connection supports them,
+     * for example cleartext HTTP/1.1 connections on a {@link ServerConnector}.
+     * Transferred content is not seen by {@link HttpOutput.Interceptor}s nor by
+     * {@link HttpChannel.Listener#onResponseContent(Request, java.nio.ByteBuffer)},
+     * so file transfers are not performed when any of them is present.</p>
+     * <p>File transfers are disabled by default.</p>
+     *
+     * @param useFileTransfer whether to transfer file content directly to the network
+     */
+    public void setUseFileTransfer(boolean useFileTransfer)
+    {
+        _useFileTransfer = useFileTransfer;
+    }
+
+    @ManagedAttribute("Whether to transfer file content directly to the network")
+    public boolean isUseFileTransfer()
+    {
+        return _useFileTransfer;
+    }
+
+    /**
+     * <p>Sets whether HTTP/1.1 connections coalesce the end of responses to pipelined requests.</p>
+     * <p>When enabled, the last bytes of a response, for example the whole of a small response
+     * or the terminal chunk of a chunked response, are not written if another request has
+     * already been received on the connection. They are instead copied into a buffer of
+     * {@link #getOutputBufferSize()} bytes, and written with the bytes of the next response
+     * in a single gathering write, or when the connection has no more requests to handle.</p>
+     *
+     * @param coalesceResponseWrites whether to coalesce the writes of pipelined responses
+     */
+    public void setCoalesceResponseWrites(boolean coalesceResponseWrites)
+    {
+        _coalesceResponseWrites = coalesceResponseWrites;
+    }
+
+    @ManagedAttribute("Whether to coalesce the writes of pipelined responses")
+    public boolean isCoalesceResponseWrites()
+    {
+        return _coalesceResponseWrites;
+    }
+
     /**
      * <p>Sets the {@link Customizer}s that are invoked for every
      * request received.</p>
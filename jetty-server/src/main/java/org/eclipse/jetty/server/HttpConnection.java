@@ -28,6 +28,7 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpHeaderValue;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpParser;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.io.AbstractConnection;
@@ -38,7 +39,9 @@ import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.io.WriteFlusher;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FutureCallback;
 import org.eclipse.jetty.util.IteratingCallback;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -67,6 +70,9 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     private final boolean _recordHttpComplianceViolations;
     private final LongAdder bytesIn = new LongAdder();
     private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder writesOut = new LongAdder();
+    private final AutoLock _coalescedLock = new AutoLock();
+    private ByteBuffer _coalesced;
     private boolean _useInputDirectByteBuffers;
     private boolean _useOutputDirectByteBuffers;
 
@@ -198,6 +204,9 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
     @Override
     public ByteBuffer onUpgradeFrom()
     {
+        // The bytes of the responses to previous requests
+        // must be written before the new connection writes.
+        flushCoalesced();
         if (BufferUtil.hasContent(_requestBuffer))
         {
             ByteBuffer unconsumed = ByteBuffer.allocateDirect(_requestBuffer.remaining());
@@ -282,18 +291,28 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
                     boolean suspended = !_channel.handle();
 
                     // We should break iteration if we have suspended or upgraded the connection.
-                    if (suspended || getEndPoint().getConnection() != this)
+                    if (suspended)
+                    {
+                        // The suspended request may never write, so try
+                        // to write the responses to previous requests.
+                        tryFlushCoalesced();
+                        break;
+                    }
+                    if (getEndPoint().getConnection() != this)
                         break;
                 }
                 else if (filled == 0)
                 {
-                    fillInterested();
+                    writeCoalesced(this::fillInterested);
                     break;
                 }
                 else if (filled < 0)
                 {
-                    if (_channel.getState().isIdle())
-                        getEndPoint().shutdownOutput();
+                    writeCoalesced(() ->
+                    {
+                        if (_channel.getState().isIdle())
+                            getEndPoint().shutdownOutput();
+                    });
                     break;
                 }
             }
@@ -314,6 +333,110 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         }
     }
 
+    /**
+     * <p>Writes the coalesced bytes, if any, and then runs the given task.</p>
+     * <p>Must only be called when no response is being written.</p>
+     *
+     * @param then the task to run once the coalesced bytes are written
+     */
+    private void writeCoalesced(Runnable then)
+    {
+        ByteBuffer coalesced = takeCoalesced();
+        if (coalesced == null)
+        {
+            then.run();
+            return;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} write coalesced {}", this, BufferUtil.toDetailString(coalesced));
+        writesOut.increment();
+        getEndPoint().write(Callback.from(() ->
+        {
+            _bufferPool.release(coalesced);
+            then.run();
+        }, x ->
+        {
+            _bufferPool.release(coalesced);
+            getEndPoint().close(x);
+        }), coalesced);
+    }
+
+    /**
+     * <p>Writes the coalesced bytes, if any, blocking until they are written.</p>
+     * <p>Must only be called when no response is being written.</p>
+     */
+    private void flushCoalesced()
+    {
+        ByteBuffer coalesced = takeCoalesced();
+        if (coalesced == null)
+            return;
+
+        try
+        {
+            writesOut.increment();
+            FutureCallback callback = new FutureCallback();
+            getEndPoint().write(callback, coalesced);
+            callback.block();
+        }
+        catch (IOException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} failed to write coalesced bytes", this, x);
+            getEndPoint().close(x);
+        }
+        finally
+        {
+            _bufferPool.release(coalesced);
+        }
+    }
+
+    /**
+     * <p>Tries to write the coalesced bytes, if any, without blocking.</p>
+     * <p>Bytes that cannot be written stay coalesced, and are written
+     * before the next response.</p>
+     */
+    private void tryFlushCoalesced()
+    {
+        try (AutoLock l = _coalescedLock.lock())
+        {
+            if (_coalesced == null)
+                return;
+
+            // Hold the lock while flushing, so that a response written by
+            // another thread waits for the coalesced bytes to be taken.
+            writesOut.increment();
+            if (getEndPoint().flush(_coalesced))
+            {
+                _bufferPool.release(_coalesced);
+                _coalesced = null;
+            }
+        }
+        catch (IOException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} failed to flush coalesced bytes", this, x);
+            getEndPoint().close(x);
+        }
+    }
+
+    private ByteBuffer takeCoalesced()
+    {
+        try (AutoLock l = _coalescedLock.lock())
+        {
+            ByteBuffer coalesced = _coalesced;
+            _coalesced = null;
+            return coalesced;
+        }
+    }
+
+    private void releaseCoalesced()
+    {
+        ByteBuffer coalesced = takeCoalesced();
+        if (coalesced != null)
+            _bufferPool.release(coalesced);
+    }
+
     /**
      * Parse and fill data, looking for content.
      * We do parse first, and only fill if we're out of bytes to avoid unnecessary system calls.
@@ -535,6 +658,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
             _sendCallback.close();
         else
             _sendCallback.failed(cause);
+        releaseCoalesced();
         super.onClose(cause);
     }
 
@@ -613,6 +737,16 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         return bytesOut.longValue();
     }
 
+    /**
+     * @return the number of write operations performed on the {@link EndPoint},
+     * which is less than the number of responses when writes are coalesced
+     * @see HttpConfiguration#isCoalesceResponseWrites()
+     */
+    public long getWritesOut()
+    {
+        return writesOut.longValue();
+    }
+
     @Override
     public String toConnectionString()
     {
@@ -688,6 +822,7 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         private Callback _callback;
         private ByteBuffer _header;
         private ByteBuffer _chunk;
+        private ByteBuffer _previous;
         private boolean _shutdownOut;
 
         private SendCallback()
@@ -801,6 +936,25 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
                             bytes += _content.remaining();
                         }
                         HttpConnection.this.bytesOut.add(bytes);
+
+                        if (coalesce(bytes))
+                        {
+                            succeeded();
+                            return Action.SCHEDULED;
+                        }
+
+                        releasePrevious();
+                        _previous = takeCoalesced();
+                        if (_previous != null)
+                        {
+                            // Write the responses to previous requests first.
+                            writesOut.increment();
+                            getEndPoint().write(this, gather(_previous, gatherWrite));
+                            return Action.SCHEDULED;
+                        }
+
+                        if (gatherWrite != 0)
+                            writesOut.increment();
                         switch (gatherWrite)
                         {
                             case 7:
@@ -857,6 +1011,76 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
             }
         }
 
+        /**
+         * <p>Copies the bytes to write into the coalesced buffer instead of writing them,
+         * if this is the end of a response and another request has already been received.</p>
+         * <p>The thread handling requests for this connection will handle that other request
+         * and then write the coalesced bytes with the next response, or when it stops
+         * handling requests.</p>
+         *
+         * @param bytes the number of bytes to write
+         * @return whether the bytes have been coalesced
+         */
+        private boolean coalesce(long bytes)
+        {
+            if (!_lastContent || bytes == 0 || !_config.isCoalesceResponseWrites())
+                return false;
+            if (getCurrentConnection() != HttpConnection.this)
+                return false;
+            // The buffered bytes must belong to another request, not to the content of this one.
+            if (!isRequestComplete() || BufferUtil.isEmpty(_requestBuffer))
+                return false;
+            // The connection may be closed or upgraded after this response.
+            if (_shutdownOut || !_generator.isPersistent() || _info != null && _info.getStatus() == HttpStatus.SWITCHING_PROTOCOLS_101)
+                return false;
+            if (_channel.getRequest().getAttribute(UPGRADE_CONNECTION_ATTRIBUTE) != null)
+                return false;
+
+            try (AutoLock l = _coalescedLock.lock())
+            {
+                if (_coalesced == null)
+                    _coalesced = _bufferPool.acquire(_config.getOutputBufferSize(), isUseOutputDirectByteBuffers());
+                if (bytes > BufferUtil.space(_coalesced))
+                    return false;
+
+                int position = BufferUtil.flipToFill(_coalesced);
+                if (_header != null)
+                    _coalesced.put(_header);
+                if (_chunk != null)
+                    _coalesced.put(_chunk);
+                if (_content != null)
+                    _coalesced.put(_content);
+                BufferUtil.flipToFlush(_coalesced, position);
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("{} coalesced {} bytes", HttpConnection.this, bytes);
+            return true;
+        }
+
+        private boolean isRequestComplete()
+        {
+            if (_parser.isState(HttpParser.State.END))
+                return true;
+            // A request without content, or whose content has been entirely
+            // parsed, stays in the CONTENT state until the parser is called again.
+            return _parser.isState(HttpParser.State.CONTENT) && _parser.getContentRead() == Math.max(0, _parser.getContentLength());
+        }
+
+        private ByteBuffer[] gather(ByteBuffer previous, byte gatherWrite)
+        {
+            ByteBuffer[] buffers = new ByteBuffer[1 + Integer.bitCount(gatherWrite)];
+            int i = 0;
+            buffers[i++] = previous;
+            if ((gatherWrite & 4) != 0)
+                buffers[i++] = _header;
+            if ((gatherWrite & 2) != 0)
+                buffers[i++] = _chunk;
+            if ((gatherWrite & 1) != 0)
+                buffers[i] = _content;
+            return buffers;
+        }
+
         private Callback release()
         {
             Callback complete = _callback;
@@ -865,9 +1089,17 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
             _content = null;
             releaseHeader();
             releaseChunk();
+            releasePrevious();
             return complete;
         }
 
+        private void releasePrevious()
+        {
+            if (_previous != null)
+                _bufferPool.release(_previous);
+            _previous = null;
+        }
+
         private void releaseHeader()
         {
             if (_header != null)
@@ -14,10 +14,14 @@
 package org.eclipse.jetty.server;
 
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.annotation.Name;
 
 /**
@@ -26,8 +30,21 @@ import org.eclipse.jetty.util.annotation.Name;
  * {@link HttpConnection}s are configured by a {@link HttpConfiguration} instance that is either created by
  * default or passed in to the constructor.
  */
+@ManagedObject("HTTP/1.1 Connection Factory")
 public class HttpConnectionFactory extends AbstractConnectionFactory implements HttpConfiguration.ConnectionFactory
 {
+    private final LongAdder _responsesOut = new LongAdder();
+    private final LongAdder _writesOut = new LongAdder();
+    private final Connection.Listener _writesListener = new Connection.Listener.Adapter()
+    {
+        @Override
+        public void onClosed(Connection connection)
+        {
+            HttpConnection httpConnection = (HttpConnection)connection;
+            _responsesOut.add(httpConnection.getMessagesOut());
+            _writesOut.add(httpConnection.getWritesOut());
+        }
+    };
     private final HttpConfiguration _config;
     private boolean _recordHttpComplianceViolations;
     private boolean _useInputDirectByteBuffers;
@@ -83,12 +100,39 @@ public class HttpConnectionFactory extends AbstractConnectionFactory implements
         _useOutputDirectByteBuffers = useOutputDirectByteBuffers;
     }
 
+    @ManagedAttribute("The number of responses of the closed connections")
+    public long getResponsesOut()
+    {
+        return _responsesOut.longValue();
+    }
+
+    @ManagedAttribute("The number of write operations of the closed connections")
+    public long getWritesOut()
+    {
+        return _writesOut.longValue();
+    }
+
+    @ManagedAttribute("The average number of write operations per response of the closed connections")
+    public double getWritesPerResponse()
+    {
+        long responses = getResponsesOut();
+        return responses == 0 ? 0 : (double)getWritesOut() / responses;
+    }
+
+    @ManagedOperation(value = "Resets the write statistics", impact = "ACTION")
+    public void resetWriteStatistics()
+    {
+        _responsesOut.reset();
+        _writesOut.reset();
+    }
+
     @Override
     public Connection newConnection(Connector connector, EndPoint endPoint)
     {
         HttpConnection connection = new HttpConnection(_config, connector, endPoint, isRecordHttpComplianceViolations());
         connection.setUseInputDirectByteBuffers(isUseInputDirectByteBuffers());
         connection.setUseOutputDirectByteBuffers(isUseOutputDirectByteBuffers());
+        connection.addEventListener(_writesListener);
         return configure(connection, connector, endPoint);
     }
 }
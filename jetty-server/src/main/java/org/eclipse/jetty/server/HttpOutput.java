@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.Charset;
@@ -970,6 +971,74 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * <p>Blocking write of a range of a file, that transfers the bytes directly to the
+     * network if the connection supports it.</p>
+     * <p>Any aggregated content is flushed and the response is committed before the
+     * range is transferred, so the content length must be set if the response is
+     * not yet committed.</p>
+     *
+     * @param file the file to write
+     * @param position the position in the file of the first byte to write
+     * @param length the number of bytes to write
+     * @return true if the range has been written, false if it cannot be transferred
+     * and must be written by other means
+     * @throws IOException if the write fails
+     * @see HttpChannel#transfer(FileChannel, long, long, Callback)
+     */
+    public boolean transfer(FileChannel file, long position, long length) throws IOException
+    {
+        boolean last;
+        try (AutoLock l = _channelState.lock())
+        {
+            if (_apiState != ApiState.BLOCKING || !isTransferSupported())
+                return false;
+
+            checkWritable();
+            long written = _written + length;
+            last = _channel.getResponse().isAllContentWritten(written);
+            if (last && _state == State.OPEN)
+                _state = State.CLOSING;
+            _apiState = ApiState.BLOCKED;
+            _written = written;
+        }
+
+        try
+        {
+            // The transferred bytes must follow the headers and any aggregated content.
+            if (BufferUtil.hasContent(_aggregate))
+                channelWrite(_aggregate, false);
+            else if (!_channel.isCommitted())
+                channelWrite(BufferUtil.EMPTY_BUFFER, false);
+
+            try (Blocker blocker = _writeBlocker.acquire())
+            {
+                _channel.transfer(file, position, length, blocker);
+                blocker.block();
+            }
+
+            if (last)
+                channelWrite(BufferUtil.EMPTY_BUFFER, true);
+
+            onWriteComplete(last, null);
+        }
+        catch (Throwable t)
+        {
+            onWriteComplete(last, t);
+            throw t;
+        }
+        return true;
+    }
+
+    private boolean isTransferSupported()
+    {
+        // Interceptors must see all the content, and the length of
+        // the content must be known so that it is not chunked.
+        return _interceptor == _channel &&
+            _channel.isTransferSupported() &&
+            (_channel.isCommitted() || _channel.getResponse().getLongContentLength() >= 0);
+    }
+
     @Override
     public void write(int b) throws IOException
     {
@@ -1316,6 +1385,19 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
         if (rbc != null)
         {
+            long length = httpContent.getContentLengthValue();
+            if (rbc instanceof FileChannel && length >= 0 &&
+                length == _channel.getResponse().getLongContentLength() &&
+                isTransferSupported())
+            {
+                // Close of the rbc is done by the FileChannelTransferCB
+                if (prepareSendContent(0, callback))
+                    new FileChannelTransferCB((FileChannel)rbc, length, callback).iterate();
+                else
+                    IO.close(rbc);
+                return;
+            }
+
             // Close of the rbc is done by the async sendContent
             sendContent(rbc, callback);
             return;
@@ -1853,6 +1935,70 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * An iterating callback that commits the response, then writes the whole
+     * content of a FileChannel with {@link HttpChannel#transfer(FileChannel, long, long, Callback)},
+     * so that it is not copied to user space buffers, and finally completes the response.
+     * Only once all the content is transferred will the wrapped {@link Callback#succeeded()}
+     * method be called.
+     */
+    private class FileChannelTransferCB extends NestedChannelWriteCB
+    {
+        private final FileChannel _file;
+        private final long _length;
+        private boolean _committed;
+        private boolean _transferred;
+        private boolean _eof;
+
+        FileChannelTransferCB(FileChannel file, long length, Callback callback)
+        {
+            super(callback, true);
+            _file = file;
+            _length = length;
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            if (!_committed)
+            {
+                _committed = true;
+                channelWrite(BufferUtil.EMPTY_BUFFER, false, this);
+                return Action.SCHEDULED;
+            }
+
+            if (!_transferred)
+            {
+                _transferred = true;
+                try (AutoLock l = _channelState.lock())
+                {
+                    _written += _length;
+                }
+                _channel.transfer(_file, 0, _length, this);
+                return Action.SCHEDULED;
+            }
+
+            if (!_eof)
+            {
+                _eof = true;
+                channelWrite(BufferUtil.EMPTY_BUFFER, true, this);
+                return Action.SCHEDULED;
+            }
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("EOF of {}", this);
+            IO.close(_file);
+            return Action.SUCCEEDED;
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            IO.close(_file);
+            super.onCompleteFailure(x);
+        }
+    }
+
     private static class WriteBlocker extends SharedBlockingCallback
     {
         private final HttpChannel _channel;
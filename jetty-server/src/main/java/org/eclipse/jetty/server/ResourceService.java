@@ -43,7 +43,6 @@ import org.eclipse.jetty.http.QuotedCSV;
 import org.eclipse.jetty.http.QuotedQualityCSV;
 import org.eclipse.jetty.io.WriterOutputStream;
 import org.eclipse.jetty.server.resource.HttpContentRangeWriter;
-import org.eclipse.jetty.server.resource.InputStreamRangeWriter;
 import org.eclipse.jetty.server.resource.RangeWriter;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
@@ -813,7 +812,8 @@ public class ResourceService
                 for (InclusiveByteRange ibr : ranges)
                 {
                     multi.startPart(mimetype, new String[]{HttpHeader.CONTENT_RANGE + ": " + header[i]});
-                    rangeWriter.writeTo(multi, ibr.getFirst(), ibr.getSize());
+                    // write the part content to the underlying stream, so that it may be transferred
+                    rangeWriter.writeTo(out, ibr.getFirst(), ibr.getSize());
                     i++;
                 }
             }
@@ -844,7 +844,7 @@ public class ResourceService
         }
 
         // Use a ranged writer
-        try (InputStreamRangeWriter rangeWriter = new InputStreamRangeWriter(() -> content.getInputStream()))
+        try (RangeWriter rangeWriter = HttpContentRangeWriter.newRangeWriter(content))
         {
             rangeWriter.writeTo(out, start, contentLength);
         }
@@ -16,6 +16,7 @@ package org.eclipse.jetty.server;
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
 import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
 import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLSession;
 
@@ -25,6 +26,7 @@ import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.Name;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
@@ -37,9 +39,14 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
 
     private final SslContextFactory.Server _sslContextFactory;
     private final String _nextProtocol;
+    private final LongAdder _pinnedBufferBytes = new LongAdder();
     private boolean _directBuffersForEncryption = false;
     private boolean _directBuffersForDecryption = false;
     private boolean _ensureSecureRequestCustomizer = true;
+    private int _smallInputBufferSize;
+    private int _smallRecordSize;
+    private long _smallRecordThreshold = 1024 * 1024;
+    private long _smallRecordIdleTimeout = 1000;
 
     public SslConnectionFactory()
     {
@@ -104,6 +111,102 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         _ensureSecureRequestCustomizer = ensureSecureRequestCustomizer;
     }
 
+    /**
+     * @return the size of the buffer used to read encrypted bytes before growing it
+     * to the TLS packet size, or 0 if the TLS packet size is always used
+     * @see SslConnection#getSmallInputBufferSize()
+     */
+    @ManagedAttribute("The size of the buffer used to read encrypted bytes, 0 for the TLS packet size")
+    public int getSmallInputBufferSize()
+    {
+        return _smallInputBufferSize;
+    }
+
+    /**
+     * <p>Sets the size of the buffer used to read encrypted bytes, so that idle
+     * TLS connections do not hold buffers of the TLS packet size.</p>
+     *
+     * @param smallInputBufferSize the size of the small input buffer, or 0 to always use the TLS packet size
+     * @see SslConnection#setSmallInputBufferSize(int)
+     */
+    public void setSmallInputBufferSize(int smallInputBufferSize)
+    {
+        _smallInputBufferSize = smallInputBufferSize;
+    }
+
+    /**
+     * @return the max number of application bytes in each TLS record written at the
+     * beginning of a connection or after idleness, or 0 to always write full size TLS records
+     * @see SslConnection#getSmallRecordSize()
+     */
+    @ManagedAttribute("The size of TLS records written at the beginning of a connection or after idleness, 0 for full size")
+    public int getSmallRecordSize()
+    {
+        return _smallRecordSize;
+    }
+
+    /**
+     * <p>Sets the max number of application bytes in each TLS record written at the
+     * beginning of a connection or after idleness, so that clients can start processing
+     * a response before a full size TLS record is received.</p>
+     * <p>A value of 1400 bytes fits a TLS record in a single TCP segment on most networks.</p>
+     *
+     * @param smallRecordSize the size of small TLS records, or 0 to always write full size TLS records
+     * @see SslConnection#setSmallRecordSize(int)
+     */
+    public void setSmallRecordSize(int smallRecordSize)
+    {
+        _smallRecordSize = smallRecordSize;
+    }
+
+    /**
+     * @return the number of application bytes written in small TLS records before switching to full size TLS records
+     * @see SslConnection#getSmallRecordThreshold()
+     */
+    @ManagedAttribute("The bytes written in small TLS records before switching to full size TLS records")
+    public long getSmallRecordThreshold()
+    {
+        return _smallRecordThreshold;
+    }
+
+    /**
+     * @param smallRecordThreshold the number of application bytes written in small TLS records
+     * before switching to full size TLS records
+     * @see SslConnection#setSmallRecordThreshold(long)
+     */
+    public void setSmallRecordThreshold(long smallRecordThreshold)
+    {
+        _smallRecordThreshold = smallRecordThreshold;
+    }
+
+    /**
+     * @return the idle time in milliseconds after which small TLS records are written again
+     * @see SslConnection#getSmallRecordIdleTimeout()
+     */
+    @ManagedAttribute("The idle time in ms after which small TLS records are written again")
+    public long getSmallRecordIdleTimeout()
+    {
+        return _smallRecordIdleTimeout;
+    }
+
+    /**
+     * @param smallRecordIdleTimeout the idle time in milliseconds after which small TLS records are written again
+     * @see SslConnection#setSmallRecordIdleTimeout(long)
+     */
+    public void setSmallRecordIdleTimeout(long smallRecordIdleTimeout)
+    {
+        _smallRecordIdleTimeout = smallRecordIdleTimeout;
+    }
+
+    /**
+     * @return the number of bytes of the TLS buffers held by the open connections created by this factory
+     */
+    @ManagedAttribute("The bytes of TLS buffers held by open connections")
+    public long getPinnedBufferBytes()
+    {
+        return _pinnedBufferBytes.sum();
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -153,6 +256,11 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         SslConnection sslConnection = newSslConnection(connector, endPoint, engine);
         sslConnection.setRenegotiationAllowed(_sslContextFactory.isRenegotiationAllowed());
         sslConnection.setRenegotiationLimit(_sslContextFactory.getRenegotiationLimit());
+        sslConnection.setSmallInputBufferSize(getSmallInputBufferSize());
+        sslConnection.setPinnedBufferBytesCounter(_pinnedBufferBytes);
+        sslConnection.setSmallRecordSize(getSmallRecordSize());
+        sslConnection.setSmallRecordThreshold(getSmallRecordThreshold());
+        sslConnection.setSmallRecordIdleTimeout(getSmallRecordIdleTimeout());
         configure(sslConnection, connector, endPoint);
 
         ConnectionFactory next = connector.getConnectionFactory(_nextProtocol);
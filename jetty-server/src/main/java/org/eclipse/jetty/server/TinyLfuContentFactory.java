@@ -0,0 +1,929 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http.PrecompressedHttpContent;
+import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A static content cache that, unlike {@link CachedContentFactory}, decides which
+ * contents to keep with the W-TinyLFU admission and eviction policy.</p>
+ * <p>New contents enter a small LRU admission window. When the window overflows, its
+ * least recently used contents become candidates for the main space, which is a
+ * segmented LRU split into a probation and a protected segment. A candidate is only
+ * admitted if it has been requested more often than the main space victim it would
+ * replace, as estimated by a count-min sketch of the request frequencies, so that
+ * a scan of rarely requested files does not flush the popular ones.
+ * All the policy operations run in constant time.</p>
+ * <p>The cache is bounded both by the number of files and by the bytes of the heap
+ * and direct buffers it holds; memory mapped buffers are not counted against the
+ * size of the cache, but are reported by {@link #getMappedSize()}.
+ * Concurrent requests for the same uncached content wait for a single load of
+ * the content, rather than each loading it. A content that is not admitted by
+ * the policy is served uncached.</p>
+ * <p>The recording of cache hits is skipped when the policy is contended, so the
+ * policy approximates W-TinyLFU under a high request rate.</p>
+ */
+@ManagedObject("Static content cache with a W-TinyLFU policy")
+public class TinyLfuContentFactory implements HttpContent.ContentFactory
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TinyLfuContentFactory.class);
+    private static final Map<CompressedContentFormat, CachedPrecompressedHttpContent> NO_PRECOMPRESSED = Collections.unmodifiableMap(Collections.emptyMap());
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+
+    private final ConcurrentMap<String, CachedHttpContent> _cache = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CompletableFuture<HttpContent>> _loading = new ConcurrentHashMap<>();
+    private final AutoLock _lock = new AutoLock();
+    private final FrequencySketch _sketch = new FrequencySketch();
+    private final AccessOrder _window = new AccessOrder();
+    private final AccessOrder _probation = new AccessOrder();
+    private final AccessOrder _protected = new AccessOrder();
+    private final AtomicLong _mappedSize = new AtomicLong();
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final ResourceFactory _factory;
+    private final HttpContent.ContentFactory _parent;
+    private final MimeTypes _mimeTypes;
+    private final boolean _etags;
+    private final CompressedContentFormat[] _precompressedFormats;
+    private final boolean _useFileMappedBuffer;
+
+    private volatile int _maxCachedFileSize = 128 * 1024 * 1024;
+    private volatile int _maxCachedFiles = 2048;
+    private volatile long _maxCacheSize = 256 * 1024 * 1024;
+
+    /**
+     * @param parent the parent content factory, or null
+     * @param factory the resource factory
+     * @param mimeTypes Mimetype to use for meta data
+     * @param useFileMappedBuffer true to file memory mapped buffers
+     * @param etags true to support etags
+     * @param precompressedFormats array of precompression formats to support
+     */
+    public TinyLfuContentFactory(HttpContent.ContentFactory parent, ResourceFactory factory, MimeTypes mimeTypes, boolean useFileMappedBuffer, boolean etags, CompressedContentFormat[] precompressedFormats)
+    {
+        _factory = factory;
+        _mimeTypes = mimeTypes;
+        _parent = parent;
+        _useFileMappedBuffer = useFileMappedBuffer;
+        _etags = etags;
+        _precompressedFormats = precompressedFormats;
+        _sketch.ensureCapacity(_maxCachedFiles);
+    }
+
+    @ManagedAttribute("The bytes of the heap and direct buffers held by the cache")
+    public long getCachedSize()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return cachedSize();
+        }
+    }
+
+    @ManagedAttribute("The bytes of the memory mapped buffers held by the cache")
+    public long getMappedSize()
+    {
+        return _mappedSize.get();
+    }
+
+    @ManagedAttribute("The number of cached files")
+    public int getCachedFiles()
+    {
+        return _cache.size();
+    }
+
+    @ManagedAttribute("The number of requests served from the cache")
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute("The number of requests not served from the cache")
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute("The number of files evicted or not admitted by the cache policy")
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    @ManagedAttribute("The max size in bytes of a cached file")
+    public int getMaxCachedFileSize()
+    {
+        return _maxCachedFileSize;
+    }
+
+    public void setMaxCachedFileSize(int maxCachedFileSize)
+    {
+        _maxCachedFileSize = maxCachedFileSize;
+    }
+
+    @ManagedAttribute("The max bytes of the heap and direct buffers held by the cache")
+    public long getMaxCacheSize()
+    {
+        return _maxCacheSize;
+    }
+
+    public void setMaxCacheSize(long maxCacheSize)
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            _maxCacheSize = maxCacheSize;
+            evict();
+        }
+    }
+
+    @ManagedAttribute("The max number of cached files")
+    public int getMaxCachedFiles()
+    {
+        return _maxCachedFiles;
+    }
+
+    public void setMaxCachedFiles(int maxCachedFiles)
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            _maxCachedFiles = maxCachedFiles;
+            _sketch.ensureCapacity(maxCachedFiles);
+            evict();
+        }
+    }
+
+    @ManagedAttribute("Whether memory mapped buffers are used")
+    public boolean isUseFileMappedBuffer()
+    {
+        return _useFileMappedBuffer;
+    }
+
+    @ManagedOperation(value = "Flushes the cache", impact = "ACTION")
+    public void flushCache()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            for (CachedHttpContent content : _cache.values())
+            {
+                remove(content);
+            }
+        }
+    }
+
+    /**
+     * <p>Returns an entry from the cache, or creates a new one.</p>
+     *
+     * @param pathInContext The key into the cache
+     * @param maxBufferSize The maximum buffer size allocated for this request.  For cached content, a larger buffer may have
+     * previously been allocated and returned by the {@link HttpContent#getDirectBuffer()} or {@link HttpContent#getIndirectBuffer()} calls.
+     * @return The entry matching {@code pathInContext}, or a new entry
+     * if no matching entry was found. If the content exists but is not cacheable,
+     * then a {@link ResourceHttpContent} instance is returned. If
+     * the resource does not exist, then null is returned.
+     * @throws IOException if the resource cannot be retrieved
+     */
+    @Override
+    public HttpContent getContent(String pathInContext, int maxBufferSize) throws IOException
+    {
+        // Is the content in this cache?
+        CachedHttpContent content = _cache.get(pathInContext);
+        if (content != null && content.isValid())
+        {
+            _hits.increment();
+            access(content);
+            return content;
+        }
+        _misses.increment();
+
+        // Try loading the content from our factory, once for concurrent requests.
+        HttpContent loaded;
+        CompletableFuture<HttpContent> loading = new CompletableFuture<>();
+        CompletableFuture<HttpContent> existing = _loading.putIfAbsent(pathInContext, loading);
+        if (existing == null)
+        {
+            try
+            {
+                loaded = load(pathInContext, _factory.getResource(pathInContext), maxBufferSize);
+                loading.complete(loaded);
+            }
+            catch (Throwable x)
+            {
+                loading.completeExceptionally(x);
+                throw x;
+            }
+            finally
+            {
+                _loading.remove(pathInContext, loading);
+            }
+        }
+        else
+        {
+            try
+            {
+                loaded = existing.join();
+            }
+            catch (CompletionException x)
+            {
+                if (x.getCause() instanceof IOException)
+                    throw (IOException)x.getCause();
+                throw new IOException(x.getCause());
+            }
+        }
+        if (loaded != null)
+            return loaded;
+
+        // Is the content in the parent cache?
+        if (_parent != null)
+            return _parent.getContent(pathInContext, maxBufferSize);
+
+        return null;
+    }
+
+    /**
+     * @param resource the resource to test
+     * @return whether the resource is cacheable. The default implementation tests the cache sizes.
+     */
+    protected boolean isCacheable(Resource resource)
+    {
+        if (_maxCachedFiles <= 0)
+            return false;
+
+        long len = resource.length();
+
+        // Will it fit in the cache?
+        return (len > 0 && (_useFileMappedBuffer || (len < _maxCachedFileSize && len < _maxCacheSize)));
+    }
+
+    private HttpContent load(String pathInContext, Resource resource, int maxBufferSize) throws IOException
+    {
+        if (resource == null || !resource.exists())
+            return null;
+
+        if (resource.isDirectory())
+            return new ResourceHttpContent(resource, _mimeTypes.getMimeByExtension(resource.toString()), getMaxCachedFileSize());
+
+        // Will it fit in the cache?
+        if (isCacheable(resource))
+        {
+            Map<CompressedContentFormat, CachedHttpContent> precompressedContents = null;
+
+            // Look for precompressed resources
+            if (_precompressedFormats.length > 0)
+            {
+                precompressedContents = new HashMap<>(_precompressedFormats.length);
+                for (CompressedContentFormat format : _precompressedFormats)
+                {
+                    String compressedPathInContext = pathInContext + format.getExtension();
+                    CachedHttpContent compressedContent = _cache.get(compressedPathInContext);
+                    if (compressedContent == null || !compressedContent.isValid())
+                    {
+                        compressedContent = null;
+                        Resource compressedResource = _factory.getResource(compressedPathInContext);
+                        if (compressedResource.exists() && compressedResource.lastModified() >= resource.lastModified() &&
+                            compressedResource.length() < resource.length())
+                            compressedContent = add(new CachedHttpContent(compressedPathInContext, compressedResource, null));
+                    }
+                    if (compressedContent != null)
+                        precompressedContents.put(format, compressedContent);
+                }
+            }
+
+            CachedHttpContent content = add(new CachedHttpContent(pathInContext, resource, precompressedContents));
+            if (content != null)
+                return content;
+
+            // The content was not admitted by the cache policy, and its
+            // resource was closed when it was evicted, so serve it uncached.
+            resource = _factory.getResource(pathInContext);
+            if (resource == null || !resource.exists())
+                return null;
+        }
+
+        // Look for non Cacheable precompressed resource or content
+        String mt = _mimeTypes.getMimeByExtension(pathInContext);
+        if (_precompressedFormats.length > 0)
+        {
+            // Is the precompressed content cached?
+            Map<CompressedContentFormat, HttpContent> compressedContents = new HashMap<>();
+            for (CompressedContentFormat format : _precompressedFormats)
+            {
+                String compressedPathInContext = pathInContext + format.getExtension();
+                CachedHttpContent compressedContent = _cache.get(compressedPathInContext);
+                if (compressedContent != null && compressedContent.isValid() && compressedContent.getResource().lastModified() >= resource.lastModified())
+                    compressedContents.put(format, compressedContent);
+
+                // Is there a precompressed resource?
+                Resource compressedResource = _factory.getResource(compressedPathInContext);
+                if (compressedResource.exists() && compressedResource.lastModified() >= resource.lastModified() &&
+                    compressedResource.length() < resource.length())
+                    compressedContents.put(format,
+                        new ResourceHttpContent(compressedResource, _mimeTypes.getMimeByExtension(compressedPathInContext), maxBufferSize));
+            }
+            if (!compressedContents.isEmpty())
+                return new ResourceHttpContent(resource, mt, maxBufferSize, compressedContents);
+        }
+
+        return new ResourceHttpContent(resource, mt, maxBufferSize);
+    }
+
+    /**
+     * @param content the content to cache
+     * @return the cached content, or null if the content was not admitted by the cache policy
+     */
+    private CachedHttpContent add(CachedHttpContent content)
+    {
+        CachedHttpContent existing = _cache.putIfAbsent(content.getKey(), content);
+        if (existing != null)
+        {
+            content.getResource().close();
+            return existing;
+        }
+
+        try (AutoLock l = _lock.lock())
+        {
+            // The content may have been removed since it was put in the map.
+            if (_cache.get(content.getKey()) != content)
+                return null;
+            _sketch.increment(content._hash);
+            _window.addLast(content);
+            evict();
+            // The content may have been evicted to make room for itself.
+            return content._order == null ? null : content;
+        }
+    }
+
+    private void access(CachedHttpContent content)
+    {
+        // Skip recording the access rather than waiting for the lock.
+        try (AutoLock l = _lock.tryLock())
+        {
+            if (l == null)
+                return;
+            AccessOrder order = content._order;
+            if (order == null)
+                return;
+            _sketch.increment(content._hash);
+            if (order == _probation)
+            {
+                // Promote to the protected segment, demoting its least recently used contents if it overflows.
+                _probation.remove(content);
+                _protected.addLast(content);
+                long maxMainSize = _maxCacheSize - maxWindowSize();
+                int maxMainFiles = _maxCachedFiles - maxWindowFiles();
+                while (_protected._first != content &&
+                    (_protected._weight > maxMainSize * PROTECTED_PERCENT / 100 || _protected._size > maxMainFiles * PROTECTED_PERCENT / 100))
+                {
+                    CachedHttpContent demoted = _protected._first;
+                    _protected.remove(demoted);
+                    _probation.addLast(demoted);
+                }
+            }
+            else
+            {
+                order.moveToLast(content);
+            }
+        }
+    }
+
+    private void retain(CachedHttpContent content, long weight, Runnable retain)
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            // Only retain the buffer if the content is still cached.
+            AccessOrder order = content._order;
+            if (order == null)
+                return;
+            retain.run();
+            content._weight += weight;
+            order._weight += weight;
+            evict();
+        }
+    }
+
+    private void remove(CachedHttpContent content)
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            if (content._order != null)
+                content._order.remove(content);
+            if (_cache.remove(content.getKey(), content))
+                content.invalidate();
+        }
+    }
+
+    private long maxWindowSize()
+    {
+        return _maxCacheSize * WINDOW_PERCENT / 100;
+    }
+
+    private int maxWindowFiles()
+    {
+        return Math.max(1, _maxCachedFiles * WINDOW_PERCENT / 100);
+    }
+
+    private long cachedSize()
+    {
+        return _window._weight + _probation._weight + _protected._weight;
+    }
+
+    private boolean isOverLimit()
+    {
+        return cachedSize() > _maxCacheSize || _window._size + _probation._size + _protected._size > _maxCachedFiles;
+    }
+
+    private void evict()
+    {
+        assert _lock.isHeldByCurrentThread();
+
+        // Move the contents overflowing the window to the probation segment,
+        // where they are candidates for the main space.
+        CachedHttpContent candidate = null;
+        long maxWindowSize = maxWindowSize();
+        int maxWindowFiles = maxWindowFiles();
+        while (_window._first != null && (_window._weight > maxWindowSize || _window._size > maxWindowFiles))
+        {
+            CachedHttpContent content = _window._first;
+            _window.remove(content);
+            _probation.addLast(content);
+            if (candidate == null)
+                candidate = content;
+        }
+
+        // Evict either the candidates or the victims of the main space,
+        // depending on which are more frequently requested.
+        while (isOverLimit())
+        {
+            CachedHttpContent victim = _probation._first != candidate ? _probation._first : _protected._first;
+            if (victim == null && candidate == null)
+                victim = _window._first;
+
+            CachedHttpContent evicted;
+            if (candidate == null)
+            {
+                evicted = victim;
+            }
+            else if (victim == null || !admit(candidate, victim))
+            {
+                evicted = candidate;
+                candidate = candidate._next;
+            }
+            else
+            {
+                evicted = victim;
+            }
+
+            if (evicted == null)
+                break;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Evicting {}", evicted);
+            _evictions.increment();
+            remove(evicted);
+        }
+    }
+
+    private boolean admit(CachedHttpContent candidate, CachedHttpContent victim)
+    {
+        int candidateFrequency = _sketch.frequency(candidate._hash);
+        int victimFrequency = _sketch.frequency(victim._hash);
+        if (candidateFrequency > victimFrequency)
+            return true;
+        // Occasionally admit a warm candidate, so that an attacker cannot keep
+        // a victim in the cache by artificially raising its frequency.
+        return candidateFrequency > 5 && ThreadLocalRandom.current().nextInt(128) == 0;
+    }
+
+    protected ByteBuffer getIndirectBuffer(Resource resource)
+    {
+        try
+        {
+            return BufferUtil.toBuffer(resource, false);
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to get Indirect Buffer for {}", resource, e);
+        }
+        return null;
+    }
+
+    protected ByteBuffer getMappedBuffer(Resource resource)
+    {
+        // Only use file mapped buffers for cached resources, otherwise too much virtual memory commitment for
+        // a non shared resource.  Also ignore max buffer size
+        try
+        {
+            if (_useFileMappedBuffer && resource.getFile() != null && resource.length() < Integer.MAX_VALUE)
+                return BufferUtil.toMappedBuffer(resource.getFile());
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to get Mapped Buffer for {}", resource, e);
+        }
+        return null;
+    }
+
+    protected ByteBuffer getDirectBuffer(Resource resource)
+    {
+        try
+        {
+            return BufferUtil.toBuffer(resource, true);
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to get Direct Buffer for {}", resource, e);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[%s,%s]{files=%d,size=%d,hits=%d,misses=%d}", getClass().getSimpleName(), hashCode(),
+            _parent, _factory, getCachedFiles(), getCachedSize(), getHits(), getMisses());
+    }
+
+    /**
+     * <p>A doubly linked list of contents, from the least to the most recently used,
+     * guarded by the policy lock.</p>
+     */
+    private static class AccessOrder
+    {
+        private CachedHttpContent _first;
+        private CachedHttpContent _last;
+        private int _size;
+        private long _weight;
+
+        private void addLast(CachedHttpContent content)
+        {
+            content._order = this;
+            content._previous = _last;
+            content._next = null;
+            if (_last == null)
+                _first = content;
+            else
+                _last._next = content;
+            _last = content;
+            _size++;
+            _weight += content._weight;
+        }
+
+        private void remove(CachedHttpContent content)
+        {
+            if (content._previous == null)
+                _first = content._next;
+            else
+                content._previous._next = content._next;
+            if (content._next == null)
+                _last = content._previous;
+            else
+                content._next._previous = content._previous;
+            content._order = null;
+            content._previous = null;
+            content._next = null;
+            _size--;
+            _weight -= content._weight;
+        }
+
+        private void moveToLast(CachedHttpContent content)
+        {
+            if (_last != content)
+            {
+                remove(content);
+                addLast(content);
+            }
+        }
+    }
+
+    /**
+     * <p>A count-min sketch of 4-bit counters, estimating the request frequency of
+     * the contents. The counters are periodically halved, so that the frequencies
+     * of the contents that are no longer requested decay.</p>
+     */
+    static class FrequencySketch
+    {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final long RESET_MASK = 0x7777777777777777L;
+        private static final long ONE_MASK = 0x1111111111111111L;
+
+        private long[] _table;
+        private int _sampleSize;
+        private int _additions;
+
+        void ensureCapacity(int maximum)
+        {
+            int capacity = Math.min(Math.max(maximum, 16), 1 << 30);
+            int length = Integer.highestOneBit(capacity - 1) << 1;
+            if (_table != null && _table.length >= length)
+                return;
+            _table = new long[length];
+            _sampleSize = 10 * capacity;
+            _additions = 0;
+        }
+
+        int frequency(int hashCode)
+        {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            int frequency = Integer.MAX_VALUE;
+            for (int i = 0; i < 4; i++)
+            {
+                int index = indexOf(hash, i);
+                int count = (int)((_table[index] >>> ((start + i) << 2)) & 0xFL);
+                frequency = Math.min(frequency, count);
+            }
+            return frequency;
+        }
+
+        void increment(int hashCode)
+        {
+            int hash = spread(hashCode);
+            int start = (hash & 3) << 2;
+            boolean added = false;
+            for (int i = 0; i < 4; i++)
+            {
+                int index = indexOf(hash, i);
+                long mask = 0xFL << ((start + i) << 2);
+                if ((_table[index] & mask) != mask)
+                {
+                    _table[index] += 1L << ((start + i) << 2);
+                    added = true;
+                }
+            }
+            if (added && ++_additions == _sampleSize)
+                reset();
+        }
+
+        private void reset()
+        {
+            int odd = 0;
+            for (int i = 0; i < _table.length; i++)
+            {
+                odd += Long.bitCount(_table[i] & ONE_MASK);
+                _table[i] = (_table[i] >>> 1) & RESET_MASK;
+            }
+            _additions = (_additions >>> 1) - (odd >>> 2);
+        }
+
+        private int indexOf(int hash, int i)
+        {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return ((int)h) & (_table.length - 1);
+        }
+
+        private static int spread(int x)
+        {
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            x = ((x >>> 16) ^ x) * 0x45d9f3b;
+            return (x >>> 16) ^ x;
+        }
+    }
+
+    /**
+     * MetaData associated with a context Resource.
+     */
+    public class CachedHttpContent extends AbstractCachedHttpContent
+    {
+        private final AutoLock _bufferLock = new AutoLock();
+        private final int _hash;
+        private final Map<CompressedContentFormat, CachedPrecompressedHttpContent> _precompressed;
+        private volatile ByteBuffer _indirectBuffer;
+        private volatile ByteBuffer _directBuffer;
+        private volatile ByteBuffer _mappedBuffer;
+        // The policy state, guarded by the policy lock.
+        private AccessOrder _order;
+        private CachedHttpContent _previous;
+        private CachedHttpContent _next;
+        private long _weight;
+
+        CachedHttpContent(String pathInContext, Resource resource, Map<CompressedContentFormat, CachedHttpContent> precompressedResources)
+        {
+            super(pathInContext, resource, _mimeTypes, _etags);
+            _hash = pathInContext.hashCode();
+
+            if (precompressedResources != null && !precompressedResources.isEmpty())
+            {
+                _precompressed = new HashMap<>(precompressedResources.size());
+                for (Map.Entry<CompressedContentFormat, CachedHttpContent> entry : precompressedResources.entrySet())
+                {
+                    _precompressed.put(entry.getKey(), new CachedPrecompressedHttpContent(this, entry.getValue(), entry.getKey()));
+                }
+            }
+            else
+            {
+                _precompressed = NO_PRECOMPRESSED;
+            }
+        }
+
+        boolean isValid()
+        {
+            if (!isModified())
+                return true;
+
+            remove(this);
+            return false;
+        }
+
+        private void invalidate()
+        {
+            assert _lock.isHeldByCurrentThread();
+            _indirectBuffer = null;
+            _directBuffer = null;
+            if (_mappedBuffer != null)
+            {
+                _mappedBuffer = null;
+                _mappedSize.addAndGet(-getContentLengthValue());
+            }
+            getResource().close();
+        }
+
+        @Override
+        public ByteBuffer getIndirectBuffer()
+        {
+            if (getResource().length() > _maxCachedFileSize)
+                return null;
+
+            ByteBuffer buffer = _indirectBuffer;
+            if (buffer == null)
+            {
+                // Only one of the concurrent requests loads the buffer.
+                try (AutoLock l = _bufferLock.lock())
+                {
+                    buffer = _indirectBuffer;
+                    if (buffer == null)
+                    {
+                        buffer = TinyLfuContentFactory.this.getIndirectBuffer(getResource());
+                        if (buffer == null)
+                        {
+                            if (LOG.isDebugEnabled())
+                                LOG.debug("Could not load indirect buffer from {}", this);
+                            return null;
+                        }
+                        ByteBuffer indirect = buffer;
+                        retain(this, BufferUtil.length(indirect), () -> _indirectBuffer = indirect);
+                    }
+                }
+            }
+            return buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public ByteBuffer getDirectBuffer()
+        {
+            ByteBuffer buffer = _mappedBuffer;
+            if (buffer == null)
+                buffer = _directBuffer;
+            if (buffer == null)
+            {
+                // Only one of the concurrent requests loads the buffer.
+                try (AutoLock l = _bufferLock.lock())
+                {
+                    buffer = _mappedBuffer;
+                    if (buffer == null)
+                        buffer = _directBuffer;
+                    if (buffer == null)
+                        buffer = loadDirectBuffer();
+                }
+            }
+            return buffer == null ? null : buffer.asReadOnlyBuffer();
+        }
+
+        private ByteBuffer loadDirectBuffer()
+        {
+            ByteBuffer mapped = TinyLfuContentFactory.this.getMappedBuffer(getResource());
+            if (mapped != null)
+            {
+                // Mapped buffers are not counted against the cache size.
+                retain(this, 0, () ->
+                {
+                    _mappedBuffer = mapped;
+                    _mappedSize.addAndGet(getContentLengthValue());
+                });
+                return mapped;
+            }
+
+            if (getResource().length() >= _maxCachedFileSize)
+                return null;
+
+            ByteBuffer direct = TinyLfuContentFactory.this.getDirectBuffer(getResource());
+            if (direct == null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Could not load {}", this);
+                return null;
+            }
+            retain(this, BufferUtil.length(direct), () -> _directBuffer = direct);
+            return direct;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("CachedContent@%x{r=%s,e=%b,lm=%s,ct=%s,c=%d}", hashCode(), getResource(), getResource().exists(), getLastModified(), getContentType(), _precompressed.size());
+        }
+
+        @Override
+        public Map<CompressedContentFormat, ? extends HttpContent> getPrecompressedContents()
+        {
+            if (_precompressed.size() == 0)
+                return null;
+            Map<CompressedContentFormat, CachedPrecompressedHttpContent> ret = _precompressed;
+            for (Map.Entry<CompressedContentFormat, CachedPrecompressedHttpContent> entry : _precompressed.entrySet())
+            {
+                if (!entry.getValue().isValid())
+                {
+                    if (ret == _precompressed)
+                        ret = new HashMap<>(_precompressed);
+                    ret.remove(entry.getKey());
+                }
+            }
+            return ret;
+        }
+    }
+
+    public class CachedPrecompressedHttpContent extends PrecompressedHttpContent
+    {
+        private final CachedHttpContent _content;
+        private final CachedHttpContent _precompressedContent;
+        private final HttpField _etag;
+
+        CachedPrecompressedHttpContent(CachedHttpContent content, CachedHttpContent precompressedContent, CompressedContentFormat format)
+        {
+            super(content, precompressedContent, format);
+            _content = content;
+            _precompressedContent = precompressedContent;
+
+            _etag = (TinyLfuContentFactory.this._etags) ? new PreEncodedHttpField(HttpHeader.ETAG, _content.getResource().getWeakETag(format.getEtagSuffix())) : null;
+        }
+
+        public boolean isValid()
+        {
+            return _precompressedContent.isValid() && _content.isValid() && _content.getResource().lastModified() <= _precompressedContent.getResource().lastModified();
+        }
+
+        @Override
+        public HttpField getETag()
+        {
+            if (_etag != null)
+                return _etag;
+            return super.getETag();
+        }
+
+        @Override
+        public String getETagValue()
+        {
+            if (_etag != null)
+                return _etag.getValue();
+            return super.getETagValue();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Cached" + super.toString();
+        }
+    }
+}
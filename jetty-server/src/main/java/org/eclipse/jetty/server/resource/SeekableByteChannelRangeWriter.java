@@ -16,8 +16,10 @@ package org.eclipse.jetty.server.resource;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 
+import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.IO;
 
@@ -62,6 +64,19 @@ public class SeekableByteChannelRangeWriter implements RangeWriter
     @Override
     public void writeTo(OutputStream outputStream, long skipTo, long length) throws IOException
     {
+        if (channel == null)
+        {
+            channel = channelSupplier.newSeekableByteChannel();
+            pos = 0;
+        }
+
+        // transfer file ranges directly to the network if possible
+        if (channel instanceof FileChannel && outputStream instanceof HttpOutput)
+        {
+            if (((HttpOutput)outputStream).transfer((FileChannel)channel, skipTo, length))
+                return;
+        }
+
         skipTo(skipTo);
 
         // copy from channel to output stream
@@ -14,6 +14,8 @@
 package org.eclipse.jetty.server.session;
 
 import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -39,6 +41,7 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
     protected long _lastExpiryCheckTime = 0; //last time in ms that getExpired was called
     protected long _lastOrphanSweepTime = 0; //last time in ms that we deleted orphaned sessions
     protected int _savePeriodSec = DEFAULT_SAVE_PERIOD_SEC; //time in sec between saves
+    protected SessionDataCodec _sessionDataCodec = new JavaSessionDataCodec(); //encoding of the session attributes
     
     /**
      * Small utility class to allow us to
@@ -93,6 +96,25 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
      */
     public abstract void doStore(String id, SessionData data, long lastSaveTime) throws Exception;
 
+    /**
+     * Store the data of a batch of sessions persistently.
+     * By default the sessions are stored one at a time with
+     * {@link #doStore(String, SessionData, long)}; subclasses that can write
+     * many sessions in a single round trip to the store should override it.
+     *
+     * @param batch the session data to store
+     * @param lastSaveTimes the time of the previous save of each session of the batch, or 0 if never saved
+     * @throws Exception if unable to store data
+     */
+    public void doStoreAll(List<SessionData> batch, long[] lastSaveTimes) throws Exception
+    {
+        for (int i = 0; i < batch.size(); i++)
+        {
+            SessionData data = batch.get(i);
+            doStore(data.getId(), data, lastSaveTimes[i]);
+        }
+    }
+
     /**
      * Load the session from persistent store.
      *
@@ -199,17 +221,14 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
             return;
 
         long lastSave = data.getLastSaved();
-        long savePeriodMs = (_savePeriodSec <= 0 ? 0 : TimeUnit.SECONDS.toMillis(_savePeriodSec));
 
         if (LOG.isDebugEnabled())
         {
             LOG.debug("Store: id={}, mdirty={}, dirty={}, lsave={}, period={}, elapsed={}", id, data.isMetaDataDirty(),
-                data.isDirty(), data.getLastSaved(), savePeriodMs, (System.currentTimeMillis() - lastSave));
+                data.isDirty(), data.getLastSaved(), (_savePeriodSec <= 0 ? 0 : TimeUnit.SECONDS.toMillis(_savePeriodSec)), (System.currentTimeMillis() - lastSave));
         }
 
-        //save session if attribute changed, never been saved or metadata changed (eg expiry time) and save interval exceeded
-        if (data.isDirty() || (lastSave <= 0) ||
-            (data.isMetaDataDirty() && ((System.currentTimeMillis() - lastSave) >= savePeriodMs)))
+        if (isStoreRequired(data))
         {
             //set the last saved time to now
             data.setLastSaved(System.currentTimeMillis());
@@ -235,6 +254,50 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
         }
     }
 
+    /**
+     * Store the data of a batch of sessions persistently, regardless of
+     * their dirtiness and without modifying their last saved time.
+     *
+     * @param batch the session data to store
+     * @param lastSaveTimes the time of the previous save of each session of the batch, or 0 if never saved
+     * @throws Exception if unable to store data
+     * @see #doStoreAll(List, long[])
+     */
+    public void storeAll(List<SessionData> batch, long[] lastSaveTimes) throws Exception
+    {
+        if (!isStarted())
+            throw new IllegalStateException("Not started");
+
+        final Result<Object> result = new Result<>();
+        Runnable r = () ->
+        {
+            try
+            {
+                doStoreAll(batch, lastSaveTimes);
+            }
+            catch (Exception e)
+            {
+                result.setException(e);
+            }
+        };
+        _context.run(r);
+        result.throwIfException();
+    }
+
+    /**
+     * @param data the session data
+     * @return true if the session data must be written to the store, that is if an attribute
+     * changed, if it was never saved, or if its metadata changed (eg expiry time) and the
+     * save period elapsed
+     */
+    protected boolean isStoreRequired(SessionData data)
+    {
+        long lastSave = data.getLastSaved();
+        long savePeriodMs = (_savePeriodSec <= 0 ? 0 : TimeUnit.SECONDS.toMillis(_savePeriodSec));
+        return data.isDirty() || (lastSave <= 0) ||
+            (data.isMetaDataDirty() && ((System.currentTimeMillis() - lastSave) >= savePeriodMs));
+    }
+
     @Override
     public boolean exists(String id) throws Exception
     {
@@ -398,6 +461,32 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
         _savePeriodSec = savePeriodSec;
     }
 
+    /**
+     * @return the codec used to encode and decode the session attributes
+     */
+    @ManagedAttribute(value = "codec of the session attributes", readonly = true)
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _sessionDataCodec;
+    }
+
+    /**
+     * The codec used to encode and decode the session attributes,
+     * by default a {@link JavaSessionDataCodec}, that writes the
+     * format read by previous releases. A {@link BinarySessionDataCodec}
+     * writes a more compact format, and should only be configured once
+     * all the nodes sharing the store can read it.
+     * Both codecs can read the format written by the other.
+     *
+     * @param sessionDataCodec the codec of the session attributes
+     */
+    public void setSessionDataCodec(SessionDataCodec sessionDataCodec)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Already started");
+        _sessionDataCodec = Objects.requireNonNull(sessionDataCodec);
+    }
+
     @Override
     public String toString()
     {
@@ -21,6 +21,7 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
 
     int _gracePeriodSec = AbstractSessionDataStore.DEFAULT_GRACE_PERIOD_SEC;
     int _savePeriodSec = AbstractSessionDataStore.DEFAULT_SAVE_PERIOD_SEC;
+    SessionDataCodec _sessionDataCodec;
 
     /**
      * @return the gracePeriodSec
@@ -53,4 +54,20 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
     {
         _savePeriodSec = savePeriodSec;
     }
+
+    /**
+     * @return the codec of the session attributes, or null to use the default codec of the store
+     */
+    public SessionDataCodec getSessionDataCodec()
+    {
+        return _sessionDataCodec;
+    }
+
+    /**
+     * @param sessionDataCodec the codec of the session attributes, or null to use the default codec of the store
+     */
+    public void setSessionDataCodec(SessionDataCodec sessionDataCodec)
+    {
+        _sessionDataCodec = sessionDataCodec;
+    }
 }
@@ -0,0 +1,517 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * BinarySessionDataCodec
+ *
+ * Encodes the session attributes in a compact, versioned binary format.
+ * Attribute values that are Strings, byte arrays or boxed primitives are
+ * written directly, and all other values are written with java serialization,
+ * recording which classloader should be used to load them, as is done by
+ * {@link SessionData#serializeAttributes(SessionData, ObjectOutputStream)}.
+ *
+ * The encoded attributes start with a header that cannot be the start of a
+ * java serialization stream, so attributes written by previous releases with
+ * the {@link JavaSessionDataCodec} can still be decoded.
+ *
+ * This codec is not the default, because nodes running previous releases
+ * cannot read its format: configure it only once all the nodes sharing the
+ * session store run a release whose {@link JavaSessionDataCodec} reads it.
+ *
+ * The format is:
+ * <pre>
+ *   magic     2 bytes 'J' 'S'
+ *   version   1 byte
+ *   length    4 bytes, the length of what follows
+ *   count     4 bytes, the number of attributes
+ *   attribute name (varint length + UTF-8), type (1 byte), value
+ * </pre>
+ * A single attribute encoded by {@link #encodeAttribute(String, Object)}
+ * is the magic and version followed by the type and value.
+ */
+public class BinarySessionDataCodec implements SessionDataCodec
+{
+    private static final Logger LOG = LoggerFactory.getLogger(BinarySessionDataCodec.class);
+
+    static final byte MAGIC_0 = 'J';
+    static final byte MAGIC_1 = 'S';
+    static final byte VERSION = 1;
+    private static final int HEADER_LENGTH = 7;
+
+    private static final byte TYPE_STRING = 1;
+    private static final byte TYPE_INTEGER = 2;
+    private static final byte TYPE_LONG = 3;
+    private static final byte TYPE_TRUE = 4;
+    private static final byte TYPE_FALSE = 5;
+    private static final byte TYPE_DOUBLE = 6;
+    private static final byte TYPE_FLOAT = 7;
+    private static final byte TYPE_SHORT = 8;
+    private static final byte TYPE_BYTE = 9;
+    private static final byte TYPE_CHARACTER = 10;
+    private static final byte TYPE_BYTES = 11;
+    private static final byte TYPE_SERIALIZED_SERVER = 12;
+    private static final byte TYPE_SERIALIZED_CONTEXT = 13;
+
+    private final SessionDataCodec _legacyCodec = new JavaSessionDataCodec();
+
+    @Override
+    public void encode(SessionData data, OutputStream out) throws IOException
+    {
+        Encoder encoder = new Encoder();
+        encoder.encode(data);
+        out.write(encoder._bytes, 0, encoder._length);
+    }
+
+    @Override
+    public byte[] encode(SessionData data) throws IOException
+    {
+        Encoder encoder = new Encoder();
+        encoder.encode(data);
+        return Arrays.copyOf(encoder._bytes, encoder._length);
+    }
+
+    @Override
+    public void decode(SessionData data, InputStream in) throws IOException, ClassNotFoundException
+    {
+        byte[] magic = in.readNBytes(2);
+        if (!isBinary(magic))
+        {
+            decodeLegacy(data, new SequenceInputStream(new ByteArrayInputStream(magic), in));
+            return;
+        }
+
+        byte[] header = new byte[HEADER_LENGTH];
+        header[0] = magic[0];
+        header[1] = magic[1];
+        if (in.readNBytes(header, 2, HEADER_LENGTH - 2) != HEADER_LENGTH - 2)
+            throw new EOFException();
+        int length = checkHeader(header, 0);
+        byte[] body = in.readNBytes(length);
+        if (body.length != length)
+            throw new EOFException();
+        new Decoder(body, 0, length).decode(data);
+    }
+
+    @Override
+    public void decode(SessionData data, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        if (!isBinary(bytes))
+        {
+            decodeLegacy(data, new ByteArrayInputStream(bytes));
+            return;
+        }
+
+        if (bytes.length < HEADER_LENGTH)
+            throw new EOFException();
+        int length = checkHeader(bytes, 0);
+        if (length > bytes.length - HEADER_LENGTH)
+            throw new EOFException();
+        new Decoder(bytes, HEADER_LENGTH, HEADER_LENGTH + length).decode(data);
+    }
+
+    @Override
+    public byte[] encodeAttribute(String name, Object value) throws IOException
+    {
+        Encoder encoder = new Encoder();
+        encoder.encodeAttribute(name, value);
+        return Arrays.copyOf(encoder._bytes, encoder._length);
+    }
+
+    @Override
+    public Object decodeAttribute(String name, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        if (!isBinary(bytes))
+            return _legacyCodec.decodeAttribute(name, bytes);
+        if (bytes.length < 3)
+            throw new EOFException();
+        if (bytes[2] != VERSION)
+            throw new IOException("Unsupported session data version " + bytes[2]);
+        return new Decoder(bytes, 3, bytes.length).readValue(name);
+    }
+
+    static boolean isBinary(byte[] magic)
+    {
+        return magic.length >= 2 && magic[0] == MAGIC_0 && magic[1] == MAGIC_1;
+    }
+
+    private void decodeLegacy(SessionData data, InputStream in) throws IOException, ClassNotFoundException
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Java serialization detected for {}", data.getId());
+        _legacyCodec.decode(data, in);
+    }
+
+    private static int checkHeader(byte[] header, int offset) throws IOException
+    {
+        byte version = header[offset + 2];
+        if (version != VERSION)
+            throw new IOException("Unsupported session data version " + version);
+        int length = readInt(header, offset + 3);
+        if (length < 0)
+            throw new IOException("Invalid session data length " + length);
+        return length;
+    }
+
+    private static int readInt(byte[] bytes, int offset)
+    {
+        return ((bytes[offset] & 0xFF) << 24) |
+            ((bytes[offset + 1] & 0xFF) << 16) |
+            ((bytes[offset + 2] & 0xFF) << 8) |
+            (bytes[offset + 3] & 0xFF);
+    }
+
+    private static void writeInt(byte[] bytes, int offset, int value)
+    {
+        bytes[offset] = (byte)(value >>> 24);
+        bytes[offset + 1] = (byte)(value >>> 16);
+        bytes[offset + 2] = (byte)(value >>> 8);
+        bytes[offset + 3] = (byte)value;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x", getClass().getSimpleName(), hashCode());
+    }
+
+    /**
+     * Writes the attributes to a growable byte array, which is also the
+     * OutputStream of the java serialization of non primitive values.
+     */
+    private static class Encoder extends OutputStream
+    {
+        private byte[] _bytes = new byte[256];
+        private int _length;
+
+        private void encode(SessionData data) throws IOException
+        {
+            _bytes[0] = MAGIC_0;
+            _bytes[1] = MAGIC_1;
+            _bytes[2] = VERSION;
+            _length = HEADER_LENGTH + 4;
+
+            // The attributes may be concurrently modified, so
+            // the count is written after they have been written.
+            int count = 0;
+            for (Map.Entry<String, Object> entry : data._attributes.entrySet())
+            {
+                writeString(entry.getKey());
+                writeValue(entry.getKey(), entry.getValue());
+                ++count;
+            }
+
+            writeInt(_bytes, 3, _length - HEADER_LENGTH);
+            writeInt(_bytes, HEADER_LENGTH, count);
+        }
+
+        private void encodeAttribute(String name, Object value) throws IOException
+        {
+            _bytes[0] = MAGIC_0;
+            _bytes[1] = MAGIC_1;
+            _bytes[2] = VERSION;
+            _length = 3;
+            writeValue(name, value);
+        }
+
+        private void writeValue(String name, Object value) throws IOException
+        {
+            if (value instanceof String)
+            {
+                write(TYPE_STRING);
+                writeString((String)value);
+            }
+            else if (value instanceof Integer)
+            {
+                write(TYPE_INTEGER);
+                writeVarLong(zigZag((Integer)value));
+            }
+            else if (value instanceof Long)
+            {
+                write(TYPE_LONG);
+                writeVarLong(zigZag((Long)value));
+            }
+            else if (value instanceof Boolean)
+            {
+                write((Boolean)value ? TYPE_TRUE : TYPE_FALSE);
+            }
+            else if (value instanceof Double)
+            {
+                write(TYPE_DOUBLE);
+                writeLong(Double.doubleToRawLongBits((Double)value));
+            }
+            else if (value instanceof Float)
+            {
+                write(TYPE_FLOAT);
+                ensure(4);
+                BinarySessionDataCodec.writeInt(_bytes, _length, Float.floatToRawIntBits((Float)value));
+                _length += 4;
+            }
+            else if (value instanceof Short)
+            {
+                write(TYPE_SHORT);
+                writeVarLong(zigZag((Short)value));
+            }
+            else if (value instanceof Byte)
+            {
+                write(TYPE_BYTE);
+                write((Byte)value);
+            }
+            else if (value instanceof Character)
+            {
+                write(TYPE_CHARACTER);
+                writeVarLong((Character)value);
+            }
+            else if (value instanceof byte[])
+            {
+                byte[] bytes = (byte[])value;
+                write(TYPE_BYTES);
+                writeVarLong(bytes.length);
+                write(bytes, 0, bytes.length);
+            }
+            else
+            {
+                Class<?> clazz = value.getClass();
+                boolean isContextLoader = SessionData.isContextLoaderClass(clazz);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Attribute {} class={} isServerLoader={}", name, clazz.getName(), !isContextLoader);
+                write(isContextLoader ? TYPE_SERIALIZED_CONTEXT : TYPE_SERIALIZED_SERVER);
+
+                // Reserve the length, then serialize directly into the bytes.
+                ensure(4);
+                int lengthOffset = _length;
+                _length += 4;
+                ObjectOutputStream oos = new ObjectOutputStream(this);
+                oos.writeObject(value);
+                oos.flush();
+                BinarySessionDataCodec.writeInt(_bytes, lengthOffset, _length - lengthOffset - 4);
+            }
+        }
+
+        private void writeString(String value)
+        {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        private static long zigZag(long value)
+        {
+            return (value << 1) ^ (value >> 63);
+        }
+
+        private void writeVarLong(long value)
+        {
+            ensure(10);
+            while ((value & ~0x7FL) != 0)
+            {
+                _bytes[_length++] = (byte)((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            _bytes[_length++] = (byte)value;
+        }
+
+        private void writeLong(long value)
+        {
+            ensure(8);
+            BinarySessionDataCodec.writeInt(_bytes, _length, (int)(value >>> 32));
+            BinarySessionDataCodec.writeInt(_bytes, _length + 4, (int)value);
+            _length += 8;
+        }
+
+        private void ensure(int space)
+        {
+            if (_bytes.length - _length < space)
+                _bytes = Arrays.copyOf(_bytes, Math.max(_bytes.length * 2, _length + space));
+        }
+
+        @Override
+        public void write(int b)
+        {
+            ensure(1);
+            _bytes[_length++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            ensure(len);
+            System.arraycopy(b, off, _bytes, _length, len);
+            _length += len;
+        }
+    }
+
+    /**
+     * Reads the attributes from a region of a byte array.
+     */
+    private static class Decoder
+    {
+        private final byte[] _bytes;
+        private final int _limit;
+        private int _position;
+
+        private Decoder(byte[] bytes, int offset, int limit)
+        {
+            _bytes = bytes;
+            _position = offset;
+            _limit = limit;
+        }
+
+        private void decode(SessionData data) throws IOException, ClassNotFoundException
+        {
+            need(4);
+            int count = readInt(_bytes, _position);
+            _position += 4;
+            if (count < 0)
+                throw new IOException("Invalid attribute count " + count);
+
+            Map<String, Object> attributes = new ConcurrentHashMap<>();
+            for (int i = 0; i < count; i++)
+            {
+                String name = readString();
+                attributes.put(name, readValue(name));
+            }
+            data._attributes = attributes;
+        }
+
+        private Object readValue(String name) throws IOException, ClassNotFoundException
+        {
+            byte type = readByte();
+            switch (type)
+            {
+                case TYPE_STRING:
+                    return readString();
+                case TYPE_INTEGER:
+                    return (int)unZigZag(readVarLong());
+                case TYPE_LONG:
+                    return unZigZag(readVarLong());
+                case TYPE_TRUE:
+                    return Boolean.TRUE;
+                case TYPE_FALSE:
+                    return Boolean.FALSE;
+                case TYPE_DOUBLE:
+                {
+                    need(8);
+                    long bits = ((long)readInt(_bytes, _position) << 32) | (readInt(_bytes, _position + 4) & 0xFFFFFFFFL);
+                    _position += 8;
+                    return Double.longBitsToDouble(bits);
+                }
+                case TYPE_FLOAT:
+                {
+                    need(4);
+                    int bits = readInt(_bytes, _position);
+                    _position += 4;
+                    return Float.intBitsToFloat(bits);
+                }
+                case TYPE_SHORT:
+                    return (short)unZigZag(readVarLong());
+                case TYPE_BYTE:
+                    return readByte();
+                case TYPE_CHARACTER:
+                    return (char)readVarLong();
+                case TYPE_BYTES:
+                {
+                    int length = readLength();
+                    byte[] bytes = Arrays.copyOfRange(_bytes, _position, _position + length);
+                    _position += length;
+                    return bytes;
+                }
+                case TYPE_SERIALIZED_SERVER:
+                case TYPE_SERIALIZED_CONTEXT:
+                {
+                    need(4);
+                    int length = readInt(_bytes, _position);
+                    _position += 4;
+                    if (length < 0)
+                        throw new IOException("Invalid length " + length);
+                    need(length);
+                    boolean isServerClassLoader = type == TYPE_SERIALIZED_SERVER;
+                    ClassLoader loader = isServerClassLoader ? SessionData.class.getClassLoader() : Thread.currentThread().getContextClassLoader();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Deserialize {} isServerLoader={} loader={}", name, isServerClassLoader, loader);
+                    try (ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(new ByteArrayInputStream(_bytes, _position, length)))
+                    {
+                        Object value = ois.readObject(loader);
+                        _position += length;
+                        return value;
+                    }
+                }
+                default:
+                    throw new IOException("Unknown type " + type + " for attribute " + name);
+            }
+        }
+
+        private String readString() throws IOException
+        {
+            int length = readLength();
+            String value = new String(_bytes, _position, length, StandardCharsets.UTF_8);
+            _position += length;
+            return value;
+        }
+
+        private int readLength() throws IOException
+        {
+            long length = readVarLong();
+            if (length < 0 || length > _limit - _position)
+                throw new EOFException();
+            return (int)length;
+        }
+
+        private static long unZigZag(long value)
+        {
+            return (value >>> 1) ^ -(value & 1);
+        }
+
+        private long readVarLong() throws IOException
+        {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7)
+            {
+                byte b = readByte();
+                value |= (long)(b & 0x7F) << shift;
+                if ((b & 0x80) == 0)
+                    return value;
+            }
+            throw new IOException("Invalid varint");
+        }
+
+        private byte readByte() throws IOException
+        {
+            need(1);
+            return _bytes[_position++];
+        }
+
+        private void need(int length) throws IOException
+        {
+            if (_limit - _position < length)
+                throw new EOFException();
+        }
+    }
+}
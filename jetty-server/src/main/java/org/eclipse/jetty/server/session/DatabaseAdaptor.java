@@ -148,6 +148,13 @@ public class DatabaseAdaptor
         return _dbName;
     }
 
+    /**
+     * @param result the result set positioned on the row to read
+     * @param columnName the name of the blob column
+     * @return a stream of the bytes of the blob, empty if the blob is SQL NULL,
+     * as for example an empty blob is stored by Oracle
+     * @throws SQLException if the blob cannot be read
+     */
     public InputStream getBlobInputStream(ResultSet result, String columnName)
         throws SQLException
     {
@@ -155,23 +162,28 @@ public class DatabaseAdaptor
             throw new IllegalStateException("DbAdaptor missing metadata");
 
         if (_dbName.startsWith("postgres"))
-        {
-            byte[] bytes = result.getBytes(columnName);
-            return new ByteArrayInputStream(bytes);
-        }
+            return newInputStream(result.getBytes(columnName));
 
         try
         {
             Blob blob = result.getBlob(columnName);
+            if (blob == null)
+                return InputStream.nullInputStream();
             return blob.getBinaryStream();
         }
         catch (SQLFeatureNotSupportedException ex)
         {
-            byte[] bytes = result.getBytes(columnName);
-            return new ByteArrayInputStream(bytes);
+            return newInputStream(result.getBytes(columnName));
         }
     }
 
+    private static InputStream newInputStream(byte[] bytes)
+    {
+        if (bytes == null)
+            return InputStream.nullInputStream();
+        return new ByteArrayInputStream(bytes);
+    }
+
     public boolean isEmptyStringNull()
     {
         if (_dbName == null)
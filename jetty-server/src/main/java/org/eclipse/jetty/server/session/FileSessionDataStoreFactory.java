@@ -63,6 +63,8 @@ public class FileSessionDataStoreFactory extends AbstractSessionDataStoreFactory
         fsds.setStoreDir(getStoreDir());
         fsds.setGracePeriodSec(getGracePeriodSec());
         fsds.setSavePeriodSec(getSavePeriodSec());
+        if (getSessionDataCodec() != null)
+            fsds.setSessionDataCodec(getSessionDataCodec());
         return fsds;
     }
 }
@@ -14,19 +14,19 @@
 package org.eclipse.jetty.server.session;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
-import java.io.ObjectOutputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -79,6 +79,9 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         protected String _expiryTimeColumn = "expiryTime";
         protected String _maxIntervalColumn = "maxInterval";
         protected String _mapColumn = "map";
+        protected String _attributeTableName = null;
+        protected String _attributeNameColumn = "attributeName";
+        protected String _attributeValueColumn = "attributeValue";
 
         protected void setDatabaseAdaptor(DatabaseAdaptor dbadaptor)
         {
@@ -259,6 +262,61 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             _mapColumn = mapColumn;
         }
 
+        /**
+         * @return the name of the table holding one row per session attribute,
+         * or null if the attributes are stored in the map column of the session table
+         */
+        public String getAttributeTableName()
+        {
+            return _attributeTableName;
+        }
+
+        /**
+         * Set the name of the table holding one row per session attribute.
+         * When set, only the attributes that changed since the last save are
+         * written, rather than the whole attribute map. Sessions previously saved
+         * with the map column are migrated to the attribute table on their next save.
+         *
+         * @param attributeTableName the name of the attribute table, or null to store
+         * the attributes in the map column of the session table
+         */
+        public void setAttributeTableName(String attributeTableName)
+        {
+            _attributeTableName = StringUtil.isBlank(attributeTableName) ? null : attributeTableName;
+        }
+
+        public boolean isAttributeTableEnabled()
+        {
+            return _attributeTableName != null;
+        }
+
+        private String getSchemaAttributeTableName()
+        {
+            return (getSchemaName() != null ? getSchemaName() + "." : "") + getAttributeTableName();
+        }
+
+        public String getAttributeNameColumn()
+        {
+            return _attributeNameColumn;
+        }
+
+        public void setAttributeNameColumn(String attributeNameColumn)
+        {
+            checkNotNull(attributeNameColumn);
+            _attributeNameColumn = attributeNameColumn;
+        }
+
+        public String getAttributeValueColumn()
+        {
+            return _attributeValueColumn;
+        }
+
+        public void setAttributeValueColumn(String attributeValueColumn)
+        {
+            checkNotNull(attributeValueColumn);
+            _attributeValueColumn = attributeValueColumn;
+        }
+
         public String getCreateStatementAsString()
         {
             if (_dbAdaptor == null)
@@ -275,6 +333,20 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 _mapColumn + " " + blobType + ", primary key(" + _idColumn + ", " + _contextPathColumn + "," + _virtualHostColumn + "))";
         }
 
+        public String getCreateAttributeTableStatementAsString()
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DBAdaptor");
+
+            String blobType = _dbAdaptor.getBlobType();
+            String stringType = _dbAdaptor.getStringType();
+
+            return "create table " + _attributeTableName + " (" + _idColumn + " " + stringType + "(120), " +
+                _contextPathColumn + " " + stringType + "(60), " + _virtualHostColumn + " " + stringType + "(60), " +
+                _attributeNameColumn + " " + stringType + "(255), " + _attributeValueColumn + " " + blobType + ", primary key(" +
+                _idColumn + ", " + _contextPathColumn + "," + _virtualHostColumn + "," + _attributeNameColumn + "))";
+        }
+
         public String getCreateIndexOverExpiryStatementAsString(String indexName)
         {
             return "create index " + indexName + " on " + getSchemaTableName() + " (" + getExpiryTimeColumn() + ")";
@@ -312,14 +384,33 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         }
 
-        public PreparedStatement getUpdateSessionStatement(Connection connection, String id, SessionContext context)
-            throws SQLException
+        public String getInsertAttributeStatementAsString()
         {
-            String s = "update " + getSchemaTableName() +
+            return "insert into " + getSchemaAttributeTableName() +
+                " (" + getIdColumn() + ", " + getContextPathColumn() + ", " + getVirtualHostColumn() + ", " +
+                getAttributeNameColumn() + ", " + getAttributeValueColumn() + ") values (?, ?, ?, ?, ?)";
+        }
+
+        public String getDeleteAttributeStatementAsString()
+        {
+            return "delete from " + getSchemaAttributeTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() + " = ? and " +
+                getVirtualHostColumn() + " = ? and " + getAttributeNameColumn() + " = ?";
+        }
+
+        public String getUpdateSessionStatementAsString()
+        {
+            return "update " + getSchemaTableName() +
                 " set " + getLastNodeColumn() + " = ?, " + getAccessTimeColumn() + " = ?, " +
                 getLastAccessTimeColumn() + " = ?, " + getLastSavedTimeColumn() + " = ?, " + getExpiryTimeColumn() + " = ?, " +
                 getMaxIntervalColumn() + " = ?, " + getMapColumn() + " = ? where " + getIdColumn() + " = ? and " + getContextPathColumn() +
                 " = ? and " + getVirtualHostColumn() + " = ?";
+        }
+
+        public PreparedStatement getUpdateSessionStatement(Connection connection, String id, SessionContext context)
+            throws SQLException
+        {
+            String s = getUpdateSessionStatementAsString();
 
             String cp = context.getCanonicalContextPath();
             if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
@@ -421,6 +512,27 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             return statement;
         }
 
+        public PreparedStatement getLoadAttributesStatement(Connection connection, String id, SessionContext contextId)
+            throws SQLException
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DB adaptor");
+
+            String cp = contextId.getCanonicalContextPath();
+            if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+                cp = NULL_CONTEXT_PATH;
+
+            PreparedStatement statement = connection.prepareStatement("select " + getAttributeNameColumn() + ", " + getAttributeValueColumn() +
+                " from " + getSchemaAttributeTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ?");
+            statement.setString(1, id);
+            statement.setString(2, cp);
+            statement.setString(3, contextId.getVhost());
+
+            return statement;
+        }
+
         public PreparedStatement getUpdateStatement(Connection connection, String id, SessionContext contextId)
             throws SQLException
         {
@@ -466,6 +578,41 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             return statement;
         }
 
+        public PreparedStatement getDeleteAttributesStatement(Connection connection, String id, SessionContext contextId)
+            throws Exception
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DB adaptor");
+
+            String cp = contextId.getCanonicalContextPath();
+            if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+                cp = NULL_CONTEXT_PATH;
+
+            PreparedStatement statement = connection.prepareStatement("delete from " + getSchemaAttributeTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ?");
+            statement.setString(1, id);
+            statement.setString(2, cp);
+            statement.setString(3, contextId.getVhost());
+
+            return statement;
+        }
+
+        public PreparedStatement getCleanOrphanAttributesStatement(Connection connection)
+            throws Exception
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DB adaptor");
+
+            String attributes = getSchemaAttributeTableName();
+            String sessions = getSchemaTableName();
+            return connection.prepareStatement("delete from " + attributes +
+                " where not exists (select " + sessions + "." + getIdColumn() + " from " + sessions +
+                " where " + sessions + "." + getIdColumn() + " = " + attributes + "." + getIdColumn() +
+                " and " + sessions + "." + getContextPathColumn() + " = " + attributes + "." + getContextPathColumn() +
+                " and " + sessions + "." + getVirtualHostColumn() + " = " + attributes + "." + getVirtualHostColumn() + ")");
+        }
+
         public PreparedStatement getCleanOrphansStatement(Connection connection, long timeLimit)
             throws Exception
         { 
@@ -585,15 +732,31 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                     statement.executeUpdate(getCreateIndexOverExpiryStatementAsString(index1));
                 if (!index2Exists)
                     statement.executeUpdate(getCreateIndexOverSessionStatementAsString(index2));
+
+                //make the attribute table if necessary
+                if (isAttributeTableEnabled())
+                {
+                    String attributeTableName = _dbAdaptor.convertIdentifier(getAttributeTableName());
+                    try (ResultSet result = metaData.getTables(catalogName, schemaName, attributeTableName, null))
+                    {
+                        if (!result.next())
+                        {
+                            if (LOG.isDebugEnabled())
+                                LOG.debug("Creating table {} schema={} catalog={}", attributeTableName, schemaName, catalogName);
+                            statement.executeUpdate(getCreateAttributeTableStatementAsString());
+                        }
+                    }
+                }
             }
         }
 
         @Override
         public String toString()
         {
-            return String.format("%s[%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s]", super.toString(),
+            return String.format("%s[%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s]", super.toString(),
                 _catalogName, _schemaName, _tableName, _idColumn, _contextPathColumn, _virtualHostColumn, _cookieTimeColumn, _createTimeColumn,
-                _expiryTimeColumn, _accessTimeColumn, _lastAccessTimeColumn, _lastNodeColumn, _lastSavedTimeColumn, _maxIntervalColumn);
+                _expiryTimeColumn, _accessTimeColumn, _lastAccessTimeColumn, _lastNodeColumn, _lastSavedTimeColumn, _maxIntervalColumn,
+                _attributeTableName, _attributeNameColumn, _attributeValueColumn);
         }
     }
 
@@ -662,10 +825,27 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 data.setContextPath(_context.getCanonicalContextPath());
                 data.setVhost(_context.getVhost());
 
-                try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getMapColumn());
-                     ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(is))
+                try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getMapColumn()))
                 {
-                    SessionData.deserializeAttributes(data, ois);
+                    if (_sessionTableSchema.isAttributeTableEnabled())
+                    {
+                        //the map column is empty, or NULL on databases such as Oracle,
+                        //unless the session was saved before the attribute table was
+                        //enabled, in which case the attributes are marked dirty so
+                        //that they are migrated on the next save
+                        byte[] bytes = is.readAllBytes();
+                        if (bytes.length > 0)
+                        {
+                            _sessionDataCodec.decode(data, bytes);
+                            for (String name : data.getKeys())
+                            {
+                                data.setDirty(name);
+                            }
+                        }
+                        loadAttributes(connection, data);
+                    }
+                    else
+                        _sessionDataCodec.decode(data, is);
                 }
                 catch (Exception e)
                 {
@@ -682,6 +862,28 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         }
     }
 
+    private void loadAttributes(Connection connection, SessionData data)
+        throws Exception
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        try (PreparedStatement statement = _sessionTableSchema.getLoadAttributesStatement(connection, data.getId(), _context);
+             ResultSet result = statement.executeQuery())
+        {
+            while (result.next())
+            {
+                String name = result.getString(_sessionTableSchema.getAttributeNameColumn());
+                //an attribute migrated from the map column has not been saved in its row yet
+                if (data.getDirtyAttributes().contains(name))
+                    continue;
+                try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getAttributeValueColumn()))
+                {
+                    attributes.put(name, _sessionDataCodec.decodeAttribute(name, is.readAllBytes()));
+                }
+            }
+        }
+        data.putAllAttributes(attributes);
+    }
+
     @Override
     public boolean delete(String id) throws Exception
     {
@@ -693,6 +895,14 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             if (LOG.isDebugEnabled())
                 LOG.debug("Deleted Session {}:{}", id, (rows > 0));
 
+            if (_sessionTableSchema.isAttributeTableEnabled())
+            {
+                try (PreparedStatement attributes = _sessionTableSchema.getDeleteAttributesStatement(connection, id, _context))
+                {
+                    attributes.executeUpdate();
+                }
+            }
+
             return rows > 0;
         }
     }
@@ -716,6 +926,12 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
     protected void doInsert(String id, SessionData data)
         throws Exception
     {
+        if (_sessionTableSchema.isAttributeTableEnabled())
+        {
+            doStoreAll(List.of(data), new long[]{0});
+            return;
+        }
+
         String s = _sessionTableSchema.getInsertSessionStatementAsString();
 
         try (Connection connection = _dbAdaptor.getConnection())
@@ -723,33 +939,7 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             connection.setAutoCommit(true);
             try (PreparedStatement statement = connection.prepareStatement(s))
             {
-                statement.setString(1, id); //session id
-
-                String cp = _context.getCanonicalContextPath();
-                if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
-                    cp = NULL_CONTEXT_PATH;
-
-                statement.setString(2, cp); //context path
-
-                statement.setString(3, _context.getVhost()); //first vhost
-                statement.setString(4, data.getLastNode()); //my node id
-                statement.setLong(5, data.getAccessed()); //accessTime
-                statement.setLong(6, data.getLastAccessed()); //lastAccessTime
-                statement.setLong(7, data.getCreated()); //time created
-                statement.setLong(8, data.getCookieSet()); //time cookie was set
-                statement.setLong(9, data.getLastSaved()); //last saved time
-                statement.setLong(10, data.getExpiry());
-                statement.setLong(11, data.getMaxInactiveMs());
-
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                     ObjectOutputStream oos = new ObjectOutputStream(baos))
-                {
-                    SessionData.serializeAttributes(data, oos);
-                    byte[] bytes = baos.toByteArray();
-                    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-                    statement.setBinaryStream(12, bais, bytes.length); //attribute map as blob
-                }
-
+                setInsertParameters(statement, id, data);
                 statement.executeUpdate();
                 if (LOG.isDebugEnabled())
                     LOG.debug("Inserted session {}", data);
@@ -760,37 +950,176 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
     protected void doUpdate(String id, SessionData data)
         throws Exception
     {
+        if (_sessionTableSchema.isAttributeTableEnabled())
+        {
+            doStoreAll(List.of(data), new long[]{data.getLastSaved()});
+            return;
+        }
+
         try (Connection connection = _dbAdaptor.getConnection())
         {
             connection.setAutoCommit(true);
             try (PreparedStatement statement = _sessionTableSchema.getUpdateSessionStatement(connection, data.getId(), _context))
             {
-                statement.setString(1, data.getLastNode()); //should be my node id
-                statement.setLong(2, data.getAccessed()); //accessTime
-                statement.setLong(3, data.getLastAccessed()); //lastAccessTime
-                statement.setLong(4, data.getLastSaved()); //last saved time
-                statement.setLong(5, data.getExpiry());
-                statement.setLong(6, data.getMaxInactiveMs());
-
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                     ObjectOutputStream oos = new ObjectOutputStream(baos))
+                setUpdateParameters(statement, data);
+                statement.executeUpdate();
+
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Updated session {}", data);
+            }
+        }
+    }
+
+    /**
+     * Store a batch of sessions in a single transaction, using
+     * a JDBC batch for the inserts and a JDBC batch for the updates.
+     * If the attribute table is enabled, all the attributes of inserted
+     * sessions and only the dirty attributes of updated sessions are
+     * written to the attribute table, using a JDBC batch of deletes
+     * followed by a JDBC batch of inserts.
+     */
+    @Override
+    public void doStoreAll(List<SessionData> batch, long[] lastSaveTimes) throws Exception
+    {
+        String cp = _context.getCanonicalContextPath();
+        if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+            cp = NULL_CONTEXT_PATH;
+
+        boolean attributeTable = _sessionTableSchema.isAttributeTableEnabled();
+        try (Connection connection = _dbAdaptor.getConnection())
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement inserts = connection.prepareStatement(_sessionTableSchema.getInsertSessionStatementAsString());
+                 PreparedStatement updates = connection.prepareStatement(_sessionTableSchema.getUpdateSessionStatementAsString());
+                 PreparedStatement attributeDeletes = attributeTable ? connection.prepareStatement(_sessionTableSchema.getDeleteAttributeStatementAsString()) : null;
+                 PreparedStatement attributeInserts = attributeTable ? connection.prepareStatement(_sessionTableSchema.getInsertAttributeStatementAsString()) : null)
+            {
+                int insertCount = 0;
+                int updateCount = 0;
+                int attributeDeleteCount = 0;
+                int attributeInsertCount = 0;
+                for (int i = 0; i < batch.size(); i++)
                 {
-                    SessionData.serializeAttributes(data, oos);
-                    byte[] bytes = baos.toByteArray();
-                    try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes))
+                    SessionData data = batch.get(i);
+                    Set<String> names;
+                    if (lastSaveTimes[i] <= 0)
                     {
-                        statement.setBinaryStream(7, bais, bytes.length); //attribute map as blob
+                        setInsertParameters(inserts, data.getId(), data);
+                        inserts.addBatch();
+                        insertCount++;
+                        names = data.getKeys();
+                    }
+                    else
+                    {
+                        setUpdateParameters(updates, data);
+                        updates.setString(8, data.getId());
+                        updates.setString(9, cp);
+                        updates.setString(10, _context.getVhost());
+                        updates.addBatch();
+                        updateCount++;
+                        names = data.getDirtyAttributes();
+                    }
+
+                    if (attributeTable)
+                    {
+                        for (String name : names)
+                        {
+                            attributeDeletes.setString(1, data.getId());
+                            attributeDeletes.setString(2, cp);
+                            attributeDeletes.setString(3, _context.getVhost());
+                            attributeDeletes.setString(4, name);
+                            attributeDeletes.addBatch();
+                            attributeDeleteCount++;
+
+                            Object value = data.getAttribute(name);
+                            if (value != null)
+                            {
+                                byte[] bytes = _sessionDataCodec.encodeAttribute(name, value);
+                                attributeInserts.setString(1, data.getId());
+                                attributeInserts.setString(2, cp);
+                                attributeInserts.setString(3, _context.getVhost());
+                                attributeInserts.setString(4, name);
+                                attributeInserts.setBinaryStream(5, new ByteArrayInputStream(bytes), bytes.length);
+                                attributeInserts.addBatch();
+                                attributeInsertCount++;
+                            }
+                        }
                     }
                 }
 
-                statement.executeUpdate();
+                if (insertCount > 0)
+                    inserts.executeBatch();
+                if (updateCount > 0)
+                    updates.executeBatch();
+                if (attributeDeleteCount > 0)
+                    attributeDeletes.executeBatch();
+                if (attributeInsertCount > 0)
+                    attributeInserts.executeBatch();
+                connection.commit();
 
                 if (LOG.isDebugEnabled())
-                    LOG.debug("Updated session {}", data);
+                    LOG.debug("Stored batch of {} sessions, inserted={} updated={} attributes={}", batch.size(), insertCount, updateCount, attributeInsertCount);
+            }
+            catch (Exception e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
             }
         }
     }
 
+    private void setInsertParameters(PreparedStatement statement, String id, SessionData data)
+        throws Exception
+    {
+        statement.setString(1, id); //session id
+
+        String cp = _context.getCanonicalContextPath();
+        if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+            cp = NULL_CONTEXT_PATH;
+
+        statement.setString(2, cp); //context path
+
+        statement.setString(3, _context.getVhost()); //first vhost
+        statement.setString(4, data.getLastNode()); //my node id
+        statement.setLong(5, data.getAccessed()); //accessTime
+        statement.setLong(6, data.getLastAccessed()); //lastAccessTime
+        statement.setLong(7, data.getCreated()); //time created
+        statement.setLong(8, data.getCookieSet()); //time cookie was set
+        statement.setLong(9, data.getLastSaved()); //last saved time
+        statement.setLong(10, data.getExpiry());
+        statement.setLong(11, data.getMaxInactiveMs());
+
+        byte[] bytes = encodeMap(data);
+        statement.setBinaryStream(12, new ByteArrayInputStream(bytes), bytes.length); //attribute map as blob
+    }
+
+    private void setUpdateParameters(PreparedStatement statement, SessionData data)
+        throws Exception
+    {
+        statement.setString(1, data.getLastNode()); //should be my node id
+        statement.setLong(2, data.getAccessed()); //accessTime
+        statement.setLong(3, data.getLastAccessed()); //lastAccessTime
+        statement.setLong(4, data.getLastSaved()); //last saved time
+        statement.setLong(5, data.getExpiry());
+        statement.setLong(6, data.getMaxInactiveMs());
+
+        byte[] bytes = encodeMap(data);
+        statement.setBinaryStream(7, new ByteArrayInputStream(bytes), bytes.length); //attribute map as blob
+    }
+
+    private byte[] encodeMap(SessionData data)
+        throws Exception
+    {
+        //the attributes are in the attribute table, if enabled
+        if (_sessionTableSchema.isAttributeTableEnabled())
+            return new byte[0];
+        return _sessionDataCodec.encode(data);
+    }
+
     @Override
     public Set<String> doCheckExpired(Set<String> candidates, long time)
     {
@@ -922,6 +1251,16 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             int rows = statement.executeUpdate();
             if (LOG.isDebugEnabled())
                 LOG.debug("Deleted {} orphaned sessions", rows);
+
+            if (_sessionTableSchema.isAttributeTableEnabled())
+            {
+                try (PreparedStatement attributes = _sessionTableSchema.getCleanOrphanAttributesStatement(connection))
+                {
+                    rows = attributes.executeUpdate();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Deleted {} orphaned session attributes", rows);
+                }
+            }
         }
         catch (Exception e)
         {
@@ -37,6 +37,8 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
         ds.setSessionTableSchema(_schema);
         ds.setGracePeriodSec(getGracePeriodSec());
         ds.setSavePeriodSec(getSavePeriodSec());
+        if (getSessionDataCodec() != null)
+            ds.setSessionDataCodec(getSessionDataCodec());
         return ds;
     }
 
@@ -0,0 +1,95 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/**
+ * JavaSessionDataCodec
+ *
+ * Encodes the session attributes with java serialization, using
+ * {@link SessionData#serializeAttributes(SessionData, ObjectOutputStream)}.
+ * This is the default format, used also by previous releases, so that
+ * nodes that have not been upgraded can still read the sessions written
+ * by upgraded nodes.
+ *
+ * Attributes written by a {@link BinarySessionDataCodec} are detected and
+ * decoded, so that the nodes of a cluster can be switched to the binary
+ * format one at a time, once they all run a release that can read it.
+ */
+public class JavaSessionDataCodec implements SessionDataCodec
+{
+    private static final BinarySessionDataCodec BINARY = new BinarySessionDataCodec();
+
+    @Override
+    public void encode(SessionData data, OutputStream out) throws IOException
+    {
+        ObjectOutputStream oos = new ObjectOutputStream(out);
+        SessionData.serializeAttributes(data, oos);
+        oos.flush();
+    }
+
+    @Override
+    public void decode(SessionData data, InputStream in) throws IOException, ClassNotFoundException
+    {
+        byte[] magic = in.readNBytes(2);
+        InputStream input = new SequenceInputStream(new ByteArrayInputStream(magic), in);
+        if (BinarySessionDataCodec.isBinary(magic))
+        {
+            BINARY.decode(data, input);
+            return;
+        }
+        ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(input);
+        SessionData.deserializeAttributes(data, ois);
+    }
+
+    @Override
+    public byte[] encodeAttribute(String name, Object value) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out))
+        {
+            oos.writeBoolean(!SessionData.isContextLoaderClass(value.getClass()));
+            oos.writeObject(value);
+        }
+        return out.toByteArray();
+    }
+
+    @Override
+    public Object decodeAttribute(String name, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        if (BinarySessionDataCodec.isBinary(bytes))
+            return BINARY.decodeAttribute(name, bytes);
+        try (ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(new ByteArrayInputStream(bytes)))
+        {
+            boolean isServerClassLoader = ois.readBoolean();
+            ClassLoader loader = isServerClassLoader ? SessionData.class.getClassLoader() : Thread.currentThread().getContextClassLoader();
+            return ois.readObject(loader);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x", getClass().getSimpleName(), hashCode());
+    }
+}
@@ -108,31 +108,57 @@ public class Session implements SessionHandler.SessionIf
 
         public SessionInactivityTimer()
         {
+            this(true);
+        }
+
+        /**
+         * @param cyclic whether this timer uses its own {@link CyclicTimeout}; if not,
+         * the subclass must override {@link #schedule(long)}, {@link #cancel()} and
+         * {@link #destroy()}, for example to track the timeout in the {@link SessionCache}
+         */
+        protected SessionInactivityTimer(boolean cyclic)
+        {
+            if (!cyclic)
+            {
+                _timer = null;
+                return;
+            }
             _timer = new CyclicTimeout((getSessionHandler().getScheduler()))
             {
                 @Override
                 public void onTimeoutExpired()
                 {
-                    if (LOG.isDebugEnabled())
-                        LOG.debug("Timer expired for session {}", getId());
-                    long now = System.currentTimeMillis();
-                    //handle what to do with the session after the timer expired
-                    getSessionHandler().sessionInactivityTimerExpired(Session.this, now);
-                    try (AutoLock l = Session.this.lock())
-                    {
-                        //grab the lock and check what happened to the session: if it didn't get evicted and
-                        //it hasn't expired, we need to reset the timer
-                        if (Session.this.isResident() && Session.this.getRequests() <= 0 && Session.this.isValid() &&
-                            !Session.this.isExpiredAt(now))
-                        {
-                            //session wasn't expired or evicted, we need to reset the timer
-                            SessionInactivityTimer.this.schedule(Session.this.calculateInactivityTimeout(now));
-                        }
-                    }
+                    SessionInactivityTimer.this.onTimeoutExpired(System.currentTimeMillis());
                 }
             };
         }
 
+        /**
+         * Called when the timer goes off, either by the {@link CyclicTimeout}
+         * of this timer or by the {@link SessionCache} that tracks the timeouts
+         * of its sessions.
+         *
+         * @param now the time at which the timer went off
+         */
+        public void onTimeoutExpired(long now)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Timer expired for session {}", getId());
+            //handle what to do with the session after the timer expired
+            getSessionHandler().sessionInactivityTimerExpired(Session.this, now);
+            try (AutoLock l = Session.this.lock())
+            {
+                //grab the lock and check what happened to the session: if it didn't get evicted and
+                //it hasn't expired, we need to reset the timer
+                if (Session.this.isResident() && Session.this.getRequests() <= 0 && Session.this.isValid() &&
+                    !Session.this.isExpiredAt(now))
+                {
+                    //session wasn't expired or evicted, we need to reset the timer
+                    SessionInactivityTimer.this.schedule(Session.this.calculateInactivityTimeout(now));
+                }
+            }
+        }
+
         /**
          * @param time the timeout to set; -1 means that the timer will not be
          * scheduled
@@ -180,7 +206,7 @@ public class Session implements SessionHandler.SessionIf
         _sessionData = data;
         _newSession = true;
         _sessionData.setDirty(true);
-        _sessionInactivityTimer = new SessionInactivityTimer();
+        _sessionInactivityTimer = newSessionInactivityTimer();
     }
 
     /**
@@ -193,7 +219,19 @@ public class Session implements SessionHandler.SessionIf
     {
         _handler = handler;
         _sessionData = data;
-        _sessionInactivityTimer = new SessionInactivityTimer();
+        _sessionInactivityTimer = newSessionInactivityTimer();
+    }
+
+    /**
+     * Create the timer that tracks the inactivity of this session.
+     * Called from the constructor, so it must not depend on fields
+     * of subclasses.
+     *
+     * @return the inactivity timer of this session
+     */
+    protected SessionInactivityTimer newSessionInactivityTimer()
+    {
+        return new SessionInactivityTimer();
     }
 
     /**
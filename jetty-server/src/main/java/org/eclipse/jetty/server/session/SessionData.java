@@ -54,6 +54,7 @@ public class SessionData implements Serializable
     protected boolean _dirty;
     protected long _lastSaved; //time in msec since last save
     protected boolean _metaDataDirty; //non-attribute data has changed
+    protected Set<String> _dirtyAttributes = ConcurrentHashMap.newKeySet(); //names of attributes changed since last save
 
     /**
      * Serialize the attribute map of the session.
@@ -75,41 +76,54 @@ public class SessionData implements Serializable
             out.writeUTF(entry.getKey());
 
             Class<?> clazz = entry.getValue().getClass();
-            ClassLoader loader = clazz.getClassLoader();
-            ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
-            boolean isContextLoader;
+            boolean isContextLoader = isContextLoaderClass(clazz);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Attribute {} class={} isServerLoader={}", entry.getKey(), clazz.getName(), (!isContextLoader));
+            out.writeBoolean(!isContextLoader);
+            out.writeObject(entry.getValue());
+        }
+    }
 
-            if (loader == contextLoader) //is it the context classloader?
-                isContextLoader = true;
-            else if (contextLoader == null) //not context classloader
-                isContextLoader = false;
-            else if (contextLoader instanceof ClassVisibilityChecker)
+    /**
+     * Determine whether the value of an attribute should be loaded by the context
+     * classloader (ie the webapp's classloader) rather than by the container classloader
+     * when it is deserialized.
+     *
+     * @param clazz the class of the attribute value
+     * @return true if the class is loadable by the thread context classloader
+     */
+    static boolean isContextLoaderClass(Class<?> clazz)
+    {
+        ClassLoader loader = clazz.getClassLoader();
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        boolean isContextLoader;
+
+        if (loader == contextLoader) //is it the context classloader?
+            isContextLoader = true;
+        else if (contextLoader == null) //not context classloader
+            isContextLoader = false;
+        else if (contextLoader instanceof ClassVisibilityChecker)
+        {
+            //Clazz not loaded by context classloader, but ask if loadable by context classloader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
+            isContextLoader = (checker.isSystemClass(clazz) && !(checker.isServerClass(clazz)));
+        }
+        else
+        {
+            //Class wasn't loaded by context classloader, but try loading from context loader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            try
             {
-                //Clazz not loaded by context classloader, but ask if loadable by context classloader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
-                isContextLoader = (checker.isSystemClass(clazz) && !(checker.isServerClass(clazz)));
+                Class<?> result = contextLoader.loadClass(clazz.getName());
+                isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
             }
-            else
+            catch (Throwable e)
             {
-                //Class wasn't loaded by context classloader, but try loading from context loader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                try
-                {
-                    Class<?> result = contextLoader.loadClass(clazz.getName());
-                    isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
-                }
-                catch (Throwable e)
-                {
-                    isContextLoader = false; //TCCL can't see the class
-                }
+                isContextLoader = false; //TCCL can't see the class
             }
-
-            if (LOG.isDebugEnabled())
-                LOG.debug("Attribute {} class={} isServerLoader={}", entry.getKey(), clazz.getName(), (!isContextLoader));
-            out.writeBoolean(!isContextLoader);
-            out.writeObject(entry.getValue());
         }
+        return isContextLoader;
     }
 
     /**
@@ -232,9 +246,27 @@ public class SessionData implements Serializable
         _dirty = dirty;
     }
 
+    /**
+     * Mark the session as dirty because an attribute has changed.
+     *
+     * @param name the name of the attribute that was set or removed
+     */
     public void setDirty(String name)
     {
         setDirty(true);
+        _dirtyAttributes.add(name);
+    }
+
+    /**
+     * Get the names of the attributes that have been set or removed
+     * since the session was last saved, so that stores that support it
+     * can write only the changed attributes.
+     *
+     * @return an unmodifiable set of the names of the changed attributes
+     */
+    public Set<String> getDirtyAttributes()
+    {
+        return Collections.unmodifiableSet(_dirtyAttributes);
     }
 
     /**
@@ -287,6 +319,7 @@ public class SessionData implements Serializable
     {
         setDirty(false);
         setMetaDataDirty(false);
+        _dirtyAttributes.clear();
     }
 
     public void putAllAttributes(Map<String, Object> attributes)
@@ -483,6 +516,7 @@ public class SessionData implements Serializable
         _lastNode = in.readUTF(); //last managing node
         _expiry = in.readLong();
         _maxInactiveMs = in.readLong();
+        _dirtyAttributes = ConcurrentHashMap.newKeySet();
         deserializeAttributes(this, in);
     }
 
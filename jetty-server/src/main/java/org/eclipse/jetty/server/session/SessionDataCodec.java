@@ -0,0 +1,107 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * SessionDataCodec
+ *
+ * Encodes and decodes the attributes of a {@link SessionData} so that
+ * they can be persisted by a {@link SessionDataStore}. The other fields
+ * of the SessionData are persisted by each store in its own format.
+ *
+ * Implementations must be thread safe, and must select the classloader
+ * used to load attribute values in the same way as
+ * {@link SessionData#deserializeAttributes(SessionData, java.io.ObjectInputStream)}:
+ * encoding and decoding are called with the context classloader of the
+ * webapp set as the thread context classloader.
+ *
+ * @see BinarySessionDataCodec
+ * @see JavaSessionDataCodec
+ */
+public interface SessionDataCodec
+{
+    /**
+     * Encode the attributes of the session.
+     *
+     * @param data the session data whose attributes to encode
+     * @param out the stream to write to, which is not closed
+     * @throws IOException if the attributes cannot be encoded
+     */
+    void encode(SessionData data, OutputStream out) throws IOException;
+
+    /**
+     * Decode the attributes of the session, replacing any existing attributes.
+     *
+     * @param data the session data whose attributes to decode
+     * @param in the stream to read from, which is not closed
+     * @throws IOException if the attributes cannot be decoded
+     * @throws ClassNotFoundException if the class of an attribute value cannot be loaded
+     */
+    void decode(SessionData data, InputStream in) throws IOException, ClassNotFoundException;
+
+    /**
+     * Encode the value of a single attribute, for stores that
+     * write each changed attribute separately.
+     *
+     * @param name the name of the attribute
+     * @param value the value of the attribute, not null
+     * @return the encoded value
+     * @throws IOException if the value cannot be encoded
+     */
+    byte[] encodeAttribute(String name, Object value) throws IOException;
+
+    /**
+     * Decode the value of a single attribute encoded by {@link #encodeAttribute(String, Object)}.
+     *
+     * @param name the name of the attribute
+     * @param bytes the encoded value
+     * @return the value of the attribute
+     * @throws IOException if the value cannot be decoded
+     * @throws ClassNotFoundException if the class of the value cannot be loaded
+     */
+    Object decodeAttribute(String name, byte[] bytes) throws IOException, ClassNotFoundException;
+
+    /**
+     * Encode the attributes of the session into a byte array.
+     *
+     * @param data the session data whose attributes to encode
+     * @return the encoded attributes
+     * @throws IOException if the attributes cannot be encoded
+     */
+    default byte[] encode(SessionData data) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encode(data, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decode the attributes of the session from a byte array.
+     *
+     * @param data the session data whose attributes to decode
+     * @param bytes the encoded attributes
+     * @throws IOException if the attributes cannot be decoded
+     * @throws ClassNotFoundException if the class of an attribute value cannot be loaded
+     */
+    default void decode(SessionData data, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        decode(data, new ByteArrayInputStream(bytes));
+    }
+}
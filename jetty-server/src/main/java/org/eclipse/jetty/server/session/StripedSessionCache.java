@@ -0,0 +1,627 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import javax.servlet.http.HttpServletRequest;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.statistic.CounterStatistic;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * StripedSessionCache
+ *
+ * A session cache for a large number of sessions, that keeps its sessions
+ * in memory in a number of segments, each with its own map and its own
+ * timing wheel of session inactivity timeouts.
+ *
+ * Rather than scheduling a timer per session, the inactivity timeout of each
+ * session is recorded in the timing wheel of its segment, and a single task
+ * advances all the wheels every {@link #getTimerTickMs() tick}, visiting only
+ * the sessions whose timeouts fall in the elapsed ticks. Sessions whose timeout
+ * has passed are then handled exactly as if their own timer had expired: they
+ * become candidates for expiry or are evicted from the cache.
+ *
+ * The candidates for expiry are checked against the {@link SessionDataStore}
+ * in batches of at most {@link #getExpiryBatchSize()} sessions.
+ *
+ * The cache is not lock-free: the sessions of a segment are held in a concurrent
+ * map, but its timing wheel is guarded by a lock per segment, so that there is no
+ * lock shared by all the sessions of the cache.
+ *
+ * The tick task is triggered by the scheduler of the {@link SessionHandler}, but
+ * runs in the executor of the server, as handling the timeouts may access the
+ * {@link SessionDataStore}. Only when there is no executor, or it rejects the
+ * task, the tick runs in the scheduler thread.
+ */
+@ManagedObject
+public class StripedSessionCache extends AbstractSessionCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger(StripedSessionCache.class);
+    private static final int WHEEL_SLOTS = 1024;
+
+    private final CounterStatistic _stats = new CounterStatistic();
+    private final SampleStatistic _evictionLag = new SampleStatistic();
+    private final LongAdder _timeouts = new LongAdder();
+    private Segment[] _segments;
+    private long _timerTickMs = 1000;
+    private int _expiryBatchSize = 1000;
+    private Scheduler.Task _tick;
+
+    /**
+     * @param manager The SessionHandler related to this SessionCache
+     */
+    public StripedSessionCache(SessionHandler manager)
+    {
+        super(manager);
+        setSegments(16);
+    }
+
+    /**
+     * @return the number of segments of this cache
+     */
+    @ManagedAttribute(value = "number of segments", readonly = true)
+    public int getSegments()
+    {
+        return _segments.length;
+    }
+
+    /**
+     * @param segments the number of segments of this cache, rounded up to a power of 2
+     */
+    public void setSegments(int segments)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        if (segments <= 0)
+            throw new IllegalArgumentException("Invalid segments " + segments);
+        int length = Integer.highestOneBit(segments);
+        if (length < segments)
+            length <<= 1;
+        _segments = newSegments(length);
+    }
+
+    /**
+     * @return the granularity in ms of the session inactivity timeouts
+     */
+    @ManagedAttribute(value = "granularity of inactivity timeouts in ms", readonly = true)
+    public long getTimerTickMs()
+    {
+        return _timerTickMs;
+    }
+
+    /**
+     * @param timerTickMs the granularity in ms of the session inactivity timeouts
+     */
+    public void setTimerTickMs(long timerTickMs)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        if (timerTickMs <= 0)
+            throw new IllegalArgumentException("Invalid timer tick " + timerTickMs);
+        _timerTickMs = timerTickMs;
+        _segments = newSegments(_segments.length);
+    }
+
+    /**
+     * @return the max number of sessions checked for expiry in a single call to the SessionDataStore
+     */
+    @ManagedAttribute(value = "max number of sessions checked for expiry in a single call to the store", readonly = true)
+    public int getExpiryBatchSize()
+    {
+        return _expiryBatchSize;
+    }
+
+    /**
+     * @param expiryBatchSize the max number of sessions checked for expiry in a single call to the SessionDataStore
+     */
+    public void setExpiryBatchSize(int expiryBatchSize)
+    {
+        _expiryBatchSize = expiryBatchSize;
+    }
+
+    private Segment[] newSegments(int length)
+    {
+        Segment[] segments = new Segment[length];
+        for (int i = 0; i < length; i++)
+        {
+            segments[i] = new Segment();
+        }
+        return segments;
+    }
+
+    private Segment segmentFor(String id)
+    {
+        int hash = id.hashCode();
+        hash ^= hash >>> 16;
+        return _segments[hash & (_segments.length - 1)];
+    }
+
+    /**
+     * @return the number of sessions in the cache
+     */
+    @ManagedAttribute(value = "current sessions in cache", readonly = true)
+    public long getSessionsCurrent()
+    {
+        return _stats.getCurrent();
+    }
+
+    /**
+     * @return the max number of sessions in the cache
+     */
+    @ManagedAttribute(value = "max sessions in cache", readonly = true)
+    public long getSessionsMax()
+    {
+        return _stats.getMax();
+    }
+
+    /**
+     * @return a running total of sessions in the cache
+     */
+    @ManagedAttribute(value = "total sessions in cache", readonly = true)
+    public long getSessionsTotal()
+    {
+        return _stats.getTotal();
+    }
+
+    /**
+     * @return the number of sessions with a pending inactivity timeout
+     */
+    @ManagedAttribute(value = "sessions with a pending inactivity timeout", readonly = true)
+    public long getInactivityTimeoutsPending()
+    {
+        long pending = 0;
+        for (Segment segment : _segments)
+        {
+            pending += segment.getPending();
+        }
+        return pending;
+    }
+
+    /**
+     * @return the number of inactivity timeouts that expired
+     */
+    @ManagedAttribute(value = "inactivity timeouts expired", readonly = true)
+    public long getInactivityTimeoutsExpired()
+    {
+        return _timeouts.sum();
+    }
+
+    /**
+     * @return the max delay in ms between the inactivity timeout of a session and its handling
+     */
+    @ManagedAttribute(value = "max delay in ms between the timeout of a session and its expiry or eviction", readonly = true)
+    public long getEvictionLagMax()
+    {
+        return _evictionLag.getMax();
+    }
+
+    /**
+     * @return the mean delay in ms between the inactivity timeout of a session and its handling
+     */
+    @ManagedAttribute(value = "mean delay in ms between the timeout of a session and its expiry or eviction", readonly = true)
+    public double getEvictionLagMean()
+    {
+        return _evictionLag.getMean();
+    }
+
+    @ManagedOperation(value = "reset statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _stats.reset();
+        _evictionLag.reset();
+        _timeouts.reset();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        scheduleTick();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        Scheduler.Task tick = _tick;
+        if (tick != null)
+            tick.cancel();
+        _tick = null;
+        super.doStop();
+    }
+
+    private void scheduleTick()
+    {
+        if (isRunning())
+            _tick = getSessionHandler().getScheduler().schedule(this::dispatchTick, _timerTickMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void dispatchTick()
+    {
+        Server server = getSessionHandler().getServer();
+        Executor executor = server == null ? null : server.getThreadPool();
+        try
+        {
+            if (executor != null)
+            {
+                executor.execute(this::tick);
+                return;
+            }
+        }
+        catch (RejectedExecutionException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to dispatch tick, running it in the scheduler", x);
+        }
+        tick();
+    }
+
+    /**
+     * Advance the timing wheels of all the segments, and handle the
+     * sessions whose inactivity timeout has passed.
+     */
+    void tick()
+    {
+        try
+        {
+            long now = System.currentTimeMillis();
+            for (Segment segment : _segments)
+            {
+                for (StripedSession session : segment.expire(now))
+                {
+                    try
+                    {
+                        session._sessionInactivityTimer.onTimeoutExpired(now);
+                    }
+                    catch (Throwable x)
+                    {
+                        LOG.warn("Unable to handle inactivity timeout of session {}", session.getId(), x);
+                    }
+                }
+            }
+        }
+        finally
+        {
+            scheduleTick();
+        }
+    }
+
+    @Override
+    public Set<String> checkExpiration(Set<String> candidates)
+    {
+        if (_expiryBatchSize <= 0 || candidates.size() <= _expiryBatchSize)
+            return super.checkExpiration(candidates);
+
+        Set<String> expired = new HashSet<>();
+        Set<String> batch = new HashSet<>();
+        for (String id : candidates)
+        {
+            batch.add(id);
+            if (batch.size() == _expiryBatchSize)
+            {
+                checkExpiration(batch, expired);
+                batch = new HashSet<>();
+            }
+        }
+        if (!batch.isEmpty())
+            checkExpiration(batch, expired);
+        return expired;
+    }
+
+    private void checkExpiration(Set<String> batch, Set<String> expired)
+    {
+        Set<String> result = super.checkExpiration(batch);
+        if (result != null)
+            expired.addAll(result);
+    }
+
+    @Override
+    public Session doGet(String id)
+    {
+        if (id == null)
+            return null;
+        return segmentFor(id)._sessions.get(id);
+    }
+
+    @Override
+    public Session doPutIfAbsent(String id, Session session)
+    {
+        Session s = segmentFor(id)._sessions.putIfAbsent(id, session);
+        if (s == null)
+            _stats.increment();
+        return s;
+    }
+
+    @Override
+    protected Session doComputeIfAbsent(String id, Function<String, Session> mappingFunction)
+    {
+        return segmentFor(id)._sessions.computeIfAbsent(id, k ->
+        {
+            Session s = mappingFunction.apply(k);
+            if (s != null)
+                _stats.increment();
+            return s;
+        });
+    }
+
+    @Override
+    public Session doDelete(String id)
+    {
+        Session s = segmentFor(id)._sessions.remove(id);
+        if (s != null)
+            _stats.decrement();
+        return s;
+    }
+
+    @Override
+    public boolean doReplace(String id, Session oldValue, Session newValue)
+    {
+        return segmentFor(id)._sessions.replace(id, oldValue, newValue);
+    }
+
+    @Override
+    public void shutdown()
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Shutdown sessions, invalidating = {}", isInvalidateOnShutdown());
+
+        for (Segment segment : _segments)
+        {
+            // loop over all the sessions in the segment (a few times if necessary to catch sessions that have been
+            // added while we're running
+            int loop = 100;
+
+            while (!segment._sessions.isEmpty() && loop-- > 0)
+            {
+                for (Session session : segment._sessions.values())
+                {
+                    if (isInvalidateOnShutdown())
+                    {
+                        //not preserving sessions on exit
+                        try
+                        {
+                            session.invalidate();
+                        }
+                        catch (Exception e)
+                        {
+                            LOG.trace("IGNORED", e);
+                        }
+                    }
+                    else
+                    {
+                        //write out the session and remove from the cache
+                        if (_sessionDataStore.isPassivating())
+                            session.willPassivate();
+                        try
+                        {
+                            _sessionDataStore.store(session.getId(), session.getSessionData());
+                        }
+                        catch (Exception e)
+                        {
+                            LOG.warn("Unable to store {}", session, e);
+                        }
+                        doDelete(session.getId()); //remove from memory
+                        session.setResident(false);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public Session newSession(HttpServletRequest request, SessionData data)
+    {
+        return new StripedSession(getSessionHandler(), request, data);
+    }
+
+    @Override
+    public Session newSession(SessionData data)
+    {
+        return new StripedSession(getSessionHandler(), data);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s[segments=%d,sessions=%d,pending=%d]", super.toString(), _segments.length, getSessionsCurrent(), getInactivityTimeoutsPending());
+    }
+
+    /**
+     * A segment of the cache: a map of sessions and a hashed timing wheel
+     * of the inactivity timeouts of the sessions that were created in it.
+     * The wheel has a slot per tick and each slot is an intrusive doubly
+     * linked list of sessions, so that scheduling and cancelling a timeout
+     * take constant time and allocate nothing.
+     */
+    private class Segment
+    {
+        private final AutoLock _lock = new AutoLock();
+        private final ConcurrentHashMap<String, Session> _sessions = new ConcurrentHashMap<>();
+        private final StripedSession[] _slots = new StripedSession[WHEEL_SLOTS];
+        private long _tick = System.currentTimeMillis() / _timerTickMs;
+        private int _pending;
+
+        private int getPending()
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                return _pending;
+            }
+        }
+
+        private void schedule(StripedSession session, long deadline)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                unlink(session);
+                // Round up, so that a timeout never expires early.
+                long tick = Math.max(_tick + 1, (deadline + _timerTickMs - 1) / _timerTickMs);
+                int slot = (int)(tick & (WHEEL_SLOTS - 1));
+                StripedSession head = _slots[slot];
+                session._deadline = deadline;
+                session._slot = slot;
+                session._next = head;
+                if (head != null)
+                    head._prev = session;
+                _slots[slot] = session;
+                _pending++;
+            }
+        }
+
+        private void cancel(StripedSession session)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                unlink(session);
+            }
+        }
+
+        private void unlink(StripedSession session)
+        {
+            int slot = session._slot;
+            if (slot < 0)
+                return;
+            if (session._prev == null)
+                _slots[slot] = session._next;
+            else
+                session._prev._next = session._next;
+            if (session._next != null)
+                session._next._prev = session._prev;
+            session._prev = null;
+            session._next = null;
+            session._slot = -1;
+            _pending--;
+        }
+
+        /**
+         * @param now the current time
+         * @return the sessions whose timeout is not after {@code now},
+         * removed from the wheel
+         */
+        private List<StripedSession> expire(long now)
+        {
+            List<StripedSession> expired = null;
+            try (AutoLock l = _lock.lock())
+            {
+                long tick = now / _timerTickMs;
+                // Each slot is visited at most once, even if many ticks elapsed.
+                long ticks = Math.min(tick - _tick, WHEEL_SLOTS);
+                for (long t = 1; t <= ticks; t++)
+                {
+                    int slot = (int)((_tick + t) & (WHEEL_SLOTS - 1));
+                    StripedSession session = _slots[slot];
+                    while (session != null)
+                    {
+                        StripedSession next = session._next;
+                        // Sessions of later revolutions of the wheel stay in their slot.
+                        if (session._deadline <= now)
+                        {
+                            unlink(session);
+                            _timeouts.increment();
+                            _evictionLag.record(now - session._deadline);
+                            if (expired == null)
+                                expired = new ArrayList<>();
+                            expired.add(session);
+                        }
+                        session = next;
+                    }
+                }
+                if (tick > _tick)
+                    _tick = tick;
+            }
+            return expired == null ? Collections.emptyList() : expired;
+        }
+    }
+
+    /**
+     * A Session whose inactivity timeout is recorded in the timing wheel
+     * of a segment rather than scheduled with its own timer.
+     */
+    private class StripedSession extends Session
+    {
+        private final Segment _segment;
+        private StripedSession _prev;
+        private StripedSession _next;
+        private int _slot = -1;
+        private long _deadline;
+
+        private StripedSession(SessionHandler handler, HttpServletRequest request, SessionData data)
+        {
+            super(handler, request, data);
+            _segment = segmentFor(data.getId());
+        }
+
+        private StripedSession(SessionHandler handler, SessionData data)
+        {
+            super(handler, data);
+            _segment = segmentFor(data.getId());
+        }
+
+        @Override
+        protected SessionInactivityTimer newSessionInactivityTimer()
+        {
+            return new StripedSessionInactivityTimer();
+        }
+
+        private class StripedSessionInactivityTimer extends SessionInactivityTimer
+        {
+            private StripedSessionInactivityTimer()
+            {
+                // The timeout is tracked by the segment, not by a CyclicTimeout.
+                super(false);
+            }
+
+            @Override
+            public void schedule(long time)
+            {
+                if (time >= 0)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("(Re)starting timeout for session {} at {}ms", getId(), time);
+                    _segment.schedule(StripedSession.this, System.currentTimeMillis() + time);
+                }
+            }
+
+            @Override
+            public void cancel()
+            {
+                _segment.cancel(StripedSession.this);
+            }
+
+            @Override
+            public void destroy()
+            {
+                _segment.cancel(StripedSession.this);
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+/**
+ * StripedSessionCacheFactory
+ *
+ * Factory for creating new StripedSessionCaches.
+ */
+public class StripedSessionCacheFactory extends AbstractSessionCacheFactory
+{
+    int _segments = 16;
+    long _timerTickMs = 1000;
+    int _expiryBatchSize = 1000;
+
+    /**
+     * @return the number of segments of the caches
+     */
+    public int getSegments()
+    {
+        return _segments;
+    }
+
+    /**
+     * @param segments the number of segments of the caches
+     */
+    public void setSegments(int segments)
+    {
+        _segments = segments;
+    }
+
+    /**
+     * @return the granularity in ms of the session inactivity timeouts
+     */
+    public long getTimerTickMs()
+    {
+        return _timerTickMs;
+    }
+
+    /**
+     * @param timerTickMs the granularity in ms of the session inactivity timeouts
+     */
+    public void setTimerTickMs(long timerTickMs)
+    {
+        _timerTickMs = timerTickMs;
+    }
+
+    /**
+     * @return the max number of sessions checked for expiry in a single call to the SessionDataStore
+     */
+    public int getExpiryBatchSize()
+    {
+        return _expiryBatchSize;
+    }
+
+    /**
+     * @param expiryBatchSize the max number of sessions checked for expiry in a single call to the SessionDataStore
+     */
+    public void setExpiryBatchSize(int expiryBatchSize)
+    {
+        _expiryBatchSize = expiryBatchSize;
+    }
+
+    @Override
+    public SessionCache newSessionCache(SessionHandler handler)
+    {
+        StripedSessionCache cache = new StripedSessionCache(handler);
+        cache.setSegments(getSegments());
+        cache.setTimerTickMs(getTimerTickMs());
+        cache.setExpiryBatchSize(getExpiryBatchSize());
+        return cache;
+    }
+}
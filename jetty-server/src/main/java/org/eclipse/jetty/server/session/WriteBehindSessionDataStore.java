@@ -0,0 +1,530 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * WriteBehindSessionDataStore
+ *
+ * A SessionDataStore that delegates to another SessionDataStore, but that
+ * does not write sessions synchronously when they are stored: instead, a
+ * snapshot of the session data is queued, and the queued sessions are
+ * written in bulk by the delegate store, see
+ * {@link AbstractSessionDataStore#doStoreAll(java.util.List, long[])},
+ * at most {@link #getFlushIntervalMs()} after they were queued.
+ * Several stores of the same session before a flush are coalesced into
+ * a single write.
+ *
+ * The number of queued sessions is bounded by {@link #getMaxPending()}:
+ * when the queue is full, the thread that stores a session flushes the queue
+ * itself, which slows down the producers of session writes.
+ *
+ * Loads of queued sessions are served from the queue, the queue is flushed
+ * before checking for expired sessions, and it is flushed when this store
+ * is stopped. Sessions that fail to be written are queued again and retried
+ * by the next flush. Sessions queued when the JVM crashes are lost, so this
+ * store trades durability of the latest changes of the sessions for throughput.
+ *
+ * The flushes are scheduled with the {@link SessionHandler#getScheduler() scheduler}
+ * of the SessionHandler, or with a scheduler of this store if there is none.
+ */
+@ManagedObject
+public class WriteBehindSessionDataStore extends ContainerLifeCycle implements SessionDataStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindSessionDataStore.class);
+
+    private final AutoLock _lock = new AutoLock();
+    private final AutoLock _flushLock = new AutoLock();
+    private final LongAdder _queued = new LongAdder();
+    private final LongAdder _coalesced = new LongAdder();
+    private final LongAdder _flushes = new LongAdder();
+    private final LongAdder _flushed = new LongAdder();
+    private final LongAdder _flushFailures = new LongAdder();
+    private final LongAdder _callerFlushes = new LongAdder();
+    private final AbstractSessionDataStore _store;
+    private SessionContext _context;
+    private Scheduler _scheduler;
+    private boolean _ownScheduler;
+    private Map<String, PendingStore> _pending = new LinkedHashMap<>();
+    private Map<String, PendingStore> _flushing = Collections.emptyMap();
+    private boolean _flushScheduled;
+    private long _flushIntervalMs = 1000;
+    private int _maxBatchSize = 500;
+    private int _maxPending = 10000;
+
+    /**
+     * @param store the delegate store that actually writes the session data
+     */
+    public WriteBehindSessionDataStore(AbstractSessionDataStore store)
+    {
+        _store = store;
+        addBean(_store, true);
+    }
+
+    /**
+     * @return the delegate session store
+     */
+    public SessionDataStore getSessionStore()
+    {
+        return _store;
+    }
+
+    /**
+     * @return the max time in ms that a stored session is queued before being written
+     */
+    @ManagedAttribute(value = "max time in ms that a session is queued before being written", readonly = true)
+    public long getFlushIntervalMs()
+    {
+        return _flushIntervalMs;
+    }
+
+    /**
+     * @param flushIntervalMs the max time in ms that a stored session is queued before being written
+     */
+    public void setFlushIntervalMs(long flushIntervalMs)
+    {
+        _flushIntervalMs = flushIntervalMs;
+    }
+
+    /**
+     * @return the max number of sessions written in a single bulk write
+     */
+    @ManagedAttribute(value = "max number of sessions written in a single bulk write", readonly = true)
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the max number of sessions written in a single bulk write
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        if (maxBatchSize <= 0)
+            throw new IllegalArgumentException("Invalid max batch size " + maxBatchSize);
+        _maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * @return the max number of queued sessions before storing threads flush the queue
+     */
+    @ManagedAttribute(value = "max number of queued sessions before storing threads flush the queue", readonly = true)
+    public int getMaxPending()
+    {
+        return _maxPending;
+    }
+
+    /**
+     * @param maxPending the max number of queued sessions before storing threads flush the queue
+     */
+    public void setMaxPending(int maxPending)
+    {
+        if (maxPending <= 0)
+            throw new IllegalArgumentException("Invalid max pending " + maxPending);
+        _maxPending = maxPending;
+    }
+
+    @ManagedAttribute(value = "number of queued sessions", readonly = true)
+    public int getPending()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return _pending.size();
+        }
+    }
+
+    @ManagedAttribute(value = "number of session stores queued", readonly = true)
+    public long getQueued()
+    {
+        return _queued.sum();
+    }
+
+    @ManagedAttribute(value = "number of session stores coalesced with a queued store of the same session", readonly = true)
+    public long getCoalesced()
+    {
+        return _coalesced.sum();
+    }
+
+    @ManagedAttribute(value = "number of bulk writes", readonly = true)
+    public long getFlushes()
+    {
+        return _flushes.sum();
+    }
+
+    @ManagedAttribute(value = "number of sessions written by bulk writes", readonly = true)
+    public long getFlushed()
+    {
+        return _flushed.sum();
+    }
+
+    @ManagedAttribute(value = "number of failed bulk writes", readonly = true)
+    public long getFlushFailures()
+    {
+        return _flushFailures.sum();
+    }
+
+    @ManagedAttribute(value = "number of flushes performed by storing threads because the queue was full", readonly = true)
+    public long getCallerFlushes()
+    {
+        return _callerFlushes.sum();
+    }
+
+    @ManagedOperation(value = "reset statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _queued.reset();
+        _coalesced.reset();
+        _flushes.reset();
+        _flushed.reset();
+        _flushFailures.reset();
+        _callerFlushes.reset();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        SessionHandler sessionHandler = _context == null ? null : _context.getSessionHandler();
+        _scheduler = sessionHandler == null ? null : sessionHandler.getScheduler();
+        if (_scheduler == null)
+        {
+            _scheduler = new ScheduledExecutorScheduler(String.format("Session-WriteBehind-%x", hashCode()), false);
+            _ownScheduler = true;
+            _scheduler.start();
+        }
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        // Write the queued sessions before stopping the delegate store.
+        flush();
+        super.doStop();
+        if (_ownScheduler)
+            _scheduler.stop();
+        _ownScheduler = false;
+        _scheduler = null;
+    }
+
+    @Override
+    public void initialize(SessionContext context) throws Exception
+    {
+        _context = context;
+        _store.initialize(context);
+    }
+
+    @Override
+    public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
+    {
+        return _store.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+    }
+
+    @Override
+    public boolean isPassivating()
+    {
+        return _store.isPassivating();
+    }
+
+    @Override
+    public void store(String id, SessionData data) throws Exception
+    {
+        if (!isStarted())
+            throw new IllegalStateException("Not started");
+
+        if (data == null || !_store.isStoreRequired(data))
+            return;
+
+        // The caller holds the session lock, so the snapshot is consistent
+        // and the session data can be cleaned as if it had been written.
+        long lastSave = data.getLastSaved();
+        data.setLastSaved(System.currentTimeMillis());
+        SessionData snapshot = copy(data);
+        for (String name : data.getDirtyAttributes())
+        {
+            snapshot.setDirty(name);
+        }
+        data.clean();
+
+        boolean flush = false;
+        boolean schedule = false;
+        try (AutoLock l = _lock.lock())
+        {
+            PendingStore pending = _pending.get(id);
+            if (pending == null)
+            {
+                _pending.put(id, new PendingStore(snapshot, lastSave));
+            }
+            else
+            {
+                // Keep the time of the last write, so that a session
+                // that was never written is inserted rather than updated.
+                // Also keep the attributes changed by the replaced store,
+                // for stores that only write the changed attributes.
+                _coalesced.increment();
+                for (String name : pending._snapshot.getDirtyAttributes())
+                {
+                    snapshot.setDirty(name);
+                }
+                pending._snapshot = snapshot;
+            }
+
+            if (_pending.size() >= _maxPending)
+            {
+                flush = true;
+            }
+            else if (!_flushScheduled)
+            {
+                _flushScheduled = true;
+                schedule = true;
+            }
+        }
+        _queued.increment();
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Queued store of session {}, flush={}", id, flush);
+
+        if (flush)
+        {
+            _callerFlushes.increment();
+            flush();
+        }
+        else if (schedule)
+        {
+            schedule();
+        }
+    }
+
+    private void schedule()
+    {
+        Scheduler scheduler = _scheduler;
+        if (scheduler != null)
+            scheduler.schedule(this::onFlushInterval, _flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void onFlushInterval()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            _flushScheduled = false;
+        }
+        flush();
+    }
+
+    /**
+     * Write all the queued sessions to the delegate store, in batches
+     * of at most {@link #getMaxBatchSize()} sessions.
+     * Flushes are serialized, so that successive writes of the same
+     * session are performed in order.
+     * A flush stops at the first batch that fails to be written,
+     * and the failed sessions are retried by a scheduled flush.
+     */
+    @ManagedOperation(value = "write the queued sessions", impact = "ACTION")
+    public void flush()
+    {
+        try (AutoLock f = _flushLock.lock())
+        {
+            while (true)
+            {
+                Map<String, PendingStore> batch = new LinkedHashMap<>();
+                try (AutoLock l = _lock.lock())
+                {
+                    Iterator<PendingStore> iterator = _pending.values().iterator();
+                    while (iterator.hasNext() && batch.size() < _maxBatchSize)
+                    {
+                        PendingStore pending = iterator.next();
+                        iterator.remove();
+                        batch.put(pending._snapshot.getId(), pending);
+                    }
+                    _flushing = batch;
+                    if (batch.isEmpty())
+                        return;
+                }
+                if (!write(batch.values()))
+                    return;
+            }
+        }
+    }
+
+    private boolean write(Collection<PendingStore> batch)
+    {
+        List<SessionData> snapshots = new ArrayList<>(batch.size());
+        long[] lastSaveTimes = new long[batch.size()];
+        for (PendingStore pending : batch)
+        {
+            lastSaveTimes[snapshots.size()] = pending._lastSaveTime;
+            snapshots.add(pending._snapshot);
+        }
+
+        try
+        {
+            _store.storeAll(snapshots, lastSaveTimes);
+            _flushes.increment();
+            _flushed.add(snapshots.size());
+            if (LOG.isDebugEnabled())
+                LOG.debug("Wrote {} sessions", snapshots.size());
+            return true;
+        }
+        catch (Exception e)
+        {
+            _flushFailures.increment();
+            LOG.warn("Unable to write {} sessions", snapshots.size(), e);
+            // Queue the snapshots again, so that they are retried by the
+            // next flush; the session data is not modified, as it is only
+            // safe to do so while holding the session lock.
+            // Sessions stored again since are written by the pending
+            // store, which must also write what failed to be written.
+            boolean schedule = false;
+            try (AutoLock l = _lock.lock())
+            {
+                for (PendingStore pending : batch)
+                {
+                    String id = pending._snapshot.getId();
+                    PendingStore newer = _pending.get(id);
+                    if (newer == null)
+                    {
+                        _pending.put(id, pending);
+                    }
+                    else
+                    {
+                        newer._lastSaveTime = pending._lastSaveTime;
+                        for (String name : pending._snapshot.getDirtyAttributes())
+                        {
+                            newer._snapshot.setDirty(name);
+                        }
+                    }
+                }
+                if (!_flushScheduled)
+                {
+                    _flushScheduled = true;
+                    schedule = true;
+                }
+            }
+            if (schedule)
+                schedule();
+            return false;
+        }
+    }
+
+    private SessionData copy(SessionData data)
+    {
+        SessionData copy = _store.newSessionData(data.getId(), data.getCreated(), data.getAccessed(), data.getLastAccessed(), data.getMaxInactiveMs());
+        copy.copy(data);
+        return copy;
+    }
+
+    private PendingStore getPendingStore(String id)
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            PendingStore pending = _pending.get(id);
+            return pending != null ? pending : _flushing.get(id);
+        }
+    }
+
+    @Override
+    public SessionData load(String id) throws Exception
+    {
+        PendingStore pending = getPendingStore(id);
+        if (pending != null)
+        {
+            // The queued snapshot must not be modified, so return a copy.
+            SessionData snapshot = pending._snapshot;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Loaded queued session {}", id);
+            return copy(snapshot);
+        }
+        return _store.load(id);
+    }
+
+    @Override
+    public boolean exists(String id) throws Exception
+    {
+        if (getPendingStore(id) != null)
+            return true;
+        return _store.exists(id);
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception
+    {
+        boolean pending;
+        boolean flushing;
+        try (AutoLock l = _lock.lock())
+        {
+            pending = _pending.remove(id) != null;
+            flushing = _flushing.containsKey(id);
+        }
+
+        // Wait for the write of the session in progress,
+        // otherwise it could recreate the deleted session.
+        // If the write failed, the session has been queued again.
+        if (flushing)
+        {
+            flush();
+            try (AutoLock l = _lock.lock())
+            {
+                _pending.remove(id);
+            }
+        }
+
+        return _store.delete(id) || pending;
+    }
+
+    @Override
+    public Set<String> getExpired(Set<String> candidates)
+    {
+        // The expiry of the queued sessions must be written
+        // so that the delegate store does not see stale expiries.
+        flush();
+        return _store.getExpired(candidates);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[store=%s,pending=%d]", getClass().getSimpleName(), hashCode(), _store, getPending());
+    }
+
+    private static class PendingStore
+    {
+        private long _lastSaveTime;
+        private SessionData _snapshot;
+
+        private PendingStore(SessionData snapshot, long lastSaveTime)
+        {
+            _snapshot = snapshot;
+            _lastSaveTime = lastSaveTime;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+/**
+ * WriteBehindSessionDataStoreFactory
+ *
+ * Factory for creating new WriteBehindSessionDataStores.
+ */
+public class WriteBehindSessionDataStoreFactory extends AbstractSessionDataStoreFactory
+{
+    /**
+     * The factory of the SessionDataStore that will write the session data.
+     */
+    protected SessionDataStoreFactory _sessionStoreFactory;
+    private long _flushIntervalMs = 1000;
+    private int _maxBatchSize = 500;
+    private int _maxPending = 10000;
+
+    /**
+     * @param factory The factory for the actual SessionDataStore that the
+     * WriteBehindSessionDataStore will delegate to
+     */
+    public void setSessionStoreFactory(SessionDataStoreFactory factory)
+    {
+        _sessionStoreFactory = factory;
+    }
+
+    public long getFlushIntervalMs()
+    {
+        return _flushIntervalMs;
+    }
+
+    public void setFlushIntervalMs(long flushIntervalMs)
+    {
+        _flushIntervalMs = flushIntervalMs;
+    }
+
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        _maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxPending()
+    {
+        return _maxPending;
+    }
+
+    public void setMaxPending(int maxPending)
+    {
+        _maxPending = maxPending;
+    }
+
+    @Override
+    public SessionDataStore getSessionDataStore(SessionHandler handler) throws Exception
+    {
+        SessionDataStore store = _sessionStoreFactory.getSessionDataStore(handler);
+        if (!(store instanceof AbstractSessionDataStore))
+            throw new IllegalStateException("Write behind not supported by " + store);
+        WriteBehindSessionDataStore writeBehind = new WriteBehindSessionDataStore((AbstractSessionDataStore)store);
+        writeBehind.setFlushIntervalMs(getFlushIntervalMs());
+        writeBehind.setMaxBatchSize(getMaxBatchSize());
+        writeBehind.setMaxPending(getMaxPending());
+        return writeBehind;
+    }
+}
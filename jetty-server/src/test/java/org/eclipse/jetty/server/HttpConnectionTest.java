@@ -35,6 +35,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -58,6 +59,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.slf4j.LoggerFactory;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -1421,6 +1423,108 @@ public class HttpConnectionTest
         localEndPoint.close();
     }
 
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    public void testCoalesceResponseWrites(boolean coalesce) throws Exception
+    {
+        server.stop();
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                jettyRequest.setHandled(true);
+                response.getWriter().print(target);
+            }
+        });
+        HttpConnectionFactory http = connector.getConnectionFactory(HttpConnectionFactory.class);
+        http.getHttpConfiguration().setCoalesceResponseWrites(coalesce);
+        server.start();
+
+        LocalEndPoint endp = connector.executeRequest("" +
+            "GET /R1 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "\r\n" +
+            "GET /R2 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "\r\n" +
+            "GET /R3 HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "Connection: close\r\n" +
+            "\r\n");
+
+        for (int i = 1; i <= 3; i++)
+        {
+            HttpTester.Response response = HttpTester.parseResponse(endp.getResponse());
+            assertEquals(HttpStatus.OK_200, response.getStatus());
+            assertEquals("/R" + i, response.getContent());
+        }
+
+        endp.waitUntilClosed();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (http.getResponsesOut() < 3 && System.nanoTime() < end)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(3, http.getResponsesOut());
+        // Each response is written at once, so all of them can be written together.
+        assertEquals(coalesce ? 1 : 3, http.getWritesOut());
+    }
+
+    @Test
+    public void testCoalesceResponseWritesBeforeSuspendedRequest() throws Exception
+    {
+        CountDownLatch complete = new CountDownLatch(1);
+        server.stop();
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                jettyRequest.setHandled(true);
+                if ("/async".equals(target))
+                {
+                    AsyncContext async = request.startAsync();
+                    new Thread(() ->
+                    {
+                        try
+                        {
+                            complete.await();
+                            async.getResponse().getWriter().print("async");
+                            async.complete();
+                        }
+                        catch (Throwable x)
+                        {
+                            LOG.warn("Unable to complete", x);
+                        }
+                    }).start();
+                    return;
+                }
+                response.getWriter().print(target);
+            }
+        });
+        connector.getConnectionFactory(HttpConnectionFactory.class).getHttpConfiguration().setCoalesceResponseWrites(true);
+        server.start();
+
+        LocalEndPoint endp = connector.executeRequest("" +
+            "GET /sync HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "\r\n" +
+            "GET /async HTTP/1.1\r\n" +
+            "Host: localhost\r\n" +
+            "\r\n");
+
+        // The response to the first request must not wait for the suspended request.
+        HttpTester.Response response = HttpTester.parseResponse(endp.getResponse(false, 5, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("/sync", response.getContent());
+
+        complete.countDown();
+        response = HttpTester.parseResponse(endp.getResponse(false, 5, TimeUnit.SECONDS));
+        assertEquals(HttpStatus.OK_200, response.getStatus());
+        assertEquals("async", response.getContent());
+    }
+
     private int checkContains(String s, int offset, String c)
     {
         assertThat(s.substring(offset), Matchers.containsString(c));
@@ -0,0 +1,273 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.http.CompressedContentFormat;
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@ExtendWith(WorkDirExtension.class)
+public class TinyLfuContentFactoryTest
+{
+    public WorkDir workDir;
+    private Path _dir;
+    private Resource _resource;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        _dir = workDir.getEmptyPathDir();
+        _resource = Resource.newResource(_dir);
+    }
+
+    private String newFile(String name, int length) throws Exception
+    {
+        Files.write(_dir.resolve(name), "x".repeat(length).getBytes(UTF_8));
+        return name;
+    }
+
+    private TinyLfuContentFactory newCache(ResourceFactory factory, int maxCachedFiles, long maxCacheSize)
+    {
+        TinyLfuContentFactory cache = new TinyLfuContentFactory(null, factory, new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setMaxCachedFiles(maxCachedFiles);
+        cache.setMaxCacheSize(maxCacheSize);
+        return cache;
+    }
+
+    @Test
+    public void testCachedContent() throws Exception
+    {
+        TinyLfuContentFactory cache = newCache(_resource, 10, 1000);
+        String name = newFile("a.txt", 10);
+
+        assertNull(cache.getContent("missing.txt", 4096));
+        HttpContent content = cache.getContent(name, 4096);
+        assertThat(content, instanceOf(TinyLfuContentFactory.CachedHttpContent.class));
+        assertEquals(10, content.getContentLengthValue());
+        assertEquals(0, cache.getCachedSize());
+
+        assertNotNull(content.getDirectBuffer());
+        assertEquals(10, cache.getCachedSize());
+        assertNotNull(content.getIndirectBuffer());
+        assertEquals(20, cache.getCachedSize());
+
+        assertSame(content, cache.getContent(name, 4096));
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(1, cache.getCachedFiles());
+
+        // A modified file is reloaded.
+        newFile(name, 20);
+        HttpContent modified = cache.getContent(name, 4096);
+        assertNotSame(content, modified);
+        assertEquals(20, modified.getContentLengthValue());
+        assertEquals(0, cache.getCachedSize());
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testNotCacheable() throws Exception
+    {
+        TinyLfuContentFactory cache = newCache(_resource, 10, 1000);
+        cache.setMaxCachedFileSize(50);
+        String name = newFile("large.txt", 100);
+
+        assertThat(cache.getContent(name, 4096), instanceOf(ResourceHttpContent.class));
+        assertEquals(0, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testNotAdmittedContentServedUncached() throws Exception
+    {
+        TinyLfuContentFactory cache = new TinyLfuContentFactory(null, _resource, new MimeTypes(), false, false, CompressedContentFormat.NONE)
+        {
+            @Override
+            protected boolean isCacheable(Resource resource)
+            {
+                return true;
+            }
+        };
+        // The policy evicts any content it is given.
+        cache.setMaxCachedFiles(0);
+        String name = newFile("a.txt", 10);
+
+        HttpContent content = cache.getContent(name, 4096);
+        assertThat(content, instanceOf(ResourceHttpContent.class));
+        assertEquals(10, content.getContentLengthValue());
+        assertNotNull(content.getDirectBuffer());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(0, cache.getCachedFiles());
+        assertEquals(0, cache.getCachedSize());
+    }
+
+    @Test
+    public void testFrequentContentSurvivesScan() throws Exception
+    {
+        TinyLfuContentFactory cache = newCache(_resource, 10, 100_000);
+
+        List<HttpContent> hot = new ArrayList<>();
+        for (int i = 0; i < 5; ++i)
+        {
+            hot.add(cache.getContent(newFile("hot" + i + ".txt", 10), 4096));
+        }
+        for (int r = 0; r < 5; ++r)
+        {
+            for (int i = 0; i < hot.size(); ++i)
+            {
+                assertSame(hot.get(i), cache.getContent("hot" + i + ".txt", 4096));
+            }
+        }
+
+        // Scan many files that are requested only once.
+        for (int i = 0; i < 100; ++i)
+        {
+            cache.getContent(newFile("cold" + i + ".txt", 10), 4096);
+        }
+
+        assertThat(cache.getEvictions(), greaterThan(0L));
+        assertThat(cache.getCachedFiles(), lessThanOrEqualTo(10));
+        for (int i = 0; i < hot.size(); ++i)
+        {
+            assertSame(hot.get(i), cache.getContent("hot" + i + ".txt", 4096));
+        }
+    }
+
+    @Test
+    public void testBoundedByBytes() throws Exception
+    {
+        TinyLfuContentFactory cache = newCache(_resource, 100, 100);
+
+        for (int i = 0; i < 10; ++i)
+        {
+            HttpContent content = cache.getContent(newFile("file" + i + ".txt", 40), 4096);
+            assertNotNull(content.getDirectBuffer());
+            assertThat(cache.getCachedSize(), lessThanOrEqualTo(100L));
+        }
+        assertThat(cache.getEvictions(), greaterThan(0L));
+    }
+
+    @Test
+    public void testConcurrentMissesLoadOnce() throws Exception
+    {
+        String name = newFile("cold.txt", 1000);
+        AtomicInteger resources = new AtomicInteger();
+        AtomicInteger buffers = new AtomicInteger();
+        ResourceFactory factory = path ->
+        {
+            resources.incrementAndGet();
+            try
+            {
+                Thread.sleep(100);
+                return _resource.addPath(path);
+            }
+            catch (Exception x)
+            {
+                throw new RuntimeException(x);
+            }
+        };
+        TinyLfuContentFactory cache = new TinyLfuContentFactory(null, factory, new MimeTypes(), false, false, CompressedContentFormat.NONE)
+        {
+            @Override
+            protected ByteBuffer getDirectBuffer(Resource resource)
+            {
+                buffers.incrementAndGet();
+                return super.getDirectBuffer(resource);
+            }
+        };
+
+        int threads = 8;
+        CyclicBarrier barrier = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try
+        {
+            List<Future<HttpContent>> results = new ArrayList<>();
+            for (int i = 0; i < threads; ++i)
+            {
+                results.add(executor.submit(() ->
+                {
+                    barrier.await();
+                    HttpContent content = cache.getContent(name, 4096);
+                    content.getDirectBuffer();
+                    return content;
+                }));
+            }
+            HttpContent first = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<HttpContent> result : results)
+            {
+                assertSame(first, result.get(5, TimeUnit.SECONDS));
+            }
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        assertEquals(1, resources.get());
+        assertEquals(1, buffers.get());
+    }
+
+    @Test
+    public void testFrequencySketch()
+    {
+        TinyLfuContentFactory.FrequencySketch sketch = new TinyLfuContentFactory.FrequencySketch();
+        sketch.ensureCapacity(64);
+        for (int i = 0; i < 20; ++i)
+        {
+            sketch.increment(42);
+        }
+        sketch.increment(43);
+        assertEquals(15, sketch.frequency(42));
+        assertEquals(1, sketch.frequency(43));
+        assertEquals(0, sketch.frequency(44));
+
+        // Enough additions halve the counters.
+        for (int i = 0; i < 640; ++i)
+        {
+            sketch.increment(1000 + i);
+        }
+        assertThat(sketch.frequency(42), lessThanOrEqualTo(7));
+    }
+}
@@ -23,13 +23,16 @@ import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpTester;
 import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpConfiguration;
 import org.eclipse.jetty.server.HttpConnectionFactory;
 import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
@@ -117,6 +120,7 @@ public class ResourceHandlerTest
         _server = new Server();
         _config = new HttpConfiguration();
         _config.setOutputBufferSize(2048);
+        _config.setUseFileTransfer(true);
         _connector = new ServerConnector(_server, new HttpConnectionFactory(_config));
 
         _local = new LocalConnector(_server);
@@ -250,6 +254,78 @@ public class ResourceHandlerTest
         }
     }
 
+    @Test
+    public void testBiggerWithResponseContentListener() throws Exception
+    {
+        // File transfers bypass the listeners, so they must not be used.
+        AtomicLong contentBytes = new AtomicLong();
+        HttpChannel.Listener listener = new HttpChannel.Listener()
+        {
+            @Override
+            public void onResponseContent(Request request, ByteBuffer content)
+            {
+                contentBytes.addAndGet(content.remaining());
+            }
+        };
+        _connector.addBean(listener);
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            socket.getOutputStream().write(("GET /resource/bigger.txt HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Connection: close\r\n" +
+                "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            HttpTester.Response response = HttpTester.parseResponse(socket.getInputStream());
+            assertThat(response.getStatus(), equalTo(HttpStatus.OK_200));
+            assertThat(response.getContent(), endsWith("   400\tThis is a big file" + LN));
+            assertEquals(Long.parseLong(response.get(CONTENT_LENGTH)), contentBytes.get());
+        }
+        finally
+        {
+            _connector.removeBean(listener);
+        }
+    }
+
+    @Test
+    public void testBiggerRange() throws Exception
+    {
+        int lineLength = "     1\tThis is a big file".length() + LN.length();
+        int bigLength = 400 * lineLength;
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            socket.getOutputStream().write(("GET /resource/bigger.txt HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Range: bytes=" + bigLength + "-" + (bigLength + lineLength - 1) + "\r\n" +
+                "Connection: close\r\n" +
+                "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            HttpTester.Response response = HttpTester.parseResponse(socket.getInputStream());
+            assertThat(response.getStatus(), equalTo(HttpStatus.PARTIAL_CONTENT_206));
+            assertThat(response.get(CONTENT_LENGTH), equalTo(Integer.toString(lineLength)));
+            assertThat(response.getContent(), equalTo("     1\tThis is a big file" + LN));
+        }
+    }
+
+    @Test
+    public void testBiggerMultipleRanges() throws Exception
+    {
+        int lineLength = "     1\tThis is a big file".length() + LN.length();
+        int bigLength = 400 * lineLength;
+        try (Socket socket = new Socket("localhost", _connector.getLocalPort()))
+        {
+            socket.getOutputStream().write(("GET /resource/bigger.txt HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Range: bytes=0-5," + (bigLength - lineLength) + "-" + (bigLength - 1) + "\r\n" +
+                "Connection: close\r\n" +
+                "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            HttpTester.Response response = HttpTester.parseResponse(socket.getInputStream());
+            assertThat(response.getStatus(), equalTo(HttpStatus.PARTIAL_CONTENT_206));
+            assertThat(response.get(CONTENT_TYPE), startsWith("multipart/byteranges"));
+            String content = response.getContent();
+            assertThat(content.length(), equalTo(Integer.parseInt(response.get(CONTENT_LENGTH))));
+            assertThat(content, containsString("Content-Range: bytes 0-5/" + (100 * bigLength) + "\r\n\r\n     1\r\n--"));
+            assertThat(content, containsString("\r\n\r\n   400\tThis is a big file" + LN + "\r\n--"));
+        }
+    }
+
     @Test
     public void testWelcome() throws Exception
     {
@@ -0,0 +1,244 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SessionDataCodecTest
+{
+    private static SessionData newSessionData()
+    {
+        SessionData data = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        data.setAttribute("string", "value €");
+        data.setAttribute("empty", "");
+        data.setAttribute("int", -42);
+        data.setAttribute("maxInt", Integer.MAX_VALUE);
+        data.setAttribute("long", Long.MIN_VALUE);
+        data.setAttribute("true", Boolean.TRUE);
+        data.setAttribute("false", Boolean.FALSE);
+        data.setAttribute("double", 3.14D);
+        data.setAttribute("float", -2.5F);
+        data.setAttribute("short", (short)-7);
+        data.setAttribute("byte", (byte)-1);
+        data.setAttribute("char", 'é');
+        data.setAttribute("bytes", new byte[]{0, 1, 2, -128, 127});
+        data.setAttribute("list", new ArrayList<>(Arrays.asList("a", 1, 2L)));
+        return data;
+    }
+
+    private static void assertSameAttributes(SessionData expected, SessionData actual)
+    {
+        assertEquals(expected.getKeys(), actual.getKeys());
+        for (String name : expected.getKeys())
+        {
+            Object value = expected.getAttribute(name);
+            if (value instanceof byte[])
+                assertArrayEquals((byte[])value, (byte[])actual.getAttribute(name));
+            else
+                assertEquals(value, actual.getAttribute(name), name);
+        }
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception
+    {
+        SessionDataCodec codec = new BinarySessionDataCodec();
+        SessionData data = newSessionData();
+
+        byte[] bytes = codec.encode(data);
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        codec.decode(decoded, bytes);
+        assertSameAttributes(data, decoded);
+
+        decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        codec.decode(decoded, new ByteArrayInputStream(bytes));
+        assertSameAttributes(data, decoded);
+    }
+
+    @Test
+    public void testBinaryIsSmallerThanJava() throws Exception
+    {
+        SessionData data = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        data.setAttribute("user", "jetty");
+        data.setAttribute("visits", 12);
+        data.setAttribute("lastVisit", System.currentTimeMillis());
+
+        byte[] binary = new BinarySessionDataCodec().encode(data);
+        byte[] java = new JavaSessionDataCodec().encode(data);
+        assertTrue(binary.length * 2 < java.length, binary.length + " vs " + java.length);
+    }
+
+    @Test
+    public void testBinaryDecodesJavaSerialization() throws Exception
+    {
+        SessionData data = newSessionData();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(out))
+        {
+            SessionData.serializeAttributes(data, oos);
+        }
+
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        new BinarySessionDataCodec().decode(decoded, out.toByteArray());
+        assertSameAttributes(data, decoded);
+
+        decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        new BinarySessionDataCodec().decode(decoded, new ByteArrayInputStream(out.toByteArray()));
+        assertSameAttributes(data, decoded);
+    }
+
+    @Test
+    public void testDecodeDoesNotReadPastAttributes() throws Exception
+    {
+        SessionDataCodec codec = new BinarySessionDataCodec();
+        SessionData data = newSessionData();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        codec.encode(data, out);
+        out.write(new byte[]{1, 2, 3});
+
+        InputStream in = new ByteArrayInputStream(out.toByteArray());
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        codec.decode(decoded, in);
+        assertSameAttributes(data, decoded);
+        assertEquals(3, in.available());
+    }
+
+    @Test
+    public void testTruncatedAndUnknownVersion() throws Exception
+    {
+        SessionDataCodec codec = new BinarySessionDataCodec();
+        byte[] bytes = codec.encode(newSessionData());
+
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        assertThrows(IOException.class, () -> codec.decode(decoded, Arrays.copyOf(bytes, bytes.length - 1)));
+        assertThrows(IOException.class, () -> codec.decode(decoded, new ByteArrayInputStream(bytes, 0, bytes.length - 1)));
+
+        bytes[2] = 99;
+        assertThrows(IOException.class, () -> codec.decode(decoded, bytes));
+    }
+
+    @Test
+    public void testEmptyAttributes() throws Exception
+    {
+        SessionDataCodec codec = new BinarySessionDataCodec();
+        SessionData data = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        data.setAttribute("a", "b");
+        SessionData empty = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+
+        codec.decode(data, codec.encode(empty));
+        assertTrue(data.getKeys().isEmpty());
+    }
+
+    @Test
+    public void testLargeValues() throws Exception
+    {
+        SessionDataCodec codec = new BinarySessionDataCodec();
+        SessionData data = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        char[] chars = new char[100_000];
+        Arrays.fill(chars, 'x');
+        data.setAttribute("string", new String(chars));
+        data.setAttribute("bytes", new byte[70_000]);
+        List<String> list = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+        {
+            list.add("item" + i);
+        }
+        data.setAttribute("list", list);
+
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        codec.decode(decoded, codec.encode(data));
+        assertSameAttributes(data, decoded);
+    }
+
+    @Test
+    public void testAttributeRoundTrip() throws Exception
+    {
+        SessionData data = newSessionData();
+        for (SessionDataCodec codec : List.of(new BinarySessionDataCodec(), new JavaSessionDataCodec()))
+        {
+            SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+            for (String name : data.getKeys())
+            {
+                byte[] bytes = codec.encodeAttribute(name, data.getAttribute(name));
+                decoded.setAttribute(name, codec.decodeAttribute(name, bytes));
+            }
+            assertSameAttributes(data, decoded);
+        }
+    }
+
+    @Test
+    public void testBinaryDecodesJavaAttribute() throws Exception
+    {
+        byte[] bytes = new JavaSessionDataCodec().encodeAttribute("list", new ArrayList<>(Arrays.asList("a", 1, 2L)));
+        assertEquals(Arrays.asList("a", 1, 2L), new BinarySessionDataCodec().decodeAttribute("list", bytes));
+    }
+
+    @Test
+    public void testJavaDecodesBinary() throws Exception
+    {
+        SessionData data = newSessionData();
+        byte[] bytes = new BinarySessionDataCodec().encode(data);
+
+        SessionData decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        new JavaSessionDataCodec().decode(decoded, bytes);
+        assertSameAttributes(data, decoded);
+
+        decoded = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        new JavaSessionDataCodec().decode(decoded, new ByteArrayInputStream(bytes));
+        assertSameAttributes(data, decoded);
+
+        bytes = new BinarySessionDataCodec().encodeAttribute("list", new ArrayList<>(Arrays.asList("a", 1, 2L)));
+        assertEquals(Arrays.asList("a", 1, 2L), new JavaSessionDataCodec().decodeAttribute("list", bytes));
+    }
+
+    @Test
+    public void testJavaIsTheDefault()
+    {
+        assertTrue(new NullSessionDataStore().getSessionDataCodec() instanceof JavaSessionDataCodec);
+    }
+
+    @Test
+    public void testDirtyAttributes()
+    {
+        SessionData data = new SessionData("1234", "/test", "0.0.0.0", 100, 200, 200, -1);
+        data.setAttribute("a", "1");
+        data.setAttribute("b", "2");
+        data.clean();
+        assertTrue(data.getDirtyAttributes().isEmpty());
+
+        data.setAttribute("a", "3");
+        data.setAttribute("b", null);
+        data.setAttribute("c", null);
+        assertTrue(data.isDirty());
+        assertEquals(Set.of("a", "b"), data.getDirtyAttributes());
+
+        data.clean();
+        assertTrue(data.getDirtyAttributes().isEmpty());
+    }
+}
@@ -16,6 +16,7 @@ package org.eclipse.jetty.server.ssl;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.nio.charset.StandardCharsets;
@@ -24,6 +25,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import javax.net.ssl.SNIHostName;
 import javax.net.ssl.SNIServerName;
 import javax.net.ssl.SSLParameters;
@@ -54,6 +56,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SslConnectionFactoryTest
 {
@@ -183,6 +186,50 @@ public class SslConnectionFactoryTest
         assertEquals(0, history.size());
     }
 
+    @Test
+    public void testSmallInputBufferReleasedWhenIdle() throws Exception
+    {
+        SslConnectionFactory sslConnectionFactory = _connector.getBean(SslConnectionFactory.class);
+        sslConnectionFactory.setSmallInputBufferSize(1024);
+
+        SslContextFactory clientContextFactory = new SslContextFactory.Client(true);
+        clientContextFactory.start();
+        SSLSocketFactory factory = clientContextFactory.getSslContext().getSocketFactory();
+        try (SSLSocket sslSocket = (SSLSocket)factory.createSocket("127.0.0.1", _port))
+        {
+            sslSocket.setSoTimeout(5000);
+            sslSocket.startHandshake();
+
+            // Send TLS records larger than the small input buffer,
+            // but requests smaller than the default request header size.
+            String padding = "x".repeat(4096);
+            for (int i = 0; i < 2; ++i)
+            {
+                String request = "GET /ctx/path HTTP/1.1\r\n" +
+                    "Host: localhost\r\n" +
+                    "X-Padding: " + padding + "\r\n" +
+                    "\r\n";
+                sslSocket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+                String response = readChunkedResponse(sslSocket.getInputStream());
+                assertThat(response, Matchers.startsWith("HTTP/1.1 200 OK"));
+                assertThat(response, Matchers.containsString("url=/ctx/path"));
+
+                // The connection is open but idle, so it must not hold TLS buffers.
+                long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (sslConnectionFactory.getPinnedBufferBytes() > 0 && System.nanoTime() < end)
+                {
+                    Thread.sleep(10);
+                }
+                assertEquals(0, sslConnectionFactory.getPinnedBufferBytes());
+                assertTrue(sslSocket.isConnected());
+            }
+        }
+        finally
+        {
+            clientContextFactory.stop();
+        }
+    }
+
     @Test
     public void testServerWithoutHttpConnectionFactory() throws Exception
     {
@@ -191,6 +238,19 @@ public class SslConnectionFactoryTest
         assertThrows(IllegalStateException.class, () -> _server.start());
     }
 
+    private String readChunkedResponse(InputStream input) throws IOException
+    {
+        StringBuilder response = new StringBuilder();
+        while (!response.toString().endsWith("\r\n0\r\n\r\n"))
+        {
+            int read = input.read();
+            if (read < 0)
+                break;
+            response.append((char)read);
+        }
+        return response.toString();
+    }
+
     private String getResponse(String host, String cn) throws Exception
     {
         String response = getResponse(host, host, cn);
@@ -0,0 +1,158 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.ssl;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.io.ssl.SslHandshakeStatistics;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class SslSessionResumptionTest
+{
+    private final List<Server> _servers = new ArrayList<>();
+    private SslContextFactory.Server _sslContextFactory;
+    private SslContextFactory.Client _clientContextFactory;
+
+    @AfterEach
+    public void dispose()
+    {
+        for (Server server : _servers)
+        {
+            LifeCycle.stop(server);
+        }
+        LifeCycle.stop(_sslContextFactory);
+        LifeCycle.stop(_clientContextFactory);
+    }
+
+    private SslContextFactory.Server newSslContextFactory() throws Exception
+    {
+        File keystoreFile = new File("src/test/resources/keystore.p12");
+        if (!keystoreFile.exists())
+            throw new FileNotFoundException(keystoreFile.getAbsolutePath());
+        SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+        sslContextFactory.setKeyStorePath(keystoreFile.getAbsolutePath());
+        sslContextFactory.setKeyStorePassword("storepwd");
+        return sslContextFactory;
+    }
+
+    private Server startServer(SslContextFactory.Server sslContextFactory, SslHandshakeStatistics statistics, int port) throws Exception
+    {
+        Server server = new Server();
+        SslConnectionFactory sslConnectionFactory = new SslConnectionFactory(sslContextFactory, HttpVersion.HTTP_1_1.asString());
+        ServerConnector connector = new ServerConnector(server, sslConnectionFactory, new HttpConnectionFactory());
+        connector.setPort(port);
+        connector.addBean(statistics);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            {
+                baseRequest.setHandled(true);
+            }
+        });
+        _servers.add(server);
+        server.start();
+        return server;
+    }
+
+    private int getLocalPort(Server server)
+    {
+        return ((ServerConnector)server.getConnectors()[0]).getLocalPort();
+    }
+
+    private void request(int port) throws IOException
+    {
+        SSLSocketFactory factory = _clientContextFactory.getSslContext().getSocketFactory();
+        try (SSLSocket sslSocket = (SSLSocket)factory.createSocket("localhost", port))
+        {
+            // Resumption with TLS session identifiers is stateful on the server.
+            sslSocket.setEnabledProtocols(new String[]{"TLSv1.2"});
+            sslSocket.startHandshake();
+            String request = "GET / HTTP/1.1\r\n" +
+                "Host: localhost\r\n" +
+                "Connection: close\r\n" +
+                "\r\n";
+            sslSocket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+            String response = IO.toString(sslSocket.getInputStream());
+            assertThat(response, startsWith("HTTP/1.1 200 "));
+        }
+    }
+
+    @Test
+    public void testResumeAcrossServersSharingSSLContext() throws Exception
+    {
+        _clientContextFactory = new SslContextFactory.Client(true);
+        _clientContextFactory.start();
+
+        // The client caches TLS sessions by host and port, so the servers
+        // are started in turn on the same port, as if behind a balancer.
+        SslContextFactory.Server sslContextFactory1 = newSslContextFactory();
+        // Started before the first server, so that it is not stopped with it.
+        sslContextFactory1.start();
+        _sslContextFactory = sslContextFactory1;
+        SslHandshakeStatistics statistics1 = new SslHandshakeStatistics();
+        Server server1 = startServer(sslContextFactory1, statistics1, 0);
+        int port = getLocalPort(server1);
+        request(port);
+        assertEquals(1, statistics1.getHandshakes());
+        assertEquals(0, statistics1.getResumedHandshakes());
+        server1.stop();
+
+        // The second server shares the TLS session cache and the
+        // session ticket keys of the first, so the session is resumed.
+        // Session identifiers are not compared, because a session
+        // resumed from a stateless session ticket has a new identifier.
+        SslContextFactory.Server sslContextFactory2 = new SslContextFactory.Server();
+        sslContextFactory2.setSslContext(sslContextFactory1.getSslContext());
+        SslHandshakeStatistics statistics2 = new SslHandshakeStatistics();
+        Server server2 = startServer(sslContextFactory2, statistics2, port);
+        request(port);
+        assertEquals(1, statistics2.getHandshakes());
+        assertEquals(1, statistics2.getResumedHandshakes());
+        assertEquals(1.0, statistics2.getResumptionRatio());
+        server2.stop();
+
+        // A third server has its own TLS session cache.
+        SslHandshakeStatistics statistics3 = new SslHandshakeStatistics();
+        startServer(newSslContextFactory(), statistics3, port);
+        request(port);
+        assertEquals(1, statistics3.getHandshakes());
+        assertEquals(0, statistics3.getResumedHandshakes());
+    }
+}
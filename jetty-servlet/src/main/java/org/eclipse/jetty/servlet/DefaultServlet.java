@@ -33,6 +33,7 @@ import org.eclipse.jetty.server.CachedContentFactory;
 import org.eclipse.jetty.server.ResourceContentFactory;
 import org.eclipse.jetty.server.ResourceService;
 import org.eclipse.jetty.server.ResourceService.WelcomeFactory;
+import org.eclipse.jetty.server.TinyLfuContentFactory;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.util.URIUtil;
@@ -102,6 +103,10 @@ import org.slf4j.LoggerFactory;
  *  maxCachedFileSize The maximum size of a file to cache
  *  maxCachedFiles    The maximum number of files to cache
  *
+ *  cachePolicy       The policy deciding which files are cached: "lru" (the default)
+ *                    evicts the least recently used files, "tinylfu" only caches a file
+ *                    if it is requested more often than the files it would evict.
+ *
  *  useFileMappedBuffer
  *                    If set to true, it will use mapped file buffer to serve static content
  *                    when using NIO connector. Setting this value to false means that
@@ -135,7 +140,7 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
     private boolean _welcomeExactServlets = false;
 
     private Resource _resourceBase;
-    private CachedContentFactory _cache;
+    private HttpContent.ContentFactory _cache;
 
     private MimeTypes _mimeTypes;
     private String[] _welcomes;
@@ -245,20 +250,40 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
                 LOG.debug("ignoring resource cache configuration, using resourceCache attribute");
             if (_relativeResourceBase != null || _resourceBase != null)
                 throw new UnavailableException("resourceCache specified with resource bases");
-            _cache = (CachedContentFactory)_servletContext.getAttribute(resourceCache);
+            _cache = (HttpContent.ContentFactory)_servletContext.getAttribute(resourceCache);
         }
 
         try
         {
             if (_cache == null && (maxCachedFiles != -2 || maxCacheSize != -2 || maxCachedFileSize != -2))
             {
-                _cache = new CachedContentFactory(null, this, _mimeTypes, _useFileMappedBuffer, _resourceService.isEtags(), _resourceService.getPrecompressedFormats());
-                if (maxCacheSize >= 0)
-                    _cache.setMaxCacheSize(maxCacheSize);
-                if (maxCachedFileSize >= -1)
-                    _cache.setMaxCachedFileSize(maxCachedFileSize);
-                if (maxCachedFiles >= -1)
-                    _cache.setMaxCachedFiles(maxCachedFiles);
+                String cachePolicy = getInitParameter("cachePolicy");
+                if ("tinylfu".equalsIgnoreCase(cachePolicy))
+                {
+                    TinyLfuContentFactory cache = new TinyLfuContentFactory(null, this, _mimeTypes, _useFileMappedBuffer, _resourceService.isEtags(), _resourceService.getPrecompressedFormats());
+                    if (maxCacheSize >= 0)
+                        cache.setMaxCacheSize(maxCacheSize);
+                    if (maxCachedFileSize >= -1)
+                        cache.setMaxCachedFileSize(maxCachedFileSize);
+                    if (maxCachedFiles >= -1)
+                        cache.setMaxCachedFiles(maxCachedFiles);
+                    if (_contextHandler != null)
+                        _contextHandler.addBean(cache);
+                    _cache = cache;
+                }
+                else
+                {
+                    if (cachePolicy != null && !"lru".equalsIgnoreCase(cachePolicy))
+                        LOG.warn("Unknown cachePolicy {}, using lru", cachePolicy);
+                    CachedContentFactory cache = new CachedContentFactory(null, this, _mimeTypes, _useFileMappedBuffer, _resourceService.isEtags(), _resourceService.getPrecompressedFormats());
+                    if (maxCacheSize >= 0)
+                        cache.setMaxCacheSize(maxCacheSize);
+                    if (maxCachedFileSize >= -1)
+                        cache.setMaxCachedFileSize(maxCachedFileSize);
+                    if (maxCachedFiles >= -1)
+                        cache.setMaxCachedFiles(maxCachedFiles);
+                    _cache = cache;
+                }
                 _servletContext.setAttribute(resourceCache == null ? "resourceCache" : resourceCache, _cache);
             }
         }
@@ -475,8 +500,16 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
     @Override
     public void destroy()
     {
-        if (_cache != null)
-            _cache.flushCache();
+        if (_cache instanceof CachedContentFactory)
+        {
+            ((CachedContentFactory)_cache).flushCache();
+        }
+        else if (_cache instanceof TinyLfuContentFactory)
+        {
+            ((TinyLfuContentFactory)_cache).flushCache();
+            if (_contextHandler != null)
+                _contextHandler.removeBean(_cache);
+        }
         super.destroy();
     }
 
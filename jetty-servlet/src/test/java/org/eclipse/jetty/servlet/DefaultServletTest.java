@@ -53,6 +53,7 @@ import org.eclipse.jetty.server.ResourceContentFactory;
 import org.eclipse.jetty.server.ResourceService;
 import org.eclipse.jetty.server.SameFileAliasChecker;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.TinyLfuContentFactory;
 import org.eclipse.jetty.server.handler.AllowSymLinkAliasChecker;
 import org.eclipse.jetty.toolchain.test.FS;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
@@ -76,8 +77,10 @@ import static org.eclipse.jetty.http.tools.matchers.HttpFieldsMatchers.containsH
 import static org.eclipse.jetty.http.tools.matchers.HttpFieldsMatchers.containsHeaderValue;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
@@ -1201,6 +1204,30 @@ public class DefaultServletTest
         assertThat("Direct buffer", buffer, is(nullValue()));
     }
 
+    @Test
+    public void testTinyLfuCachePolicy() throws Exception
+    {
+        Path index = docRoot.resolve("index.html");
+        createFile(index, "<h1>Hello World</h1>");
+
+        ServletHolder defholder = context.addServlet(DefaultServlet.class, "/");
+        defholder.setInitParameter("maxCachedFiles", "100");
+        defholder.setInitParameter("cachePolicy", "tinylfu");
+
+        for (int i = 0; i < 2; ++i)
+        {
+            String rawResponse = connector.getResponse("GET /context/index.html HTTP/1.0\r\n\r\n");
+            HttpTester.Response response = HttpTester.parseResponse(rawResponse);
+            assertThat(response.toString(), response.getStatus(), is(HttpStatus.OK_200));
+            assertThat(response.getContent(), containsString("<h1>Hello World</h1>"));
+        }
+
+        TinyLfuContentFactory factory = (TinyLfuContentFactory)context.getServletContext().getAttribute("resourceCache");
+        assertThat(factory.getCachedFiles(), is(1));
+        assertThat(factory.getHits(), greaterThan(0L));
+        assertThat(context.getBeans(TinyLfuContentFactory.class), contains(factory));
+    }
+
     @SuppressWarnings("Duplicates")
     public static Stream<Arguments> rangeScenarios()
     {
@@ -311,6 +311,22 @@ public class Pool<T> implements AutoCloseable, Dumpable
         return null;
     }
 
+    /**
+     * Acquire the given entry, which must be contained in this pool.
+     * This allows callers to implement their own selection of entries,
+     * for example by iterating over {@link #values()}.
+     *
+     * @param entry the entry to acquire
+     * @return true if the entry was acquired, false if it is reserved, closed,
+     * already multiplexed {@link #getMaxMultiplex()} times or overused
+     */
+    public boolean acquire(Entry entry)
+    {
+        if (closed)
+            return false;
+        return entry.tryAcquire();
+    }
+
     private int startIndex(int size)
     {
         switch (strategyType)
@@ -673,6 +689,14 @@ public class Pool<T> implements AutoCloseable, Dumpable
             return Math.max(state.getHi(), 0);
         }
 
+        /**
+         * @return the number of times this entry is currently acquired
+         */
+        public int getMultiplexCount()
+        {
+            return Math.max(state.getLo(), 0);
+        }
+
         @Override
         public String toString()
         {
@@ -14,15 +14,21 @@
 package org.eclipse.jetty.util.compression;
 
 import java.io.Closeable;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.AbstractLifeCycle;
 
+@ManagedObject
 public abstract class CompressionPool<T> extends AbstractLifeCycle
 {
     public static final int DEFAULT_CAPACITY = 1024;
 
+    private final AtomicInteger _inUse = new AtomicInteger();
     private int _capacity;
+    private long _maxNativeMemory = -1;
     private Pool<Entry> _pool;
 
     /**
@@ -51,6 +57,61 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
         _capacity = capacity;
     }
 
+    /**
+     * @return the number of Objects acquired and not yet released
+     */
+    @ManagedAttribute("The number of objects acquired and not yet released")
+    public int getInUseCount()
+    {
+        return _inUse.get();
+    }
+
+    /**
+     * @return the approximate native memory, in bytes, used by the Objects acquired and not yet released
+     */
+    @ManagedAttribute("The approximate native memory in bytes used by the objects in use")
+    public long getNativeMemoryInUse()
+    {
+        return getInUseCount() * getNativeMemoryPerObject();
+    }
+
+    @ManagedAttribute("The native memory budget in bytes for the objects in use, or -1 for no budget")
+    public long getMaxNativeMemory()
+    {
+        return _maxNativeMemory;
+    }
+
+    /**
+     * <p>Sets the native memory budget for the Objects in use.</p>
+     * <p>The budget does not prevent Objects from being acquired; users of this pool
+     * are expected to check {@link #isNativeMemoryExhausted()} and to reduce the time
+     * they hold the Objects they acquire when the budget is exhausted.</p>
+     *
+     * @param maxNativeMemory the native memory budget in bytes, or -1 for no budget
+     */
+    public void setMaxNativeMemory(long maxNativeMemory)
+    {
+        _maxNativeMemory = maxNativeMemory;
+    }
+
+    /**
+     * @return whether the native memory used by the Objects in use reached {@link #getMaxNativeMemory()}
+     */
+    @ManagedAttribute("Whether the native memory budget is exhausted")
+    public boolean isNativeMemoryExhausted()
+    {
+        long max = getMaxNativeMemory();
+        return max >= 0 && getNativeMemoryInUse() >= max;
+    }
+
+    /**
+     * @return the approximate native memory, in bytes, used by one Object of this pool
+     */
+    protected long getNativeMemoryPerObject()
+    {
+        return 0;
+    }
+
     protected abstract T newPooled();
 
     protected abstract void end(T object);
@@ -70,7 +131,10 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
                 entry = acquiredEntry.getPooled();
         }
 
-        return (entry == null) ? new Entry(newPooled()) : entry;
+        if (entry == null)
+            entry = new Entry(newPooled());
+        _inUse.incrementAndGet();
+        return entry;
     }
 
     /**
@@ -123,6 +187,8 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
 
         public void release()
         {
+            _inUse.decrementAndGet();
+
             // Reset the value for the next usage.
             reset(_value);
 
@@ -151,11 +217,12 @@ public abstract class CompressionPool<T> extends AbstractLifeCycle
     @Override
     public String toString()
     {
-        return String.format("%s@%x{%s,size=%d,capacity=%s}",
+        return String.format("%s@%x{%s,size=%d,capacity=%s,inUse=%d}",
             getClass().getSimpleName(),
             hashCode(),
             getState(),
             (_pool == null) ? -1 : _pool.size(),
-            _capacity);
+            _capacity,
+            getInUseCount());
     }
 }
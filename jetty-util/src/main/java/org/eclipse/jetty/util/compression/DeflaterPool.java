@@ -41,6 +41,14 @@ public class DeflaterPool extends CompressionPool<Deflater>
         this.nowrap = nowrap;
     }
 
+    @Override
+    protected long getNativeMemoryPerObject()
+    {
+        // zlib deflate state with the default 15 window bits and memory level 8:
+        // (1 << (windowBits + 2)) + (1 << (memLevel + 9)) plus about 6KiB of state.
+        return 262_144 + 6 * 1024;
+    }
+
     @Override
     protected Deflater newPooled()
     {
@@ -38,6 +38,13 @@ public class InflaterPool extends CompressionPool<Inflater>
         this.nowrap = nowrap;
     }
 
+    @Override
+    protected long getNativeMemoryPerObject()
+    {
+        // zlib inflate state: the 32KiB window plus about 7KiB of state.
+        return 32 * 1024 + 7 * 1024;
+    }
+
     @Override
     protected Inflater newPooled()
     {
@@ -0,0 +1,380 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.Name;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.component.DumpableCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A {@link ThreadPool} that runs each task on a new virtual thread,
+ * when virtual threads are supported by the JVM.</p>
+ * <p>Tasks that occupy a thread for a long time and that must not be run
+ * on virtual threads, such as selectors and acceptors, implement
+ * {@link PlatformTask} and are run by an internal {@link QueuedThreadPool}
+ * of platform threads, which also provides the {@link ThreadPoolBudget}
+ * and the {@link ReservedThreadExecutor} of the platform threads.
+ * The min and max threads of this pool configure the platform threads only.</p>
+ * <p>{@link #tryExecute(Runnable)} always returns {@code false}, so that
+ * execution strategies never hand over production to another thread:
+ * producers stay on their platform threads and blocking tasks are executed
+ * on virtual threads.</p>
+ * <p>When virtual threads are not supported, all tasks are run by the
+ * internal {@link QueuedThreadPool}.</p>
+ */
+@ManagedObject("A thread pool of virtual threads")
+public class VirtualThreadPool extends ContainerLifeCycle implements ThreadPool.SizedThreadPool, TryExecutor
+{
+    private static final Logger LOG = LoggerFactory.getLogger(VirtualThreadPool.class);
+    private static final Method OF_VIRTUAL = probe(Thread.class, "ofVirtual");
+    private static final Method IS_VIRTUAL = probe(Thread.class, "isVirtual");
+
+    private final Set<Thread> _virtualThreads = ConcurrentHashMap.newKeySet();
+    private final LongAdder _virtualTasks = new LongAdder();
+    private final QueuedThreadPool _platformThreadPool;
+    private String _name = "vtp" + hashCode();
+    private ThreadFactory _virtualThreadFactory;
+
+    public VirtualThreadPool()
+    {
+        this(200, 8);
+    }
+
+    public VirtualThreadPool(@Name("maxThreads") int maxThreads, @Name("minThreads") int minThreads)
+    {
+        _platformThreadPool = new QueuedThreadPool(maxThreads, minThreads);
+        _platformThreadPool.setName(_name + "-platform");
+        addBean(_platformThreadPool);
+    }
+
+    /**
+     * @return whether virtual threads are supported by the JVM
+     */
+    public static boolean areVirtualThreadsSupported()
+    {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @param thread the thread to test
+     * @return whether the given thread is a virtual thread
+     */
+    public static boolean isVirtualThread(Thread thread)
+    {
+        if (IS_VIRTUAL == null)
+            return false;
+        try
+        {
+            return (Boolean)IS_VIRTUAL.invoke(thread);
+        }
+        catch (Throwable x)
+        {
+            return false;
+        }
+    }
+
+    private static Method probe(Class<?> klass, String name, Class<?>... parameterTypes)
+    {
+        try
+        {
+            return klass.getMethod(name, parameterTypes);
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Virtual threads not supported", x);
+            return null;
+        }
+    }
+
+    /**
+     * @return the name of the this thread pool
+     */
+    @ManagedAttribute("name of this thread pool")
+    public String getName()
+    {
+        return _name;
+    }
+
+    /**
+     * @param name the name of this thread pool, used to name threads
+     */
+    public void setName(String name)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        _name = name;
+        _platformThreadPool.setName(name + "-platform");
+    }
+
+    /**
+     * @return the internal pool of platform threads
+     */
+    public QueuedThreadPool getPlatformThreadPool()
+    {
+        return _platformThreadPool;
+    }
+
+    @ManagedAttribute("whether tasks are run on virtual threads")
+    public boolean isUseVirtualThreads()
+    {
+        return _virtualThreadFactory != null;
+    }
+
+    @Override
+    @ManagedAttribute("minimum number of platform threads in the pool")
+    public int getMinThreads()
+    {
+        return _platformThreadPool.getMinThreads();
+    }
+
+    @Override
+    public void setMinThreads(int threads)
+    {
+        _platformThreadPool.setMinThreads(threads);
+    }
+
+    @Override
+    @ManagedAttribute("maximum number of platform threads in the pool")
+    public int getMaxThreads()
+    {
+        return _platformThreadPool.getMaxThreads();
+    }
+
+    @Override
+    public void setMaxThreads(int threads)
+    {
+        _platformThreadPool.setMaxThreads(threads);
+    }
+
+    /**
+     * @return the number of reserved platform threads
+     * @see QueuedThreadPool#getReservedThreads()
+     */
+    @ManagedAttribute("number of configured reserved platform threads or -1 for heuristic")
+    public int getReservedThreads()
+    {
+        return _platformThreadPool.getReservedThreads();
+    }
+
+    /**
+     * @param threads the number of reserved platform threads
+     * @see QueuedThreadPool#setReservedThreads(int)
+     */
+    public void setReservedThreads(int threads)
+    {
+        _platformThreadPool.setReservedThreads(threads);
+    }
+
+    /**
+     * @return the maximum platform thread idle time in ms
+     * @see QueuedThreadPool#getIdleTimeout()
+     */
+    @ManagedAttribute("maximum time a platform thread may be idle in ms")
+    public int getIdleTimeout()
+    {
+        return _platformThreadPool.getIdleTimeout();
+    }
+
+    /**
+     * @param idleTimeout the maximum platform thread idle time in ms
+     * @see QueuedThreadPool#setIdleTimeout(int)
+     */
+    public void setIdleTimeout(int idleTimeout)
+    {
+        _platformThreadPool.setIdleTimeout(idleTimeout);
+    }
+
+    @Override
+    public ThreadPoolBudget getThreadPoolBudget()
+    {
+        return _platformThreadPool.getThreadPoolBudget();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        _virtualThreadFactory = newVirtualThreadFactory(_name + "-virtual-");
+        if (_virtualThreadFactory == null)
+            LOG.warn("Virtual threads not supported, using platform threads for {}", this);
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        super.doStop();
+
+        // Give the virtual threads a chance to complete, then interrupt them.
+        awaitVirtualThreads();
+        for (Thread thread : _virtualThreads)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Interrupting {}", thread);
+            thread.interrupt();
+        }
+        _virtualThreadFactory = null;
+    }
+
+    private ThreadFactory newVirtualThreadFactory(String prefix)
+    {
+        if (!areVirtualThreadsSupported())
+            return null;
+        try
+        {
+            // Equivalent to Thread.ofVirtual().name(prefix, 0).factory(),
+            // written with reflection to compile with older JDKs.
+            Object builder = OF_VIRTUAL.invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory)builderClass.getMethod("factory").invoke(builder);
+        }
+        catch (Throwable x)
+        {
+            // Virtual threads may be a preview feature that is not enabled.
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to create virtual threads", x);
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable task)
+    {
+        ThreadFactory factory = _virtualThreadFactory;
+        if (factory == null || task instanceof PlatformTask)
+        {
+            _platformThreadPool.execute(task);
+            return;
+        }
+
+        Thread thread = factory.newThread(() -> runVirtual(task));
+        _virtualThreads.add(thread);
+        _virtualTasks.increment();
+        thread.start();
+    }
+
+    private void runVirtual(Runnable task)
+    {
+        try
+        {
+            task.run();
+        }
+        catch (Throwable x)
+        {
+            LOG.warn("Task failed {}", task, x);
+        }
+        finally
+        {
+            _virtualThreads.remove(Thread.currentThread());
+        }
+    }
+
+    @Override
+    public boolean tryExecute(Runnable task)
+    {
+        return false;
+    }
+
+    @Override
+    public void join() throws InterruptedException
+    {
+        _platformThreadPool.join();
+        awaitVirtualThreads();
+    }
+
+    private void awaitVirtualThreads() throws InterruptedException
+    {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(_platformThreadPool.getStopTimeout());
+        while (!_virtualThreads.isEmpty() && System.nanoTime() - deadline < 0)
+        {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+    }
+
+    @Override
+    @ManagedAttribute("number of platform and virtual threads in the pool")
+    public int getThreads()
+    {
+        return _platformThreadPool.getThreads() + _virtualThreads.size();
+    }
+
+    @Override
+    @ManagedAttribute("number of idle platform threads in the pool")
+    public int getIdleThreads()
+    {
+        return _platformThreadPool.getIdleThreads();
+    }
+
+    @ManagedAttribute("number of running virtual threads")
+    public int getVirtualThreads()
+    {
+        return _virtualThreads.size();
+    }
+
+    @ManagedAttribute("number of tasks run on virtual threads")
+    public long getVirtualTasks()
+    {
+        return _virtualTasks.sum();
+    }
+
+    @Override
+    @ManagedAttribute("whether the pool is low on platform threads")
+    public boolean isLowOnThreads()
+    {
+        return _platformThreadPool.isLowOnThreads();
+    }
+
+    @Override
+    public void dump(Appendable out, String indent) throws IOException
+    {
+        dumpObjects(out, indent, new DumpableCollection("virtual threads", _virtualThreads));
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s[%s]@%x{%s,virtual=%b,%d<=%d<=%d,v=%d}",
+            getClass().getSimpleName(),
+            _name,
+            hashCode(),
+            getState(),
+            isUseVirtualThreads(),
+            getMinThreads(),
+            _platformThreadPool.getThreads(),
+            getMaxThreads(),
+            _virtualThreads.size());
+    }
+
+    /**
+     * <p>A marker for tasks that occupy a thread for a long time,
+     * such as selectors and acceptors, and that must therefore be
+     * run on platform threads rather than on virtual threads.</p>
+     */
+    public interface PlatformTask extends Runnable
+    {
+    }
+}
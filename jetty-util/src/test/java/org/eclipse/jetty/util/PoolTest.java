@@ -120,6 +120,29 @@ public class PoolTest
         assertThrows(IllegalStateException.class, () -> pool.release(e2));
     }
 
+    @ParameterizedTest
+    @MethodSource(value = "strategy")
+    public void testAcquireEntry(Factory factory)
+    {
+        Pool<CloseableHolder> pool = factory.getPool(2);
+        pool.setMaxMultiplex(2);
+        Pool<CloseableHolder>.Entry reserved = pool.reserve();
+        assertThat(pool.acquire(reserved), is(false));
+        reserved.enable(new CloseableHolder("aaa"), false);
+
+        assertThat(pool.acquire(reserved), is(true));
+        assertThat(reserved.getMultiplexCount(), is(1));
+        assertThat(pool.acquire(reserved), is(true));
+        assertThat(reserved.getMultiplexCount(), is(2));
+        assertThat(pool.acquire(reserved), is(false));
+
+        assertThat(pool.release(reserved), is(true));
+        assertThat(reserved.getMultiplexCount(), is(1));
+        assertThat(pool.remove(reserved), is(true));
+        assertThat(pool.acquire(reserved), is(false));
+        assertThat(reserved.getMultiplexCount(), is(0));
+    }
+
     @ParameterizedTest
     @MethodSource(value = "strategy")
     public void testRemoveBeforeRelease(Factory factory)
@@ -15,10 +15,13 @@ package org.eclipse.jetty.util.thread;
 
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AutoLockTest
@@ -64,6 +67,33 @@ public class AutoLockTest
         assertFalse(lock.isLocked());
     }
 
+    @Test
+    public void testTryLock() throws Exception
+    {
+        AutoLock lock = new AutoLock();
+
+        try (AutoLock l = lock.tryLock())
+        {
+            assertSame(lock, l);
+            assertTrue(lock.isLocked());
+
+            // Another thread cannot acquire the lock.
+            AtomicReference<AutoLock> other = new AtomicReference<>(lock);
+            Thread thread = new Thread(() ->
+            {
+                try (AutoLock o = lock.tryLock())
+                {
+                    other.set(o);
+                }
+            });
+            thread.start();
+            thread.join();
+            assertNull(other.get());
+        }
+
+        assertFalse(lock.isLocked());
+    }
+
     @Test
     public void testContend() throws Exception
     {
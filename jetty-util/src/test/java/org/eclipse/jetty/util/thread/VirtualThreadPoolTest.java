@@ -0,0 +1,87 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.thread;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.thread.ThreadPool.SizedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class VirtualThreadPoolTest extends AbstractThreadPoolTest
+{
+    private VirtualThreadPool pool;
+
+    @Override
+    protected SizedThreadPool newPool(int max)
+    {
+        return new VirtualThreadPool(max, Math.min(8, max));
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (pool != null)
+            pool.stop();
+    }
+
+    @Test
+    public void testExecute() throws Exception
+    {
+        pool = new VirtualThreadPool();
+        pool.setName("test");
+        pool.start();
+
+        assertEquals(VirtualThreadPool.areVirtualThreadsSupported(), pool.isUseVirtualThreads());
+
+        CompletableFuture<String> task = new CompletableFuture<>();
+        pool.execute(() -> task.complete(Thread.currentThread().getName()));
+        String name = task.get(5, TimeUnit.SECONDS);
+        if (pool.isUseVirtualThreads())
+            assertThat(name, containsString("test-virtual-"));
+        else
+            assertThat(name, containsString("test-platform"));
+    }
+
+    @Test
+    public void testPlatformTaskRunsOnPlatformThread() throws Exception
+    {
+        pool = new VirtualThreadPool();
+        pool.setName("test");
+        pool.start();
+
+        CompletableFuture<String> task = new CompletableFuture<>();
+        VirtualThreadPool.PlatformTask platformTask = () -> task.complete(Thread.currentThread().getName());
+        pool.execute(platformTask);
+        String name = task.get(5, TimeUnit.SECONDS);
+        assertThat(name, containsString("test-platform"));
+        assertThat(name, not(containsString("test-virtual-")));
+    }
+
+    @Test
+    public void testTryExecuteNeverHandsOverProduction() throws Exception
+    {
+        pool = new VirtualThreadPool();
+        pool.start();
+
+        assertFalse(pool.tryExecute(() -> {}));
+    }
+}
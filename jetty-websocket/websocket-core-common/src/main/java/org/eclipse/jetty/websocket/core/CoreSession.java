@@ -115,6 +115,21 @@ public interface CoreSession extends OutgoingFrames, Configuration
      */
     boolean isOutputOpen();
 
+    /**
+     * <p>Sends a message that is shared with other sessions.</p>
+     * <p>The message is retained until the send completes, so the caller may
+     * release it as soon as this method returns.</p>
+     *
+     * @param frame the pre-encoded message to send
+     * @param callback the callback to notify when the frame is written
+     * @param batch the batch mode requested by the sender
+     */
+    default void sendFrame(PreEncodedFrame frame, Callback callback, boolean batch)
+    {
+        frame.retain();
+        sendFrame(frame.newFrame(), Callback.from(callback, frame::release), batch);
+    }
+
     /**
      * If using BatchMode.ON or BatchMode.AUTO, trigger a flush of enqueued / batched frames.
      *
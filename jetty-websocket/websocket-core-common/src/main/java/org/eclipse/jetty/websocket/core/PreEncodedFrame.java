@@ -0,0 +1,276 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Retainable;
+import org.eclipse.jetty.util.compression.DeflaterPool;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.websocket.core.internal.Generator;
+import org.eclipse.jetty.websocket.core.internal.PerMessageDeflateExtension;
+
+/**
+ * <p>A whole TEXT or BINARY message that is framed once, and compressed at most once,
+ * so that it can be sent to many {@link CoreSession}s with {@link CoreSession#sendFrame(PreEncodedFrame, Callback, boolean)}
+ * without each session generating and compressing its own frame.</p>
+ * <p>The encoded bytes are held in pooled buffers that are shared by all the sessions
+ * the message is sent to. The reference count is initially 1, it is incremented for
+ * each send and decremented when the send completes. The creator of the message must
+ * call {@link #release()} once it has sent the message to all the sessions, and the
+ * buffers are returned to the pool when the last send completes.</p>
+ * <p>A server session without extensions writes the framed bytes as they are.
+ * A server session that negotiated {@code permessage-deflate} writes the compressed
+ * bytes if the server does not keep the compression context between messages,
+ * otherwise it writes the uncompressed framed bytes with RSV1 unset, as allowed by
+ * <a href="https://tools.ietf.org/html/rfc7692#section-6">RFC 7692</a>.
+ * Other sessions send a copy of the message through their normal send path.</p>
+ */
+public class PreEncodedFrame implements Retainable
+{
+    private static final int TAIL_LENGTH = 4;
+
+    private final AutoLock lock = new AutoLock();
+    private final AtomicInteger references = new AtomicInteger(1);
+    private final ByteBufferPool bufferPool;
+    private final DeflaterPool deflaterPool;
+    private final byte opCode;
+    private final ByteBuffer framed;
+    private final int payloadLength;
+    private ByteBuffer deflated;
+    private int deflatedPayloadLength;
+
+    /**
+     * @param components the components providing the buffer and deflater pools
+     * @param opCode the message type, either {@link OpCode#TEXT} or {@link OpCode#BINARY}
+     * @param payload the message payload, which is copied
+     */
+    public PreEncodedFrame(WebSocketComponents components, byte opCode, ByteBuffer payload)
+    {
+        if (opCode != OpCode.TEXT && opCode != OpCode.BINARY)
+            throw new IllegalArgumentException("Invalid opcode " + OpCode.name(opCode));
+        this.bufferPool = components.getBufferPool();
+        this.deflaterPool = components.getDeflaterPool();
+        this.opCode = opCode;
+        this.payloadLength = payload == null ? 0 : payload.remaining();
+        this.framed = encode(new Frame(opCode, payload));
+    }
+
+    /**
+     * @param components the components providing the buffer and deflater pools
+     * @param text the text message
+     */
+    public PreEncodedFrame(WebSocketComponents components, String text)
+    {
+        this(components, OpCode.TEXT, BufferUtil.toBuffer(text, StandardCharsets.UTF_8));
+    }
+
+    public byte getOpCode()
+    {
+        return opCode;
+    }
+
+    /**
+     * @return a read-only view of the uncompressed payload
+     */
+    public ByteBuffer getPayload()
+    {
+        ByteBuffer payload = framed.asReadOnlyBuffer();
+        payload.position(payload.limit() - payloadLength);
+        return payload.slice();
+    }
+
+    public int getPayloadLength()
+    {
+        return payloadLength;
+    }
+
+    /**
+     * @return a new frame with a view of the uncompressed payload,
+     * to be sent through the normal send path of a session
+     */
+    public Frame newFrame()
+    {
+        return new Frame(opCode, getPayload());
+    }
+
+    /**
+     * <p>Creates a frame whose bytes, header included, are already encoded.</p>
+     * <p>The frame must only be sent by a server session, because it is not masked,
+     * and it can only be compressed for a session that negotiated {@code permessage-deflate}
+     * without server context takeover.</p>
+     *
+     * @param deflate whether the frame should be compressed
+     * @return a new frame with a view of the encoded bytes
+     */
+    public Frame newEncodedFrame(boolean deflate)
+    {
+        if (deflate)
+        {
+            try (AutoLock l = lock.lock())
+            {
+                if (deflated == null)
+                    deflated = deflate();
+                return new Encoded(opCode, true, deflated, deflatedPayloadLength);
+            }
+        }
+        return new Encoded(opCode, false, framed, payloadLength);
+    }
+
+    @Override
+    public void retain()
+    {
+        while (true)
+        {
+            int r = references.get();
+            if (r == 0)
+                throw new IllegalStateException("released " + this);
+            if (references.compareAndSet(r, r + 1))
+                break;
+        }
+    }
+
+    /**
+     * <p>Decrements the reference count, and returns the encoded bytes
+     * to the buffer pool when it reaches zero.</p>
+     *
+     * @return the reference count after the release
+     */
+    public int release()
+    {
+        int ref = references.decrementAndGet();
+        if (ref == 0)
+        {
+            bufferPool.release(framed);
+            try (AutoLock l = lock.lock())
+            {
+                if (deflated != null)
+                    bufferPool.release(deflated);
+                deflated = null;
+            }
+        }
+        else if (ref < 0)
+        {
+            throw new IllegalStateException("already released " + this);
+        }
+        return ref;
+    }
+
+    public int getReferences()
+    {
+        return references.get();
+    }
+
+    private ByteBuffer encode(Frame frame)
+    {
+        ByteBuffer buffer = bufferPool.acquire(Generator.MAX_HEADER_LENGTH + frame.getPayloadLength(), false);
+        BufferUtil.clear(buffer);
+        new Generator().generateWholeFrame(frame, buffer);
+        return buffer;
+    }
+
+    private ByteBuffer deflate()
+    {
+        DeflaterPool.Entry entry = deflaterPool.acquire();
+        // The compressed payload is rarely larger than the original one.
+        ByteBuffer buffer = bufferPool.acquire(payloadLength + 64, false);
+        BufferUtil.clear(buffer);
+        try
+        {
+            Deflater deflater = entry.get();
+            ByteBuffer input = framed.duplicate();
+            input.position(input.limit() - payloadLength);
+            deflater.setInput(input.slice());
+            while (true)
+            {
+                if (BufferUtil.space(buffer) == 0)
+                    buffer = grow(buffer);
+                int space = buffer.capacity() - buffer.limit();
+                int compressed = deflater.deflate(buffer.array(), buffer.arrayOffset() + buffer.limit(), space, Deflater.SYNC_FLUSH);
+                buffer.limit(buffer.limit() + compressed);
+                // The output is completely flushed when it does not fill the space.
+                if (compressed < space)
+                    break;
+            }
+
+            // Drop the tail bytes generated by SYNC_FLUSH, as the extension does.
+            if (PerMessageDeflateExtension.endsWithTail(buffer))
+                buffer.limit(buffer.limit() - TAIL_LENGTH);
+            ByteBuffer payload = buffer.hasRemaining() ? buffer : ByteBuffer.wrap(new byte[]{0x00});
+            deflatedPayloadLength = payload.remaining();
+
+            Frame frame = new Frame(opCode, payload);
+            frame.setRsv1(true);
+            return encode(frame);
+        }
+        finally
+        {
+            bufferPool.release(buffer);
+            entry.release();
+        }
+    }
+
+    private ByteBuffer grow(ByteBuffer buffer)
+    {
+        ByteBuffer bigger = bufferPool.acquire(buffer.capacity() * 2, false);
+        BufferUtil.clear(bigger);
+        BufferUtil.append(bigger, buffer);
+        bufferPool.release(buffer);
+        return bigger;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,len=%d,r=%d}", getClass().getSimpleName(), hashCode(), OpCode.name(opCode), payloadLength, getReferences());
+    }
+
+    /**
+     * <p>A frame whose encoded bytes are written as they are, header included.</p>
+     * <p>The payload of the frame is a view of the encoded payload, so that the
+     * frame is validated like any other frame.</p>
+     */
+    public static class Encoded extends Frame
+    {
+        private final ByteBuffer encoded;
+
+        private Encoded(byte opCode, boolean rsv1, ByteBuffer encoded, int payloadLength)
+        {
+            super(opCode, payload(encoded, payloadLength));
+            this.encoded = encoded.asReadOnlyBuffer();
+            setRsv1(rsv1);
+        }
+
+        private static ByteBuffer payload(ByteBuffer encoded, int payloadLength)
+        {
+            ByteBuffer payload = encoded.asReadOnlyBuffer();
+            payload.position(payload.limit() - payloadLength);
+            return payload.slice();
+        }
+
+        /**
+         * @return a view of the encoded bytes of this frame
+         */
+        public ByteBuffer getEncoded()
+        {
+            return encoded.slice();
+        }
+    }
+}
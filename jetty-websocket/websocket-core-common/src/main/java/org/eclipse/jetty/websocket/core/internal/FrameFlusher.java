@@ -35,6 +35,7 @@ import org.eclipse.jetty.util.thread.Scheduler;
 import org.eclipse.jetty.websocket.core.CloseStatus;
 import org.eclipse.jetty.websocket.core.Frame;
 import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.PreEncodedFrame;
 import org.eclipse.jetty.websocket.core.exception.WebSocketException;
 import org.eclipse.jetty.websocket.core.exception.WebSocketWriteTimeoutException;
 import org.slf4j.Logger;
@@ -239,7 +240,16 @@ public class FrameFlusher extends IteratingCallback
                     }
 
                     // Generate the frame into the batchBuffer.
-                    generator.generateWholeFrame(entry.frame, batchBuffer);
+                    if (entry.frame instanceof PreEncodedFrame.Encoded)
+                        BufferUtil.append(batchBuffer, ((PreEncodedFrame.Encoded)entry.frame).getEncoded());
+                    else
+                        generator.generateWholeFrame(entry.frame, batchBuffer);
+                }
+                else if (entry.frame instanceof PreEncodedFrame.Encoded)
+                {
+                    // The encoded bytes are shared with other sessions, and are retained until the entry callback completes.
+                    buffers.add(((PreEncodedFrame.Encoded)entry.frame).getEncoded());
+                    flush = true;
                 }
                 else
                 {
@@ -28,6 +28,7 @@ import org.eclipse.jetty.websocket.core.AbstractExtension;
 import org.eclipse.jetty.websocket.core.ExtensionConfig;
 import org.eclipse.jetty.websocket.core.Frame;
 import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.PreEncodedFrame;
 import org.eclipse.jetty.websocket.core.WebSocketComponents;
 import org.eclipse.jetty.websocket.core.exception.BadPayloadException;
 import org.eclipse.jetty.websocket.core.exception.MessageTooLargeException;
@@ -138,6 +139,17 @@ public class PerMessageDeflateExtension extends AbstractExtension
             }
         }
 
+        // When the native memory budget of the Deflaters is exhausted, do not keep
+        // the compression context between messages, so that the Deflater is only
+        // held while a message is compressed, rather than for the session lifetime.
+        if (outgoingContextTakeover && components.getDeflaterPool().isNativeMemoryExhausted())
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Deflater native memory budget exhausted, negotiating server_no_context_takeover {}", components.getDeflaterPool());
+            paramsNegotiated.put("server_no_context_takeover", null);
+            outgoingContextTakeover = false;
+        }
+
         configNegotiated = new ExtensionConfig(config.getName(), paramsNegotiated);
         LOG.debug("config: outgoingContextTakover={}, incomingContextTakeover={} : {}", outgoingContextTakeover, incomingContextTakeover, this);
 
@@ -156,6 +168,14 @@ public class PerMessageDeflateExtension extends AbstractExtension
             deflater.getTotalIn(), deflater.getTotalOut());
     }
 
+    /**
+     * @return whether the compression context of outgoing messages is kept between messages
+     */
+    public boolean isOutgoingContextTakeover()
+    {
+        return outgoingContextTakeover;
+    }
+
     public static boolean endsWithTail(ByteBuffer buf)
     {
         if ((buf == null) || (buf.remaining() < TAIL_BYTES.length))
@@ -245,7 +265,8 @@ public class PerMessageDeflateExtension extends AbstractExtension
         @Override
         protected boolean onFrame(Frame frame, Callback callback, boolean batch)
         {
-            if (OpCode.isControlFrame(frame.getOpCode()))
+            // Pre-encoded frames are either already compressed, or sent uncompressed.
+            if (OpCode.isControlFrame(frame.getOpCode()) || frame instanceof PreEncodedFrame.Encoded)
             {
                 nextOutgoingFrame(frame, callback, batch);
                 return true;
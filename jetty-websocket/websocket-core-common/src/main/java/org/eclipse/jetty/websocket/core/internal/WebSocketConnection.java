@@ -463,11 +463,19 @@ public class WebSocketConnection extends AbstractConnection implements Connectio
                     return;
                 }
 
-                // If more references that 1(us), don't refill into buffer and risk compaction.
-                if (networkBuffer.getReferences() > 1)
-                    reacquireNetworkBuffer();
+                int filled;
+                if (getEndPoint() instanceof EndPoint.RetainableFill)
+                {
+                    filled = fillRetainable((EndPoint.RetainableFill)getEndPoint());
+                }
+                else
+                {
+                    // If more references that 1(us), don't refill into buffer and risk compaction.
+                    if (networkBuffer.getReferences() > 1)
+                        reacquireNetworkBuffer();
 
-                int filled = getEndPoint().fill(networkBuffer.getBuffer()); // TODO check if compact is possible.
+                    filled = getEndPoint().fill(networkBuffer.getBuffer()); // TODO check if compact is possible.
+                }
 
                 if (LOG.isDebugEnabled())
                     LOG.debug("endpointFill() filled={}: {}", filled, networkBuffer);
@@ -503,6 +511,30 @@ public class WebSocketConnection extends AbstractConnection implements Connectio
         }
     }
 
+    /**
+     * <p>Parses directly the buffers of an EndPoint that owns its input buffers,
+     * such as an HTTP/2 stream, rather than copying them into the network buffer.</p>
+     *
+     * @param endPoint the EndPoint to fill from
+     * @return the number of bytes filled, 0 if no bytes are available, or -1 at end of input
+     * @throws IOException if the fill failed
+     */
+    private int fillRetainable(EndPoint.RetainableFill endPoint) throws IOException
+    {
+        RetainableByteBuffer buffer = endPoint.fillRetainable();
+        if (buffer == null)
+            return getEndPoint().isInputShutdown() ? -1 : 0;
+
+        try (AutoLock l = lock.lock())
+        {
+            // The previous buffer has been fully parsed, but may still be
+            // retained by frames not yet completed by the application.
+            networkBuffer.release();
+            networkBuffer = buffer;
+        }
+        return buffer.remaining();
+    }
+
     /**
      * Extra bytes from the initial HTTP upgrade that need to
      * be processed by the websocket parser before starting
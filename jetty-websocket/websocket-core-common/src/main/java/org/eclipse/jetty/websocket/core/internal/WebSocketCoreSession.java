@@ -34,12 +34,14 @@ import org.eclipse.jetty.websocket.core.Behavior;
 import org.eclipse.jetty.websocket.core.CloseStatus;
 import org.eclipse.jetty.websocket.core.Configuration;
 import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Extension;
 import org.eclipse.jetty.websocket.core.ExtensionConfig;
 import org.eclipse.jetty.websocket.core.Frame;
 import org.eclipse.jetty.websocket.core.FrameHandler;
 import org.eclipse.jetty.websocket.core.IncomingFrames;
 import org.eclipse.jetty.websocket.core.OpCode;
 import org.eclipse.jetty.websocket.core.OutgoingFrames;
+import org.eclipse.jetty.websocket.core.PreEncodedFrame;
 import org.eclipse.jetty.websocket.core.WebSocketComponents;
 import org.eclipse.jetty.websocket.core.WebSocketConstants;
 import org.eclipse.jetty.websocket.core.exception.CloseException;
@@ -468,6 +470,35 @@ public class WebSocketCoreSession implements IncomingFrames, CoreSession, Dumpab
         negotiated.getExtensions().onFrame(frame, callback);
     }
 
+    @Override
+    public void sendFrame(PreEncodedFrame frame, Callback callback, boolean batch)
+    {
+        frame.retain();
+        sendFrame(newFrame(frame), Callback.from(callback, frame::release), batch);
+    }
+
+    private Frame newFrame(PreEncodedFrame preEncoded)
+    {
+        // Frames sent by clients are masked with a different key each time.
+        if (behavior != Behavior.SERVER)
+            return preEncoded.newFrame();
+
+        boolean deflate = false;
+        for (Extension extension : getExtensionStack().getExtensions())
+        {
+            if (!(extension instanceof PerMessageDeflateExtension))
+                return preEncoded.newFrame();
+            // Compressed bytes can only be shared if each message is compressed independently.
+            deflate = !((PerMessageDeflateExtension)extension).isOutgoingContextTakeover();
+        }
+
+        Frame frame = preEncoded.newEncodedFrame(deflate);
+        // Pre-encoded frames cannot be fragmented.
+        if (isAutoFragment() && getMaxFrameSize() > 0 && frame.getPayloadLength() > getMaxFrameSize())
+            return preEncoded.newFrame();
+        return frame;
+    }
+
     @Override
     public void sendFrame(Frame frame, Callback callback, boolean batch)
     {
@@ -0,0 +1,171 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.FutureCallback;
+import org.eclipse.jetty.websocket.core.client.CoreClientUpgradeRequest;
+import org.eclipse.jetty.websocket.core.client.WebSocketCoreClient;
+import org.eclipse.jetty.websocket.core.internal.Generator;
+import org.eclipse.jetty.websocket.core.server.WebSocketNegotiator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PreEncodedFrameTest
+{
+    private static final String MESSAGE = "{\"symbol\":\"JTY\",\"bid\":10.01,\"ask\":10.02}".repeat(50);
+
+    private final WebSocketComponents components = new WebSocketComponents();
+    private final BlockingQueue<TestFrameHandler> serverHandlers = new LinkedBlockingQueue<>();
+    private WebSocketServer server;
+    private WebSocketCoreClient client;
+    private URI serverUri;
+
+    @BeforeEach
+    public void setup() throws Exception
+    {
+        server = new WebSocketServer(WebSocketNegotiator.from(negotiation ->
+        {
+            TestFrameHandler handler = new TestFrameHandler();
+            serverHandlers.offer(handler);
+            return handler;
+        }));
+        server.start();
+        serverUri = new URI("ws://localhost:" + server.getLocalPort());
+
+        client = new WebSocketCoreClient();
+        client.start();
+        components.start();
+    }
+
+    @AfterEach
+    public void teardown() throws Exception
+    {
+        components.stop();
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testEncoding()
+    {
+        PreEncodedFrame frame = new PreEncodedFrame(components, MESSAGE);
+
+        ByteBuffer expected = BufferUtil.allocate(Generator.MAX_HEADER_LENGTH + frame.getPayloadLength());
+        new Generator().generateWholeFrame(new Frame(OpCode.TEXT, MESSAGE), expected);
+
+        Frame encoded = frame.newEncodedFrame(false);
+        assertThat(encoded, instanceOf(PreEncodedFrame.Encoded.class));
+        assertFalse(encoded.isRsv1());
+        assertEquals(expected, ((PreEncodedFrame.Encoded)encoded).getEncoded());
+        assertEquals(MESSAGE, encoded.getPayloadAsUTF8());
+
+        Frame deflated = frame.newEncodedFrame(true);
+        assertTrue(deflated.isRsv1());
+        assertThat(deflated.getPayloadLength(), lessThan(frame.getPayloadLength()));
+        // The message is compressed only once.
+        assertEquals(((PreEncodedFrame.Encoded)deflated).getEncoded(), ((PreEncodedFrame.Encoded)frame.newEncodedFrame(true)).getEncoded());
+
+        assertEquals(0, frame.release());
+        assertThrows(IllegalStateException.class, frame::retain);
+    }
+
+    @Test
+    public void testInvalidOpCode()
+    {
+        assertThrows(IllegalArgumentException.class, () -> new PreEncodedFrame(components, OpCode.PING, BufferUtil.EMPTY_BUFFER));
+    }
+
+    @Test
+    public void testBroadcast() throws Exception
+    {
+        List<String> extensions = List.of(
+            "",
+            "permessage-deflate",
+            "permessage-deflate; server_no_context_takeover",
+            "permessage-deflate; client_no_context_takeover; server_no_context_takeover",
+            "identity");
+
+        List<TestFrameHandler> clientHandlers = new ArrayList<>();
+        List<TestFrameHandler> sessions = new ArrayList<>();
+        for (String extension : extensions)
+        {
+            TestFrameHandler clientHandler = new TestFrameHandler();
+            CoreClientUpgradeRequest upgradeRequest = CoreClientUpgradeRequest.from(client, serverUri, clientHandler);
+            if (!extension.isEmpty())
+                upgradeRequest.addExtensions(extension);
+            client.connect(upgradeRequest).get(5, TimeUnit.SECONDS);
+            clientHandlers.add(clientHandler);
+
+            TestFrameHandler serverHandler = serverHandlers.poll(5, TimeUnit.SECONDS);
+            assertNotNull(serverHandler);
+            assertTrue(serverHandler.open.await(5, TimeUnit.SECONDS));
+            sessions.add(serverHandler);
+        }
+
+        PreEncodedFrame frame = new PreEncodedFrame(sessions.get(0).getCoreSession().getWebSocketComponents(), MESSAGE);
+        List<FutureCallback> callbacks = new ArrayList<>();
+        for (TestFrameHandler session : sessions)
+        {
+            // Normal messages before and after the pre-encoded message
+            // verify that the compression context is not corrupted.
+            session.sendText("before");
+            FutureCallback callback = new FutureCallback();
+            session.getCoreSession().sendFrame(frame, callback, false);
+            callbacks.add(callback);
+            session.sendText("after");
+        }
+        frame.release();
+
+        for (FutureCallback callback : callbacks)
+        {
+            callback.get(5, TimeUnit.SECONDS);
+        }
+        assertEquals(0, frame.getReferences());
+
+        for (TestFrameHandler clientHandler : clientHandlers)
+        {
+            assertEquals("before", receiveText(clientHandler));
+            assertEquals(MESSAGE, receiveText(clientHandler));
+            assertEquals("after", receiveText(clientHandler));
+        }
+    }
+
+    private String receiveText(TestFrameHandler handler) throws InterruptedException
+    {
+        Frame frame = handler.getFrames().poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        assertEquals(OpCode.TEXT, frame.getOpCode());
+        assertTrue(frame.isFin());
+        return frame.getPayloadAsUTF8();
+    }
+}
@@ -25,6 +25,7 @@ import org.eclipse.jetty.toolchain.test.ByteBufferAssert;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.TypeUtil;
+import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.websocket.core.Behavior;
 import org.eclipse.jetty.websocket.core.Configuration.ConfigurationCustomizer;
 import org.eclipse.jetty.websocket.core.ExtensionConfig;
@@ -41,6 +42,7 @@ import org.eclipse.jetty.websocket.core.internal.WebSocketCoreSession;
 import org.junit.jupiter.api.Test;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -516,6 +518,36 @@ public class PerMessageDeflateExtensionTest extends AbstractExtensionTest
         //assertThat("Frame.payload", actual.getPayload(), is(BufferUtil.EMPTY_BUFFER));
     }
 
+    @Test
+    public void testNoContextTakeoverWhenDeflaterMemoryExhausted()
+    {
+        DeflaterPool deflaterPool = components.getDeflaterPool();
+
+        // Without budget, the Deflater is held between messages.
+        PerMessageDeflateExtension ext1 = new PerMessageDeflateExtension();
+        ext1.init(ExtensionConfig.parse("permessage-deflate"), components);
+        ext1.setCoreSession(newSession());
+        ext1.setNextOutgoingFrames(new OutgoingFramesCapture());
+        assertThat(ext1.isOutgoingContextTakeover(), is(true));
+        ext1.sendFrame(new Frame(OpCode.TEXT).setPayload("Hello"), Callback.NOOP, false);
+        assertThat(deflaterPool.getInUseCount(), is(1));
+
+        // With the budget exhausted, the Deflater is released after each message.
+        deflaterPool.setMaxNativeMemory(deflaterPool.getNativeMemoryInUse());
+        assertThat(deflaterPool.isNativeMemoryExhausted(), is(true));
+        PerMessageDeflateExtension ext2 = new PerMessageDeflateExtension();
+        ext2.init(ExtensionConfig.parse("permessage-deflate"), components);
+        ext2.setCoreSession(newSession());
+        ext2.setNextOutgoingFrames(new OutgoingFramesCapture());
+        assertThat(ext2.isOutgoingContextTakeover(), is(false));
+        assertThat(ext2.getConfig().getParameterizedName(), containsString("server_no_context_takeover"));
+        ext2.sendFrame(new Frame(OpCode.TEXT).setPayload("Hello"), Callback.NOOP, false);
+        assertThat(deflaterPool.getInUseCount(), is(1));
+
+        ext1.releaseDeflater();
+        assertThat(deflaterPool.getInUseCount(), is(0));
+    }
+
     @Test
     public void testPyWebSocketClientNoContextTakeoverThreeOra()
     {
@@ -0,0 +1,94 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.javax.common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import javax.websocket.SendHandler;
+import javax.websocket.Session;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.PreEncodedFrame;
+
+/**
+ * <p>Sends the same message to many {@link Session}s, framing and
+ * compressing it once for all of them, see {@link PreEncodedFrame}.</p>
+ */
+public final class JavaxWebSocketBroadcaster
+{
+    private static final SendHandler NOOP = result ->
+    {
+    };
+
+    private JavaxWebSocketBroadcaster()
+    {
+    }
+
+    /**
+     * @param sessions the sessions to send the message to
+     * @param text the text message
+     * @param handler the handler notified once for each session, or null
+     */
+    public static void broadcastText(Collection<? extends Session> sessions, String text, SendHandler handler)
+    {
+        broadcast(sessions, OpCode.TEXT, BufferUtil.toBuffer(text, StandardCharsets.UTF_8), handler);
+    }
+
+    /**
+     * @param sessions the sessions to send the message to
+     * @param data the binary message
+     * @param handler the handler notified once for each session, or null
+     */
+    public static void broadcastBinary(Collection<? extends Session> sessions, ByteBuffer data, SendHandler handler)
+    {
+        broadcast(sessions, OpCode.BINARY, data, handler);
+    }
+
+    private static void broadcast(Collection<? extends Session> sessions, byte opCode, ByteBuffer payload, SendHandler handler)
+    {
+        SendHandler sendHandler = handler == null ? NOOP : handler;
+        PreEncodedFrame frame = null;
+        try
+        {
+            for (Session session : sessions)
+            {
+                if (session instanceof JavaxWebSocketSession)
+                {
+                    CoreSession coreSession = ((JavaxWebSocketSession)session).getCoreSession();
+                    if (frame == null)
+                        frame = new PreEncodedFrame(coreSession.getWebSocketComponents(), opCode, payload);
+                    Callback callback = new SendHandlerCallback(sendHandler);
+                    coreSession.sendFrame(frame, callback, session.getAsyncRemote().getBatchingAllowed());
+                }
+                else if (opCode == OpCode.TEXT)
+                {
+                    session.getAsyncRemote().sendText(BufferUtil.toString(payload, StandardCharsets.UTF_8), sendHandler);
+                }
+                else
+                {
+                    session.getAsyncRemote().sendBinary(payload.slice(), sendHandler);
+                }
+            }
+        }
+        finally
+        {
+            if (frame != null)
+                frame.release();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.common;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.api.BatchMode;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.PreEncodedFrame;
+
+/**
+ * <p>Sends the same message to many {@link Session}s, framing and
+ * compressing it once for all of them, see {@link PreEncodedFrame}.</p>
+ */
+public final class JettyWebSocketBroadcaster
+{
+    private JettyWebSocketBroadcaster()
+    {
+    }
+
+    /**
+     * @param sessions the sessions to send the message to
+     * @param text the text message
+     * @param callback the callback notified once for each session, or null
+     */
+    public static void broadcastString(Collection<? extends Session> sessions, String text, WriteCallback callback)
+    {
+        broadcast(sessions, OpCode.TEXT, BufferUtil.toBuffer(text, StandardCharsets.UTF_8), callback);
+    }
+
+    /**
+     * @param sessions the sessions to send the message to
+     * @param data the binary message
+     * @param callback the callback notified once for each session, or null
+     */
+    public static void broadcastBytes(Collection<? extends Session> sessions, ByteBuffer data, WriteCallback callback)
+    {
+        broadcast(sessions, OpCode.BINARY, data, callback);
+    }
+
+    private static void broadcast(Collection<? extends Session> sessions, byte opCode, ByteBuffer payload, WriteCallback callback)
+    {
+        WriteCallback writeCallback = callback == null ? WriteCallback.NOOP : callback;
+        PreEncodedFrame frame = null;
+        try
+        {
+            for (Session session : sessions)
+            {
+                boolean batch = session.getRemote().getBatchMode() == BatchMode.ON;
+                if (session instanceof WebSocketSession)
+                {
+                    CoreSession coreSession = ((WebSocketSession)session).getCoreSession();
+                    if (frame == null)
+                        frame = new PreEncodedFrame(coreSession.getWebSocketComponents(), opCode, payload);
+                    coreSession.sendFrame(frame, Callback.from(writeCallback::writeSuccess, writeCallback::writeFailed), batch);
+                }
+                else if (opCode == OpCode.TEXT)
+                {
+                    session.getRemote().sendString(BufferUtil.toString(payload, StandardCharsets.UTF_8), writeCallback);
+                }
+                else
+                {
+                    session.getRemote().sendBytes(payload.slice(), writeCallback);
+                }
+            }
+        }
+        finally
+        {
+            if (frame != null)
+                frame.release();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.tests;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.api.util.WSURI;
+import org.eclipse.jetty.websocket.client.ClientUpgradeRequest;
+import org.eclipse.jetty.websocket.client.WebSocketClient;
+import org.eclipse.jetty.websocket.common.JettyWebSocketBroadcaster;
+import org.eclipse.jetty.websocket.server.config.JettyWebSocketServletContainerInitializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JettyWebSocketBroadcasterTest
+{
+    private final Server server = new Server();
+    private final WebSocketClient client = new WebSocketClient();
+    private final BlockingQueue<EventSocket> serverSockets = new LinkedBlockingQueue<>();
+    private URI serverUri;
+
+    @BeforeEach
+    public void start() throws Exception
+    {
+        ServerConnector connector = new ServerConnector(server);
+        server.addConnector(connector);
+
+        ServletContextHandler contextHandler = new ServletContextHandler();
+        contextHandler.setContextPath("/");
+        JettyWebSocketServletContainerInitializer.configure(contextHandler, (context, container) ->
+            container.addMapping("/", (req, resp) ->
+            {
+                EventSocket socket = new EventSocket();
+                serverSockets.offer(socket);
+                return socket;
+            }));
+
+        server.setHandler(contextHandler);
+        server.start();
+        serverUri = WSURI.toWebsocket(server.getURI());
+
+        client.start();
+    }
+
+    @AfterEach
+    public void stop() throws Exception
+    {
+        client.stop();
+        server.stop();
+    }
+
+    @Test
+    public void testBroadcast() throws Exception
+    {
+        List<String> extensions = List.of("", "permessage-deflate", "permessage-deflate; server_no_context_takeover");
+        List<EventSocket> clientSockets = new ArrayList<>();
+        List<Session> sessions = new ArrayList<>();
+        for (String extension : extensions)
+        {
+            EventSocket clientSocket = new EventSocket();
+            ClientUpgradeRequest upgradeRequest = new ClientUpgradeRequest();
+            if (!extension.isEmpty())
+                upgradeRequest.addExtensions(extension);
+            client.connect(clientSocket, serverUri, upgradeRequest).get(5, TimeUnit.SECONDS);
+            clientSockets.add(clientSocket);
+
+            EventSocket serverSocket = serverSockets.poll(5, TimeUnit.SECONDS);
+            assertNotNull(serverSocket);
+            assertTrue(serverSocket.openLatch.await(5, TimeUnit.SECONDS));
+            sessions.add(serverSocket.session);
+        }
+
+        String text = "broadcast message ".repeat(20);
+        CountDownLatch textLatch = new CountDownLatch(sessions.size());
+        JettyWebSocketBroadcaster.broadcastString(sessions, text, new WriteCallback()
+        {
+            @Override
+            public void writeSuccess()
+            {
+                textLatch.countDown();
+            }
+        });
+        assertTrue(textLatch.await(5, TimeUnit.SECONDS));
+
+        ByteBuffer data = BufferUtil.toBuffer(text);
+        JettyWebSocketBroadcaster.broadcastBytes(sessions, data, null);
+
+        for (EventSocket clientSocket : clientSockets)
+        {
+            assertThat(clientSocket.textMessages.poll(5, TimeUnit.SECONDS), is(text));
+            assertThat(clientSocket.binaryMessages.poll(5, TimeUnit.SECONDS), is(data));
+        }
+    }
+}
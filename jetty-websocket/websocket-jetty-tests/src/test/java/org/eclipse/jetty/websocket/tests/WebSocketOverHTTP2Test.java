@@ -172,6 +172,33 @@ public class WebSocketOverHTTP2Test
         assertNull(wsEndPoint.error);
     }
 
+    @Test
+    public void testWebSocketOverHTTP2LargeMessages() throws Exception
+    {
+        startServer();
+        startClient(clientConnector -> new ClientConnectionFactoryOverHTTP2.HTTP2(new HTTP2Client(clientConnector)));
+
+        EventSocket wsEndPoint = new EventSocket();
+        URI uri = URI.create("ws://localhost:" + connector.getLocalPort() + "/ws/echo");
+        Session session = wsClient.connect(wsEndPoint, uri).get(5, TimeUnit.SECONDS);
+
+        // Messages larger than a DATA frame are written without being
+        // coalesced, and are split across many DATA frames when read.
+        for (int i = 0; i < 10; ++i)
+        {
+            String text = String.valueOf((char)('a' + i)).repeat(40 * 1024 + i);
+            session.getRemote().sendString(text);
+            String message = wsEndPoint.textMessages.poll(5, TimeUnit.SECONDS);
+            assertNotNull(message);
+            assertEquals(text, message);
+        }
+
+        session.close(StatusCode.NORMAL, null);
+        assertTrue(wsEndPoint.closeLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(StatusCode.NORMAL, wsEndPoint.closeCode);
+        assertNull(wsEndPoint.error);
+    }
+
     @Test
     public void testConnectProtocolDisabled() throws Exception
     {
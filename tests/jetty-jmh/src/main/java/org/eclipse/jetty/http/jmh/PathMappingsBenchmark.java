@@ -0,0 +1,114 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.pathmap.MappedResource;
+import org.eclipse.jetty.http.pathmap.PathMappings;
+import org.eclipse.jetty.http.pathmap.ServletPathSpec;
+import org.eclipse.jetty.http.pathmap.UriTemplatePathSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class PathMappingsBenchmark
+{
+    @Param({"10", "100", "800"})
+    int routes;
+
+    private PathMappings<String> mappings;
+    private String[] paths;
+
+    @Setup
+    public void setUp()
+    {
+        // Simulates a REST gateway with many URI templates.
+        mappings = new PathMappings<>();
+        mappings.put(new ServletPathSpec("/"), "default");
+        mappings.put(new ServletPathSpec("/static/*"), "static");
+        paths = new String[routes];
+        for (int i = 0; i < routes; i++)
+        {
+            String service = "service" + (i / 8);
+            switch (i % 4)
+            {
+                case 0:
+                    mappings.put(new UriTemplatePathSpec("/api/" + service + "/v" + i + "/{id}"), "r" + i);
+                    paths[i] = "/api/" + service + "/v" + i + "/42";
+                    break;
+                case 1:
+                    mappings.put(new UriTemplatePathSpec("/api/" + service + "/v" + i + "/{id}/items/{item}"), "r" + i);
+                    paths[i] = "/api/" + service + "/v" + i + "/42/items/7?expand=true";
+                    break;
+                case 2:
+                    mappings.put(new UriTemplatePathSpec("/api/" + service + "/v" + i + "/list"), "r" + i);
+                    paths[i] = "/api/" + service + "/v" + i + "/list";
+                    break;
+                default:
+                    mappings.put(new UriTemplatePathSpec("/{tenant}/" + service + "/v" + i + "/search"), "r" + i);
+                    paths[i] = "/acme/" + service + "/v" + i + "/search";
+                    break;
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public MappedResource<String> testGetMatch()
+    {
+        String path = paths[ThreadLocalRandom.current().nextInt(paths.length)];
+        return mappings.getMatch(path);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public MappedResource<String> testLinearMatch()
+    {
+        // The matching cost without the compiled path segment trie.
+        String path = paths[ThreadLocalRandom.current().nextInt(paths.length)];
+        for (MappedResource<String> mr : mappings)
+        {
+            if (mr.getPathSpec().matches(path))
+                return mr;
+        }
+        return null;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(PathMappingsBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
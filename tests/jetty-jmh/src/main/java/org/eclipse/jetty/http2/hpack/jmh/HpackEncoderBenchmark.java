@@ -0,0 +1,172 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.hpack.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.http2.hpack.HpackEncodingCache;
+import org.eclipse.jetty.http2.hpack.HpackException;
+import org.eclipse.jetty.util.BufferUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class HpackEncoderBenchmark
+{
+    private static final PreEncodedHttpField SERVER = new PreEncodedHttpField(HttpHeader.SERVER, "Jetty(10.0.x)");
+    private static final List<MetaData.Response> RESPONSES = List.of(
+        response(HttpFields.build()
+            .add(SERVER)
+            .add(HttpHeader.DATE, "Mon, 04 Oct 2021 10:15:30 GMT")
+            .add(HttpHeader.CONTENT_TYPE, "text/html;charset=utf-8")
+            .add(HttpHeader.CACHE_CONTROL, "no-cache, no-store, must-revalidate")
+            .add(HttpHeader.VARY, "Accept-Encoding")
+            .add(HttpHeader.CONTENT_ENCODING, "gzip")
+            .add(HttpHeader.SET_COOKIE, "JSESSIONID=node01abcdefghijklmnop.node0; Path=/; Secure; HttpOnly")
+            .add("strict-transport-security", "max-age=31536000; includeSubDomains")
+            .add("x-content-type-options", "nosniff")
+            .add(HttpHeader.CONTENT_LENGTH, "12345")),
+        response(HttpFields.build()
+            .add(SERVER)
+            .add(HttpHeader.DATE, "Mon, 04 Oct 2021 10:15:30 GMT")
+            .add(HttpHeader.CONTENT_TYPE, "text/css")
+            .add(HttpHeader.CACHE_CONTROL, "max-age=31536000, public, immutable")
+            .add(HttpHeader.ETAG, "W/\"4c1d-17c4a6e7b10\"")
+            .add(HttpHeader.LAST_MODIFIED, "Fri, 01 Oct 2021 08:00:00 GMT")
+            .add(HttpHeader.ACCEPT_RANGES, "bytes")
+            .add(HttpHeader.VARY, "Accept-Encoding")
+            .add(HttpHeader.CONTENT_LENGTH, "19485")),
+        response(HttpFields.build()
+            .add(SERVER)
+            .add(HttpHeader.DATE, "Mon, 04 Oct 2021 10:15:30 GMT")
+            .add(HttpHeader.CONTENT_TYPE, "application/javascript")
+            .add(HttpHeader.CACHE_CONTROL, "max-age=31536000, public, immutable")
+            .add(HttpHeader.ETAG, "W/\"9a02-17c4a6e7b10\"")
+            .add(HttpHeader.ACCEPT_RANGES, "bytes")
+            .add(HttpHeader.VARY, "Accept-Encoding")
+            .add(HttpHeader.CONTENT_LENGTH, "39426")),
+        response(HttpFields.build()
+            .add(SERVER)
+            .add(HttpHeader.DATE, "Mon, 04 Oct 2021 10:15:31 GMT")
+            .add(HttpHeader.CONTENT_TYPE, "application/json")
+            .add(HttpHeader.CACHE_CONTROL, "private, max-age=0")
+            .add("access-control-allow-origin", "https://www.example.com")
+            .add("access-control-allow-credentials", "true")
+            .add("x-request-id", "5f0c6e2a-3b9d-4c1e-8f7a-2d6b9e0a1c34")
+            .add(HttpHeader.CONTENT_LENGTH, "842")));
+
+    private static MetaData.Response response(HttpFields fields)
+    {
+        return new MetaData.Response(HttpVersion.HTTP_2, 200, fields);
+    }
+
+    @Param({"false", "true"})
+    public boolean cache;
+
+    private HpackEncodingCache encodingCache;
+
+    @Setup(Level.Trial)
+    public void setupTrial()
+    {
+        encodingCache = cache ? new HpackEncodingCache() : null;
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState
+    {
+        private final ByteBuffer buffer = BufferUtil.allocate(16 * 1024);
+    }
+
+    private HpackEncoder newEncoder()
+    {
+        HpackEncoder encoder = new HpackEncoder();
+        encoder.setEncodingCache(encodingCache);
+        return encoder;
+    }
+
+    private void encode(HpackEncoder encoder, ThreadState state, Blackhole blackhole) throws HpackException
+    {
+        for (MetaData.Response response : RESPONSES)
+        {
+            ByteBuffer buffer = state.buffer;
+            BufferUtil.clearToFill(buffer);
+            encoder.encode(buffer, response);
+            blackhole.consume(buffer.position());
+        }
+    }
+
+    /**
+     * The responses to the first requests of a new connection,
+     * where the header values are not yet in the dynamic table.
+     */
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testNewConnection(ThreadState state, Blackhole blackhole) throws HpackException
+    {
+        encode(newEncoder(), state, blackhole);
+    }
+
+    /**
+     * The responses to two rounds of requests on a new connection, where
+     * in the second round most header values are in the dynamic table.
+     */
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public void testNewConnectionTwoRounds(ThreadState state, Blackhole blackhole) throws HpackException
+    {
+        HpackEncoder encoder = newEncoder();
+        encode(encoder, state, blackhole);
+        encode(encoder, state, blackhole);
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HpackEncoderBenchmark.class.getSimpleName())
+            .warmupIterations(5)
+            .measurementIterations(5)
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .threads(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,153 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.jmh;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Sends batches of pipelined requests for a tiny JSON response,
+ * with and without {@link HttpConfiguration#isCoalesceResponseWrites()}.</p>
+ * <p>The number of writes per response, which is the number of write
+ * system calls per response, is printed at the end of each trial.</p>
+ */
+@State(Scope.Thread)
+@Threads(4)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class HttpConnectionCoalescingBenchmark
+{
+    private static final byte[] JSON = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"false", "true"})
+    public boolean coalesce;
+
+    @Param({"1", "8", "32"})
+    public int pipeline;
+
+    private Server _server;
+    private HttpConnectionFactory _http;
+    private Socket _socket;
+    private byte[] _requests;
+    private final byte[] _buffer = new byte[64 * 1024];
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception
+    {
+        HttpConfiguration config = new HttpConfiguration();
+        config.setSendDateHeader(false);
+        config.setSendServerVersion(false);
+        config.setCoalesceResponseWrites(coalesce);
+        _http = new HttpConnectionFactory(config);
+
+        _server = new Server();
+        ServerConnector connector = new ServerConnector(_server, _http);
+        _server.addConnector(connector);
+        _server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request jettyRequest, HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                jettyRequest.setHandled(true);
+                response.setContentType("application/json");
+                response.setContentLength(JSON.length);
+                response.getOutputStream().write(JSON);
+            }
+        });
+        _server.start();
+
+        StringBuilder requests = new StringBuilder();
+        for (int i = 0; i < pipeline; i++)
+        {
+            requests.append("GET /json HTTP/1.1\r\n")
+                .append("Host: localhost\r\n")
+                .append("\r\n");
+        }
+        _requests = requests.toString().getBytes(StandardCharsets.ISO_8859_1);
+        _socket = new Socket("localhost", connector.getLocalPort());
+        _socket.setTcpNoDelay(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTrial() throws Exception
+    {
+        _socket.close();
+        _server.stop();
+        System.err.printf("%ncoalesce=%b pipeline=%d writes/response=%.3f%n", coalesce, pipeline, _http.getWritesPerResponse());
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public int testPipelinedRequests() throws Exception
+    {
+        OutputStream output = _socket.getOutputStream();
+        output.write(_requests);
+        output.flush();
+
+        // The response headers do not contain '}', so count the end of the JSON bodies.
+        InputStream input = _socket.getInputStream();
+        int responses = 0;
+        while (responses < pipeline)
+        {
+            int read = input.read(_buffer);
+            if (read < 0)
+                throw new IOException("Unexpected EOF");
+            for (int i = 0; i < read; i++)
+            {
+                if (_buffer[i] == '}')
+                    responses++;
+            }
+        }
+        return responses;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(HttpConnectionCoalescingBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,128 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session.jmh;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.server.session.AbstractSessionCacheFactory;
+import org.eclipse.jetty.server.session.DefaultSessionCacheFactory;
+import org.eclipse.jetty.server.session.NullSessionDataStore;
+import org.eclipse.jetty.server.session.Session;
+import org.eclipse.jetty.server.session.SessionCache;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionHandler;
+import org.eclipse.jetty.server.session.StripedSessionCacheFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 3, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+public class SessionCacheBenchmark
+{
+    @Param({"DEFAULT", "STRIPED"})
+    String cacheType;
+
+    @Param({"1000000", "2000000"})
+    int sessions;
+
+    private Server server;
+    private SessionCache cache;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        AbstractSessionCacheFactory cacheFactory;
+        switch (cacheType)
+        {
+            case "DEFAULT":
+                cacheFactory = new DefaultSessionCacheFactory();
+                break;
+            case "STRIPED":
+                cacheFactory = new StripedSessionCacheFactory();
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+
+        cacheFactory.setEvictionPolicy(SessionCache.NEVER_EVICT);
+
+        server = new Server();
+        ContextHandler context = new ContextHandler("/");
+        SessionHandler sessionHandler = new SessionHandler();
+        context.setHandler(sessionHandler);
+        server.setHandler(context);
+        cache = cacheFactory.getSessionCache(sessionHandler);
+        cache.setSessionDataStore(new NullSessionDataStore());
+        sessionHandler.setSessionCache(cache);
+        server.start();
+
+        // Every resident session has a pending inactivity timeout.
+        long now = System.currentTimeMillis();
+        long maxInactiveMs = TimeUnit.MINUTES.toMillis(30);
+        for (int i = 0; i < sessions; i++)
+        {
+            String id = Integer.toString(i);
+            Session session = cache.newSession(new SessionData(id, "/", "0.0.0.0", now, now, now, maxInactiveMs));
+            cache.add(id, session);
+            cache.release(id, session);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws Exception
+    {
+        server.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public Session testGetAndRelease() throws Exception
+    {
+        // Simulates a request that uses an existing session,
+        // which cancels and then reschedules its inactivity timeout.
+        String id = Integer.toString(ThreadLocalRandom.current().nextInt(sessions));
+        Session session = cache.get(id);
+        cache.release(id, session);
+        return session;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SessionCacheBenchmark.class.getSimpleName())
+            .jvmArgs("-Xmx4g")
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -0,0 +1,123 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session.jmh;
+
+import java.io.Serializable;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.session.BinarySessionDataCodec;
+import org.eclipse.jetty.server.session.JavaSessionDataCodec;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionDataCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 2000, timeUnit = TimeUnit.MILLISECONDS)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SessionDataCodecBenchmark
+{
+    @Param({"BINARY", "JAVA"})
+    String codecType;
+
+    @Param({"PRIMITIVES", "MIXED"})
+    String attributes;
+
+    private SessionDataCodec codec;
+    private SessionData data;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Exception
+    {
+        switch (codecType)
+        {
+            case "BINARY":
+                codec = new BinarySessionDataCodec();
+                break;
+            case "JAVA":
+                codec = new JavaSessionDataCodec();
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+
+        data = new SessionData("node0abcdefghijklmnop", "/context", "0.0.0.0", 1000, 2000, 2000, 1800000);
+        data.setAttribute("user", "jetty@eclipse.org");
+        data.setAttribute("locale", "en_US");
+        data.setAttribute("csrfToken", "b2c7f1e0-5f7e-4d3b-8a43-0a4b2c1f9e77");
+        data.setAttribute("visits", 42);
+        data.setAttribute("lastLogin", System.currentTimeMillis());
+        data.setAttribute("authenticated", Boolean.TRUE);
+        data.setAttribute("score", 0.75D);
+        data.setAttribute("nonce", new byte[16]);
+        if ("MIXED".equals(attributes))
+            data.setAttribute("cart", new Cart("sku-1234", 3));
+
+        encoded = codec.encode(data);
+        System.err.printf("codec=%s attributes=%s encoded size=%d bytes%n", codecType, attributes, encoded.length);
+    }
+
+    @Benchmark
+    public byte[] testEncode() throws Exception
+    {
+        return codec.encode(data);
+    }
+
+    @Benchmark
+    public SessionData testDecode() throws Exception
+    {
+        SessionData decoded = new SessionData("node0abcdefghijklmnop", "/context", "0.0.0.0", 1000, 2000, 2000, 1800000);
+        codec.decode(decoded, encoded);
+        return decoded;
+    }
+
+    public static class Cart implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final String sku;
+        private final int quantity;
+
+        public Cart(String sku, int quantity)
+        {
+            this.sku = sku;
+            this.quantity = quantity;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SessionDataCodecBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
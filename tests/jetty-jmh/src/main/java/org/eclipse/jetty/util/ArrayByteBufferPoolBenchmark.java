@@ -17,7 +17,9 @@ import java.nio.ByteBuffer;
 
 import org.eclipse.jetty.io.ArrayByteBufferPool;
 import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.io.ThreadLocalArrayByteBufferPool;
 import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
@@ -30,12 +32,28 @@ import org.openjdk.jmh.runner.options.OptionsBuilder;
 @State(Scope.Benchmark)
 public class ArrayByteBufferPoolBenchmark
 {
+    @Param({
+        "ArrayByteBufferPool",
+        "ThreadLocalArrayByteBufferPool",
+    })
+    public static String POOL_TYPE;
+
     private ByteBufferPool pool;
 
     @Setup
     public void setUp() throws Exception
     {
-        pool = new ArrayByteBufferPool();
+        switch (POOL_TYPE)
+        {
+            case "ArrayByteBufferPool":
+                pool = new ArrayByteBufferPool();
+                break;
+            case "ThreadLocalArrayByteBufferPool":
+                pool = new ThreadLocalArrayByteBufferPool();
+                break;
+            default:
+                throw new IllegalStateException("Unknown pool type: " + POOL_TYPE);
+        }
     }
 
     @TearDown
@@ -51,17 +69,36 @@ public class ArrayByteBufferPoolBenchmark
         pool.release(buffer);
     }
 
+    @Benchmark
+    public void testAcquireReleaseMixedSizes()
+    {
+        // Simulates a request/response cycle that holds
+        // buffers of different sizes at the same time.
+        ByteBuffer input = pool.acquire(8192, true);
+        ByteBuffer header = pool.acquire(4096, false);
+        ByteBuffer output = pool.acquire(32768, true);
+        pool.release(header);
+        pool.release(output);
+        pool.release(input);
+    }
+
     public static void main(String[] args) throws RunnerException
     {
-        Options opt = new OptionsBuilder()
-            .include(ArrayByteBufferPoolBenchmark.class.getSimpleName())
-            .warmupIterations(3)
-            .measurementIterations(3)
-            .forks(1)
-            .threads(8)
-            // .addProfiler(GCProfiler.class)
-            .build();
+        // Run with increasing thread counts to show how
+        // contention on the shared buckets affects scaling.
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads : new int[]{1, 4, cores, 4 * cores})
+        {
+            Options opt = new OptionsBuilder()
+                .include(ArrayByteBufferPoolBenchmark.class.getSimpleName())
+                .warmupIterations(3)
+                .measurementIterations(3)
+                .forks(1)
+                .threads(threads)
+                // .addProfiler(GCProfiler.class)
+                .build();
 
-        new Runner(opt).run();
+            new Runner(opt).run();
+        }
     }
 }
@@ -23,6 +23,7 @@ import org.eclipse.jetty.util.component.LifeCycle;
 import org.eclipse.jetty.util.thread.ExecutorThreadPool;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.util.thread.VirtualThreadPool;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Measurement;
@@ -46,10 +47,10 @@ public class ThreadPoolBenchmark
 {
     public enum Type
     {
-        QTP, ETP, LQTP, LETP, AQTP, AETP;
+        QTP, ETP, LQTP, LETP, AQTP, AETP, VTP;
     }
 
-    @Param({"QTP", "ETP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
+    @Param({"QTP", "ETP", "VTP" /*, "LQTP", "LETP", "AQTP", "AETP" */})
     Type type;
 
     @Param({"200"})
@@ -98,6 +99,11 @@ public class ThreadPoolBenchmark
                 pool = new ExecutorThreadPool(size, size, new ArrayBlockingQueue<>(32768));
                 break;
 
+            case VTP:
+                // Runs on platform threads if the JVM does not support virtual threads.
+                pool = new VirtualThreadPool(size, size);
+                break;
+
             default:
                 throw new IllegalStateException();
         }
@@ -128,6 +134,16 @@ public class ThreadPoolBenchmark
         doJob();
     }
 
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @Threads(1000)
+    public void testManyBlocking() throws Exception
+    {
+        // Simulates blocking handlers, for example doing JDBC calls,
+        // with more concurrent requests than the pool max threads.
+        doBlockingJob();
+    }
+
     @TearDown // (Level.Iteration)
     public void shutdownPool()
     {
@@ -142,6 +158,24 @@ public class ThreadPoolBenchmark
         latch.await();
     }
 
+    void doBlockingJob() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(1);
+        pool.execute(() ->
+        {
+            try
+            {
+                Thread.sleep(1);
+            }
+            catch (InterruptedException x)
+            {
+                Thread.currentThread().interrupt();
+            }
+            latch.countDown();
+        });
+        latch.await();
+    }
+
     public static void main(String[] args) throws RunnerException
     {
         Options opt = new OptionsBuilder()
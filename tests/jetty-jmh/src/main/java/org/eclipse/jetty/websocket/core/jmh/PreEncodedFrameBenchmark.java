@@ -0,0 +1,205 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.io.ByteArrayEndPoint;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
+import org.eclipse.jetty.websocket.core.Behavior;
+import org.eclipse.jetty.websocket.core.CloseStatus;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.ExtensionConfig;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.FrameHandler;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.PreEncodedFrame;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.internal.ExtensionStack;
+import org.eclipse.jetty.websocket.core.internal.Negotiated;
+import org.eclipse.jetty.websocket.core.internal.WebSocketConnection;
+import org.eclipse.jetty.websocket.core.internal.WebSocketCoreSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the time to send one message to many local server sessions,
+ * each writing to an endpoint that discards the bytes, either by sending
+ * a new frame to each session, or by sending a {@link PreEncodedFrame}.</p>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class PreEncodedFrameBenchmark
+{
+    @Param({"10000"})
+    public int sessions;
+
+    @Param({"NONE", "DEFLATE"})
+    public String extension;
+
+    @Param({"128", "4096"})
+    public int size;
+
+    private final List<CoreSession> _sessions = new ArrayList<>();
+    private WebSocketComponents _components;
+    private QueuedThreadPool _executor;
+    private ScheduledExecutorScheduler _scheduler;
+    private ByteBuffer _payload;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception
+    {
+        _components = new WebSocketComponents();
+        _components.start();
+        _executor = new QueuedThreadPool();
+        _executor.start();
+        _scheduler = new ScheduledExecutorScheduler();
+        _scheduler.start();
+
+        List<ExtensionConfig> configs = new ArrayList<>();
+        if ("DEFLATE".equals(extension))
+            configs.add(ExtensionConfig.parse("permessage-deflate; server_no_context_takeover"));
+
+        for (int i = 0; i < sessions; i++)
+        {
+            ExtensionStack extensionStack = new ExtensionStack(_components, Behavior.SERVER);
+            extensionStack.negotiate(configs, configs);
+            WebSocketCoreSession coreSession = new WebSocketCoreSession(new DiscardFrameHandler(), Behavior.SERVER, Negotiated.from(extensionStack), _components);
+            ByteArrayEndPoint endPoint = new DiscardEndPoint();
+            WebSocketConnection connection = new WebSocketConnection(endPoint, _executor, _scheduler, _components.getBufferPool(), coreSession);
+            endPoint.setConnection(connection);
+            coreSession.setWebSocketConnection(connection);
+            connection.onOpen();
+            _sessions.add(coreSession);
+        }
+
+        // A compressible message, like market data.
+        StringBuilder message = new StringBuilder();
+        while (message.length() < size)
+        {
+            message.append("{\"symbol\":\"JTY\",\"bid\":").append(message.length()).append(",\"ask\":").append(size).append("}");
+        }
+        _payload = ByteBuffer.wrap(message.substring(0, size).getBytes());
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTrial() throws Exception
+    {
+        for (CoreSession session : _sessions)
+        {
+            session.abort();
+        }
+        _sessions.clear();
+        _scheduler.stop();
+        _executor.stop();
+        _components.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void testSendFrame()
+    {
+        for (CoreSession session : _sessions)
+        {
+            session.sendFrame(new Frame(OpCode.TEXT, _payload.slice()), Callback.NOOP, false);
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void testSendPreEncodedFrame()
+    {
+        PreEncodedFrame frame = new PreEncodedFrame(_components, OpCode.TEXT, _payload.slice());
+        for (CoreSession session : _sessions)
+        {
+            session.sendFrame(frame, Callback.NOOP, false);
+        }
+        frame.release();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(PreEncodedFrameBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+
+    private static class DiscardEndPoint extends ByteArrayEndPoint
+    {
+        @Override
+        public boolean flush(ByteBuffer... buffers)
+        {
+            for (ByteBuffer buffer : buffers)
+            {
+                if (buffer != null)
+                    buffer.position(buffer.limit());
+            }
+            return true;
+        }
+    }
+
+    private static class DiscardFrameHandler implements FrameHandler
+    {
+        @Override
+        public void onOpen(CoreSession coreSession, Callback callback)
+        {
+            callback.succeeded();
+        }
+
+        @Override
+        public void onFrame(Frame frame, Callback callback)
+        {
+            callback.succeeded();
+        }
+
+        @Override
+        public void onError(Throwable cause, Callback callback)
+        {
+            callback.succeeded();
+        }
+
+        @Override
+        public void onClosed(CloseStatus closeStatus, Callback callback)
+        {
+            callback.succeeded();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.websocket.core.jmh;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.dynamic.HttpClientTransportDynamic;
+import org.eclipse.jetty.client.http.HttpClientConnectionFactory;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.client.http.ClientConnectionFactoryOverHTTP2;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.io.ClientConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.websocket.core.CloseStatus;
+import org.eclipse.jetty.websocket.core.CoreSession;
+import org.eclipse.jetty.websocket.core.Frame;
+import org.eclipse.jetty.websocket.core.FrameHandler;
+import org.eclipse.jetty.websocket.core.OpCode;
+import org.eclipse.jetty.websocket.core.WebSocketComponents;
+import org.eclipse.jetty.websocket.core.client.WebSocketCoreClient;
+import org.eclipse.jetty.websocket.core.server.WebSocketNegotiator;
+import org.eclipse.jetty.websocket.core.server.WebSocketUpgradeHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * <p>Measures the time to echo WebSocket frames over a local connection,
+ * either over HTTP/1.1 or over an HTTP/2 stream (RFC 8441).</p>
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 1000, timeUnit = TimeUnit.MILLISECONDS)
+public class WebSocketTransportBenchmark
+{
+    private static final int FRAMES = 100;
+
+    @Param({"HTTP11", "HTTP2"})
+    public String transport;
+
+    @Param({"128", "4096", "65536"})
+    public int size;
+
+    private Server _server;
+    private ServerConnector _connector;
+    private WebSocketCoreClient _client;
+    private CoreSession _session;
+    private CountingFrameHandler _frameHandler;
+    private ByteBuffer _payload;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception
+    {
+        _server = new Server();
+        HttpConfiguration httpConfig = new HttpConfiguration();
+        _connector = new ServerConnector(_server, 1, 1, new HttpConnectionFactory(httpConfig), new HTTP2CServerConnectionFactory(httpConfig));
+        _server.addConnector(_connector);
+        ContextHandler context = new ContextHandler("/");
+        WebSocketUpgradeHandler upgradeHandler = new WebSocketUpgradeHandler();
+        upgradeHandler.addMapping("/*", WebSocketNegotiator.from(negotiation -> new EchoFrameHandler()));
+        context.setHandler(upgradeHandler);
+        _server.setHandler(context);
+        _server.start();
+
+        ClientConnector clientConnector = new ClientConnector();
+        ClientConnectionFactory.Info protocol = "HTTP2".equals(transport)
+            ? new ClientConnectionFactoryOverHTTP2.HTTP2(new HTTP2Client(clientConnector))
+            : HttpClientConnectionFactory.HTTP11;
+        HttpClient httpClient = new HttpClient(new HttpClientTransportDynamic(clientConnector, protocol));
+        _client = new WebSocketCoreClient(httpClient, new WebSocketComponents());
+        _client.start();
+
+        _frameHandler = new CountingFrameHandler();
+        URI uri = URI.create("ws://localhost:" + _connector.getLocalPort() + "/");
+        _session = _client.connect(_frameHandler, uri).get(5, TimeUnit.SECONDS);
+
+        _payload = ByteBuffer.allocate(size);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTrial() throws Exception
+    {
+        _session.close(CloseStatus.NORMAL, null, Callback.NOOP);
+        _client.stop();
+        _server.stop();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @OperationsPerInvocation(FRAMES)
+    public void testEcho() throws Exception
+    {
+        CountDownLatch latch = new CountDownLatch(FRAMES);
+        _frameHandler.latch = latch;
+        for (int i = 0; i < FRAMES; ++i)
+        {
+            // Batch all frames but the last, which flushes them.
+            _session.sendFrame(new Frame(OpCode.BINARY, _payload.slice()), Callback.NOOP, i < FRAMES - 1);
+        }
+        if (!latch.await(5, TimeUnit.SECONDS))
+            throw new TimeoutException();
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(WebSocketTransportBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+
+    private static class EchoFrameHandler implements FrameHandler
+    {
+        private CoreSession _coreSession;
+
+        @Override
+        public void onOpen(CoreSession coreSession, Callback callback)
+        {
+            _coreSession = coreSession;
+            callback.succeeded();
+        }
+
+        @Override
+        public void onFrame(Frame frame, Callback callback)
+        {
+            if (frame.isDataFrame())
+                _coreSession.sendFrame(new Frame(frame.getOpCode(), frame.isFin(), frame.getPayload()), callback, false);
+            else
+                callback.succeeded();
+        }
+
+        @Override
+        public void onError(Throwable cause, Callback callback)
+        {
+            callback.succeeded();
+        }
+
+        @Override
+        public void onClosed(CloseStatus closeStatus, Callback callback)
+        {
+            callback.succeeded();
+        }
+    }
+
+    private static class CountingFrameHandler implements FrameHandler
+    {
+        private volatile CountDownLatch latch;
+
+        @Override
+        public void onOpen(CoreSession coreSession, Callback callback)
+        {
+            callback.succeeded();
+        }
+
+        @Override
+        public void onFrame(Frame frame, Callback callback)
+        {
+            if (frame.isDataFrame())
+                latch.countDown();
+            callback.succeeded();
+        }
+
+        @Override
+        public void onError(Throwable cause, Callback callback)
+        {
+            callback.succeeded();
+        }
+
+        @Override
+        public void onClosed(CloseStatus closeStatus, Callback callback)
+        {
+            callback.succeeded();
+        }
+    }
+}
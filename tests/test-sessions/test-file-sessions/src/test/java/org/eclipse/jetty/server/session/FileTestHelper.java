@@ -29,7 +29,6 @@ import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.eclipse.jetty.toolchain.test.FS;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.greaterThan;
@@ -176,8 +175,7 @@ public class FileTestHelper
             assertEquals(data.getMaxInactiveMs(), maxIdle);
 
             SessionData tmp = new SessionData(id, contextPath, vhost, created, accessed, lastAccessed, maxIdle);
-            ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(di);
-            SessionData.deserializeAttributes(tmp, ois);
+            new JavaSessionDataCodec().decode(tmp, di);
 
             //same number of attributes
             assertEquals(data.getAllAttributes().size(), tmp.getAllAttributes().size());
@@ -39,10 +39,10 @@ import com.google.cloud.datastore.Query.ResultType;
 import com.google.cloud.datastore.QueryResults;
 import com.google.cloud.datastore.StructuredQuery.PropertyFilter;
 import org.eclipse.jetty.gcloud.session.GCloudSessionDataStore.EntityDataModel;
+import org.eclipse.jetty.server.session.JavaSessionDataCodec;
 import org.eclipse.jetty.server.session.SessionData;
 import org.eclipse.jetty.server.session.SessionDataStore;
 import org.eclipse.jetty.server.session.SessionHandler;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testcontainers.containers.DatastoreEmulatorContainer;
@@ -228,10 +228,7 @@ public class GCloudSessionTestSupport
             entity.getLong(EntityDataModel.LASTACCESSED),
             entity.getLong(EntityDataModel.MAXINACTIVE));
 
-        try (ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(blob.asInputStream()))
-        {
-            SessionData.deserializeAttributes(tmp, ois);
-        }
+        new JavaSessionDataCodec().decode(tmp, blob.toByteArray());
 
         //same number of attributes
         assertEquals(data.getAllAttributes().size(), tmp.getAllAttributes().size());
@@ -0,0 +1,181 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.sql.Blob;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JDBCAttributeTableSessionDataStoreTest
+ *
+ * Checks that the JDBCSessionDataStore with an attribute table writes
+ * only the changed attributes, and migrates sessions saved with the map column.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class JDBCAttributeTableSessionDataStoreTest
+{
+    private static final String ATTRIBUTE_TABLE = "mysessionattributes";
+
+    private JDBCSessionDataStore _store;
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        JdbcTestHelper.prepareTables();
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        JDBCSessionDataStore.SessionTableSchema schema = JdbcTestHelper.newSessionTableSchema();
+        schema.setAttributeTableName(ATTRIBUTE_TABLE);
+        _store = new JDBCSessionDataStore();
+        _store.setDatabaseAdaptor(JdbcTestHelper.buildDatabaseAdaptor());
+        _store.setSessionTableSchema(schema);
+        _store.initialize(new SessionContext("foo", context.getServletContext()));
+        _store.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        _store.stop();
+        try (Connection connection = JdbcTestHelper.getConnection())
+        {
+            connection.prepareStatement("drop table " + ATTRIBUTE_TABLE).executeUpdate();
+        }
+        JdbcTestHelper.shutdown(null);
+    }
+
+    private static int countAttributeRows(String id) throws Exception
+    {
+        try (Connection connection = JdbcTestHelper.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select count(*) from " + ATTRIBUTE_TABLE +
+                 " where " + JdbcTestHelper.ID_COL + " = ?"))
+        {
+            statement.setString(1, id);
+            try (ResultSet result = statement.executeQuery())
+            {
+                result.next();
+                return result.getInt(1);
+            }
+        }
+    }
+
+    private static long getMapLength(String id) throws Exception
+    {
+        try (Connection connection = JdbcTestHelper.getConnection();
+             PreparedStatement statement = connection.prepareStatement("select " + JdbcTestHelper.MAP_COL + " from " + JdbcTestHelper.TABLE +
+                 " where " + JdbcTestHelper.ID_COL + " = ?"))
+        {
+            statement.setString(1, id);
+            try (ResultSet result = statement.executeQuery())
+            {
+                result.next();
+                Blob blob = result.getBlob(JdbcTestHelper.MAP_COL);
+                return blob.length();
+            }
+        }
+    }
+
+    @Test
+    public void testOnlyChangedAttributesAreWritten() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _store.newSessionData("delta1", now, now, now, -1);
+        data.setAttribute("a", "1");
+        data.setAttribute("b", "2");
+        data.setAttribute("c", "3");
+        _store.store("delta1", data);
+        assertEquals(0, getMapLength("delta1"));
+        assertEquals(3, countAttributeRows("delta1"));
+
+        data.setAttribute("a", "4");
+        data.setAttribute("b", null);
+        _store.store("delta1", data);
+        assertEquals(2, countAttributeRows("delta1"));
+
+        SessionData loaded = _store.load("delta1");
+        assertNotNull(loaded);
+        assertEquals("4", loaded.getAttribute("a"));
+        assertNull(loaded.getAttribute("b"));
+        assertEquals("3", loaded.getAttribute("c"));
+        assertTrue(loaded.getDirtyAttributes().isEmpty());
+
+        assertTrue(_store.delete("delta1"));
+        assertEquals(0, countAttributeRows("delta1"));
+    }
+
+    @Test
+    public void testNullMapColumn() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _store.newSessionData("delta3", now, now, now, -1);
+        data.setAttribute("a", "1");
+        _store.store("delta3", data);
+
+        //Oracle stores the empty map blob as NULL
+        try (Connection connection = JdbcTestHelper.getConnection();
+             PreparedStatement statement = connection.prepareStatement("update " + JdbcTestHelper.TABLE +
+                 " set " + JdbcTestHelper.MAP_COL + " = null where " + JdbcTestHelper.ID_COL + " = ?"))
+        {
+            statement.setString(1, "delta3");
+            assertEquals(1, statement.executeUpdate());
+        }
+
+        SessionData loaded = _store.load("delta3");
+        assertNotNull(loaded);
+        assertEquals("1", loaded.getAttribute("a"));
+        assertTrue(loaded.getDirtyAttributes().isEmpty());
+    }
+
+    @Test
+    public void testMapColumnIsMigrated() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _store.newSessionData("delta2", now, now, now, -1);
+        data.setContextPath(_store._context.getCanonicalContextPath());
+        data.setVhost(_store._context.getVhost());
+        data.setLastSaved(now);
+        data.setAttribute("a", "1");
+        data.setAttribute("b", "2");
+        JdbcTestHelper.insertSession(data);
+
+        SessionData loaded = _store.load("delta2");
+        assertNotNull(loaded);
+        assertEquals("1", loaded.getAttribute("a"));
+        assertEquals("2", loaded.getAttribute("b"));
+        assertTrue(loaded.isDirty());
+
+        _store.store("delta2", loaded);
+        assertEquals(0, getMapLength("delta2"));
+        assertEquals(2, countAttributeRows("delta2"));
+
+        loaded = _store.load("delta2");
+        assertEquals("1", loaded.getAttribute("a"));
+        assertEquals("2", loaded.getAttribute("b"));
+        assertTrue(loaded.getDirtyAttributes().isEmpty());
+    }
+}
@@ -0,0 +1,101 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * JDBCWriteBehindSessionDataStoreTest
+ *
+ * Checks that the batched inserts and updates of the JDBCSessionDataStore
+ * write the same rows as the single session inserts and updates.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class JDBCWriteBehindSessionDataStoreTest
+{
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        JdbcTestHelper.prepareTables();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        JdbcTestHelper.shutdown(null);
+    }
+
+    @Test
+    public void testBatchedInsertsAndUpdates() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        WriteBehindSessionDataStoreFactory factory = new WriteBehindSessionDataStoreFactory();
+        factory.setSessionStoreFactory(JdbcTestHelper.newSessionDataStoreFactory());
+        factory.setMaxBatchSize(3);
+        SessionDataStore store = factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+        store.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            List<SessionData> sessions = new ArrayList<>();
+            for (int i = 0; i < 5; ++i)
+            {
+                SessionData data = store.newSessionData("wb" + i, now, now, now, -1);
+                data.setLastNode(sessionContext.getWorkerName());
+                data.setAttribute("a", i);
+                store.store(data.getId(), data);
+                sessions.add(data);
+            }
+            ((WriteBehindSessionDataStore)store).flush();
+
+            for (SessionData data : sessions)
+            {
+                assertTrue(JdbcTestHelper.checkSessionPersisted(data));
+            }
+
+            // Update some of the sessions, so that the next flush only has updates.
+            for (int i = 0; i < 3; ++i)
+            {
+                SessionData data = sessions.get(i);
+                data.setAttribute("a", "updated");
+                store.store(data.getId(), data);
+            }
+            ((WriteBehindSessionDataStore)store).flush();
+
+            for (SessionData data : sessions)
+            {
+                assertTrue(JdbcTestHelper.checkSessionPersisted(data));
+            }
+            assertEquals(5, JdbcTestHelper.getSessionIds().size());
+        }
+        finally
+        {
+            store.stop();
+        }
+    }
+}
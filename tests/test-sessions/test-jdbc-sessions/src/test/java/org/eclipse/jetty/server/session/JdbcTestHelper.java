@@ -26,7 +26,6 @@ import java.sql.SQLException;
 import java.util.HashSet;
 import java.util.Set;
 
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testcontainers.containers.MariaDBContainer;
@@ -257,10 +256,9 @@ public class JdbcTestHelper
 
             if (blob.length() > 0)
             {
-                try (InputStream is = blob.getBinaryStream();
-                     ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(is))
+                try (InputStream is = blob.getBinaryStream())
                 {
-                    SessionData.deserializeAttributes(tmp, ois);
+                    new JavaSessionDataCodec().decode(tmp, is);
                 }
             }
             //same number of attributes
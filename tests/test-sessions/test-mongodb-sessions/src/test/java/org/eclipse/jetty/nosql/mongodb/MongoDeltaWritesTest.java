@@ -0,0 +1,130 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.nosql.mongodb;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.eclipse.jetty.server.session.SessionContext;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionDataStore;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * MongoDeltaWritesTest
+ *
+ * Checks that the MongoSessionDataStore with delta writes stores one field
+ * per attribute, and migrates sessions saved with the serialized attributes field.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+public class MongoDeltaWritesTest
+{
+    private SessionContext _sessionContext;
+    private SessionDataStore _store;
+
+    @BeforeEach
+    public void beforeEach() throws Exception
+    {
+        MongoTestHelper.dropCollection();
+        MongoTestHelper.createCollection();
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/delta");
+        MongoSessionDataStoreFactory factory = MongoTestHelper.newSessionDataStoreFactory();
+        factory.setDeltaWrites(true);
+        _store = factory.getSessionDataStore(context.getSessionHandler());
+        _sessionContext = new SessionContext("foo", context.getServletContext());
+        _store.initialize(_sessionContext);
+        _store.start();
+    }
+
+    @AfterEach
+    public void afterEach() throws Exception
+    {
+        _store.stop();
+        MongoTestHelper.dropCollection();
+    }
+
+    private DBObject getContextDocument(String id) throws Exception
+    {
+        DBObject sessionDocument = MongoTestHelper.getCollection().findOne(new BasicDBObject(MongoSessionDataStore.__ID, id));
+        return (DBObject)MongoUtils.getNestedValue(sessionDocument, MongoSessionDataStore.__CONTEXT + "." +
+            _sessionContext.getVhost().replace('.', '_') + ":" + _sessionContext.getCanonicalContextPath());
+    }
+
+    @Test
+    public void testOnlyChangedAttributesAreWritten() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _store.newSessionData("delta1", now, now, now, -1);
+        data.setAttribute("a", "1");
+        data.setAttribute("b.b", "2");
+        data.setAttribute("c", "3");
+        _store.store("delta1", data);
+
+        DBObject document = getContextDocument("delta1");
+        assertNull(document.get(MongoSessionDataStore.__ATTRIBUTES));
+        assertEquals(3, ((DBObject)document.get(MongoSessionDataStore.__ATTRIBUTE_MAP)).keySet().size());
+
+        data.setAttribute("a", "4");
+        data.setAttribute("b.b", null);
+        _store.store("delta1", data);
+        assertEquals(2, ((DBObject)getContextDocument("delta1").get(MongoSessionDataStore.__ATTRIBUTE_MAP)).keySet().size());
+
+        SessionData loaded = _store.load("delta1");
+        assertNotNull(loaded);
+        assertEquals("4", loaded.getAttribute("a"));
+        assertNull(loaded.getAttribute("b.b"));
+        assertEquals("3", loaded.getAttribute("c"));
+        assertTrue(loaded.getDirtyAttributes().isEmpty());
+    }
+
+    @Test
+    public void testAttributesFieldIsMigrated() throws Exception
+    {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("a", "1");
+        attributes.put("b", "2");
+        long now = System.currentTimeMillis();
+        MongoTestHelper.createSession("delta2", _sessionContext.getCanonicalContextPath(), _sessionContext.getVhost(),
+            "foo", now, now, now, -1, -1, attributes);
+
+        SessionData loaded = _store.load("delta2");
+        assertNotNull(loaded);
+        assertEquals("1", loaded.getAttribute("a"));
+        assertEquals("2", loaded.getAttribute("b"));
+        assertTrue(loaded.isDirty());
+
+        _store.store("delta2", loaded);
+        DBObject document = getContextDocument("delta2");
+        assertNull(document.get(MongoSessionDataStore.__ATTRIBUTES));
+        assertEquals(2, ((DBObject)document.get(MongoSessionDataStore.__ATTRIBUTE_MAP)).keySet().size());
+
+        loaded = _store.load("delta2");
+        assertEquals("1", loaded.getAttribute("a"));
+        assertEquals("2", loaded.getAttribute("b"));
+        assertTrue(loaded.getDirtyAttributes().isEmpty());
+    }
+}
@@ -13,7 +13,6 @@
 
 package org.eclipse.jetty.nosql.mongodb;
 
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.ObjectOutputStream;
 import java.net.UnknownHostException;
@@ -25,8 +24,8 @@ import com.mongodb.DBObject;
 import com.mongodb.MongoClient;
 import com.mongodb.MongoException;
 import com.mongodb.WriteConcern;
+import org.eclipse.jetty.server.session.JavaSessionDataCodec;
 import org.eclipse.jetty.server.session.SessionData;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testcontainers.containers.GenericContainer;
@@ -178,11 +177,7 @@ public class MongoTestHelper
         {
             assertNotNull(attributes);
             SessionData tmp = new SessionData(data.getId(), data.getContextPath(), data.getVhost(), created.longValue(), accessed.longValue(), lastAccessed.longValue(), maxInactive.longValue());
-            try (ByteArrayInputStream bais = new ByteArrayInputStream(attributes);
-                 ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais))
-            {
-                SessionData.deserializeAttributes(tmp, ois);
-            }
+            new JavaSessionDataCodec().decode(tmp, attributes);
 
             //same keys
             assertTrue(data.getKeys().equals(tmp.getKeys()));
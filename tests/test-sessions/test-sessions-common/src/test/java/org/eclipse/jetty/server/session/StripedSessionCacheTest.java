@@ -0,0 +1,191 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * StripedSessionCacheTest
+ */
+public class StripedSessionCacheTest extends AbstractSessionCacheTest
+{
+    @Override
+    public AbstractSessionCacheFactory newSessionCacheFactory(int evictionPolicy, boolean saveOnCreate,
+                                                              boolean saveOnInactiveEvict, boolean removeUnloadableSessions,
+                                                              boolean flushOnResponseCommit)
+    {
+        StripedSessionCacheFactory factory = new StripedSessionCacheFactory();
+        factory.setEvictionPolicy(evictionPolicy);
+        factory.setSaveOnCreate(saveOnCreate);
+        factory.setSaveOnInactiveEvict(saveOnInactiveEvict);
+        factory.setRemoveUnloadableSessions(removeUnloadableSessions);
+        factory.setFlushOnResponseCommit(flushOnResponseCommit);
+        return factory;
+    }
+
+    @Override
+    public void checkSessionBeforeShutdown(String id,
+                                           SessionDataStore store,
+                                           SessionCache cache,
+                                           TestSessionActivationListener activationListener,
+                                           TestHttpSessionListener sessionListener) throws Exception
+    {
+        assertTrue(store.exists(id));
+        assertTrue(cache.contains(id));
+        assertFalse(sessionListener.destroyedSessions.contains(id));
+        assertEquals(1, activationListener.passivateCalls);
+        assertEquals(1, activationListener.activateCalls);
+    }
+
+    @Override
+    public void checkSessionAfterShutdown(String id,
+                                          SessionDataStore store,
+                                          SessionCache cache,
+                                          TestSessionActivationListener activationListener,
+                                          TestHttpSessionListener sessionListener) throws Exception
+    {
+        if (cache.isInvalidateOnShutdown())
+        {
+            assertFalse(store.exists(id));
+            assertFalse(cache.contains(id));
+            assertTrue(sessionListener.destroyedSessions.contains(id));
+        }
+        else
+        {
+            assertTrue(store.exists(id));
+            assertFalse(cache.contains(id));
+            assertEquals(2, activationListener.passivateCalls);
+            assertEquals(1, activationListener.activateCalls); //no re-activate on shutdown
+        }
+    }
+
+    @Test
+    public void testIdleSessionsEvictedByTimingWheel() throws Exception
+    {
+        Server server = new Server();
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        StripedSessionCacheFactory cacheFactory = new StripedSessionCacheFactory();
+        cacheFactory.setEvictionPolicy(SessionCache.EVICT_ON_INACTIVITY); //evict after 1 second inactivity
+        cacheFactory.setSegments(4);
+        cacheFactory.setTimerTickMs(100);
+        StripedSessionCache cache = (StripedSessionCache)cacheFactory.getSessionCache(context.getSessionHandler());
+
+        TestSessionDataStore store = new TestSessionDataStore();
+        cache.setSessionDataStore(store);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            //make some idle sessions
+            int sessions = 50;
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < sessions; i++)
+            {
+                String id = "id" + i;
+                SessionData data = store.newSessionData(id, now - 20, now - 10, now - 20, TimeUnit.MINUTES.toMillis(10));
+                Session session = cache.newSession(data);
+                //the timeout is tracked by the cache, not by a CyclicTimeout per session
+                assertNull(session._sessionInactivityTimer._timer);
+                cache.add(id, session); //make it resident
+                data.setAccessed(now - TimeUnit.SECONDS.toMillis(30)); //make it idle
+                cache.release(id, session);
+            }
+            assertEquals(sessions, cache.getSessionsCurrent());
+            assertEquals(sessions, cache.getInactivityTimeoutsPending());
+
+            long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (cache.getSessionsCurrent() > 0 && System.nanoTime() < end)
+            {
+                Thread.sleep(50);
+            }
+            assertEquals(0, cache.getSessionsCurrent());
+            assertEquals(0, cache.getInactivityTimeoutsPending());
+            assertEquals(sessions, cache.getInactivityTimeoutsExpired());
+            assertTrue(cache.getEvictionLagMax() >= 0);
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    @Test
+    public void testCheckExpirationInBatches() throws Exception
+    {
+        Server server = new Server();
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        StripedSessionCacheFactory cacheFactory = new StripedSessionCacheFactory();
+        cacheFactory.setExpiryBatchSize(10);
+        StripedSessionCache cache = (StripedSessionCache)cacheFactory.getSessionCache(context.getSessionHandler());
+
+        AtomicInteger calls = new AtomicInteger();
+        TestSessionDataStore store = new TestSessionDataStore()
+        {
+            @Override
+            public Set<String> getExpired(Set<String> candidates)
+            {
+                calls.incrementAndGet();
+                assertTrue(candidates.size() <= 10);
+                return super.getExpired(candidates);
+            }
+        };
+        cache.setSessionDataStore(store);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            Set<String> candidates = new HashSet<>();
+            for (int i = 0; i < 25; i++)
+            {
+                String id = "id" + i;
+                SessionData data = store.newSessionData(id, now - 20, now - 10, now - 20, TimeUnit.MINUTES.toMillis(10));
+                //sessions with an even index have expired
+                data.setExpiry(i % 2 == 0 ? now - 1 : now + TimeUnit.MINUTES.toMillis(10));
+                store.store(id, data);
+                candidates.add(id);
+            }
+
+            Set<String> expired = cache.checkExpiration(candidates);
+            assertEquals(3, calls.get());
+            assertEquals(13, expired.size());
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WriteBehindSessionDataStoreTest
+ */
+public class WriteBehindSessionDataStoreTest
+{
+    private TestSessionDataStore _delegate;
+    private WriteBehindSessionDataStore _store;
+
+    @BeforeEach
+    public void before() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        _delegate = new TestSessionDataStore();
+        _store = new WriteBehindSessionDataStore(_delegate);
+        _store.setFlushIntervalMs(TimeUnit.MINUTES.toMillis(1));
+        _store.initialize(new SessionContext("foo", context.getServletContext()));
+        _store.start();
+    }
+
+    @AfterEach
+    public void after() throws Exception
+    {
+        _store.stop();
+    }
+
+    private SessionData newSessionData(String id)
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _store.newSessionData(id, now, now, now, -1);
+        data.setAttribute("a", "b");
+        return data;
+    }
+
+    @Test
+    public void testStoresAreCoalesced() throws Exception
+    {
+        SessionData data = newSessionData("aaa1");
+        _store.store("aaa1", data);
+        assertFalse(data.isDirty());
+        data.setAttribute("a", "c");
+        _store.store("aaa1", data);
+
+        assertEquals(1, _store.getPending());
+        assertEquals(1, _store.getCoalesced());
+        assertEquals(0, _delegate._numSaves.get());
+
+        _store.flush();
+        assertEquals(0, _store.getPending());
+        assertEquals(1, _delegate._numSaves.get());
+        assertEquals("c", _delegate._map.get("aaa1").getAttribute("a"));
+    }
+
+    @Test
+    public void testDirtyAttributesAreCoalesced() throws Exception
+    {
+        SessionData data = newSessionData("aaa4");
+        _store.store("aaa4", data);
+        _store.flush();
+        assertEquals(Set.of("a"), _delegate._map.get("aaa4").getDirtyAttributes());
+
+        data.setAttribute("x", "y");
+        _store.store("aaa4", data);
+        assertTrue(data.getDirtyAttributes().isEmpty());
+        data.setAttribute("a", null);
+        _store.store("aaa4", data);
+        _store.flush();
+
+        SessionData stored = _delegate._map.get("aaa4");
+        assertEquals(Set.of("a", "x"), stored.getDirtyAttributes());
+        assertNull(stored.getAttribute("a"));
+        assertEquals("y", stored.getAttribute("x"));
+    }
+
+    @Test
+    public void testLoadServedFromQueue() throws Exception
+    {
+        SessionData data = newSessionData("aaa2");
+        _store.store("aaa2", data);
+
+        assertTrue(_store.exists("aaa2"));
+        SessionData loaded = _store.load("aaa2");
+        assertNotNull(loaded);
+        assertEquals("b", loaded.getAttribute("a"));
+        assertEquals(0, _delegate._numSaves.get());
+    }
+
+    @Test
+    public void testUnchangedSessionNotQueued() throws Exception
+    {
+        SessionData data = newSessionData("aaa3");
+        _store.store("aaa3", data);
+        _store.flush();
+
+        // Not dirty and recently saved.
+        _store.store("aaa3", data);
+        assertEquals(0, _store.getPending());
+        assertEquals(1, _store.getQueued());
+    }
+
+    @Test
+    public void testCallerFlushesWhenQueueIsFull() throws Exception
+    {
+        _store.setMaxPending(3);
+        _store.setMaxBatchSize(2);
+        for (int i = 0; i < 3; ++i)
+        {
+            String id = "bbb" + i;
+            _store.store(id, newSessionData(id));
+        }
+
+        assertEquals(1, _store.getCallerFlushes());
+        assertEquals(0, _store.getPending());
+        assertEquals(3, _delegate._numSaves.get());
+        assertEquals(2, _store.getFlushes());
+    }
+
+    @Test
+    public void testFlushAfterInterval() throws Exception
+    {
+        _store.stop();
+        _store.setFlushIntervalMs(100);
+        _store.start();
+
+        _store.store("ccc1", newSessionData("ccc1"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (_delegate._numSaves.get() == 0 && System.nanoTime() < deadline)
+        {
+            Thread.sleep(10);
+        }
+        assertEquals(1, _delegate._numSaves.get());
+        assertEquals(0, _store.getPending());
+    }
+
+    @Test
+    public void testFlushOnStop() throws Exception
+    {
+        _store.store("ddd1", newSessionData("ddd1"));
+        _store.stop();
+        assertTrue(_delegate._map.containsKey("ddd1"));
+    }
+
+    @Test
+    public void testFlushBeforeGetExpired() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = _store.newSessionData("eee1", now - 2000, now - 2000, now - 2000, 1000);
+        data.calcAndSetExpiry(now - 2000);
+        _store.store("eee1", data);
+
+        Set<String> expired = _store.getExpired(Collections.singleton("eee1"));
+        assertTrue(_delegate._map.containsKey("eee1"));
+        assertTrue(expired.contains("eee1"));
+    }
+
+    @Test
+    public void testDeletePending() throws Exception
+    {
+        _store.store("fff1", newSessionData("fff1"));
+        assertTrue(_store.delete("fff1"));
+        assertFalse(_store.exists("fff1"));
+        assertNull(_store.load("fff1"));
+
+        _store.flush();
+        assertEquals(0, _delegate._numSaves.get());
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() throws Exception
+    {
+        _store.stop();
+        AtomicBoolean fail = new AtomicBoolean(true);
+        _delegate = new TestSessionDataStore()
+        {
+            @Override
+            public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+            {
+                if (fail.get())
+                    throw new IOException("test");
+                super.doStore(id, data, lastSaveTime);
+            }
+        };
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        _store = new WriteBehindSessionDataStore(_delegate);
+        _store.setFlushIntervalMs(TimeUnit.MINUTES.toMillis(1));
+        _store.initialize(new SessionContext("foo", context.getServletContext()));
+        _store.start();
+
+        SessionData data = newSessionData("ggg1");
+        _store.store("ggg1", data);
+        _store.flush();
+        assertEquals(1, _store.getFlushFailures());
+        assertEquals(1, _store.getPending());
+        assertFalse(data.isDirty());
+
+        fail.set(false);
+        _store.flush();
+        assertEquals(0, _store.getPending());
+        assertEquals("b", _delegate._map.get("ggg1").getAttribute("a"));
+    }
+}